@@ -31,9 +31,14 @@ import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.AbstractAction;
@@ -50,13 +55,20 @@ import javax.swing.JTextArea;
 import javax.swing.KeyStroke;
 import javax.swing.LayoutStyle;
 import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingUtilities;
 import javax.swing.WindowConstants;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.Document;
 import javax.swing.text.Keymap;
 
 /**
- *
+ * The main window of FnPlot.  Input is parsed and evaluated on a worker
+ * thread, one program at a time, so that the window stays responsive while
+ * a slow program runs, and its plots appear as they are computed.  Sending
+ * new input cancels the program running, and any still waiting, in favour
+ * of the new one; the Cancel button (or Escape) just cancels them.  Panning
+ * and zooming redraw the plots on the same thread, after whatever program is
+ * running, and cancel a redraw for a view that has since changed again.
  * @author newts
  */
 public class FnPlotFrame extends javax.swing.JFrame {
@@ -68,18 +80,53 @@ public class FnPlotFrame extends javax.swing.JFrame {
     public static final int NO_ERROR = 0;
     
     Action sendAction;
+    Action cancelAction;
     Evaluator interp;
     Keymap inKeyMap;
     ArrayList<String> history;
 
+    // the thread on which input is evaluated and views redrawn
+    private final ExecutorService worker;
+    // guards the state below, and every change to whether interp is cancelled
+    private final Object lock = new Object();
+    // counts inputs sent and cancellations; an input sent before the latest
+    // of either is not evaluated
+    private long generation;
+    // the tasks given to the worker and not yet finished
+    private int pending;
+    // the view still to be drawn, or null if a task is not waiting to
+    private double[] pendingView;
+    // whether the task running is a redraw of the view
+    private boolean redrawing;
+
     /**
      * Creates new form FnPlotFrame
      */
     public FnPlotFrame() {
         initComponents();
+        worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "FnPlot evaluator");
+                t.setDaemon(true);
+                return t;
+            }
+        });
         history = new ArrayList<>();
         interp = new Evaluator();
         interp.setPlotter(new GraphPlotter(gPanel));
+        // panning or zooming samples the curves of plot statements again,
+        // over the view, when the interpreter keeps them (-incremental)
+        gPanel.addListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                if (GraphingPanel.EVT_EXTENTS_CHANGED.equals(evt.getPropertyName())) {
+                    // extents are reported as {xlo, ylo, xhi, yhi}
+                    float[] extents = (float[]) evt.getNewValue();
+                    changeView(extents[0], extents[2]);
+                }
+            }
+        });
         sendAction = new AbstractAction("SEND") {
             private static final long serialVersionUID = 1L;
             @Override
@@ -88,27 +135,142 @@ public class FnPlotFrame extends javax.swing.JFrame {
             }
         };
         
+        cancelAction = new AbstractAction("CANCEL") {
+            private static final long serialVersionUID = 1L;
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                cancel();
+            }
+        };
+        
         inKeyMap = inputTextArea.getKeymap();
         inKeyMap.addActionForKeyStroke(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, KeyEvent.CTRL_DOWN_MASK), sendAction);
+        inKeyMap.addActionForKeyStroke(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), cancelAction);
     }
 
     private void sendInput() {
         Document inDoc = inputTextArea.getDocument();
         int len = inDoc.getLength();
         try {
-            String inputText = inDoc.getText(0, len);
-            StringReader reader = new StringReader(inputText);
+            final String inputText = inDoc.getText(0, len);
             display(inputText);
             history.add(inputText);
-            int errCode = evaluate(reader);
             // clear the input area
             inputTextArea.replaceRange("", 0, len);
+            final long sent;
+            synchronized (lock) {
+                // supersedes whatever is running or waiting
+                sent = ++generation;
+                interp.setCancelled(true);
+            }
+            submit(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (lock) {
+                        if (sent != generation) {
+                            display("Not evaluated: " + inputText.trim());
+                            return;
+                        }
+                        interp.setCancelled(false);
+                    }
+                    evaluate(new StringReader(inputText));
+                }
+            });
         } catch (BadLocationException ex) {
             Logger.getLogger(FnPlotFrame.class.getName()).log(Level.SEVERE, 
                     "Failed to retrieve input!", ex);
         }
     }
+
+    /**
+     * Stop the program being evaluated, or the redraw of the view, and skip
+     * the inputs waiting to be evaluated.  Whatever the program had defined
+     * or drawn by then is kept.
+     */
+    public void cancel() {
+        synchronized (lock) {
+            generation++;
+            interp.setCancelled(true);
+        }
+    }
+
+    /*
+     * Redraw the plots over a new view, once the worker is free, cancelling
+     * a redraw over an older view.  A view that changes again before it is
+     * drawn is skipped.
+     */
+    private void changeView(double low, double hi) {
+        synchronized (lock) {
+            boolean waiting = pendingView != null;
+            pendingView = new double[]{low, hi};
+            if (redrawing) {
+                interp.setCancelled(true);
+            }
+            if (waiting) {
+                return;
+            }
+        }
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                double[] v;
+                synchronized (lock) {
+                    v = pendingView;
+                    pendingView = null;
+                    redrawing = true;
+                    interp.setCancelled(false);
+                }
+                try {
+                    interp.setView(v[0], v[1]);
+                } catch (FnPlotException e) {
+                    display(e.getMessage());
+                } finally {
+                    synchronized (lock) {
+                        redrawing = false;
+                    }
+                }
+            }
+        });
+    }
+
+    /*
+     * Give a task to the worker, enabling the Cancel button until every
+     * task given to it has finished.
+     */
+    private void submit(final Runnable task) {
+        synchronized (lock) {
+            pending++;
+        }
+        cancelButton.setEnabled(true);
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    synchronized (lock) {
+                        pending--;
+                    }
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            synchronized (lock) {
+                                cancelButton.setEnabled(pending > 0);
+                            }
+                        }
+                    });
+                }
+            }
+        });
+    }
     
+    /**
+     * Parse and evaluate a program, on the calling thread, displaying its
+     * result or the error that stopped it.
+     * @param reader The source of the program
+     * @return {@link #NO_ERROR}, {@link #SYNTAX_ERROR} or
+     * {@link #RUNTIME_ERROR}.
+     */
     public int evaluate(Reader reader) {
         FnPlotParser parser;
 	ArithProgram program;
@@ -136,7 +298,20 @@ public class FnPlotFrame extends javax.swing.JFrame {
             return SYNTAX_ERROR;
     }
     
-    public void display(String msg) {
+    /**
+     * Append a message to the history, from the event dispatch thread.
+     * @param msg The message
+     */
+    public void display(final String msg) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    display(msg);
+                }
+            });
+            return;
+        }
         historyTextArea.append(msg);
         historyTextArea.append("\n");
     }
@@ -170,6 +345,7 @@ public class FnPlotFrame extends javax.swing.JFrame {
         jScrollPane2 = new JScrollPane();
         inputTextArea = new JTextArea();
         jLabel1 = new JLabel();
+        cancelButton = new JButton();
 
         setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
 
@@ -345,6 +521,15 @@ public class FnPlotFrame extends javax.swing.JFrame {
 
         jLabel1.setText("Enter commands below.  Press Ctrl-Enter to send.");
 
+        cancelButton.setText("Cancel");
+        cancelButton.setToolTipText("Stop the evaluation in progress (Escape)");
+        cancelButton.setEnabled(false);
+        cancelButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent evt) {
+                cancelButtonActionPerformed(evt);
+            }
+        });
+
         GroupLayout layout = new GroupLayout(getContentPane());
         getContentPane().setLayout(layout);
         layout.setHorizontalGroup(layout.createParallelGroup(GroupLayout.Alignment.LEADING)
@@ -354,7 +539,9 @@ public class FnPlotFrame extends javax.swing.JFrame {
                     .addComponent(jScrollPane2)
                     .addGroup(layout.createSequentialGroup()
                         .addGap(23, 23, 23)
-                        .addComponent(jLabel1)))
+                        .addComponent(jLabel1)
+                        .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
+                        .addComponent(cancelButton)))
                 .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
                 .addComponent(displayPanel, GroupLayout.DEFAULT_SIZE, 532, Short.MAX_VALUE))
         );
@@ -363,7 +550,9 @@ public class FnPlotFrame extends javax.swing.JFrame {
             .addGroup(layout.createSequentialGroup()
                 .addComponent(jScrollPane1)
                 .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
-                .addComponent(jLabel1)
+                .addGroup(layout.createParallelGroup(GroupLayout.Alignment.BASELINE)
+                    .addComponent(jLabel1)
+                    .addComponent(cancelButton))
                 .addPreferredGap(LayoutStyle.ComponentPlacement.RELATED)
                 .addComponent(jScrollPane2, GroupLayout.PREFERRED_SIZE, 105, GroupLayout.PREFERRED_SIZE))
         );
@@ -413,10 +602,17 @@ public class FnPlotFrame extends javax.swing.JFrame {
         gPanel.reset();
     }//GEN-LAST:event_resetButtonActionPerformed
 
+    private void cancelButtonActionPerformed(ActionEvent evt) {//GEN-FIRST:event_cancelButtonActionPerformed
+        cancel();
+    }//GEN-LAST:event_cancelButtonActionPerformed
+
     /**
-     * @param args the command line arguments
+     * @param args the command line arguments: <code>-parallel</code> to
+     * sample functions on every available core, and <code>-incremental</code>
+     * to keep the curves plotted, so that redefinitions, panning and zooming
+     * update them, as for {@link fnplot.sys.CmdLine}
      */
-    public static void main(String args[]) {
+    public static void main(final String args[]) {
         /* Set the Nimbus look and feel */
         //<editor-fold defaultstate="collapsed" desc=" Look and feel setting code (optional) ">
         /* If Nimbus (introduced in Java SE 6) is not available, stay with the default look and feel.
@@ -443,7 +639,17 @@ public class FnPlotFrame extends javax.swing.JFrame {
         /* Create and display the form */
         java.awt.EventQueue.invokeLater(new Runnable() {
             public void run() {
-                new FnPlotFrame().setVisible(true);
+                FnPlotFrame frame = new FnPlotFrame();
+                for (String arg : args) {
+                    if (arg.equals("-parallel")) {
+                        // sample functions on every available core
+                        frame.interp.setParallelism(Runtime.getRuntime().availableProcessors());
+                    } else if (arg.equals("-incremental")) {
+                        // redefinitions recompute whatever depends on them
+                        frame.interp.setIncremental(true);
+                    }
+                }
+                frame.setVisible(true);
             }
         });
     }
@@ -451,6 +657,7 @@ public class FnPlotFrame extends javax.swing.JFrame {
     
 
     // Variables declaration - do not modify//GEN-BEGIN:variables
+    private JButton cancelButton;
     private JPanel displayPanel;
     private GraphingPanel gPanel;
     private JPanel graphCtrlPanel;
@@ -26,22 +26,87 @@
 package fnplot.gui;
 
 import cs34q.gfx.GraphingPanel;
+import fnplot.semantics.Decimator;
 import fnplot.semantics.Plotter;
+import fnplot.semantics.PointBuffer;
+import fnplot.semantics.SampleStore;
 import java.awt.geom.Point2D;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import javax.swing.SwingUtilities;
 
 /**
- *
+ * A plotter that draws on a {@link GraphingPanel}.  It may be used from any
+ * thread: a plot made off the event dispatch thread is posted to it, in
+ * order, so each path appears as soon as it has been computed, while the
+ * rest of the plot is still being computed.
  * @author newts
  */
 public class GraphPlotter implements Plotter {
     
     private GraphingPanel gPanel;
+    // the visible ranges of x and y, as last reported by the panel
+    private volatile double[] xRange = {-10, 10};
+    private volatile double[] yRange = {-10, 10};
+    // whether paths are thinned to a few points per column of pixels
+    private volatile boolean decimating = true;
+    // how far, in pixels, a simplified path may stray, or 0 to not simplify
+    private volatile double tolerance;
 
     public GraphPlotter(GraphingPanel panel) {
         this.gPanel = panel;
+        panel.addListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                if (GraphingPanel.EVT_EXTENTS_CHANGED.equals(evt.getPropertyName())) {
+                    // extents are reported as {xlo, ylo, xhi, yhi}
+                    float[] extents = (float[]) evt.getNewValue();
+                    xRange = new double[]{extents[0], extents[2]};
+                    yRange = new double[]{extents[1], extents[3]};
+                }
+            }
+        });
+    }
+
+    /**
+     * @return <code>true</code> if paths are decimated before they are
+     * drawn.
+     */
+    public boolean isDecimating() {
+        return decimating;
+    }
+
+    /**
+     * Choose whether each path is reduced, before it is drawn, to at most
+     * four points in each column of pixels that it crosses (see
+     * {@link Decimator}), which draws the same pixels in time and space
+     * that depend on the width of the panel rather than on the number of
+     * points.  Paths are decimated by default.
+     * @param decimating <code>true</code> to decimate paths
+     */
+    public void setDecimating(boolean decimating) {
+        this.decimating = decimating;
+    }
+
+    /**
+     * @return The distance in pixels by which a simplified path may stray
+     * from the points left out, or 0 if paths are not simplified.
+     */
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Choose whether each path is also simplified, after it is decimated,
+     * by the Ramer-Douglas-Peucker method (see {@link Decimator#simplify}).
+     * Unlike decimation, this may change the pixels drawn, by up to the
+     * given distance.
+     * @param tolerance The distance in pixels by which a simplified path may
+     * stray from the points left out, or 0 to not simplify paths
+     */
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
     }
-    
-    
 
     @Override
     public double[] sample(double low, double hi) {
@@ -58,20 +123,121 @@ public class GraphPlotter implements Plotter {
         return result;
     }
 
+    @Override
+    public int sample(double low, double hi, int from, double[] xs) {
+        // the points of sample(low, hi), each computed from its index
+        int width = gPanel.getWidth();
+        double interval = (hi - low) / width;
+        int n = Math.max(0, Math.min(xs.length, width + 1 - from));
+        for (int i = 0; i < n; i++) {
+            int j = from + i;
+            xs[i] = j == width ? hi : low + j * interval;
+        }
+        return n;
+    }
+
     @Override
     public void plot(Point2D[] points) {
-        float[] xs = new float[points.length];
-        float[] ys = new float[points.length];
-        for (int i = 0; i < points.length; i++) {
-            xs[i] = (float) points[i].getX();
-            ys[i] = (float) points[i].getY();
+        plot(PointBuffer.of(points));
+    }
+
+    @Override
+    public void plot(PointBuffer points) {
+        double[] xr = xRange;
+        int width = gPanel.getWidth();
+        if (decimating) {
+            points = Decimator.decimate(points, xr[0], xr[1], width);
         }
-        gPanel.drawPath(xs, ys);
+        draw(simplify(points));
+    }
+
+    @Override
+    public void plot(SampleStore points) {
+        double[] xr = xRange;
+        int width = gPanel.getWidth();
+        if (!decimating || !Decimator.canDecimate(xr[0], xr[1], width)) {
+            // in pieces that join up, each copied only as it is drawn
+            Plotter.super.plot(points);
+            return;
+        }
+        // fed from the store a piece at a time, so the whole path is never
+        // on the heap
+        Decimator d = new Decimator(xr[0], xr[1], width);
+        int piece = SampleStore.MIN_CAPACITY;
+        double[] xs = new double[piece];
+        double[] ys = new double[piece];
+        for (int from = 0; from < points.length(); from += piece) {
+            int n = Math.min(piece, points.length() - from);
+            points.get(from, xs, ys, 0, n);
+            for (int i = 0; i < n; i++) {
+                d.add(xs[i], ys[i]);
+            }
+        }
+        draw(simplify(d.finish()));
+    }
+
+    /*
+     * Simplify a path, if paths are to be simplified.
+     */
+    private PointBuffer simplify(PointBuffer points) {
+        double tol = tolerance;
+        double[] xr = xRange;
+        double[] yr = yRange;
+        int width = gPanel.getWidth();
+        int height = gPanel.getHeight();
+        if (tol <= 0 || width <= 0 || height <= 0) {
+            return points;
+        }
+        return Decimator.simplify(points, (xr[1] - xr[0]) / width, (yr[1] - yr[0]) / height,
+                tol);
+    }
+
+    private void draw(PointBuffer points) {
+        int n = points.length();
+        double[] pxs = points.getXs();
+        double[] pys = points.getYs();
+        float[] xs = new float[n];
+        float[] ys = new float[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = (float) pxs[i];
+            ys[i] = (float) pys[i];
+        }
+        drawPath(xs, ys);
+    }
+
+    /*
+     * Draw a path on the panel, from the event dispatch thread.
+     */
+    private void drawPath(final float[] xs, final float[] ys) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            gPanel.drawPath(xs, ys);
+        } else {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    gPanel.drawPath(xs, ys);
+                }
+            });
+        }
+    }
+
+    @Override
+    public double[] getYRange() {
+        return yRange;
     }
 
     @Override
     public void clear() {
-        gPanel.clear();
+        if (SwingUtilities.isEventDispatchThread()) {
+            gPanel.clear();
+        } else {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    gPanel.clear();
+                }
+            });
+        }
     }
 
 }
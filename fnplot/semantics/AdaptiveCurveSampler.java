@@ -0,0 +1,44 @@
+package fnplot.semantics;
+
+import fnplot.sys.FnPlotException;
+import java.util.ArrayList;
+
+/**
+ * Samples a curve coarsely, and then more densely just where the straight
+ * lines between its samples would stray from it by more than a pixel, as a
+ * single path (see {@link AdaptiveSampler}).  The plotter's own sample
+ * determines the width of the plot in pixels, and its visible range of
+ * output values, if any, the height of a pixel.
+ */
+class AdaptiveCurveSampler implements CurveSampler {
+
+    /**
+     * The number of times a curve may halve the spacing of its first, coarse
+     * sample.
+     */
+    static final int ADAPTIVE_DEPTH = 10;
+
+    /**
+     * The greatest number of points at which a curve's function is
+     * evaluated, per pixel across the plot.
+     */
+    static final int ADAPTIVE_BUDGET = 4;
+
+    private final BatchSampler points;
+
+    AdaptiveCurveSampler(BatchSampler points) {
+        this.points = points;
+    }
+
+    @Override
+    public void trace(DependencyGraph.Curve curve, Plotter plotter) throws FnPlotException {
+        BatchSampler.checkUnary(curve.f);
+        int n = plotter.sample(curve.low, curve.hi).length - 1;
+        AdaptiveSampler sampler = new AdaptiveSampler(points.values(curve.f), n,
+                plotter.getYRange(), 1, ADAPTIVE_DEPTH, ADAPTIVE_BUDGET * n);
+        double[][] sample = sampler.sample(curve.low, curve.hi);
+        ArrayList<PointBuffer> paths = new ArrayList<>();
+        paths.add(new PointBuffer(sample[0], sample[1]));
+        curve.paths = paths;
+    }
+}
@@ -0,0 +1,257 @@
+package fnplot.semantics;
+
+import fnplot.sys.FnPlotException;
+import java.util.Arrays;
+
+/**
+ * Chooses where to sample a function of one variable for plotting, guided by
+ * how far the graph strays from the straight lines that would be drawn
+ * between the points already sampled.  The function is first sampled
+ * coarsely, every {@link #SPACING} pixels.  Each part of the range between
+ * adjacent points is then tested at its midpoint, and halved if the value
+ * there is further than the tolerance from the chord, so smooth stretches
+ * keep few points while bends, poles and oscillations get many.  A part
+ * where the function is defined at some of the three points but not at
+ * others contains a pole or an edge of its domain, and is always halved.
+ *
+ * The parts are refined a level at a time, and all the midpoints of a level
+ * are evaluated together, so that each level can be sampled as one batch.
+ * No part is halved more than a given number of times, and the function is
+ * evaluated at no more than a given number of points in all; when a level
+ * would exceed that, the parts that strayed furthest are tested first.
+ *
+ * Since only midpoints are tested, a feature narrower than the coarse
+ * spacing may be missed entirely.
+ */
+public class AdaptiveSampler {
+
+    /** The spacing of the first, coarse sample, in pixels. */
+    public static final int SPACING = 4;
+
+    /**
+     * A way of computing the values of the function being sampled.
+     */
+    public interface Values {
+
+        /**
+         * @param xs Points at which to evaluate the function
+         * @return The values of the function, in the same order.
+         * @throws FnPlotException if an error arises while evaluating it.
+         */
+        double[] at(double[] xs) throws FnPlotException;
+    }
+
+    private final Values values;
+    private final int pixels;
+    private final double[] yRange;
+    private final double tolerance;
+    private final int maxDepth;
+    private final int budget;
+
+    // the points sampled so far, linked in increasing order of x
+    private double[] xs;
+    private double[] ys;
+    private int[] next;
+    private int count;
+
+    /**
+     * Create a new sampler.
+     * @param values The function to be sampled
+     * @param pixels The width of the plot in pixels; its height is taken to
+     * be the same
+     * @param yRange The visible range of output values, as an array holding
+     * its lower and upper bounds, or <code>null</code> to take the range of
+     * the values at the coarse sample points
+     * @param tolerance The distance, in pixels, by which the graph may stray
+     * from a chord without the chord being refined
+     * @param maxDepth The number of times a part of the coarse sample may be
+     * halved
+     * @param budget The greatest number of points at which the function is
+     * to be evaluated; at least the coarse sample is always evaluated
+     */
+    public AdaptiveSampler(Values values, int pixels, double[] yRange, double tolerance,
+            int maxDepth, int budget) {
+        this.values = values;
+        this.pixels = Math.max(pixels, 1);
+        this.yRange = yRange;
+        this.tolerance = tolerance;
+        this.maxDepth = maxDepth;
+        this.budget = budget;
+    }
+
+    /**
+     * @return The number of points at which the function was evaluated by
+     * the last call of {@link #sample}.
+     */
+    public int getEvaluations() {
+        return count;
+    }
+
+    /**
+     * Sample the function over the given range.
+     * @param lo The lower bound of the range
+     * @param hi The upper bound of the range
+     * @return The sample points, in increasing order, and the values of the
+     * function at them, as a pair of arrays.
+     * @throws FnPlotException if an error arises while evaluating the
+     * function.
+     */
+    public double[][] sample(double lo, double hi) throws FnPlotException {
+        int parts = Math.max(pixels / SPACING, 1);
+        int capacity = Math.max(budget, parts + 1);
+        xs = new double[capacity];
+        ys = new double[capacity];
+        next = new int[capacity];
+        for (int i = 0; i <= parts; i++) {
+            xs[i] = i == parts ? hi : lo + i * (hi - lo) / parts;
+        }
+        double[] coarse = values.at(Arrays.copyOf(xs, parts + 1));
+        System.arraycopy(coarse, 0, ys, 0, parts + 1);
+        for (int i = 0; i < parts; i++) {
+            next[i] = i + 1;
+        }
+        next[parts] = -1;
+        count = parts + 1;
+        double tol = tolerance * height(coarse) / pixels;
+
+        // the parts still to be tested, by their end points
+        int[] left = new int[parts];
+        int[] right = new int[parts];
+        double[] priority = new double[parts];
+        int pending = 0;
+        for (int i = 0; i < parts; i++) {
+            if (divisible(i, i + 1)) {
+                left[pending] = i;
+                right[pending] = i + 1;
+                priority[pending] = Double.POSITIVE_INFINITY;
+                pending++;
+            }
+        }
+        for (int depth = 0; depth < maxDepth && pending > 0 && count < capacity; depth++) {
+            if (pending > capacity - count) {
+                pending = mostStrayed(left, right, priority, pending, capacity - count);
+            }
+            double[] mids = new double[pending];
+            for (int k = 0; k < pending; k++) {
+                mids[k] = mid(left[k], right[k]);
+            }
+            double[] vals = values.at(mids);
+            int[] nextLeft = new int[2 * pending];
+            int[] nextRight = new int[2 * pending];
+            double[] nextPriority = new double[2 * pending];
+            int n = 0;
+            for (int k = 0; k < pending; k++) {
+                int a = left[k], b = right[k], m = count++;
+                xs[m] = mids[k];
+                ys[m] = vals[k];
+                next[a] = m;
+                next[m] = b;
+                double strayed = deviation(ys[a], ys[m], ys[b]);
+                if (strayed > tol) {
+                    if (divisible(a, m)) {
+                        nextLeft[n] = a;
+                        nextRight[n] = m;
+                        nextPriority[n++] = strayed;
+                    }
+                    if (divisible(m, b)) {
+                        nextLeft[n] = m;
+                        nextRight[n] = b;
+                        nextPriority[n++] = strayed;
+                    }
+                }
+            }
+            left = nextLeft;
+            right = nextRight;
+            priority = nextPriority;
+            pending = n;
+        }
+
+        double[][] result = new double[2][count];
+        int j = 0;
+        for (int i = 0; i >= 0; i = next[i]) {
+            result[0][j] = xs[i];
+            result[1][j] = ys[i];
+            j++;
+        }
+        xs = null;
+        ys = null;
+        next = null;
+        return result;
+    }
+
+    /*
+     * The height of the plot in output units: that of the visible range if
+     * it is known, otherwise the spread of the finite values given.
+     */
+    private double height(double[] vals) {
+        if (yRange != null) {
+            return yRange[1] - yRange[0];
+        }
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        for (double y : vals) {
+            if (!Double.isNaN(y) && !Double.isInfinite(y)) {
+                min = Math.min(min, y);
+                max = Math.max(max, y);
+            }
+        }
+        return max > min ? max - min : 0;
+    }
+
+    private double mid(int a, int b) {
+        return xs[a] + (xs[b] - xs[a]) / 2;
+    }
+
+    /*
+     * Whether the part between two points has a midpoint distinct from both,
+     * which it lacks once it is as narrow as the spacing of doubles.
+     */
+    private boolean divisible(int a, int b) {
+        double m = mid(a, b);
+        return m != xs[a] && m != xs[b];
+    }
+
+    /*
+     * How far the value at the midpoint of a part is from the chord across
+     * it: infinite if the function is defined at some of the three points
+     * but not all, and zero if it is defined at none.
+     */
+    private static double deviation(double ya, double ym, double yb) {
+        int defined = (isFinite(ya) ? 1 : 0) + (isFinite(ym) ? 1 : 0) + (isFinite(yb) ? 1 : 0);
+        if (defined == 3) {
+            return Math.abs(ym - (ya + yb) / 2);
+        }
+        return defined == 0 ? 0 : Double.POSITIVE_INFINITY;
+    }
+
+    private static boolean isFinite(double y) {
+        return !Double.isNaN(y) && !Double.isInfinite(y);
+    }
+
+    /*
+     * Keep just the given number of pending parts, those with the highest
+     * priorities, in their original order.  Returns the number kept.
+     */
+    private static int mostStrayed(int[] left, int[] right, double[] priority, int pending,
+            int room) {
+        double[] sorted = Arrays.copyOf(priority, pending);
+        Arrays.sort(sorted);
+        double cut = sorted[pending - room];
+        // parts above the cut are kept; those at it, while there is room
+        int above = 0;
+        for (int k = 0; k < pending; k++) {
+            if (priority[k] > cut) {
+                above++;
+            }
+        }
+        int atCut = room - above;
+        int n = 0;
+        for (int k = 0; k < pending; k++) {
+            if (priority[k] > cut || priority[k] == cut && atCut-- > 0) {
+                left[n] = left[k];
+                right[n] = right[k];
+                priority[n++] = priority[k];
+            }
+        }
+        return n;
+    }
+}
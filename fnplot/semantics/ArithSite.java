@@ -0,0 +1,150 @@
+package fnplot.semantics;
+
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotInt;
+import fnplot.values.FnPlotReal;
+import fnplot.values.FnPlotValue;
+
+/**
+ * The execution state of a single arithmetic node, for operations whose
+ * operand types could not be inferred statically.  The first time the node is
+ * evaluated, the site records the types of the operands it is given and
+ * specializes itself to them: integer with integer, real with real, or a mix
+ * of the two.  While later operands have the same types, the operation is
+ * performed directly on the underlying Java values.  As soon as operands of
+ * other types arrive, the site falls back for good to the generic operations
+ * of {@link FnPlotValue}, which dispatch on the operand values.
+ *
+ * Every state checks its operands before relying on them, so sites may be
+ * shared by evaluations running in parallel; a lost update only costs a
+ * respecialization.
+ */
+public class ArithSite {
+
+    /**
+     * The arithmetic operators.
+     */
+    public enum Op {
+        ADD, SUB, MUL, DIV, MOD, EXPO;
+
+        int apply(int a, int b) {
+            switch (this) {
+                case ADD: return a + b;
+                case SUB: return a - b;
+                case MUL: return a * b;
+                case DIV: return a / b;
+                case MOD: return a % b;
+                default: return (int) Math.pow(a, b);
+            }
+        }
+
+        double apply(double a, double b) {
+            switch (this) {
+                case ADD: return a + b;
+                case SUB: return a - b;
+                case MUL: return a * b;
+                case DIV: return a / b;
+                case MOD: return a % b;
+                default: return Math.pow(a, b);
+            }
+        }
+
+        FnPlotValue<?> apply(FnPlotValue<?> a, FnPlotValue<?> b) throws FnPlotException {
+            switch (this) {
+                case ADD: return a.add(b);
+                case SUB: return a.sub(b);
+                case MUL: return a.mul(b);
+                case DIV: return a.div(b);
+                case MOD: return a.mod(b);
+                default: return a.expo(b);
+            }
+        }
+    }
+
+    /**
+     * The specializations of a site.
+     */
+    public enum State {
+        /** The site has not yet been evaluated. */
+        UNINITIALIZED,
+        /** Both operands have been integers. */
+        INT_INT,
+        /** Both operands have been reals. */
+        REAL_REAL,
+        /** One operand has been an integer and the other a real. */
+        MIXED,
+        /** The operands have not had consistent types. */
+        GENERIC
+    }
+
+    private final Op op;
+    private State state = State.UNINITIALIZED;
+
+    /**
+     * Create a new, unspecialized site.
+     * @param op The operator performed at this site
+     */
+    public ArithSite(Op op) {
+        this.op = op;
+    }
+
+    public Op getOp() {
+        return op;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Apply this site's operator to the given operands.
+     * @param l The left operand
+     * @param r The right operand
+     * @return The result of the operation
+     * @throws FnPlotException if the operands are not numbers.
+     */
+    public FnPlotValue<?> apply(FnPlotValue<?> l, FnPlotValue<?> r) throws FnPlotException {
+        switch (state) {
+            case INT_INT:
+                if (l instanceof FnPlotInt && r instanceof FnPlotInt) {
+                    return FnPlotValue.make(op.apply(((FnPlotInt) l).intValue(),
+                            ((FnPlotInt) r).intValue()));
+                }
+                break;
+            case REAL_REAL:
+                if (l instanceof FnPlotReal && r instanceof FnPlotReal) {
+                    return FnPlotValue.make(op.apply(((FnPlotReal) l).doubleValue(),
+                            ((FnPlotReal) r).doubleValue()));
+                }
+                break;
+            case MIXED:
+                if (l instanceof FnPlotInt && r instanceof FnPlotReal
+                        || l instanceof FnPlotReal && r instanceof FnPlotInt) {
+                    return FnPlotValue.make(op.apply(l.doubleValue(), r.doubleValue()));
+                }
+                break;
+            case UNINITIALIZED:
+                state = specialize(l, r);
+                return apply(l, r);
+            default:
+                return op.apply(l, r);
+        }
+        // the operands no longer fit the specialization
+        state = State.GENERIC;
+        return op.apply(l, r);
+    }
+
+    private static State specialize(FnPlotValue<?> l, FnPlotValue<?> r) {
+        boolean lInt = l instanceof FnPlotInt, rInt = r instanceof FnPlotInt;
+        boolean lReal = l instanceof FnPlotReal, rReal = r instanceof FnPlotReal;
+        if (lInt && rInt) {
+            return State.INT_INT;
+        } else if (lReal && rReal) {
+            return State.REAL_REAL;
+        } else if ((lInt || lReal) && (rInt || rReal)) {
+            return State.MIXED;
+        } else {
+            return State.GENERIC;
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package fnplot.semantics;
+
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpFunction;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotDual;
+import fnplot.values.FnPlotFunction;
+import fnplot.values.FnPlotValue;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes the values of functions of one variable at batches of points, for
+ * an {@link Evaluator} and the {@link CurveSampler}s that draw its plots.  A
+ * function is first {@link PartialEvaluator specialized} to the current
+ * values of the variables it closes over.  It is then compiled to bytecode if
+ * possible, so that the whole batch runs as a single compiled loop; or, if
+ * the interpreter is {@link Evaluator#setColumnar columnar}, its body is
+ * evaluated a column at a time when it is real-valued.  Otherwise its body is
+ * interpreted once per point, on unboxed doubles if it is known to be
+ * real-valued.  A kernel compiled for a function earlier is reused while the
+ * variables it reads keep their values.  If the calls of a function are
+ * memoized, only the points whose values are not in its memo table are
+ * computed.  With more than one thread, large batches are split into ranges
+ * of at most {@link #SEQUENTIAL_CUTOFF} points, which are sampled
+ * concurrently.
+ */
+class BatchSampler {
+
+    /**
+     * The number of sample points below which a batch is not split between
+     * threads.
+     */
+    static final int SEQUENTIAL_CUTOFF = 256;
+
+    private final Evaluator interp;
+
+    /**
+     * The threads that sample functions in parallel, or <code>null</code> if
+     * functions are sampled on the calling thread.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Create a sampler for an interpreter.
+     * @param interp The interpreter whose settings choose how functions are
+     * evaluated, and whose cancellation stops them
+     */
+    BatchSampler(Evaluator interp) {
+        this.interp = interp;
+    }
+
+    /**
+     * @return The number of threads that sample each function.
+     */
+    int getParallelism() {
+        return pool == null ? 1 : pool.getParallelism();
+    }
+
+    /**
+     * Choose how many threads sample each function.
+     * @param threads The number of threads, or 1 to sample on the calling
+     * thread
+     */
+    void setParallelism(int threads) {
+        if (pool != null) {
+            pool.shutdown();
+        }
+        pool = threads > 1 ? new ForkJoinPool(threads) : null;
+    }
+
+    /**
+     * Compute the values of a function of one variable at each of the given
+     * points.
+     * @param f The function to be sampled
+     * @param xs The points at which to evaluate <code>f</code>
+     * @return The values of <code>f</code>, in the same order as
+     * <code>xs</code>.
+     * @throws FnPlotException if <code>f</code> does not take exactly one
+     * argument, or if an error arises while evaluating it.
+     */
+    double[] sample(FnPlotFunction f, double[] xs) throws FnPlotException {
+        checkUnary(f);
+        if (f.isMemoized()) {
+            return sampleMemoized(f, xs);
+        }
+        double[] ys = new double[xs.length];
+        fill(batch(f, xs), xs, ys, 0, xs.length);
+        return ys;
+    }
+
+    /**
+     * Compute the values of a function of one variable, and of its
+     * derivative, at each of the given points, from a single evaluation of
+     * the function at each point on a {@link FnPlotDual}.
+     * @param f The function to be sampled
+     * @param xs The points at which to evaluate <code>f</code>
+     * @param dys The array to receive the derivatives of <code>f</code>, in
+     * the same order as <code>xs</code>
+     * @return The values of <code>f</code>, in the same order as
+     * <code>xs</code>.
+     * @throws FnPlotException if <code>f</code> does not take exactly one
+     * argument, or if an error arises while evaluating it.
+     */
+    double[] sample(FnPlotFunction f, double[] xs, double[] dys) throws FnPlotException {
+        checkUnary(f);
+        f = PartialEvaluator.specialize(f);
+        ExpFunction fun = f.getFunExp();
+        DualEvaluator dual = new DualEvaluator();
+        double[] ys = new double[xs.length];
+        for (int i = 0; i < xs.length; i++) {
+            interp.checkCancelled();
+            Frame frame = Invoker.frame(f);
+            frame.set(0, new FnPlotDual(xs[i], 1));
+            FnPlotValue<?> y = fun.getBody().visit(dual, frame);
+            ys[i] = y.doubleValue();
+            dys[i] = y instanceof FnPlotDual ? ((FnPlotDual) y).getDerivative() : 0;
+        }
+        return ys;
+    }
+
+    /**
+     * Make sure a function can be sampled.
+     * @param f The function
+     * @throws FnPlotException if <code>f</code> does not take exactly one
+     * argument.
+     */
+    static void checkUnary(FnPlotFunction f) throws FnPlotException {
+        if (f.getFunExp().getParameters().size() != 1) {
+            throw new FnPlotException("Only functions of one variable can be sampled: " + f);
+        }
+    }
+
+    /**
+     * A way of computing the values of a function in batches.  Unless its
+     * calls are memoized, the function is specialized, and the way of
+     * sampling it chosen, at the first batch, and kept for the rest.
+     * @param f The function, which must take exactly one argument
+     * @return The values of <code>f</code>, batch by batch.
+     */
+    AdaptiveSampler.Values values(final FnPlotFunction f) {
+        return new AdaptiveSampler.Values() {
+            private Batch batch;
+
+            @Override
+            public double[] at(double[] xs) throws FnPlotException {
+                if (f.isMemoized()) {
+                    return sampleMemoized(f, xs);
+                }
+                if (batch == null) {
+                    batch = batch(f, xs);
+                }
+                double[] ys = new double[xs.length];
+                fill(batch, xs, ys, 0, xs.length);
+                return ys;
+            }
+        };
+    }
+
+    /*
+     * Sample the points with indices in a given range with a batch, split
+     * between threads if there are enough of them.
+     */
+    void fill(Batch batch, double[] xs, double[] ys, int from, int to)
+            throws FnPlotException {
+        if (pool != null && to - from > SEQUENTIAL_CUTOFF) {
+            final Batch sampler = batch;
+            // each worker's run checks for cancellation before it starts
+            Batch checked = new Batch() {
+                @Override
+                public void sample(double[] xs, double[] ys, int from, int to)
+                        throws FnPlotException {
+                    interp.checkCancelled();
+                    sampler.sample(xs, ys, from, to);
+                }
+            };
+            try {
+                pool.invoke(new SampleTask(checked, xs, ys, from, to));
+            } catch (RuntimeException e) {
+                // a worker's exception may come back wrapped
+                for (Throwable t = e; t != null; t = t.getCause()) {
+                    if (t instanceof FnPlotException) {
+                        throw (FnPlotException) t;
+                    }
+                }
+                throw e;
+            }
+        } else {
+            // a run at a time, so that a cancelled sample stops soon
+            for (int lo = from; lo < to; lo += SEQUENTIAL_CUTOFF) {
+                interp.checkCancelled();
+                batch.sample(xs, ys, lo, Math.min(to, lo + SEQUENTIAL_CUTOFF));
+            }
+        }
+    }
+
+    /*
+     * A way of computing the values of a function at the sample points whose
+     * indices lie in a given range.  Disjoint ranges may be sampled
+     * concurrently.
+     */
+    interface Batch {
+
+        void sample(double[] xs, double[] ys, int from, int to) throws FnPlotException;
+    }
+
+    /*
+     * Choose how to sample a function of one variable, once it has been
+     * specialized: by columns if the interpreter is columnar and the
+     * function can be evaluated that way, otherwise compiled if possible,
+     * otherwise interpreted.  A kernel compiled for the function earlier is
+     * reused while the variables it reads keep their values.
+     */
+    Batch batch(FnPlotFunction original, double[] xs) throws FnPlotException {
+        boolean columnar = interp.isColumnar();
+        CompiledFunction cached = columnar ? null : FnCompiler.recall(original);
+        if (cached != null) {
+            return compiled(cached);
+        }
+        final FnPlotFunction f = PartialEvaluator.specialize(original);
+        final ExpFunction fun = f.getFunExp();
+        final boolean real = DoubleEvaluator.isRealValued(fun.getBody(),
+                fun.getParameters(), f.getClosingEnv());
+        if (columnar && real && xs.length > 0 && sampleColumns(f, new double[]{xs[0]}) != null) {
+            return new Batch() {
+                @Override
+                public void sample(double[] xs, double[] ys, int from, int to)
+                        throws FnPlotException {
+                    double[] column = from == 0 && to == xs.length ? xs
+                            : Arrays.copyOfRange(xs, from, to);
+                    System.arraycopy(ColumnEvaluator.eval(fun.getBody(),
+                            fun.getParameters().get(0), column, f.getClosingEnv()),
+                            0, ys, from, to - from);
+                }
+            };
+        }
+        CompiledFunction kernel;
+        try {
+            kernel = FnCompiler.compile(f);
+        } catch (FnPlotException e) {
+            // not compilable, so interpret it instead
+            return new Batch() {
+                @Override
+                public void sample(double[] xs, double[] ys, int from, int to)
+                        throws FnPlotException {
+                    interpret(f, real, xs, ys, from, to);
+                }
+            };
+        }
+        FnCompiler.remember(original, kernel);
+        return compiled(kernel);
+    }
+
+    private static Batch compiled(final CompiledFunction kernel) {
+        return new Batch() {
+            @Override
+            public void sample(double[] xs, double[] ys, int from, int to) {
+                kernel.sample(xs, ys, from, to);
+            }
+        };
+    }
+
+    /*
+     * Sample a function of one variable by interpreting its body once per
+     * point, on unboxed doubles if it is known to be real-valued.
+     */
+    private void interpret(FnPlotFunction f, boolean real, double[] xs, double[] ys,
+            int from, int to) throws FnPlotException {
+        ExpFunction fun = f.getFunExp();
+        Exp body = fun.getBody();
+        String[] params = new String[]{fun.getParameters().get(0)};
+        String[] layout = fun.getFrameVars();
+        DoubleEvaluator unboxed = real ? new DoubleEvaluator(interp) : null;
+        StacklessEvaluator engine = interp.isStackless() ? interp.newEngine() : null;
+        for (int i = from; i < to; i++) {
+            FnPlotValue<?> arg = FnPlotValue.make(xs[i]);
+            Environment<FnPlotValue<?>> env;
+            if (layout != null) {
+                Frame frame = new Frame(layout, f.getClosingEnv());
+                frame.set(0, arg);
+                env = frame;
+            } else {
+                env = new Environment<>(params, new FnPlotValue<?>[]{arg},
+                        f.getClosingEnv());
+            }
+            if (unboxed != null) {
+                ys[i] = unboxed.eval(body, env);
+            } else if (engine != null) {
+                ys[i] = engine.eval(body, env).doubleValue();
+            } else {
+                ys[i] = body.visit(interp, env).doubleValue();
+            }
+        }
+    }
+
+    /*
+     * Sample a range of points by splitting it in half until the pieces are
+     * small enough to be sampled sequentially, and sampling the halves
+     * concurrently.  It holds nothing of the interpreter but the batch.
+     */
+    private static class SampleTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Batch batch;
+        private final double[] xs;
+        private final double[] ys;
+        private final int from;
+        private final int to;
+
+        SampleTask(Batch batch, double[] xs, double[] ys, int from, int to) {
+            this.batch = batch;
+            this.xs = xs;
+            this.ys = ys;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_CUTOFF) {
+                try {
+                    batch.sample(xs, ys, from, to);
+                } catch (FnPlotException e) {
+                    throw new RuntimeException(e);
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SampleTask(batch, xs, ys, from, mid),
+                        new SampleTask(batch, xs, ys, mid, to));
+            }
+        }
+    }
+
+    /*
+     * Sample a memoized function of one variable, computing only the values
+     * not already in its memo table, as a batch.  The values computed are
+     * kept only if the function is known to produce reals, since a sample
+     * does not record the type of the value.
+     */
+    double[] sampleMemoized(FnPlotFunction f, double[] xs) throws FnPlotException {
+        double[] ys = new double[xs.length];
+        int[] missing = new int[xs.length];
+        int n = 0;
+        for (int i = 0; i < xs.length; i++) {
+            FnPlotValue<?> y = f.recall(new FnPlotValue<?>[]{FnPlotValue.make(xs[i])});
+            if (y == null) {
+                missing[n++] = i;
+            } else {
+                ys[i] = y.doubleValue();
+            }
+        }
+        if (n > 0) {
+            ExpFunction fun = f.getFunExp();
+            boolean real = DoubleEvaluator.isRealValued(fun.getBody(), fun.getParameters(),
+                    f.getClosingEnv());
+            double[] missingXs = new double[n];
+            for (int j = 0; j < n; j++) {
+                missingXs[j] = xs[missing[j]];
+            }
+            // the batch calls the residual, which is not memoized
+            double[] missingYs = new double[n];
+            fill(batch(f, missingXs), missingXs, missingYs, 0, n);
+            for (int j = 0; j < n; j++) {
+                ys[missing[j]] = missingYs[j];
+                if (real) {
+                    f.remember(new FnPlotValue<?>[]{FnPlotValue.make(missingXs[j])},
+                            FnPlotValue.make(missingYs[j]));
+                }
+            }
+        }
+        return ys;
+    }
+
+    /*
+     * Sample a real-valued function of one variable by columns, or return
+     * null if its body contains a node that cannot be evaluated that way.
+     */
+    private static double[] sampleColumns(FnPlotFunction f, double[] xs) {
+        ExpFunction fun = f.getFunExp();
+        try {
+            return ColumnEvaluator.eval(fun.getBody(), fun.getParameters().get(0), xs,
+                    f.getClosingEnv());
+        } catch (FnPlotException e) {
+            return null;    // sample it point by point instead
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpExpo;
+import fnplot.syntax.ExpFuncall;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPromote;
+import fnplot.syntax.ExpSub;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.Statement;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtFor;
+import fnplot.syntax.StmtFun;
+import fnplot.syntax.StmtLet;
+import fnplot.syntax.StmtPlot;
+import fnplot.syntax.StmtSequence;
+import fnplot.sys.FnPlotException;
+import java.util.ArrayList;
+
+/**
+ * A visitor that replaces each expression immediately below the node it
+ * visits with the result of {@link #rewrite(Exp)}.  Whether the rewriting
+ * descends further into the tree is up to the subclass: its
+ * <code>rewrite</code> method may visit the expression it is given before
+ * returning it.  The tree is modified in place.
+ */
+abstract class ChildRewriter implements Visitor<Void, Void> {
+
+    /**
+     * Compute the replacement for an expression below the node being
+     * visited.
+     * @param child The expression to be replaced
+     * @return The expression to take its place, which may be
+     * <code>child</code> itself.
+     * @throws FnPlotException if the child cannot be rewritten.
+     */
+    abstract Exp rewrite(Exp child) throws FnPlotException;
+
+    @Override
+    public Void visitArithProgram(ArithProgram p, Void arg) throws FnPlotException {
+        return p.getSeq().visit(this, arg);
+    }
+
+    @Override
+    public Void visitStmtSequence(StmtSequence sseq, Void arg) throws FnPlotException {
+        ArrayList<Statement> seq = sseq.getSeq();
+        for (int i = 0; i < seq.size(); i++) {
+            Statement s = seq.get(i);
+            if (s instanceof Exp) {
+                seq.set(i, rewrite((Exp) s));
+            } else {
+                s.visit(this, arg);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitStmtDefinition(StmtDefinition sd, Void arg) throws FnPlotException {
+        sd.setExp(rewrite(sd.getExp()));
+        return null;
+    }
+
+    @Override
+    public Void visitFnDefn(ExpFunction fn, Void arg) throws FnPlotException {
+        fn.setBody(rewrite(fn.getBody()));
+        return null;
+    }
+
+    @Override
+    public Void visitStmtFun(StmtFun fun, Void arg) throws FnPlotException {
+        for (Binding b : fun.getBindings()) {
+            b.setValExp(rewrite(b.getValExp()));
+        }
+        return fun.getBody().visit(this, arg);
+    }
+
+    @Override
+    public Void visitStmtLet(StmtLet let, Void arg) throws FnPlotException {
+        for (Binding b : let.getBindings()) {
+            b.setValExp(rewrite(b.getValExp()));
+        }
+        let.setBody(rewrite(let.getBody()));
+        return null;
+    }
+
+    @Override
+    public Void visitStmtFor(StmtFor loop, Void arg) throws FnPlotException {
+        loop.setLower(rewrite(loop.getLower()));
+        loop.setUpper(rewrite(loop.getUpper()));
+        loop.setStep(rewrite(loop.getStep()));
+        loop.setBody(rewrite(loop.getBody()));
+        return null;
+    }
+
+    @Override
+    public Void visitStmtPlot(StmtPlot plot, Void arg) throws FnPlotException {
+        // the function belongs to the statement, so it is visited in place
+        plot.getFunction().visit(this, arg);
+        plot.setLower(rewrite(plot.getLower()));
+        plot.setUpper(rewrite(plot.getUpper()));
+        return null;
+    }
+
+    @Override
+    public Void visitExpAdd(ExpAdd exp, Void arg) throws FnPlotException {
+        exp.setExpL(rewrite(exp.getExpL()));
+        exp.setExpR(rewrite(exp.getExpR()));
+        return null;
+    }
+
+    @Override
+    public Void visitExpSub(ExpSub exp, Void arg) throws FnPlotException {
+        exp.setExpL(rewrite(exp.getExpL()));
+        exp.setExpR(rewrite(exp.getExpR()));
+        return null;
+    }
+
+    @Override
+    public Void visitExpMul(ExpMul exp, Void arg) throws FnPlotException {
+        exp.setExpL(rewrite(exp.getExpL()));
+        exp.setExpR(rewrite(exp.getExpR()));
+        return null;
+    }
+
+    @Override
+    public Void visitExpDiv(ExpDiv exp, Void arg) throws FnPlotException {
+        exp.setExpL(rewrite(exp.getExpL()));
+        exp.setExpR(rewrite(exp.getExpR()));
+        return null;
+    }
+
+    @Override
+    public Void visitExpMod(ExpMod exp, Void arg) throws FnPlotException {
+        exp.setExpL(rewrite(exp.getExpL()));
+        exp.setExpR(rewrite(exp.getExpR()));
+        return null;
+    }
+
+    @Override
+    public Void visitExpExpo(ExpExpo exp, Void arg) throws FnPlotException {
+        exp.setExpL(rewrite(exp.getExpL()));
+        exp.setExpR(rewrite(exp.getExpR()));
+        return null;
+    }
+
+    @Override
+    public Void visitExpFuncall(ExpFuncall exp, Void arg) throws FnPlotException {
+        ArrayList<Exp> args = exp.getArguments();
+        for (int i = 0; i < args.size(); i++) {
+            args.set(i, rewrite(args.get(i)));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitExpLit(ExpLit exp, Void arg) {
+        return null;
+    }
+
+    @Override
+    public Void visitExpVar(ExpVar exp, Void arg) {
+        return null;
+    }
+
+    @Override
+    public Void visitExpPromote(ExpPromote exp, Void arg) throws FnPlotException {
+        exp.setExp(rewrite(exp.getExp()));
+        return null;
+    }
+}
@@ -0,0 +1,443 @@
+package fnplot.semantics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A minimal class file assembler.  It supports just enough of the class file
+ * format for the {@link FnCompiler} to emit the numerical kernels it
+ * generates: a constant pool of strings, classes, method references, ints and
+ * doubles, methods with straight-line code, and the stack map frames needed by
+ * counted loops.
+ */
+class ClassBuilder {
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+    static final int ACC_VARARGS = 0x0080;
+
+    // opcodes used by the compiler
+    static final int ICONST_0 = 0x03;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC_W = 0x13;
+    static final int LDC2_W = 0x14;
+    static final int ILOAD = 0x15;
+    static final int DLOAD = 0x18;
+    static final int ALOAD = 0x19;
+    static final int DALOAD = 0x31;
+    static final int ISTORE = 0x36;
+    static final int DSTORE = 0x39;
+    static final int DASTORE = 0x52;
+    static final int POP = 0x57;
+    static final int POP2 = 0x58;
+    static final int DUP = 0x59;
+    static final int DUP2 = 0x5c;
+    static final int DUP2_X1 = 0x5d;
+    static final int DUP2_X2 = 0x5e;
+    static final int SWAP = 0x5f;
+    static final int IADD = 0x60;
+    static final int DADD = 0x63;
+    static final int ISUB = 0x64;
+    static final int DSUB = 0x67;
+    static final int IMUL = 0x68;
+    static final int DMUL = 0x6b;
+    static final int IDIV = 0x6c;
+    static final int DDIV = 0x6f;
+    static final int IREM = 0x70;
+    static final int DREM = 0x73;
+    static final int IINC = 0x84;
+    static final int I2D = 0x87;
+    static final int D2I = 0x8e;
+    static final int IF_ICMPGE = 0xa2;
+    static final int GOTO = 0xa7;
+    static final int DRETURN = 0xaf;
+    static final int RETURN = 0xb1;
+    static final int ARRAYLENGTH = 0xbe;
+    static final int INVOKESTATIC = 0xb8;
+    static final int INVOKESPECIAL = 0xb7;
+
+    // verification types of locals in stack map frames
+    static final int VT_TOP = 0;
+    static final int VT_INTEGER = 1;
+    static final int VT_DOUBLE = 3;
+    private static final int VT_OBJECT = 7;
+
+    private static final int CLASS_VERSION = 52;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final HashMap<String, Integer> poolIndex = new HashMap<>();
+    private int poolCount = 1;
+
+    private final ArrayList<byte[]> methods = new ArrayList<>();
+    private final int thisClass;
+    private final int superClass;
+
+    /**
+     * Start a new class.
+     * @param name The internal (slash separated) name of the class
+     * @param superName The internal name of its superclass
+     */
+    ClassBuilder(String name, String superName) {
+        thisClass = classRef(name);
+        superClass = classRef(superName);
+    }
+
+    int utf8(String s) {
+        return entry("U" + s, 1, s);
+    }
+
+    int classRef(String name) {
+        String key = "C" + name;
+        Integer idx = poolIndex.get(key);
+        if (idx == null) {
+            int nameIdx = utf8(name);
+            idx = add(key, 1);
+            write(7, nameIdx);
+        }
+        return idx;
+    }
+
+    /**
+     * @param name The internal name of a class or array type
+     * @return The verification type of a local holding a reference to an
+     * instance of the class, for use in {@link Code#fullFrame}.
+     */
+    int objectType(String name) {
+        return VT_OBJECT | classRef(name) << 8;
+    }
+
+    int methodRef(String owner, String name, String desc) {
+        String key = "M" + owner + "." + name + desc;
+        Integer idx = poolIndex.get(key);
+        if (idx == null) {
+            int ownerIdx = classRef(owner);
+            int nameIdx = utf8(name);
+            int descIdx = utf8(desc);
+            int natIdx = add("N" + name + desc, 1);
+            write(12, nameIdx, descIdx);
+            idx = add(key, 1);
+            write(10, ownerIdx, natIdx);
+        }
+        return idx;
+    }
+
+    int intConst(int v) {
+        String key = "I" + v;
+        Integer idx = poolIndex.get(key);
+        if (idx == null) {
+            idx = add(key, 1);
+            try {
+                pool.writeByte(3);
+                pool.writeInt(v);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return idx;
+    }
+
+    int doubleConst(double v) {
+        String key = "D" + Double.doubleToRawLongBits(v);
+        Integer idx = poolIndex.get(key);
+        if (idx == null) {
+            // doubles occupy two constant pool slots
+            idx = add(key, 2);
+            try {
+                pool.writeByte(6);
+                pool.writeDouble(v);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return idx;
+    }
+
+    private int entry(String key, int tag, String s) {
+        Integer idx = poolIndex.get(key);
+        if (idx == null) {
+            idx = add(key, 1);
+            try {
+                pool.writeByte(tag);
+                pool.writeUTF(s);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return idx;
+    }
+
+    private int add(String key, int slots) {
+        int idx = poolCount;
+        poolCount += slots;
+        poolIndex.put(key, idx);
+        return idx;
+    }
+
+    private void write(int tag, int... shorts) {
+        try {
+            pool.writeByte(tag);
+            for (int s : shorts) {
+                pool.writeShort(s);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Add a completed method to this class.
+     * @param access The access flags of the method
+     * @param name The method's name
+     * @param desc The method's type descriptor
+     * @param code The body of the method
+     */
+    void addMethod(int access, String name, String desc, Code code) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(desc));
+            out.writeShort(1);
+            code.writeTo(this, out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        methods.add(bytes.toByteArray());
+    }
+
+    /**
+     * @return The bytes of the class file assembled so far.
+     */
+    byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_VERSION);
+            out.writeShort(poolCount);
+            out.write(poolBytes.toByteArray());
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);          // interfaces
+            out.writeShort(0);          // fields
+            out.writeShort(methods.size());
+            for (byte[] m : methods) {
+                out.write(m);
+            }
+            out.writeShort(0);          // class attributes
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * The code of a single method.  Tracks the operand stack depth and the
+     * number of local variable slots as instructions are appended, so that
+     * the limits recorded in the class file are always correct.
+     */
+    static class Code {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        private int frameCount = 0;
+        private int lastFrame = -1;
+        private int stack = 0;
+        private int maxStack = 0;
+        private int maxLocals;
+
+        /**
+         * @param argSlots The number of local slots occupied by the receiver
+         * and the method's arguments.
+         */
+        Code(int argSlots) {
+            maxLocals = argSlots;
+        }
+
+        int position() {
+            return bytes.size();
+        }
+
+        /**
+         * Append an instruction that has no operands.
+         * @param opcode The instruction
+         * @param delta The change in operand stack depth it causes
+         */
+        void op(int opcode, int delta) {
+            bytes.write(opcode);
+            adjust(delta);
+        }
+
+        void op1(int opcode, int operand, int delta) {
+            bytes.write(opcode);
+            bytes.write(operand);
+            adjust(delta);
+        }
+
+        void op2(int opcode, int operand, int delta) {
+            bytes.write(opcode);
+            bytes.write(operand >> 8);
+            bytes.write(operand);
+            adjust(delta);
+        }
+
+        void local(int opcode, int slot, int size, int delta) {
+            if (slot > 255) {
+                bytes.write(0xc4);      // wide
+                op2(opcode, slot, delta);
+            } else {
+                op1(opcode, slot, delta);
+            }
+            maxLocals = Math.max(maxLocals, slot + size);
+        }
+
+        /**
+         * @return The current depth of the operand stack.
+         */
+        int depth() {
+            return stack;
+        }
+
+        void iinc(int slot, int incr) {
+            if (slot > 255 || incr < Byte.MIN_VALUE || incr > Byte.MAX_VALUE) {
+                bytes.write(0xc4);      // wide
+                bytes.write(IINC);
+                bytes.write(slot >> 8);
+                bytes.write(slot);
+                bytes.write(incr >> 8);
+                bytes.write(incr);
+            } else {
+                bytes.write(IINC);
+                bytes.write(slot);
+                bytes.write(incr);
+            }
+        }
+
+        /**
+         * Append a branch whose target is not yet known.
+         * @return The position of the branch, to be passed to {@link #patch}
+         */
+        int branch(int opcode, int delta) {
+            int at = position();
+            op2(opcode, 0, delta);
+            return at;
+        }
+
+        void branchTo(int opcode, int target, int delta) {
+            int at = position();
+            op2(opcode, checkOffset(target - at), delta);
+        }
+
+        void patch(int at, int target) {
+            byte[] code = bytes.toByteArray();
+            int offset = checkOffset(target - at);
+            code[at + 1] = (byte) (offset >> 8);
+            code[at + 2] = (byte) offset;
+            bytes.reset();
+            bytes.write(code, 0, code.length);
+        }
+
+        private int checkOffset(int offset) {
+            if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                throw new IllegalStateException("Branch offset too large");
+            }
+            return offset;
+        }
+
+        /**
+         * Record a stack map frame at the current position that extends the
+         * frame implied by the method's arguments with one int local.
+         */
+        void appendIntFrame() {
+            frame(252, 1);
+        }
+
+        /**
+         * Record a stack map frame at the current position with the same
+         * locals as the previous frame and an empty operand stack.
+         */
+        void sameFrame() {
+            frame(251, -1);
+        }
+
+        /**
+         * Record a stack map frame at the current position with the given
+         * locals and an empty operand stack.
+         * @param locals The verification types of the locals, in order: one
+         * of the <code>VT_</code> constants, or a value from
+         * {@link ClassBuilder#objectType}.  A double occupies two slots but
+         * has just one entry.
+         */
+        void fullFrame(int[] locals) {
+            frame(255, -1);
+            frames.write(locals.length >> 8);
+            frames.write(locals.length);
+            for (int t : locals) {
+                frames.write(t & 0xff);
+                if ((t & 0xff) == VT_OBJECT) {
+                    frames.write(t >> 16);
+                    frames.write(t >> 8);
+                }
+            }
+            frames.write(0);
+            frames.write(0);            // no stack items
+        }
+
+        private void frame(int type, int verificationType) {
+            int pos = position();
+            int delta = lastFrame < 0 ? pos : pos - lastFrame - 1;
+            lastFrame = pos;
+            frameCount++;
+            if (type == 251 && delta < 64) {
+                frames.write(delta);
+            } else {
+                frames.write(type);
+                frames.write(delta >> 8);
+                frames.write(delta);
+            }
+            if (verificationType >= 0) {
+                frames.write(verificationType);
+            }
+        }
+
+        private void adjust(int delta) {
+            stack += delta;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        void writeTo(ClassBuilder cls, DataOutputStream out) throws IOException {
+            byte[] code = bytes.toByteArray();
+            if (code.length > 65535) {
+                throw new IllegalStateException("Method too large");
+            }
+            byte[] map = frames.toByteArray();
+            int mapIdx = frameCount > 0 ? cls.utf8("StackMapTable") : 0;
+            out.writeShort(cls.utf8("Code"));
+            int attrLen = 12 + code.length + (frameCount > 0 ? 8 + map.length : 0);
+            out.writeInt(attrLen);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(code.length);
+            out.write(code);
+            out.writeShort(0);          // exception table
+            if (frameCount > 0) {
+                out.writeShort(1);
+                out.writeShort(mapIdx);
+                out.writeInt(2 + map.length);
+                out.writeShort(frameCount);
+                out.write(map);
+            } else {
+                out.writeShort(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpExpo;
+import fnplot.syntax.ExpFuncall;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPromote;
+import fnplot.syntax.ExpSub;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtFor;
+import fnplot.syntax.StmtFun;
+import fnplot.syntax.StmtLet;
+import fnplot.syntax.StmtPlot;
+import fnplot.syntax.StmtSequence;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotValue;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Evaluates a real-valued expression over a whole batch of values of one
+ * variable at once.  Each node of the AST is visited once per batch, and
+ * produces a column holding its value at every point in the batch, so the
+ * work for each operator is a single tight loop over arrays.
+ *
+ * Literals and variables other than the sampled one have the same value at
+ * every point; they are kept as scalars and only broadcast into a full column
+ * when they meet one.  Columns computed for intermediate results are reused
+ * for the results of their parents, so a batch needs only a few arrays
+ * however large the expression.
+ *
+ * Like the {@link DoubleEvaluator}, this evaluator works on doubles, so it
+ * must only be applied to expressions that
+ * {@link DoubleEvaluator#isRealValued} accepts.  It handles arithmetic,
+ * literals, variables and <code>let</code>; any other node causes a
+ * {@link FnPlotException}.
+ */
+public class ColumnEvaluator implements Visitor<ColumnEvaluator.Scope, ColumnEvaluator.Column> {
+
+    /**
+     * The value of an expression over a batch: either a scalar shared by
+     * every point, or an array with one element per point.
+     */
+    static class Column {
+
+        final double value;
+        final double[] data;
+        final boolean scratch;
+
+        /* a scalar column */
+        Column(double value) {
+            this.value = value;
+            this.data = null;
+            this.scratch = false;
+        }
+
+        /*
+         * An array column.  Scratch columns hold intermediate results and
+         * may be overwritten by the operation that consumes them.
+         */
+        Column(double[] data, boolean scratch) {
+            this.value = 0;
+            this.data = data;
+            this.scratch = scratch;
+        }
+
+        boolean isScalar() {
+            return data == null;
+        }
+    }
+
+    /**
+     * The columns bound to the variables of enclosing <code>let</code>s.
+     */
+    static class Scope {
+
+        final HashMap<String, Column> columns = new HashMap<>();
+        final Scope parent;
+
+        Scope(Scope parent) {
+            this.parent = parent;
+        }
+
+        Column lookup(String var) {
+            for (Scope s = this; s != null; s = s.parent) {
+                Column c = s.columns.get(var);
+                if (c != null) {
+                    return c;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Environment<FnPlotValue<?>> env;
+    private final int size;
+
+    private ColumnEvaluator(Environment<FnPlotValue<?>> env, int size) {
+        this.env = env;
+        this.size = size;
+    }
+
+    /**
+     * Evaluate an expression at every one of a batch of values of a variable.
+     * @param exp The expression, which must be real-valued
+     * @param var The variable whose values are given
+     * @param xs The values of <code>var</code>
+     * @param env The environment in which other variables are bound
+     * @return An array of the values of <code>exp</code>, one for each
+     * element of <code>xs</code>.
+     * @throws FnPlotException if the expression cannot be evaluated by
+     * columns, or if an error arises while evaluating it.
+     */
+    public static double[] eval(Exp exp, String var, double[] xs,
+            Environment<FnPlotValue<?>> env) throws FnPlotException {
+        ColumnEvaluator evaluator = new ColumnEvaluator(env, xs.length);
+        Scope scope = new Scope(null);
+        scope.columns.put(var, new Column(xs, false));
+        Column result = exp.visit(evaluator, scope);
+        if (result.isScalar()) {
+            return evaluator.broadcast(result.value);
+        } else if (result.scratch) {
+            return result.data;
+        } else {
+            return Arrays.copyOf(result.data, xs.length);
+        }
+    }
+
+    private double[] broadcast(double v) {
+        double[] data = new double[size];
+        Arrays.fill(data, v);
+        return data;
+    }
+
+    /*
+     * Find an array to hold the result of an operation on the given
+     * operands, reusing a scratch operand where possible.
+     */
+    private double[] target(Column l, Column r) {
+        if (l.scratch) {
+            return l.data;
+        } else if (r.scratch) {
+            return r.data;
+        } else {
+            return new double[size];
+        }
+    }
+
+    private double[] data(Column c) {
+        return c.isScalar() ? broadcast(c.value) : c.data;
+    }
+
+    private Column unsupported(Object node) throws FnPlotException {
+        throw new FnPlotException("Cannot evaluate by columns: " + node);
+    }
+
+    @Override
+    public Column visitArithProgram(ArithProgram p, Scope scope) throws FnPlotException {
+        return unsupported(p);
+    }
+
+    @Override
+    public Column visitStmtSequence(StmtSequence sseq, Scope scope) throws FnPlotException {
+        return unsupported(sseq);
+    }
+
+    @Override
+    public Column visitStmtDefinition(StmtDefinition sd, Scope scope) throws FnPlotException {
+        return unsupported(sd);
+    }
+
+    @Override
+    public Column visitFnDefn(ExpFunction sd, Scope scope) throws FnPlotException {
+        return unsupported(sd);
+    }
+
+    @Override
+    public Column visitStmtFun(StmtFun funny, Scope scope) throws FnPlotException {
+        return unsupported(funny);
+    }
+
+    @Override
+    public Column visitStmtFor(StmtFor loop, Scope scope) throws FnPlotException {
+        return unsupported(loop);
+    }
+
+    @Override
+    public Column visitStmtPlot(StmtPlot plot, Scope scope) throws FnPlotException {
+        return unsupported(plot);
+    }
+
+    @Override
+    public Column visitStmtLet(StmtLet let, Scope scope) throws FnPlotException {
+        Scope inner = new Scope(scope);
+        for (Binding b : let.getBindings()) {
+            Column c = b.getValExp().visit(this, scope);
+            // a bound column may be read many times, so it is no longer scratch
+            inner.columns.put(b.getVar(), c.isScalar() ? c : new Column(c.data, false));
+        }
+        return let.getBody().visit(this, inner);
+    }
+
+    @Override
+    public Column visitExpAdd(ExpAdd exp, Scope scope) throws FnPlotException {
+        Column l = exp.getExpL().visit(this, scope);
+        Column r = exp.getExpR().visit(this, scope);
+        if (l.isScalar() && r.isScalar()) {
+            return new Column(l.value + r.value);
+        }
+        double[] a = data(l), b = data(r), out = target(l, r);
+        for (int i = 0; i < size; i++) {
+            out[i] = a[i] + b[i];
+        }
+        return new Column(out, true);
+    }
+
+    @Override
+    public Column visitExpSub(ExpSub exp, Scope scope) throws FnPlotException {
+        Column l = exp.getExpL().visit(this, scope);
+        Column r = exp.getExpR().visit(this, scope);
+        if (l.isScalar() && r.isScalar()) {
+            return new Column(l.value - r.value);
+        }
+        double[] a = data(l), b = data(r), out = target(l, r);
+        for (int i = 0; i < size; i++) {
+            out[i] = a[i] - b[i];
+        }
+        return new Column(out, true);
+    }
+
+    @Override
+    public Column visitExpMul(ExpMul exp, Scope scope) throws FnPlotException {
+        Column l = exp.getExpL().visit(this, scope);
+        Column r = exp.getExpR().visit(this, scope);
+        if (l.isScalar() && r.isScalar()) {
+            return new Column(l.value * r.value);
+        }
+        double[] a = data(l), b = data(r), out = target(l, r);
+        for (int i = 0; i < size; i++) {
+            out[i] = a[i] * b[i];
+        }
+        return new Column(out, true);
+    }
+
+    @Override
+    public Column visitExpDiv(ExpDiv exp, Scope scope) throws FnPlotException {
+        Column l = exp.getExpL().visit(this, scope);
+        Column r = exp.getExpR().visit(this, scope);
+        if (l.isScalar() && r.isScalar()) {
+            return new Column(l.value / r.value);
+        }
+        double[] a = data(l), b = data(r), out = target(l, r);
+        for (int i = 0; i < size; i++) {
+            out[i] = a[i] / b[i];
+        }
+        return new Column(out, true);
+    }
+
+    @Override
+    public Column visitExpMod(ExpMod exp, Scope scope) throws FnPlotException {
+        Column l = exp.getExpL().visit(this, scope);
+        Column r = exp.getExpR().visit(this, scope);
+        if (l.isScalar() && r.isScalar()) {
+            return new Column(l.value % r.value);
+        }
+        double[] a = data(l), b = data(r), out = target(l, r);
+        for (int i = 0; i < size; i++) {
+            out[i] = a[i] % b[i];
+        }
+        return new Column(out, true);
+    }
+
+    @Override
+    public Column visitExpExpo(ExpExpo exp, Scope scope) throws FnPlotException {
+        Column l = exp.getExpL().visit(this, scope);
+        Column r = exp.getExpR().visit(this, scope);
+        if (l.isScalar() && r.isScalar()) {
+            return new Column(Math.pow(l.value, r.value));
+        }
+        double[] a = data(l), b = data(r), out = target(l, r);
+        for (int i = 0; i < size; i++) {
+            out[i] = Math.pow(a[i], b[i]);
+        }
+        return new Column(out, true);
+    }
+
+    @Override
+    public Column visitExpFuncall(ExpFuncall exp, Scope scope) throws FnPlotException {
+        return unsupported(exp);
+    }
+
+    @Override
+    public Column visitExpLit(ExpLit exp, Scope scope) throws FnPlotException {
+        return new Column(exp.getVal().doubleValue());
+    }
+
+    @Override
+    public Column visitExpVar(ExpVar exp, Scope scope) throws FnPlotException {
+        Column c = scope.lookup(exp.getVar());
+        if (c != null) {
+            return c;
+        }
+        return new Column(env.get(exp.getVar()).doubleValue());
+    }
+
+    @Override
+    public Column visitExpPromote(ExpPromote exp, Scope scope) throws FnPlotException {
+        return exp.getExp().visit(this, scope);
+    }
+}
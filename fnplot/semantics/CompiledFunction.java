@@ -0,0 +1,80 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ExpFunction;
+import fnplot.values.FnPlotValue;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A user function that has been translated into JVM bytecode by the
+ * {@link FnCompiler}.  Instances are created only by the compiler; each one is
+ * an instance of its own hidden class.
+ */
+public abstract class CompiledFunction {
+
+    ExpFunction source;
+    // the values of the variables read by the function this was compiled
+    // from, when it was compiled
+    Map<String, FnPlotValue<?>> captured = Collections.emptyMap();
+
+    protected CompiledFunction() {
+        super();
+    }
+
+    /**
+     * Apply this function to the given arguments.
+     * @param args The arguments, one per parameter of the function
+     * @return The value of the function's body at the given arguments.
+     */
+    public abstract double apply(double... args);
+
+    /**
+     * Apply this (unary) function to every element of <code>xs</code>,
+     * storing the results in the corresponding elements of <code>ys</code>.
+     * @param xs The input values (typically produced by
+     * {@link Plotter#sample(double, double)})
+     * @param ys The array to receive the outputs; must be at least as long as
+     * <code>xs</code>.
+     */
+    public void sample(double[] xs, double[] ys) {
+        sample(xs, ys, 0, xs.length);
+    }
+
+    /**
+     * Apply this (unary) function to the elements of <code>xs</code> from
+     * index <code>from</code> up to (but not including) <code>to</code>,
+     * storing the results in the corresponding elements of <code>ys</code>.
+     * The compiler overrides this method with a loop of its own for unary
+     * functions, so that the whole sampling pass is a single compiled method.
+     * Since a compiled function keeps no state between calls, disjoint ranges
+     * may be sampled concurrently.
+     * @param xs The input values
+     * @param ys The array to receive the outputs
+     * @param from The index of the first element to sample
+     * @param to The index after the last element to sample
+     */
+    public void sample(double[] xs, double[] ys, int from, int to) {
+        for (int i = from; i < to; i++) {
+            ys[i] = apply(xs[i]);
+        }
+    }
+
+    /**
+     * @return The function expression from which this function was compiled.
+     */
+    public ExpFunction getSource() {
+        return source;
+    }
+
+    /**
+     * @return The number of parameters this function expects.
+     */
+    public int getArity() {
+        return source.getParameters().size();
+    }
+
+    @Override
+    public String toString() {
+        return "[Compiled: " + source + "]";
+    }
+}
@@ -0,0 +1,40 @@
+package fnplot.semantics;
+
+import fnplot.sys.FnPlotException;
+
+/**
+ * A way of sampling the curve of a plot and drawing it.  The
+ * {@link Evaluator} chooses one for each curve by the curve's style, and by
+ * whether a view has been set.  A sampler keeps what it samples in the
+ * curve, as paths or as an off-heap store, so that the curve can be redrawn
+ * without being sampled again.
+ */
+interface CurveSampler {
+
+    /**
+     * Sample a curve without drawing it, in place of any samples it already
+     * holds, which are released.  If an error arises, the curve is left
+     * holding nothing new.
+     * @param curve The curve
+     * @param plotter The plotter whose sample points are to be used
+     * @throws FnPlotException if an error arises while sampling the curve.
+     */
+    void trace(DependencyGraph.Curve curve, Plotter plotter) throws FnPlotException;
+
+    /**
+     * Sample a curve and draw it.  This default {@link #trace traces} it and
+     * then draws its paths.
+     * @param curve The curve
+     * @param plotter The plotter on which to draw it
+     * @param keep Whether the curve must keep its samples, to be redrawn;
+     * otherwise a sampler that can draw them as it goes need not
+     * @throws FnPlotException if an error arises while sampling the curve.
+     */
+    default void draw(DependencyGraph.Curve curve, Plotter plotter, boolean keep)
+            throws FnPlotException {
+        trace(curve, plotter);
+        for (PointBuffer path : curve.paths) {
+            plotter.plot(path);
+        }
+    }
+}
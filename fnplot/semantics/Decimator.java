@@ -0,0 +1,242 @@
+package fnplot.semantics;
+
+/**
+ * Thins out the points of a path before it is drawn, so that the work of
+ * drawing it depends on the width of the plot in pixels rather than on the
+ * number of points sampled.
+ *
+ * Points are fed to a decimator in order, and each run of consecutive
+ * points that fall in the same column of pixels is reduced to at most four
+ * of them: the first, the last, and those with the least and greatest
+ * values, in their original order.  The path through these covers exactly
+ * the same pixels as the path through all of them, since within a column
+ * it spans the same range of values, and it enters and leaves the column at
+ * the same points.  A point whose value is not a number is kept as it is,
+ * so that the gap it makes in the path is kept too.
+ *
+ * A path may further be {@link #simplify simplified}, by the
+ * Ramer-Douglas-Peucker method, to fewer points that stray from it by no
+ * more than a given distance in pixels.
+ */
+public class Decimator {
+
+    private final double xlo;
+    private final double columnsPerUnit;
+    private final PointBuffer out;
+
+    // the run of points in the current column, if any
+    private boolean inRun;
+    private long column;
+    private double firstX, firstY;
+    private double minX, minY;
+    private double maxX, maxY;
+    private double lastX, lastY;
+    // the positions within the run of its extreme points
+    private int minAt, maxAt, length;
+
+    /**
+     * Create a decimator for a plot of the given extent.
+     * @param xlo The input value at the left edge of the plot
+     * @param xhi The input value at the right edge of the plot
+     * @param width The width of the plot in pixels
+     */
+    public Decimator(double xlo, double xhi, int width) {
+        this.xlo = xlo;
+        this.columnsPerUnit = width / (xhi - xlo);
+        this.out = new PointBuffer(Math.max(4 * width, 16));
+    }
+
+    /**
+     * @param xlo The input value at the left edge of the plot
+     * @param xhi The input value at the right edge of the plot
+     * @param width The width of the plot in pixels
+     * @return <code>true</code> if a path can be decimated for a plot of
+     * this extent.
+     */
+    public static boolean canDecimate(double xlo, double xhi, int width) {
+        double scale = width / (xhi - xlo);
+        return width > 0 && scale > 0 && !Double.isInfinite(scale) && !Double.isNaN(xlo);
+    }
+
+    /**
+     * Decimate a path for a plot of the given extent.
+     * @param points The points of the path
+     * @param xlo The input value at the left edge of the plot
+     * @param xhi The input value at the right edge of the plot
+     * @param width The width of the plot in pixels
+     * @return The points to be drawn, or <code>points</code> itself if the
+     * extent cannot be divided into columns.
+     */
+    public static PointBuffer decimate(PointBuffer points, double xlo, double xhi, int width) {
+        if (!canDecimate(xlo, xhi, width)) {
+            return points;
+        }
+        Decimator d = new Decimator(xlo, xhi, width);
+        double[] xs = points.getXs();
+        double[] ys = points.getYs();
+        for (int i = 0; i < points.length(); i++) {
+            d.add(xs[i], ys[i]);
+        }
+        return d.finish();
+    }
+
+    /**
+     * Feed the next point of the path to this decimator.
+     * @param x The input value of the point
+     * @param y The output value of the point
+     */
+    public void add(double x, double y) {
+        if (Double.isNaN(y) || Double.isNaN(x)) {
+            flush();
+            out.add(x, y);
+            return;
+        }
+        long col = (long) Math.floor((x - xlo) * columnsPerUnit);
+        if (inRun && col == column) {
+            if (y < minY) {
+                minX = x;
+                minY = y;
+                minAt = length;
+            }
+            if (y > maxY) {
+                maxX = x;
+                maxY = y;
+                maxAt = length;
+            }
+            lastX = x;
+            lastY = y;
+            length++;
+            return;
+        }
+        flush();
+        inRun = true;
+        column = col;
+        firstX = minX = maxX = lastX = x;
+        firstY = minY = maxY = lastY = y;
+        minAt = maxAt = 0;
+        length = 1;
+    }
+
+    /**
+     * @return The points to be drawn, in order.  This decimator may not be
+     * used after this.
+     */
+    public PointBuffer finish() {
+        flush();
+        return out;
+    }
+
+    /*
+     * Emit the points kept from the current run, if any.
+     */
+    private void flush() {
+        if (!inRun) {
+            return;
+        }
+        inRun = false;
+        out.add(firstX, firstY);
+        int last = length - 1;
+        // the extremes in the order they came, each unless it is an end
+        if (minAt <= maxAt) {
+            emit(minAt, minX, minY, last);
+            if (maxAt != minAt) {
+                emit(maxAt, maxX, maxY, last);
+            }
+        } else {
+            emit(maxAt, maxX, maxY, last);
+            emit(minAt, minX, minY, last);
+        }
+        if (last > 0) {
+            out.add(lastX, lastY);
+        }
+    }
+
+    private void emit(int at, double x, double y, int last) {
+        if (at != 0 && at != last) {
+            out.add(x, y);
+        }
+    }
+
+    /**
+     * Simplify a path by the Ramer-Douglas-Peucker method: keep its ends,
+     * and, between any two points kept, the point furthest from the line
+     * joining them if it is further than the tolerance, and so on.  Each
+     * stretch of the path between points whose values are not numbers is
+     * simplified separately.  Distances are measured in pixels.
+     * @param points The points of the path
+     * @param xPixel The width of a pixel, in input units
+     * @param yPixel The height of a pixel, in output units
+     * @param tolerance The greatest distance, in pixels, by which the
+     * simplified path may stray from the points left out
+     * @return The points kept, in order.
+     */
+    public static PointBuffer simplify(PointBuffer points, double xPixel, double yPixel,
+            double tolerance) {
+        int n = points.length();
+        double[] xs = points.getXs();
+        double[] ys = points.getYs();
+        boolean[] keep = new boolean[n];
+        int[] stack = new int[2 * Math.max(n, 1)];
+        int start = 0;
+        while (start < n) {
+            if (Double.isNaN(ys[start]) || Double.isNaN(xs[start])) {
+                keep[start++] = true;
+                continue;
+            }
+            int end = start;
+            while (end + 1 < n && !Double.isNaN(ys[end + 1]) && !Double.isNaN(xs[end + 1])) {
+                end++;
+            }
+            keep[start] = keep[end] = true;
+            // the spans still to be simplified, by their ends
+            int top = 0;
+            stack[top++] = start;
+            stack[top++] = end;
+            while (top > 0) {
+                int b = stack[--top];
+                int a = stack[--top];
+                int worst = -1;
+                double worstDist = tolerance;
+                for (int i = a + 1; i < b; i++) {
+                    double d = distance(xs, ys, a, b, i, xPixel, yPixel);
+                    if (d > worstDist) {
+                        worst = i;
+                        worstDist = d;
+                    }
+                }
+                if (worst >= 0) {
+                    keep[worst] = true;
+                    stack[top++] = a;
+                    stack[top++] = worst;
+                    stack[top++] = worst;
+                    stack[top++] = b;
+                }
+            }
+            start = end + 1;
+        }
+        PointBuffer result = new PointBuffer(16);
+        for (int i = 0; i < n; i++) {
+            if (keep[i]) {
+                result.add(xs[i], ys[i]);
+            }
+        }
+        return result;
+    }
+
+    /*
+     * The distance in pixels of point i from the line through points a
+     * and b, or from a itself if they coincide.
+     */
+    private static double distance(double[] xs, double[] ys, int a, int b, int i,
+            double xPixel, double yPixel) {
+        double dx = (xs[b] - xs[a]) / xPixel;
+        double dy = (ys[b] - ys[a]) / yPixel;
+        double px = (xs[i] - xs[a]) / xPixel;
+        double py = (ys[i] - ys[a]) / yPixel;
+        double len = Math.hypot(dx, dy);
+        if (len == 0 || Double.isInfinite(len)) {
+            return Math.hypot(px, py);
+        }
+        return Math.abs(px * dy - py * dx) / len;
+    }
+}
@@ -0,0 +1,439 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ASTNode;
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpExpo;
+import fnplot.syntax.ExpFuncall;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPromote;
+import fnplot.syntax.ExpSub;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.Statement;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtFor;
+import fnplot.syntax.StmtFun;
+import fnplot.syntax.StmtLet;
+import fnplot.syntax.StmtPlot;
+import fnplot.syntax.StmtSequence;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotFunction;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+
+/**
+ * Records which global variables each top-level definition and each plotted
+ * curve reads, so that when a global is redefined, just the definitions and
+ * curves that depend on it, directly or through other definitions, need be
+ * computed again.
+ *
+ * The variables an expression reads are found from its text, once it has
+ * been {@link Resolver resolved}: they are the variables and functions it
+ * refers to that are not bound locally, including those referred to within
+ * the bodies of functions it creates, since those are read whenever the
+ * functions are called.  A function that calls another global function
+ * therefore depends on it, and on everything that it depends on in turn.
+ *
+ * A definition that uses the previous value of its own variable, such as
+ * <code>n = n + 1</code>, is an update rather than a formula: it is not
+ * recorded, and so never recomputed.  Neither are definitions made within
+ * blocks, which only replace the values of their variables.
+ */
+class DependencyGraph {
+
+    /**
+     * A curve that has been plotted: how it was plotted, the global
+     * variables it reads, and the paths that were drawn for it, so that it
+     * can be drawn again without being sampled again.  The samples of an
+     * off-heap curve are kept in their store instead, until the curve is
+     * sampled again or is no longer recorded.
+     */
+    static class Curve {
+
+        /**
+         * The ways in which a function may be plotted.
+         */
+        enum Style { PLAIN, ENCLOSED, DERIVATIVE, ADAPTIVE, STREAMED, OFF_HEAP }
+
+        final Style style;
+        final double low;
+        final double hi;
+        FnPlotFunction f;
+        // the global variable that f was the value of, if any
+        String name;
+        HashSet<String> reads;
+        ArrayList<PointBuffer> paths;
+        // the samples of an off-heap curve, in place of its paths
+        SampleStore store;
+
+        Curve(Style style, FnPlotFunction f, double low, double hi) {
+            this.style = style;
+            this.f = f;
+            this.low = low;
+            this.hi = hi;
+        }
+
+        /**
+         * Close the store of this curve's samples, if it has one, giving its
+         * memory back at once rather than when it is collected.
+         */
+        void release() {
+            if (store != null) {
+                store.close();
+                store = null;
+            }
+        }
+
+        boolean sameAs(Curve other) {
+            return style == other.style && low == other.low && hi == other.hi
+                    && (name == null ? f == other.f : name.equals(other.name));
+        }
+    }
+
+    // the current formula for each variable, with the variables it reads
+    private final HashMap<String, StmtDefinition> definitions = new HashMap<>();
+    private final HashMap<String, HashSet<String>> reads = new HashMap<>();
+    // the variables whose formulae read each variable
+    private final HashMap<String, HashSet<String>> readers = new HashMap<>();
+    private final ArrayList<Curve> curves = new ArrayList<>();
+
+    /**
+     * Find the global variables that a resolved expression reads.
+     * @param node The expression
+     * @return The names of the variables and functions it refers to that
+     * are not bound locally.
+     * @throws FnPlotException if the expression contains a node that cannot
+     * be traversed.
+     */
+    static HashSet<String> reads(ASTNode node) throws FnPlotException {
+        HashSet<String> vars = new HashSet<>();
+        new ReadCollector().collect(node, vars);
+        return vars;
+    }
+
+    /**
+     * Find the names of all the variables that a node reads, whether they
+     * are bound globally, locally or within the node itself.
+     * @param node The node
+     * @return The names of the variables.
+     * @throws FnPlotException if the node contains a node that cannot be
+     * traversed.
+     */
+    static HashSet<String> names(ASTNode node) throws FnPlotException {
+        HashSet<String> vars = new HashSet<>();
+        new ReadCollector(true).collect(node, vars);
+        return vars;
+    }
+
+    /**
+     * Record a top-level definition as the formula for its variable, in
+     * place of any earlier one.
+     * @param sd The definition, as prepared for evaluation
+     * @throws FnPlotException if its expression cannot be traversed.
+     */
+    synchronized void define(StmtDefinition sd) throws FnPlotException {
+        String var = sd.getVar();
+        forget(var);
+        ReadCollector collector = new ReadCollector();
+        HashSet<String> vars = new HashSet<>();
+        collector.collect(sd.getExp(), vars);
+        if (collector.immediate.contains(var)) {
+            return;     // an update of the previous value
+        }
+        definitions.put(var, sd);
+        reads.put(var, vars);
+        for (String v : vars) {
+            HashSet<String> rs = readers.get(v);
+            if (rs == null) {
+                rs = new HashSet<>();
+                readers.put(v, rs);
+            }
+            rs.add(var);
+        }
+    }
+
+    /**
+     * Discard the formula for a variable, if it has one, since it has been
+     * given a value in some other way.
+     * @param var The name of the variable
+     */
+    synchronized void forget(String var) {
+        HashSet<String> vars = reads.remove(var);
+        definitions.remove(var);
+        if (vars != null) {
+            for (String v : vars) {
+                readers.get(v).remove(var);
+            }
+        }
+    }
+
+    /**
+     * Find the definitions that must be evaluated again because some
+     * variables have changed: those that read them, directly or through
+     * other definitions.  They are given in an order in which each follows
+     * the definitions it reads, except where the definitions read each other
+     * in a cycle.  The changed variables themselves are not included.
+     * @param changed The names of the variables that have changed
+     * @return The definitions to be evaluated, in order.
+     */
+    synchronized ArrayList<StmtDefinition> dependents(Collection<String> changed) {
+        LinkedHashSet<String> stale = new LinkedHashSet<>();
+        ArrayList<String> pending = new ArrayList<>(changed);
+        while (!pending.isEmpty()) {
+            HashSet<String> rs = readers.get(pending.remove(pending.size() - 1));
+            if (rs != null) {
+                for (String var : rs) {
+                    if (!changed.contains(var) && stale.add(var)) {
+                        pending.add(var);
+                    }
+                }
+            }
+        }
+        ArrayList<StmtDefinition> order = new ArrayList<>();
+        HashSet<String> done = new HashSet<>();
+        for (String var : stale) {
+            order(var, stale, done, order);
+        }
+        return order;
+    }
+
+    private void order(String var, HashSet<String> stale, HashSet<String> done,
+            ArrayList<StmtDefinition> order) {
+        if (done.add(var)) {
+            for (String v : reads.get(var)) {
+                if (stale.contains(v)) {
+                    order(v, stale, done, order);
+                }
+            }
+            order.add(definitions.get(var));
+        }
+    }
+
+    /**
+     * Record a curve that has been plotted, in place of an earlier plot of
+     * the same function in the same way over the same interval.
+     * @param curve The curve, with the variables it reads and its paths
+     */
+    synchronized void addCurve(Curve curve) {
+        for (int i = 0; i < curves.size(); i++) {
+            Curve old = curves.get(i);
+            if (old.sameAs(curve)) {
+                curves.set(i, curve);
+                if (old != curve) {
+                    old.release();
+                }
+                return;
+            }
+        }
+        curves.add(curve);
+    }
+
+    /**
+     * Stop recording a curve, because it can no longer be plotted, and
+     * release its samples.
+     * @param curve The curve
+     */
+    synchronized void removeCurve(Curve curve) {
+        curves.remove(curve);
+        curve.release();
+    }
+
+    /**
+     * Stop recording every curve, releasing their samples.
+     */
+    synchronized void clearCurves() {
+        for (Curve curve : curves) {
+            curve.release();
+        }
+        curves.clear();
+    }
+
+    /**
+     * @return The curves that have been plotted, in the order in which they
+     * were first plotted.
+     */
+    synchronized ArrayList<Curve> getCurves() {
+        return new ArrayList<>(curves);
+    }
+
+    /**
+     * Collects the global variables that an expression reads into the set it
+     * is given.  The variables read outside the bodies of any functions, and
+     * so read when the expression itself is evaluated, are also collected
+     * separately.  As with {@link Resolver.DefinitionCollector}, the tree is
+     * walked on an explicit stack: each visit just schedules the node's
+     * children.  The depth of the deepest node is recorded too, so that a
+     * tree can be measured without recursing on it.
+     */
+    static class ReadCollector implements Visitor<HashSet<String>, Void> {
+
+        final HashSet<String> immediate = new HashSet<>();
+        // the number of nodes on the longest path down from the root
+        int deepest;
+        // the nodes still to be visited, and the number of function bodies
+        // and of nodes enclosing each
+        private final ArrayList<ASTNode> pending = new ArrayList<>();
+        private final ArrayList<Integer> depths = new ArrayList<>();
+        private final ArrayList<Integer> levels = new ArrayList<>();
+        // the number of function bodies and of nodes enclosing the node
+        // being visited
+        private int functions;
+        private int level;
+        // whether to collect the variables that are not global too
+        private final boolean locals;
+
+        ReadCollector() {
+            this(false);
+        }
+
+        ReadCollector(boolean locals) {
+            this.locals = locals;
+        }
+
+        /**
+         * Collect the global variables that a node reads.
+         * @param node The node
+         * @param vars The set to which the names of the variables are added
+         * @throws FnPlotException if the node contains a node that cannot be
+         * traversed.
+         */
+        void collect(ASTNode node, HashSet<String> vars) throws FnPlotException {
+            schedule(node);
+            while (!pending.isEmpty()) {
+                int last = pending.size() - 1;
+                functions = depths.remove(last);
+                level = levels.remove(last);
+                deepest = Math.max(deepest, level);
+                pending.remove(last).visit(this, vars);
+            }
+        }
+
+        private Void schedule(ASTNode... nodes) {
+            for (ASTNode node : nodes) {
+                pending.add(node);
+                depths.add(functions);
+                levels.add(level + 1);
+            }
+            return null;
+        }
+
+        private void read(String var, boolean global, HashSet<String> vars) {
+            if (global || locals) {
+                vars.add(var);
+                if (functions == 0) {
+                    immediate.add(var);
+                }
+            }
+        }
+
+        @Override
+        public Void visitArithProgram(ArithProgram p, HashSet<String> vars) {
+            return schedule(p.getSeq());
+        }
+
+        @Override
+        public Void visitStmtSequence(StmtSequence sseq, HashSet<String> vars) {
+            return schedule(sseq.getSeq().toArray(new ASTNode[0]));
+        }
+
+        @Override
+        public Void visitStmtDefinition(StmtDefinition sd, HashSet<String> vars) {
+            return schedule(sd.getExp());
+        }
+
+        @Override
+        public Void visitFnDefn(ExpFunction fn, HashSet<String> vars) {
+            functions++;
+            schedule(fn.getBody());
+            functions--;
+            return null;
+        }
+
+        @Override
+        public Void visitStmtFun(StmtFun fun, HashSet<String> vars) {
+            for (Binding b : fun.getBindings()) {
+                schedule(b.getValExp());
+            }
+            return schedule(fun.getBody());
+        }
+
+        @Override
+        public Void visitStmtLet(StmtLet let, HashSet<String> vars) {
+            for (Binding b : let.getBindings()) {
+                schedule(b.getValExp());
+            }
+            return schedule(let.getBody());
+        }
+
+        @Override
+        public Void visitStmtFor(StmtFor loop, HashSet<String> vars) {
+            return schedule(loop.getLower(), loop.getUpper(), loop.getStep(), loop.getBody());
+        }
+
+        @Override
+        public Void visitStmtPlot(StmtPlot plot, HashSet<String> vars) {
+            return schedule(plot.getFunction(), plot.getLower(), plot.getUpper());
+        }
+
+        @Override
+        public Void visitExpAdd(ExpAdd exp, HashSet<String> vars) {
+            return schedule(exp.getExpL(), exp.getExpR());
+        }
+
+        @Override
+        public Void visitExpSub(ExpSub exp, HashSet<String> vars) {
+            return schedule(exp.getExpL(), exp.getExpR());
+        }
+
+        @Override
+        public Void visitExpMul(ExpMul exp, HashSet<String> vars) {
+            return schedule(exp.getExpL(), exp.getExpR());
+        }
+
+        @Override
+        public Void visitExpDiv(ExpDiv exp, HashSet<String> vars) {
+            return schedule(exp.getExpL(), exp.getExpR());
+        }
+
+        @Override
+        public Void visitExpMod(ExpMod exp, HashSet<String> vars) {
+            return schedule(exp.getExpL(), exp.getExpR());
+        }
+
+        @Override
+        public Void visitExpExpo(ExpExpo exp, HashSet<String> vars) {
+            return schedule(exp.getExpL(), exp.getExpR());
+        }
+
+        @Override
+        public Void visitExpFuncall(ExpFuncall exp, HashSet<String> vars) {
+            read(exp.getName(), !exp.isResolved() || exp.getSlot() < 0, vars);
+            return schedule(exp.getArguments().toArray(new ASTNode[0]));
+        }
+
+        @Override
+        public Void visitExpLit(ExpLit exp, HashSet<String> vars) {
+            return null;
+        }
+
+        @Override
+        public Void visitExpVar(ExpVar exp, HashSet<String> vars) {
+            read(exp.getVar(), !exp.isResolved() || exp.getSlot() < 0, vars);
+            return null;
+        }
+
+        @Override
+        public Void visitExpPromote(ExpPromote exp, HashSet<String> vars) {
+            return schedule(exp.getExp());
+        }
+    }
+}
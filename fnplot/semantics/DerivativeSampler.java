@@ -0,0 +1,28 @@
+package fnplot.semantics;
+
+import fnplot.sys.FnPlotException;
+import java.util.ArrayList;
+
+/**
+ * Samples a curve and its derivative at the plotter's own sample points, as
+ * two paths, from a single evaluation of the function at each point.
+ */
+class DerivativeSampler implements CurveSampler {
+
+    private final BatchSampler points;
+
+    DerivativeSampler(BatchSampler points) {
+        this.points = points;
+    }
+
+    @Override
+    public void trace(DependencyGraph.Curve curve, Plotter plotter) throws FnPlotException {
+        double[] xs = plotter.sample(curve.low, curve.hi);
+        double[] dys = new double[xs.length];
+        double[] ys = points.sample(curve.f, xs, dys);
+        ArrayList<PointBuffer> paths = new ArrayList<>();
+        paths.add(new PointBuffer(xs, ys));
+        paths.add(new PointBuffer(xs, dys));
+        curve.paths = paths;
+    }
+}
@@ -0,0 +1,162 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ASTNode;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpExpo;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPromote;
+import fnplot.syntax.ExpSub;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.StmtLet;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotValue;
+import java.util.ArrayList;
+
+/**
+ * Evaluates real-valued expressions on primitive doubles, without allocating
+ * a FnPlot value for every intermediate result.  Nodes that cannot be
+ * evaluated this way (function calls, blocks and so on) are handed to the
+ * ordinary {@link Evaluator}, and their results converted.
+ *
+ * Arithmetic on doubles agrees with the boxed operations only where those
+ * operations produce reals, so this evaluator must only be applied to
+ * expressions that {@link #isRealValued} accepts.
+ */
+public class DoubleEvaluator implements DoubleVisitor<Environment<FnPlotValue<?>>> {
+
+    private final Evaluator boxed;
+
+    /**
+     * Create a new evaluator.
+     * @param boxed The evaluator to which nodes that cannot be evaluated on
+     * doubles are delegated.
+     */
+    public DoubleEvaluator(Evaluator boxed) {
+        this.boxed = boxed;
+    }
+
+    /**
+     * Determine whether an expression can be evaluated by this evaluator.
+     * That is the case when every arithmetic operation in it (outside of
+     * function calls and blocks) is guaranteed to produce a real, so that
+     * integer operands are only ever promoted (see {@link TypeInferencer}).
+     * @param exp The expression
+     * @param realVars The variables bound to reals around the expression,
+     * such as the parameter of a function being plotted
+     * @param env The environment in which any other variables are bound
+     * @return <code>true</code> if the expression is real-valued.
+     */
+    public static boolean isRealValued(Exp exp, ArrayList<String> realVars,
+            Environment<FnPlotValue<?>> env) {
+        return TypeInferencer.isRealValued(exp, realVars, env);
+    }
+
+    /**
+     * Evaluate an expression.
+     * @param exp The expression, which must be real-valued
+     * @param env The environment in which to evaluate it
+     * @return The value of the expression.
+     * @throws FnPlotException if an error arises during evaluation.
+     */
+    public double eval(Exp exp, Environment<FnPlotValue<?>> env) throws FnPlotException {
+        return exp.visitDouble(this, env);
+    }
+
+    @Override
+    public double visitExpAdd(ExpAdd exp, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        return exp.getExpL().visitDouble(this, env) + exp.getExpR().visitDouble(this, env);
+    }
+
+    @Override
+    public double visitExpSub(ExpSub exp, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        return exp.getExpL().visitDouble(this, env) - exp.getExpR().visitDouble(this, env);
+    }
+
+    @Override
+    public double visitExpMul(ExpMul exp, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        return exp.getExpL().visitDouble(this, env) * exp.getExpR().visitDouble(this, env);
+    }
+
+    @Override
+    public double visitExpDiv(ExpDiv exp, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        return exp.getExpL().visitDouble(this, env) / exp.getExpR().visitDouble(this, env);
+    }
+
+    @Override
+    public double visitExpMod(ExpMod exp, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        return exp.getExpL().visitDouble(this, env) % exp.getExpR().visitDouble(this, env);
+    }
+
+    @Override
+    public double visitExpExpo(ExpExpo exp, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        return Math.pow(exp.getExpL().visitDouble(this, env),
+                exp.getExpR().visitDouble(this, env));
+    }
+
+    @Override
+    public double visitExpLit(ExpLit exp, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        return exp.getVal().doubleValue();
+    }
+
+    @Override
+    public double visitExpVar(ExpVar exp, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        if (exp.isResolved()) {
+            return env.lookup(exp.getDepth(), exp.getSlot(), exp.getVar()).doubleValue();
+        }
+        return env.get(exp.getVar()).doubleValue();
+    }
+
+    @Override
+    public double visitExpPromote(ExpPromote exp, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        return exp.getExp().visitDouble(this, env);
+    }
+
+    @Override
+    public double visitStmtLet(StmtLet let, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        // the bindings of a real-valued let are all reals, so boxing them
+        // as reals preserves their types
+        ArrayList<Binding> bindings = let.getBindings();
+        int size = bindings.size();
+        FnPlotValue<?>[] vals = new FnPlotValue<?>[size];
+        for (int i = 0; i < size; i++) {
+            vals[i] = FnPlotValue.make(bindings.get(i).getValExp().visitDouble(this, env));
+        }
+        Environment<FnPlotValue<?>> newEnv;
+        String[] layout = let.getFrameVars();
+        if (layout != null) {
+            Frame frame = new Frame(layout, env);
+            for (int i = 0; i < size; i++) {
+                frame.set(i, vals[i]);
+            }
+            newEnv = frame;
+        } else {
+            String[] vars = new String[size];
+            for (int i = 0; i < size; i++) {
+                vars[i] = bindings.get(i).getVar();
+            }
+            newEnv = new Environment<>(vars, vals, env);
+        }
+        return let.getBody().visitDouble(this, newEnv);
+    }
+
+    @Override
+    public double visitOther(ASTNode node, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        return node.visit(boxed, env).doubleValue();
+    }
+}
@@ -0,0 +1,62 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ASTNode;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpExpo;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPromote;
+import fnplot.syntax.ExpSub;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.StmtLet;
+import fnplot.sys.FnPlotException;
+
+/**
+ * A visitor over the AST whose result is a primitive double, so that
+ * evaluating real-valued expressions does not have to box every intermediate
+ * value.  Only the nodes that can be evaluated entirely on doubles have their
+ * own visit methods; every other node is passed to {@link #visitOther}.
+ * @param <S> The type of the information needed by the visitor
+ */
+public interface DoubleVisitor<S> {
+
+    /**
+     * Visit an add expression.
+     * @param exp The addition AST node to be visited.
+     * @param arg The "state" to be referenced by this visitor while visiting
+     * the given node.
+     * @return The result of visiting the subtree rooted at this node in the AST.
+     * @throws FnPlotException If an error arises while visiting the subtree.
+     */
+    public double visitExpAdd(ExpAdd exp, S arg) throws FnPlotException;
+
+    public double visitExpSub(ExpSub exp, S arg) throws FnPlotException;
+
+    public double visitExpMul(ExpMul exp, S arg) throws FnPlotException;
+
+    public double visitExpDiv(ExpDiv exp, S arg) throws FnPlotException;
+
+    public double visitExpMod(ExpMod exp, S arg) throws FnPlotException;
+
+    public double visitExpExpo(ExpExpo exp, S arg) throws FnPlotException;
+
+    public double visitExpLit(ExpLit exp, S arg) throws FnPlotException;
+
+    public double visitExpVar(ExpVar exp, S arg) throws FnPlotException;
+
+    public double visitExpPromote(ExpPromote exp, S arg) throws FnPlotException;
+
+    public double visitStmtLet(StmtLet letExp, S arg) throws FnPlotException;
+
+    /**
+     * Visit a node that has no visit method of its own in this interface.
+     * @param node The AST node to be visited.
+     * @param arg The "state" to be referenced by this visitor while visiting
+     * the given node.
+     * @return The result of visiting the subtree rooted at this node in the AST.
+     * @throws FnPlotException If an error arises while visiting the subtree.
+     */
+    public double visitOther(ASTNode node, S arg) throws FnPlotException;
+}
@@ -0,0 +1,64 @@
+package fnplot.semantics;
+
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpPromote;
+import fnplot.syntax.StmtFor;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotDual;
+import fnplot.values.FnPlotValue;
+
+/**
+ * An evaluator that differentiates as it evaluates (forward-mode automatic
+ * differentiation).  When a variable is bound to a {@link FnPlotDual}, every
+ * value computed from it is a dual number too, carrying the derivative of
+ * that value with respect to the variable; values that do not depend on it
+ * are evaluated as usual.  Derivatives are carried through
+ * <code>let</code>s, blocks and calls of other user-defined functions, since
+ * their arguments are evaluated by this evaluator as well.
+ *
+ * The types inferred for arithmetic are ignored where an operand is a dual
+ * number, since the operations specialized to them would drop the
+ * derivatives.  A loop whose lower bound or step is a dual number gives its
+ * variable the dual value <code>lower + i * step</code> on its
+ * <code>i</code>th iteration.  The number of iterations is taken from the
+ * values of the bounds alone, since it does not vary smoothly with them.
+ */
+public class DualEvaluator extends Evaluator {
+
+    @Override
+    protected FnPlotValue<?> arithmetic(Exp exp, ArithSite site, FnPlotValue<?> val1,
+            FnPlotValue<?> val2) throws FnPlotException {
+        if (val1 instanceof FnPlotDual || val2 instanceof FnPlotDual) {
+            return site.getOp().apply(FnPlotDual.lift(val1), val2);
+        }
+        return super.arithmetic(exp, site, val1, val2);
+    }
+
+    @Override
+    protected FnPlotValue<?> iterate(StmtFor loop, FnPlotValue<?> lower, FnPlotValue<?> upper,
+            FnPlotValue<?> step, Environment<FnPlotValue<?>> env) throws FnPlotException {
+        if (!(lower instanceof FnPlotDual || step instanceof FnPlotDual)) {
+            return super.iterate(loop, lower, upper, step, env);
+        }
+        int n = iterations(lower, upper, step);
+        Frame frame = Frame.loop(loop.getVar(), env);
+        FnPlotDual lo = FnPlotDual.lift(lower), by = FnPlotDual.lift(step);
+        for (int i = 0; i < n; i++) {
+            checkCancelled();
+            frame.set(0, new FnPlotDual(lo.doubleValue() + i * by.doubleValue(),
+                    lo.getDerivative() + i * by.getDerivative()));
+            loop.getBody().visit(this, frame);
+        }
+        return FnPlotValue.make(0);
+    }
+
+    @Override
+    public FnPlotValue<?> visitExpPromote(ExpPromote exp, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        FnPlotValue<?> val = exp.getExp().visit(this, env);
+        if (val instanceof FnPlotDual) {
+            return val;
+        }
+        return FnPlotValue.make(val.doubleValue());
+    }
+}
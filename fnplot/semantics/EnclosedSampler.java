@@ -0,0 +1,54 @@
+package fnplot.semantics;
+
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotFunction;
+import java.util.ArrayList;
+
+/**
+ * Samples a curve only where it may be visible on the plotter, and only as
+ * densely as its variation there requires, by bisecting its interval with
+ * an {@link IntervalSampler}.  Each stretch between parts of the interval
+ * over which the curve is certainly out of view is a separate path.  A curve
+ * on a plotter that shows every output value, or whose function cannot be
+ * evaluated on intervals, is sampled {@link PlainSampler plainly}.
+ */
+class EnclosedSampler implements CurveSampler {
+
+    private final BatchSampler points;
+    private final PlainSampler plain;
+
+    EnclosedSampler(BatchSampler points, PlainSampler plain) {
+        this.points = points;
+        this.plain = plain;
+    }
+
+    @Override
+    public void trace(DependencyGraph.Curve curve, Plotter plotter) throws FnPlotException {
+        FnPlotFunction f = curve.f;
+        double low = curve.low;
+        double hi = curve.hi;
+        double[] yRange = plotter.getYRange();
+        if (yRange == null || f.getFunExp().getParameters().size() != 1) {
+            curve.paths = plain.paths(f, low, hi, plotter);
+            return;
+        }
+        // bisect down to about the plotter's own spacing of samples, and
+        // treat a change in y of about the same fraction of its range as flat
+        int n = plotter.sample(low, hi).length - 1;
+        f = PartialEvaluator.specialize(f);
+        IntervalSampler sampler = new IntervalSampler(f, yRange[0], yRange[1],
+                (hi - low) / n, (yRange[1] - yRange[0]) / n);
+        ArrayList<double[]> runs;
+        try {
+            runs = sampler.sample(low, hi);
+        } catch (FnPlotException e) {
+            curve.paths = plain.paths(f, low, hi, plotter);    // not numeric on intervals
+            return;
+        }
+        ArrayList<PointBuffer> paths = new ArrayList<>();
+        for (double[] xs : runs) {
+            paths.add(new PointBuffer(xs, points.sample(f, xs)));
+        }
+        curve.paths = paths;
+    }
+}
@@ -19,6 +19,9 @@ public class Environment<T extends FnPlotValue<?>> {
     HashMap<String, T> dictionary;
     Environment<T> parent = null;
 
+    /* incremented whenever a binding in this environment is made or changed */
+    long version;
+
     /**
      * Create a new (empty) top level Environment.
      *
@@ -75,6 +78,18 @@ public class Environment<T extends FnPlotValue<?>> {
         }
     }
 
+    /**
+     * Create an environment that extends the given one, but keeps its own
+     * bindings in the given table.  Subclasses that store their bindings in
+     * some other way may pass <code>null</code> for the table.
+     * @param p The environment being extended
+     * @param dict The table of bindings for the new environment
+     */
+    protected Environment(Environment<T> p, HashMap<String, T> dict) {
+        parent = p;
+        dictionary = dict;
+    }
+
     /**
      * Create an instance of a global environment suitable for
      * evaluating an program.
@@ -98,6 +113,7 @@ public class Environment<T extends FnPlotValue<?>> {
      */
     public void put(String id, T value) {
 	dictionary.put(id, value);
+	version++;
     }
 
     /**
@@ -119,6 +135,66 @@ public class Environment<T extends FnPlotValue<?>> {
 	    return result;
     }
 
+    /**
+     * Return a stamp for the bindings visible from this environment.  Since
+     * it changes whenever a binding is made or changed here or in any
+     * enclosing environment, a value computed from these bindings is still
+     * valid as long as the stamp is the same as when it was computed.
+     * @return The stamp.
+     */
+    public long getVersion() {
+        long v = 0;
+        for (Environment<T> env = this; env != null; env = env.parent) {
+            v += env.version;
+        }
+        return v;
+    }
+
+    /**
+     * Return the value bound at the given lexical address.
+     * @param depth The number of environments to walk up from this one
+     * @param slot The index of the binding within the environment reached,
+     * or -1 if the binding should be looked up by name
+     * @param id The name of the variable, used when there is no slot
+     * @return the value bound at the address.
+     * @exception FnPlotException if <code>id</code> is unbound
+     */
+    public T lookup(int depth, int slot, String id) throws FnPlotException {
+        Environment<T> env = this;
+        for (int i = 0; i < depth; i++) {
+            env = env.parent;
+        }
+        return env.getSlot(slot, id);
+    }
+
+    /**
+     * Bind a value at the given lexical address.
+     * @param depth The number of environments to walk up from this one
+     * @param slot The index of the binding within the environment reached,
+     * or -1 if the binding should be made by name
+     * @param id The name of the variable, used when there is no slot
+     * @param value the value to be bound.
+     */
+    public void assign(int depth, int slot, String id, T value) {
+        Environment<T> env = this;
+        for (int i = 0; i < depth; i++) {
+            env = env.parent;
+        }
+        env.setSlot(slot, id, value);
+    }
+
+    /*
+     * An environment without slots keeps everything in its dictionary, so
+     * slot access degenerates to access by name.
+     */
+    T getSlot(int slot, String id) throws FnPlotException {
+        return get(id);
+    }
+
+    void setSlot(int slot, String id, T value) {
+        put(id, value);
+    }
+
     /**
      * Create a string representation of this environment.
      *
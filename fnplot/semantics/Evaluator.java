@@ -1,7 +1,10 @@
 package fnplot.semantics;
 
+import fnplot.syntax.ASTNode;
 import fnplot.syntax.StmtLet;
 import fnplot.syntax.StmtFun;
+import fnplot.syntax.StmtFor;
+import fnplot.syntax.StmtPlot;
 import fnplot.syntax.Statement;
 import fnplot.syntax.StmtDefinition;
 import fnplot.syntax.StmtSequence;
@@ -9,6 +12,7 @@ import fnplot.syntax.ExpLit;
 import fnplot.syntax.ExpDiv;
 import fnplot.syntax.ExpExpo;
 import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPromote;
 import fnplot.syntax.ExpAdd;
 import fnplot.syntax.ExpVar;
 import fnplot.syntax.ExpMod;
@@ -18,21 +22,24 @@ import fnplot.syntax.Binding;
 import fnplot.syntax.ArithProgram;
 import fnplot.syntax.Exp;
 import fnplot.syntax.ExpFunction;
+import fnplot.sys.CancelledFnPlotException;
 import fnplot.sys.FnPlotException;
+import fnplot.sys.RuntimeFnPlotException;
+import fnplot.values.FnPlotDual;
+import fnplot.values.FnPlotFunction;
 import fnplot.values.FnPlotReal;
+import fnplot.values.FnPlotType;
 import fnplot.values.FnPlotValue;
-import java.awt.geom.Point2D;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 public class Evaluator 
     implements Visitor<Environment<FnPlotValue<?>>, FnPlotValue<?>> {
     /* For this visitor, the argument passed to all visit
        methods will be the environment object that used to
        be passed to the eval method in the first style of
-       implementation. */
-
-    // allocate state here
-    protected FnPlotValue<?> result;	// result of evaluation
+       implementation.  Evaluation keeps no state in the evaluator itself,
+       so one instance may evaluate on several threads at once. */
 
     /**
      * The global environment associated with this evaluator.
@@ -44,20 +51,110 @@ public class Evaluator
      */
     private Plotter plotter;
 
+    /**
+     * Whether sampling should evaluate real-valued functions a column at a
+     * time in preference to compiling them.
+     */
+    private boolean columnar;
+
+    /**
+     * The optimizer applied to each program before it is evaluated.
+     */
+    private final Optimizer optimizer = new Optimizer();
+
+    /**
+     * Whether programs are run on an explicit stack, rather than the Java
+     * stack.
+     */
+    private boolean stackless;
+
+
+    /**
+     * The capacity of the memo table given to each function created, or 0 if
+     * calls are not memoized.
+     */
+    private int memoCapacity;
+
+    /**
+     * The greatest number of nodes on a path down the tree of a program
+     * that is run on an explicit stack, for it to be {@link #prepare
+     * prepared}.  The passes that prepare a program recurse on the Java
+     * stack, and overflow a thread's default stack at somewhat more than
+     * twice this depth.
+     */
+    static final int PREPARE_DEPTH = 1000;
+
+    /**
+     * The sampler that computes the values of functions at batches of
+     * points, for {@link #sample sample} and for the curve samplers.
+     */
+    private final BatchSampler points = new BatchSampler(this);
+
+    /**
+     * The ways of sampling the curves of plots, one for each style, and one
+     * for plain and streamed curves once a view has been set.
+     */
+    private final PlainSampler plainSampler = new PlainSampler(points);
+    private final DerivativeSampler derivativeSampler = new DerivativeSampler(points);
+    private final EnclosedSampler enclosedSampler = new EnclosedSampler(points, plainSampler);
+    private final AdaptiveCurveSampler adaptiveSampler = new AdaptiveCurveSampler(points);
+    private final StreamSampler streamSampler = new StreamSampler(points);
+    private final OffHeapSampler offHeapSampler = new OffHeapSampler(points);
+    private final ViewSampler viewSampler = new ViewSampler(points, plainSampler);
+
+    /**
+     * The dependencies between global definitions and plotted curves, or
+     * <code>null</code> if redefinitions do not propagate.
+     */
+    private DependencyGraph dependencies;
+
+    /**
+     * Whether the evaluation in progress should stop at its next check.
+     */
+    private volatile boolean cancelled;
+
     public Evaluator() {
 	// perform initialisations here
-	result = FnPlotValue.make(0);
         globalEnv = new Environment<>();
     } 
     //dean work
-    public FnPlotValue<?> visitFnDefn(ExpFunction sd,Environment<FnPlotValue<?>> env) throws FnPlotException{ 
-         result=null;
-        return result;
-    } 
-    public FnPlotValue<?> visitExpFuncall(ExpFuncall exp, Environment<FnPlotValue<?>> env) throws FnPlotException{ 
-        String name= exp.toString();
+    /**
+     * Evaluate a function expression.
+     * @param fn The function expression
+     * @param env The environment in which it is evaluated
+     * @return A closure of the function over <code>env</code>.
+     */
+    @Override
+    public FnPlotValue<?> visitFnDefn(ExpFunction fn, Environment<FnPlotValue<?>> env) {
+        FnPlotFunction f = new FnPlotFunction(fn, env);
+        if (memoCapacity > 0) {
+            f.setMemoCapacity(memoCapacity);
+        }
+        return f;
+    }
 
-        return name;
+    /**
+     * Evaluate a call of a user-defined function.
+     * @param exp The call
+     * @param env The environment in which the call is made
+     * @return The value of the function's body, with its parameters bound to
+     * the values of the arguments.
+     * @throws FnPlotException if the name called is not bound to a function
+     * of as many parameters as the call has arguments, or if an error arises
+     * while evaluating the arguments or the body.
+     */
+    @Override
+    public FnPlotValue<?> visitExpFuncall(ExpFuncall exp, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        checkCancelled();
+        FnPlotValue<?> callee;
+        if (exp.isResolved()) {
+            callee = env.lookup(exp.getDepth(), exp.getSlot(), exp.getName());
+        } else {
+            callee = env.get(exp.getName());
+        }
+        FnPlotFunction f = callee.funValue();
+        return Invoker.forCall(exp, f).invoke(this, f, exp.getArguments(), env);
     }
     
     public FnPlotValue<?> visitStmtFun(StmtFun let,Environment<FnPlotValue<?>> env) throws FnPlotException{
@@ -72,8 +169,7 @@ public class Evaluator
             b = bindings.get(i);
             vars[i] = b.getVar();
             // evaluate each expression in bindings
-            result = b.getValExp().visit(this, env);
-            vals[i] = result;
+            vals[i] = b.getValExp().visit(this, env);
         }
         // create new env as child of current
         Environment<FnPlotValue<?>> newEnv = new Environment<> (vars, vals, env);
@@ -103,11 +199,471 @@ public class Evaluator
         this.plotter = plotter;
     }
 
+    /**
+     * @return The optimizer applied to each program before it is evaluated
+     */
+    public Optimizer getOptimizer() {
+        return optimizer;
+    }
+
+    /**
+     * @return <code>true</code> if this interpreter runs programs on an
+     * explicit stack.
+     */
+    public boolean isStackless() {
+        return stackless;
+    }
+
+    /**
+     * Choose whether programs are run by a {@link StacklessEvaluator}, whose
+     * nesting of expressions and function calls is limited only by the heap,
+     * rather than by this tree walk.  The results are the same either way.
+     * Such programs are {@link #prepare prepared} as usual unless they nest
+     * more than {@link #PREPARE_DEPTH} nodes deep, since the passes that
+     * prepare a program themselves recurse on the Java stack; a deeper
+     * program is run as parsed, and so without its variables resolved to
+     * slots, its types inferred, or its constants folded, which makes each
+     * of its operations slower.  If redefinitions are being propagated, the
+     * variables that each definition of such a program reads are found from
+     * names alone, so a parameter or local variable that shares its name
+     * with a global counts as a read of the global.
+     * @param stackless <code>true</code> to run programs on an explicit stack
+     */
+    public void setStackless(boolean stackless) {
+        this.stackless = stackless;
+    }
+
+    /**
+     * @return <code>true</code> if this interpreter samples real-valued
+     * functions by columns in preference to compiling them.
+     */
+    public boolean isColumnar() {
+        return columnar;
+    }
+
+    /**
+     * Choose whether real-valued functions are sampled by evaluating each
+     * node of their bodies over the whole batch of points at once (see
+     * {@link ColumnEvaluator}), rather than by compiling them.  Functions
+     * that cannot be evaluated by columns are sampled as usual.
+     * @param columnar <code>true</code> to prefer columnar evaluation
+     */
+    public void setColumnar(boolean columnar) {
+        this.columnar = columnar;
+    }
+
+    /**
+     * @return The capacity of the memo table given to each function created
+     * by this interpreter, or 0 if their calls are not memoized.
+     */
+    public int getMemoCapacity() {
+        return memoCapacity;
+    }
+
+    /**
+     * Choose whether the calls of functions created from now on are memoized
+     * (see {@link FnPlotFunction#setMemoCapacity}).
+     * @param capacity The number of results each function keeps, or 0 to not
+     * memoize calls
+     */
+    public void setMemoCapacity(int capacity) {
+        this.memoCapacity = capacity;
+    }
+
+    /**
+     * @return The number of threads that sample each function, or 1 if
+     * functions are sampled on the calling thread.
+     */
+    public int getParallelism() {
+        return points.getParallelism();
+    }
+
+    /**
+     * Choose how many threads sample each function.  With more than one, the
+     * sample points are split into ranges of at most
+     * {@link BatchSampler#SEQUENTIAL_CUTOFF} points, which are evaluated
+     * concurrently on a {@link ForkJoinPool} of that many threads.
+     * @param threads The number of threads, or 1 to sample on the calling
+     * thread
+     */
+    public void setParallelism(int threads) {
+        points.setParallelism(threads);
+    }
+
+    /**
+     * @return <code>true</code> if redefining a global recomputes the
+     * definitions and curves that depend on it.
+     */
+    public boolean isIncremental() {
+        return dependencies != null;
+    }
+
+    /**
+     * Choose whether redefining a global variable recomputes everything
+     * computed from it.  When it does, the interpreter keeps a
+     * {@link DependencyGraph} of the top-level definitions and plots made
+     * from now on.  Redefining a global evaluates again, in order, just the
+     * definitions that read it, directly or through other definitions, and
+     * samples again just the curves that read any of them; the other curves
+     * are redrawn as they were.
+     *
+     * So that a definition may be evaluated again on its own, each top-level
+     * statement is prepared separately, and the values of earlier
+     * definitions are not substituted into it.
+     * @param incremental <code>true</code> to propagate redefinitions
+     */
+    public void setIncremental(boolean incremental) {
+        if (incremental != isIncremental()) {
+            if (dependencies != null) {
+                dependencies.clearCurves();
+            }
+            dependencies = incremental ? new DependencyGraph() : null;
+        }
+    }
+
+    /**
+     * @return <code>true</code> if evaluations by this interpreter are to
+     * stop.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Ask this interpreter to stop, or no longer to stop, whatever it is
+     * evaluating, from any thread.  Once cancelled, an evaluation throws a
+     * {@link CancelledFnPlotException} at its next function call, loop
+     * iteration or run of at most {@link BatchSampler#SEQUENTIAL_CUTOFF}
+     * sample points, and so does every evaluation after it until the
+     * interpreter is no longer cancelled.  Whatever the evaluation had
+     * defined or drawn by then is kept.
+     * @param cancelled <code>true</code> to stop evaluating
+     */
+    public void setCancelled(boolean cancelled) {
+        this.cancelled = cancelled;
+    }
+
+    /*
+     * Stop the evaluation in progress if this interpreter is cancelled.
+     */
+    void checkCancelled() throws CancelledFnPlotException {
+        if (cancelled) {
+            throw new CancelledFnPlotException();
+        }
+    }
+
+    /**
+     * @return The visible range of input values, as an array holding its
+     * lower and upper bounds, or <code>null</code> if plots are drawn over
+     * their whole intervals.
+     */
+    public double[] getView() {
+        return viewSampler.getView();
+    }
+
+    /**
+     * Set the range of input values that is visible on the plotter, as it is
+     * panned or zoomed.  From then on, a {@link #plot plain} or
+     * {@link #plotStreaming streamed} plot, such as a plot statement makes,
+     * is sampled just over the part of its interval that is in view, on a
+     * grid about as fine as the plotter's own sample of the whole view (see
+     * {@link SampleCache}).  The values computed are kept, so that when the
+     * view changes again, only the points that come into view, or that the
+     * finer grid of a closer view adds, are evaluated.  If redefinitions are
+     * being propagated, the plain and streamed curves already drawn are
+     * sampled again in this way, and every curve is redrawn.
+     * @param low The lower bound of the visible range
+     * @param hi The upper bound of the visible range
+     * @throws FnPlotException if an error arises while sampling a curve.
+     */
+    public void setView(double low, double hi) throws FnPlotException {
+        viewSampler.setView(low, hi);
+        if (dependencies != null) {
+            ArrayList<DependencyGraph.Curve> curves = dependencies.getCurves();
+            for (DependencyGraph.Curve curve : curves) {
+                if (curve.style == DependencyGraph.Curve.Style.PLAIN
+                        || curve.style == DependencyGraph.Curve.Style.STREAMED) {
+                    viewSampler.trace(curve, plotter);
+                }
+            }
+            redraw(curves);
+        }
+    }
+
+    /**
+     * @return The cache of the values of the functions plotted in a view.
+     */
+    public SampleCache getViewCache() {
+        return viewSampler.getCache();
+    }
+
+    /*
+     * Create an engine to run programs on an explicit stack.  An engine may
+     * only be used by one thread at a time, so each run has its own.
+     */
+    StacklessEvaluator newEngine() {
+        StacklessEvaluator engine = new StacklessEvaluator();
+        engine.memoCapacity = memoCapacity;
+        engine.plotting = this;
+        return engine;
+    }
+
+    /**
+     * Compute the values of a function of one variable at each of the given
+     * points.  The function is first {@link PartialEvaluator specialized} to
+     * the current values of the variables it closes over.  It is then
+     * compiled to bytecode if possible, so that the
+     * whole batch runs as a single compiled loop; or, if this interpreter is
+     * {@link #setColumnar columnar}, its body is evaluated a column at a time
+     * when it is real-valued.  Otherwise its body is
+     * interpreted once per point, on unboxed doubles if it is known to be
+     * real-valued.  If the calls of the function are memoized, only the
+     * points whose values are not in its memo table are computed.  If this
+     * interpreter has more than one thread for {@link #setParallelism
+     * sampling}, large batches are split between them.
+     * @param f The function to be sampled
+     * @param xs The points at which to evaluate <code>f</code>
+     * @return The values of <code>f</code>, in the same order as
+     * <code>xs</code>.
+     * @throws FnPlotException if <code>f</code> does not take exactly one
+     * argument, or if an error arises while evaluating it.
+     */
+    public double[] sample(FnPlotFunction f, double[] xs) throws FnPlotException {
+        return points.sample(f, xs);
+    }
+
+    /**
+     * Compute the values of a function of one variable, and of its
+     * derivative, at each of the given points.  Both come from a single
+     * evaluation of the function at each point, on a {@link FnPlotDual} for
+     * its argument (see {@link DualEvaluator}).
+     * @param f The function to be sampled
+     * @param xs The points at which to evaluate <code>f</code>
+     * @param dys The array to receive the derivatives of <code>f</code>, in
+     * the same order as <code>xs</code>
+     * @return The values of <code>f</code>, in the same order as
+     * <code>xs</code>.
+     * @throws FnPlotException if <code>f</code> does not take exactly one
+     * argument, or if an error arises while evaluating it.
+     */
+    public double[] sample(FnPlotFunction f, double[] xs, double[] dys)
+	    throws FnPlotException {
+        return points.sample(f, xs, dys);
+    }
+
+    /**
+     * Plot a function of one variable over the given interval, using the
+     * current plotter to choose the sample points.
+     * @param f The function to be plotted
+     * @param low The lower bound of the interval
+     * @param hi The upper bound of the interval
+     * @throws FnPlotException if an error arises while evaluating
+     * <code>f</code>.
+     */
+    public void plot(FnPlotFunction f, double low, double hi) throws FnPlotException {
+        draw(new DependencyGraph.Curve(DependencyGraph.Curve.Style.PLAIN, f, low, hi));
+    }
+
+    /**
+     * Plot a function of one variable over the given interval, sampling it
+     * only where its graph may be visible on the current plotter, and only as
+     * densely as its variation there requires (see {@link IntervalSampler}).
+     * Each stretch of the graph between parts of the interval over which it
+     * is certainly out of view is drawn as a separate path.  If the plotter
+     * shows every output value, or the function cannot be evaluated on
+     * intervals, this is the same as {@link #plot plot}.
+     * @param f The function to be plotted
+     * @param low The lower bound of the interval
+     * @param hi The upper bound of the interval
+     * @throws FnPlotException if an error arises while evaluating
+     * <code>f</code>.
+     */
+    public void plotEnclosed(FnPlotFunction f, double low, double hi)
+	    throws FnPlotException {
+        draw(new DependencyGraph.Curve(DependencyGraph.Curve.Style.ENCLOSED, f, low, hi));
+    }
+
+    /**
+     * Plot a function of one variable over the given interval, sampling it
+     * coarsely and then more densely just where the straight lines between
+     * its samples would stray from its graph by more than a pixel (see
+     * {@link AdaptiveSampler}).  The plotter's own sample determines the
+     * width of the plot in pixels, and its visible range of output values,
+     * if any, the height of a pixel.
+     * @param f The function to be plotted
+     * @param low The lower bound of the interval
+     * @param hi The upper bound of the interval
+     * @throws FnPlotException if <code>f</code> does not take exactly one
+     * argument, or if an error arises while evaluating it.
+     */
+    public void plotAdaptive(FnPlotFunction f, double low, double hi)
+	    throws FnPlotException {
+        draw(new DependencyGraph.Curve(DependencyGraph.Curve.Style.ADAPTIVE, f, low, hi));
+    }
+
+    /**
+     * Plot a function of one variable and its derivative over the given
+     * interval, as two paths, using a single evaluation of the function at
+     * each sample point.
+     * @param f The function to be plotted
+     * @param low The lower bound of the interval
+     * @param hi The upper bound of the interval
+     * @throws FnPlotException if an error arises while evaluating
+     * <code>f</code>.
+     */
+    public void plotWithDerivative(FnPlotFunction f, double low, double hi)
+	    throws FnPlotException {
+        draw(new DependencyGraph.Curve(DependencyGraph.Curve.Style.DERIVATIVE, f, low, hi));
+    }
+
+    /**
+     * Plot a function of one variable over the given interval as a stream
+     * of paths.  The plotter's sample points are fetched, evaluated and drawn
+     * {@link SampleChunks#PLOT_CHUNK} at a time, each path starting at the
+     * last point of the one before.  So the start of the graph is drawn before the rest
+     * has been computed, and only one chunk of it is held at a time, however
+     * many points the plotter asks for.  If redefinitions are being
+     * propagated, a copy of each path is kept as well, so that the curve can
+     * be redrawn without being sampled again.  Once a {@link #setView view}
+     * has been set, the curve is sampled over it instead, as a plain plot
+     * is.
+     * @param f The function to be plotted
+     * @param low The lower bound of the interval
+     * @param hi The upper bound of the interval
+     * @throws FnPlotException if <code>f</code> does not take exactly one
+     * argument, or if an error arises while evaluating it.
+     */
+    public void plotStreaming(FnPlotFunction f, double low, double hi)
+	    throws FnPlotException {
+        draw(new DependencyGraph.Curve(DependencyGraph.Curve.Style.STREAMED, f, low, hi));
+    }
+
+    /**
+     * Plot a function of one variable over the given interval, keeping its
+     * samples off the Java heap, in a {@link SampleStore}, and drawing them
+     * as a single path.  The plotter's sample points are fetched and
+     * evaluated {@link SampleChunks#PLOT_CHUNK} at a time, and added to the
+     * store, which is handed to the plotter whole.  This suits plots of so many points
+     * that arrays of them would burden the garbage collector.  The store is
+     * then closed, giving its memory back, unless redefinitions are being
+     * propagated.  In that case it is kept to redraw the curve, and closed
+     * once the curve is sampled again or is no longer recorded.
+     * @param f The function to be plotted
+     * @param low The lower bound of the interval
+     * @param hi The upper bound of the interval
+     * @throws FnPlotException if <code>f</code> does not take exactly one
+     * argument, or if an error arises while evaluating it.
+     */
+    public void plotOffHeap(FnPlotFunction f, double low, double hi)
+	    throws FnPlotException {
+        draw(new DependencyGraph.Curve(DependencyGraph.Curve.Style.OFF_HEAP, f, low, hi));
+    }
+
+    /**
+     * Plot a function of one variable over the given interval, in the style
+     * named by a plot statement.  The styles are <code>derivative</code>, for
+     * {@link #plotWithDerivative plotWithDerivative},
+     * <code>enclosed</code>, for {@link #plotEnclosed plotEnclosed},
+     * <code>adaptive</code>, for {@link #plotAdaptive plotAdaptive}, and
+     * <code>offheap</code>, for {@link #plotOffHeap plotOffHeap}; with no
+     * style, the graph is {@link #plotStreaming streamed}.
+     * @param f The function to be plotted
+     * @param low The lower bound of the interval
+     * @param hi The upper bound of the interval
+     * @param style The name of the style, or null for none
+     * @throws FnPlotException if the style is not known, <code>f</code> does
+     * not take exactly one argument, or an error arises while evaluating it.
+     */
+    public void plot(FnPlotFunction f, double low, double hi, String style)
+	    throws FnPlotException {
+        if (style == null) {
+            plotStreaming(f, low, hi);
+            return;
+        }
+        switch (style) {
+            case "derivative":
+                plotWithDerivative(f, low, hi);
+                break;
+            case "enclosed":
+                plotEnclosed(f, low, hi);
+                break;
+            case "adaptive":
+                plotAdaptive(f, low, hi);
+                break;
+            case "offheap":
+                plotOffHeap(f, low, hi);
+                break;
+            default:
+                throw new FnPlotException("Unknown plot style: " + style);
+        }
+    }
+
+    /*
+     * Sample a curve and draw its paths, recording it if redefinitions are
+     * being propagated.
+     */
+    private void draw(DependencyGraph.Curve curve) throws FnPlotException {
+        samplerFor(curve).draw(curve, plotter, dependencies != null);
+        if (dependencies != null) {
+            curve.name = nameOf(curve.f);
+            curve.reads = DependencyGraph.reads(curve.f.getFunExp());
+            if (curve.name != null) {
+                curve.reads.add(curve.name);
+            }
+            dependencies.addCurve(curve);
+        }
+    }
+
+    /*
+     * Find a global variable whose value is the given function, if any.
+     */
+    private String nameOf(FnPlotFunction f) {
+        for (Map.Entry<String, FnPlotValue<?>> e : globalEnv.dictionary.entrySet()) {
+            if (e.getValue() == f) {
+                return e.getKey();
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Choose the way to sample a curve, by the style it asks for and whether
+     * a view has been set.
+     */
+    private CurveSampler samplerFor(DependencyGraph.Curve curve) {
+        switch (curve.style) {
+            case ENCLOSED:
+                return enclosedSampler;
+            case DERIVATIVE:
+                return derivativeSampler;
+            case ADAPTIVE:
+                return adaptiveSampler;
+            case OFF_HEAP:
+                return offHeapSampler;
+            case STREAMED:
+                return viewSampler.getView() == null ? streamSampler : viewSampler;
+            default:
+                return viewSampler.getView() == null ? plainSampler : viewSampler;
+        }
+    }
+
+    /*
+     * Sample a recorded curve again, without drawing it, releasing its old
+     * samples.
+     */
+    private void retrace(DependencyGraph.Curve curve) throws FnPlotException {
+        samplerFor(curve).trace(curve, plotter);
+    }
+
     /**
      * Visit a node representing the overall program.  This will be similar to
      * visiting the sequence of statements that make up the program, but is
      * provided as a separate method so that any top-level, one-time actions 
      * can be taken to initialise the context for the program, if necessary.
+     * Here, that is {@link #prepare preparing} the program, and choosing
+     * whether to walk it directly or run it on an explicit stack.  A program
+     * run on an explicit stack is run as parsed if it is too deep to be
+     * prepared, since the passes that prepare it recurse on the Java stack.
      * @param p The program node to be traversed.
      * @param arg The environment to be used while traversing the program.
      * @return The result of the last statement of the program, after evaluating
@@ -118,16 +674,150 @@ public class Evaluator
     @Override
     public FnPlotValue<?> visitArithProgram(ArithProgram p, Environment<FnPlotValue<?>> arg)
 	throws FnPlotException {
-	result = p.getSeq().visit(this, arg);
+	if (dependencies != null && arg == globalEnv) {
+	    return evalIncrementally(p);
+	}
+	ArithProgram prog = preparable(p) ? prepare(p) : p;
+	return run(prog.getSeq(), arg);
+    }
+
+    /*
+     * Whether a program can be prepared: always, unless it is to be run on
+     * an explicit stack and is too deep for the passes that prepare it,
+     * which recurse on the Java stack.
+     */
+    private boolean preparable(ASTNode node) throws FnPlotException {
+	if (!stackless) {
+	    return true;
+	}
+	DependencyGraph.ReadCollector gauge = new DependencyGraph.ReadCollector();
+	gauge.collect(node, new HashSet<String>());
+	return gauge.deepest <= PREPARE_DEPTH;
+    }
+
+    /*
+     * Evaluate a statement, directly or on an explicit stack.
+     */
+    private FnPlotValue<?> run(Statement s, Environment<FnPlotValue<?>> env)
+	throws FnPlotException {
+	if (stackless) {
+	    return newEngine().eval(s, env);
+	} else {
+	    return s.visit(this, env);
+	}
+    }
+
+    /*
+     * Evaluate the statements of a program in the global environment one at
+     * a time, recording each top-level definition in the dependency graph
+     * and propagating the change to whatever depends on the variables that
+     * each statement defines.
+     */
+    private FnPlotValue<?> evalIncrementally(ArithProgram p) throws FnPlotException {
+	FnPlotValue<?> result = FnPlotValue.make(0);
+	for (Statement s : p.getSeq().getSeq()) {
+	    Statement stmt = s;
+	    if (preparable(s)) {
+		ArithProgram prog = prepare(new ArithProgram(new StmtSequence(s)));
+		stmt = prog.getSeq().getSeq().get(0);
+	    }
+	    result = run(stmt, globalEnv);
+	    ArrayList<String> defined = new ArrayList<>();
+	    new Resolver.DefinitionCollector().collect(stmt, defined);
+	    if (defined.isEmpty()) {
+		continue;
+	    }
+	    for (String var : defined) {
+		dependencies.forget(var);
+	    }
+	    if (stmt instanceof StmtDefinition) {
+		dependencies.define((StmtDefinition) stmt);
+	    }
+	    propagate(defined);
+	}
 	return result;
     }
 
+    /*
+     * Evaluate again the definitions that depend on the given variables,
+     * then sample again the curves that depend on any of them.  If any curve
+     * changed, the plotter is cleared and every curve redrawn, since a
+     * plotter cannot erase just one.
+     */
+    private void propagate(ArrayList<String> defined) throws FnPlotException {
+	HashSet<String> changed = new HashSet<>(defined);
+	for (StmtDefinition sd : dependencies.dependents(changed)) {
+	    run(sd, globalEnv);
+	    changed.add(sd.getVar());
+	}
+	boolean stale = false;
+	ArrayList<DependencyGraph.Curve> curves = dependencies.getCurves();
+	for (DependencyGraph.Curve curve : curves) {
+	    if (Collections.disjoint(curve.reads, changed)) {
+		continue;
+	    }
+	    if (curve.name != null && changed.contains(curve.name)) {
+		FnPlotValue<?> val = globalEnv.get(curve.name);
+		if (!(val instanceof FnPlotFunction)) {
+		    // no longer a function, so the curve is gone
+		    dependencies.removeCurve(curve);
+		    curve.paths = new ArrayList<>();
+		    stale = true;
+		    continue;
+		}
+		curve.f = (FnPlotFunction) val;
+		curve.reads = DependencyGraph.reads(curve.f.getFunExp());
+		curve.reads.add(curve.name);
+	    }
+	    retrace(curve);
+	    stale = true;
+	}
+	if (stale) {
+	    redraw(curves);
+	}
+    }
+
+    /*
+     * Clear the plotter and draw every curve again, as last sampled.  A
+     * curve whose sampling failed has nothing to draw.
+     */
+    private void redraw(ArrayList<DependencyGraph.Curve> curves) {
+        plotter.clear();
+        for (DependencyGraph.Curve curve : curves) {
+            if (curve.store != null) {
+                if (curve.store.length() > 0) {
+                    plotter.plot(curve.store);
+                }
+            } else if (curve.paths != null) {
+                for (PointBuffer path : curve.paths) {
+                    plotter.plot(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Prepare a program for evaluation: optimize it, resolve the lexical
+     * addresses of its variables, infer the types of its expressions, and
+     * share its repeated pure expressions.
+     * @param p The program, which is left unchanged
+     * @return The program to be evaluated in place of <code>p</code>.
+     * @throws FnPlotException if an error arises while preparing the program.
+     */
+    public ArithProgram prepare(ArithProgram p) throws FnPlotException {
+	ArithProgram prog = optimizer.optimize(p);
+	new Resolver().resolve(prog);
+	new TypeInferencer().infer(prog);
+	// only now are the nodes' annotations final, so they may be shared
+	new ExpBuilder().share(prog);
+	return prog;
+    }
+
     @Override
     public FnPlotValue<?> visitStmtSequence(StmtSequence sseq, Environment<FnPlotValue<?>> env)
 	throws FnPlotException {
 	ArrayList<Statement> seq = sseq.getSeq();
-	Iterator<Statement> iter = seq.iterator();
-	result = FnPlotValue.make(0); // default result
+	FnPlotValue<?> result = FnPlotValue.make(0); // default result
         for (Statement s : seq) {
             result = s.visit(this, env);
         }
@@ -138,8 +828,12 @@ public class Evaluator
     @Override
     public FnPlotValue<?> visitStmtDefinition(StmtDefinition sd, Environment<FnPlotValue<?>> env)
 	throws FnPlotException {
-	result = sd.getExp().visit(this, env);
-	env.put(sd.getVar(), result);
+	FnPlotValue<?> result = sd.getExp().visit(this, env);
+	if (sd.isResolved()) {
+	    env.assign(sd.getDepth(), sd.getSlot(), sd.getVar(), result);
+	} else {
+	    env.put(sd.getVar(), result);
+	}
 	return result;
     }
 
@@ -148,6 +842,15 @@ public class Evaluator
 	throws FnPlotException {
 	ArrayList<Binding> bindings = let.getBindings();
 	Exp body = let.getBody();
+	String[] layout = let.getFrameVars();
+	if (layout != null) {
+	    // resolved: bindings occupy the first slots of the frame, in order
+	    Frame frame = new Frame(layout, env);
+	    for (int i = 0; i < bindings.size(); i++) {
+		frame.set(i, bindings.get(i).getValExp().visit(this, env));
+	    }
+	    return body.visit(this, frame);
+	}
 
 	int size = bindings.size();
 	String[] vars = new String[size];
@@ -157,73 +860,215 @@ public class Evaluator
 	    b = bindings.get(i);
 	    vars[i] = b.getVar();
 	    // evaluate each expression in bindings
-	    result = b.getValExp().visit(this, env);
-	    vals[i] = result;
+	    vals[i] = b.getValExp().visit(this, env);
 	}
 	// create new env as child of current
 	Environment<FnPlotValue<?>> newEnv = new Environment<> (vars, vals, env);
 	return body.visit(this, newEnv);
     }
 
+    /**
+     * Evaluate a loop.  Its variable is held in a single frame, whose slot
+     * is reassigned for each iteration, and the iterations are counted on a
+     * primitive counter, so an iteration allocates nothing beyond the value
+     * of the variable and whatever its body allocates.
+     * @param loop The loop
+     * @param env The environment in which it is evaluated
+     * @return 0, as for an empty block.
+     * @throws FnPlotException if the bounds or step are not numbers, the step
+     * is zero, or an error arises in the body.
+     */
+    @Override
+    public FnPlotValue<?> visitStmtFor(StmtFor loop, Environment<FnPlotValue<?>> env)
+	throws FnPlotException {
+	FnPlotValue<?> lower = loop.getLower().visit(this, env);
+	FnPlotValue<?> upper = loop.getUpper().visit(this, env);
+	FnPlotValue<?> step = loop.getStep().visit(this, env);
+	return iterate(loop, lower, upper, step, env);
+    }
+
+    /**
+     * Run the iterations of a loop whose bounds and step have been evaluated.
+     * @param loop The loop
+     * @param lower The value of its lower bound
+     * @param upper The value of its upper bound
+     * @param step The value of its step
+     * @param env The environment in which it is evaluated
+     * @return 0, as for an empty block.
+     * @throws FnPlotException if the step is zero, or an error arises in the
+     * body.
+     */
+    protected FnPlotValue<?> iterate(StmtFor loop, FnPlotValue<?> lower, FnPlotValue<?> upper,
+	    FnPlotValue<?> step, Environment<FnPlotValue<?>> env) throws FnPlotException {
+	int n = iterations(lower, upper, step);
+	Frame frame = Frame.loop(loop.getVar(), env);
+	Exp body = loop.getBody();
+	if (isInteger(lower, upper, step)) {
+	    int lo = lower.intValue(), by = step.intValue();
+	    for (int i = 0; i < n; i++) {
+		checkCancelled();
+		frame.set(0, FnPlotValue.make(lo + i * by));
+		body.visit(this, frame);
+	    }
+	} else {
+	    // computed afresh each time, so that rounding does not accumulate
+	    double lo = lower.doubleValue(), by = step.doubleValue();
+	    for (int i = 0; i < n; i++) {
+		checkCancelled();
+		frame.set(0, FnPlotValue.make(lo + i * by));
+		body.visit(this, frame);
+	    }
+	}
+	return FnPlotValue.make(0);
+    }
+
+    /**
+     * Count the iterations of a loop: the number of the values
+     * <code>lower</code>, <code>lower + step</code>, ... that do not pass
+     * <code>upper</code>.  The loop counts in integers if its bounds and step
+     * are all integers, and in reals otherwise.
+     * @param lower The first value of the loop variable
+     * @param upper The bound on the values of the loop variable
+     * @param step The difference between successive values
+     * @return The number of iterations, at most
+     * <code>Integer.MAX_VALUE</code>.
+     * @throws FnPlotException if the step is zero, or any of the values is
+     * not a number.
+     */
+    static int iterations(FnPlotValue<?> lower, FnPlotValue<?> upper, FnPlotValue<?> step)
+	throws FnPlotException {
+	if (step.doubleValue() == 0) {
+	    throw new RuntimeFnPlotException("Loop step must not be zero");
+	}
+	if (isInteger(lower, upper, step)) {
+	    return iterations(lower.intValue(), upper.intValue(), step.intValue());
+	}
+	return iterations(lower.doubleValue(), upper.doubleValue(), step.doubleValue());
+    }
+
+    static boolean isInteger(FnPlotValue<?> lower, FnPlotValue<?> upper, FnPlotValue<?> step) {
+	return lower.getType() == FnPlotType.INTEGER && upper.getType() == FnPlotType.INTEGER
+		&& step.getType() == FnPlotType.INTEGER;
+    }
+
+    /*
+     * The number of iterations of a loop with a non-zero step.  These are
+     * also called by compiled loops.
+     */
+    static int iterations(int lower, int upper, int step) {
+	long span = (long) upper - lower;
+	if (span != 0 && (span < 0) != (step < 0)) {
+	    return 0;
+	}
+	return (int) Math.min(span / step + 1, Integer.MAX_VALUE);
+    }
+
+    static int iterations(double lower, double upper, double step) {
+	// allow for rounding, so that [0:1:0.1] still reaches 1
+	double n = Math.floor((upper - lower) / step + 1e-9);
+	return n >= 0 ? (int) Math.min(n + 1, Integer.MAX_VALUE) : 0;
+    }
+
+    /**
+     * Evaluate a plot statement, by {@link #plot(FnPlotFunction, double,
+     * double, String) plotting} the graph of its expression over its interval
+     * in the style it names.
+     * @param plot The plot statement
+     * @param env The environment in which it is evaluated
+     * @return 0, as for an empty block.
+     * @throws FnPlotException if the bounds are not numbers, the style is not
+     * known, or an error arises while sampling the expression.
+     */
+    @Override
+    public FnPlotValue<?> visitStmtPlot(StmtPlot plot, Environment<FnPlotValue<?>> env)
+	throws FnPlotException {
+	FnPlotValue<?> f = plot.getFunction().visit(this, env);
+	double low = plot.getLower().visit(this, env).doubleValue();
+	double hi = plot.getUpper().visit(this, env).doubleValue();
+	plot(f.funValue(), low, hi, plot.getStyle());
+	return FnPlotValue.make(0);
+    }
+
+    /**
+     * Combine the values of the operands of an arithmetic expression.
+     * Operations whose type was inferred need no dispatch on their operands;
+     * the others specialize themselves to the operands they are given.
+     * @param exp The arithmetic expression
+     * @param site The execution state of <code>exp</code>
+     * @param val1 The value of the left operand
+     * @param val2 The value of the right operand
+     * @return The result of the operation.
+     * @throws FnPlotException if the operands are not numbers.
+     */
+    protected FnPlotValue<?> arithmetic(Exp exp, ArithSite site, FnPlotValue<?> val1,
+	    FnPlotValue<?> val2) throws FnPlotException {
+	FnPlotType type = exp.getStaticType();
+	if (type == FnPlotType.REAL) {
+	    return FnPlotValue.make(site.getOp().apply(val1.doubleValue(), val2.doubleValue()));
+	} else if (type == FnPlotType.INTEGER) {
+	    return FnPlotValue.make(site.getOp().apply(val1.intValue(), val2.intValue()));
+	}
+	return site.apply(val1, val2);
+    }
+
     @Override
     public FnPlotValue<?> visitExpAdd(ExpAdd exp, Environment<FnPlotValue<?>> arg)
 	throws FnPlotException {
 	FnPlotValue<?> val1, val2;
 	val1 = exp.getExpL().visit(this, arg);
-    val2 = exp.getExpR().visit(this, arg); 
-    if (val1.isInteger() && !val2.isInteger()){ 
-        System.out.printf("number switched");
-        return val2.add(val1);
-    }
-	return val1.add(val2);
+	val2 = exp.getExpR().visit(this, arg);
+	return arithmetic(exp, exp.getSite(), val1, val2);
     }
-    @Override 
-    public FnPlotValue<?> visitExpExpo(ExpExpo exp, Environment<FnPlotValue<?>> arg) throws FnPlotException
-        { 
-            FnPlotValue<?> val1, val2;
-            val1 = exp.getExpL().visit(this, arg);
-            val2 = exp.getExpR().visit(this, arg); 
-            return val1.expo(val2);
 
-            
+    @Override 
+    public FnPlotValue<?> visitExpExpo(ExpExpo exp, Environment<FnPlotValue<?>> arg)
+	throws FnPlotException {
+	FnPlotValue<?> val1, val2;
+	val1 = exp.getExpL().visit(this, arg);
+	val2 = exp.getExpR().visit(this, arg);
+	return arithmetic(exp, exp.getSite(), val1, val2);
     }
+
     @Override
     public FnPlotValue<?> visitExpSub(ExpSub exp, Environment<FnPlotValue<?>> arg)
 	throws FnPlotException {
 	FnPlotValue<?> val1, val2;
 	val1 = exp.getExpL().visit(this, arg);
 	val2 = exp.getExpR().visit(this, arg);
-	return val1.sub(val2);
+	return arithmetic(exp, exp.getSite(), val1, val2);
     }
 
     @Override
     public FnPlotValue<?> visitExpMul(ExpMul exp, Environment<FnPlotValue<?>> arg)
 	throws FnPlotException {
 	FnPlotValue<?> val1, val2;
-	val1 = (FnPlotValue) exp.getExpL().visit(this, arg);
-    val2 = (FnPlotValue) exp.getExpR().visit(this, arg); 
-    if (val1.isInteger() && !val2.isInteger()){
-        return val2.mul(val1);
-    }
-	return val1.mul(val2);
+	val1 = exp.getExpL().visit(this, arg);
+	val2 = exp.getExpR().visit(this, arg);
+	return arithmetic(exp, exp.getSite(), val1, val2);
     }
 
     @Override
     public FnPlotValue<?> visitExpDiv(ExpDiv exp, Environment<FnPlotValue<?>> arg)
 	throws FnPlotException {
 	FnPlotValue<?> val1, val2;
-	val1 = (FnPlotValue) exp.getExpL().visit(this, arg);
-	val2 = (FnPlotValue) exp.getExpR().visit(this, arg);
-	return val1.div(val2);
+	val1 = exp.getExpL().visit(this, arg);
+	val2 = exp.getExpR().visit(this, arg);
+	return arithmetic(exp, exp.getSite(), val1, val2);
     }
 
     @Override
     public FnPlotValue<?> visitExpMod(ExpMod exp, Environment<FnPlotValue<?>> arg)
 	throws FnPlotException {
 	FnPlotValue<?> val1, val2;
-	val1 = (FnPlotValue) exp.getExpL().visit(this, arg);
-	val2 = (FnPlotValue) exp.getExpR().visit(this, arg);
-	return val1.mod(val2);
+	val1 = exp.getExpL().visit(this, arg);
+	val2 = exp.getExpR().visit(this, arg);
+	return arithmetic(exp, exp.getSite(), val1, val2);
+    }
+
+    @Override
+    public FnPlotValue<?> visitExpPromote(ExpPromote exp, Environment<FnPlotValue<?>> arg)
+	throws FnPlotException {
+	return FnPlotValue.make(exp.getExp().visit(this, arg).doubleValue());
     }
 
     @Override
@@ -235,6 +1080,9 @@ public class Evaluator
     @Override
     public FnPlotValue<?> visitExpVar(ExpVar exp, Environment<FnPlotValue<?>> env)
 	throws FnPlotException {
+	if (exp.isResolved()) {
+	    return env.lookup(exp.getDepth(), exp.getSlot(), exp.getVar());
+	}
 	return env.get(exp.getVar());
     }
 }
@@ -0,0 +1,289 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpExpo;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPromote;
+import fnplot.syntax.ExpSub;
+import fnplot.syntax.ExpVar;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotInt;
+import fnplot.values.FnPlotReal;
+import fnplot.values.FnPlotType;
+import fnplot.values.FnPlotValue;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Objects;
+
+/**
+ * A builder that hash-conses pure expressions: literals, variable
+ * references, arithmetic and promotions.  Each structurally distinct
+ * expression is built only once; asking for it again returns the node that
+ * was built the first time.  Two expressions are structurally equal when
+ * they are the same kind of node, with the same (canonical) children, the
+ * same literal value or variable, and the same annotations from the resolver
+ * and type inferencer.  Since children are canonical, comparing them by
+ * identity is enough, so building a node takes constant time.
+ *
+ * Expressions containing anything else, such as a function call or a
+ * <code>let</code>, are not pure and have no canonical form.
+ *
+ * Canonical nodes are shared between every place they occur, so they must
+ * not be modified once built: a program should only be made to share them
+ * by {@link #share(ArithProgram)} after all the passes that annotate or
+ * rewrite it in place have run.
+ */
+public class ExpBuilder {
+
+    /*
+     * The structure of a node, given the canonical forms of its children.
+     */
+    private static final class Key {
+
+        private final Class<?> kind;
+        private final Exp left, right;
+        private final Object value;
+        private final int depth, slot;
+        private final FnPlotType type;
+
+        Key(Class<?> kind, Exp left, Exp right, Object value, int depth, int slot,
+                FnPlotType type) {
+            this.kind = kind;
+            this.left = left;
+            this.right = right;
+            this.value = value;
+            this.depth = depth;
+            this.slot = slot;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return kind == k.kind && left == k.left && right == k.right
+                    && Objects.equals(value, k.value)
+                    && depth == k.depth && slot == k.slot && type == k.type;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = kind.hashCode();
+            h = 31 * h + System.identityHashCode(left);
+            h = 31 * h + System.identityHashCode(right);
+            h = 31 * h + Objects.hashCode(value);
+            h = 31 * h + depth;
+            h = 31 * h + slot;
+            return 31 * h + Objects.hashCode(type);
+        }
+    }
+
+    private final HashMap<Key, Exp> table = new HashMap<>();
+
+    /* the canonical form of each expression already looked up (null if impure) */
+    private final IdentityHashMap<Exp, Exp> canonical = new IdentityHashMap<>();
+
+    /**
+     * @return The number of distinct expressions built so far.
+     */
+    public int size() {
+        return table.size();
+    }
+
+    /**
+     * Build a literal.
+     * @param val The value of the literal
+     * @return The canonical literal with the given value.
+     */
+    public ExpLit literal(FnPlotValue<?> val) {
+        return literal(val, null);
+    }
+
+    /**
+     * Build a reference to a variable, not yet resolved.
+     * @param var The name of the variable
+     * @return The canonical reference to the variable.
+     */
+    public ExpVar variable(String var) {
+        return variable(var, -1, -1, null);
+    }
+
+    /**
+     * Build an arithmetic expression.
+     * @param op The operator
+     * @param l The left operand, which must have been built by this builder
+     * @param r The right operand, which must have been built by this builder
+     * @return The canonical expression applying the operator to the operands.
+     */
+    public Exp arithmetic(ArithSite.Op op, Exp l, Exp r) {
+        return arithmetic(op, l, r, null);
+    }
+
+    /**
+     * Find the canonical form of an expression, building it if this is the
+     * first time an expression with its structure has been seen.  The given
+     * expression is not changed.
+     * @param e The expression
+     * @return The canonical expression structurally equal to <code>e</code>,
+     * or <code>null</code> if <code>e</code> is not pure.
+     */
+    public Exp canonical(Exp e) {
+        if (canonical.containsKey(e)) {
+            return canonical.get(e);
+        }
+        Exp k = build(e);
+        canonical.put(e, k);
+        if (k != null) {
+            canonical.put(k, k);
+        }
+        return k;
+    }
+
+    /**
+     * Replace every pure expression in a program with its canonical form, so
+     * that repeated expressions are represented by a single node.  The
+     * program must already have been resolved and typed.
+     * @param p The program
+     * @throws FnPlotException if the program contains a node that cannot be
+     * traversed.
+     */
+    public void share(ArithProgram p) throws FnPlotException {
+        p.visit(new ChildRewriter() {
+            @Override
+            Exp rewrite(Exp child) throws FnPlotException {
+                Exp k = canonical(child);
+                if (k != null) {
+                    return k;
+                }
+                child.visit(this, null);
+                return child;
+            }
+        }, null);
+    }
+
+    private Exp build(Exp e) {
+        FnPlotType type = e.getStaticType();
+        if (e instanceof ExpLit) {
+            return literal(((ExpLit) e).getVal(), type);
+        } else if (e instanceof ExpVar) {
+            ExpVar v = (ExpVar) e;
+            return variable(v.getVar(), v.getDepth(), v.getSlot(), type);
+        } else if (e instanceof ExpPromote) {
+            Exp c = canonical(((ExpPromote) e).getExp());
+            if (c == null) {
+                return null;
+            }
+            Key key = new Key(ExpPromote.class, c, null, null, -1, -1, type);
+            Exp k = table.get(key);
+            if (k == null) {
+                k = new ExpPromote(c);
+                k.setStaticType(type);
+                table.put(key, k);
+            }
+            return k;
+        }
+        ArithSite.Op op = operator(e);
+        if (op == null) {
+            return null;
+        }
+        Exp[] operands = operands(e);
+        Exp l = canonical(operands[0]);
+        Exp r = l == null ? null : canonical(operands[1]);
+        return r == null ? null : arithmetic(op, l, r, type);
+    }
+
+    private ExpLit literal(FnPlotValue<?> val, FnPlotType type) {
+        Object value = val;
+        if (val instanceof FnPlotInt) {
+            value = ((FnPlotInt) val).intValue();
+        } else if (val instanceof FnPlotReal) {
+            value = ((FnPlotReal) val).doubleValue();
+        }
+        Key key = new Key(ExpLit.class, null, null, value, -1, -1, type);
+        Exp k = table.get(key);
+        if (k == null) {
+            k = new ExpLit(val);
+            k.setStaticType(type);
+            table.put(key, k);
+        }
+        return (ExpLit) k;
+    }
+
+    private ExpVar variable(String var, int depth, int slot, FnPlotType type) {
+        Key key = new Key(ExpVar.class, null, null, var, depth, slot, type);
+        Exp k = table.get(key);
+        if (k == null) {
+            ExpVar v = new ExpVar(var);
+            v.setAddress(depth, slot);
+            v.setStaticType(type);
+            table.put(key, v);
+            k = v;
+        }
+        return (ExpVar) k;
+    }
+
+    private Exp arithmetic(ArithSite.Op op, Exp l, Exp r, FnPlotType type) {
+        Key key = new Key(ArithSite.Op.class, l, r, op, -1, -1, type);
+        Exp k = table.get(key);
+        if (k == null) {
+            k = Optimizer.make(op, l, r);
+            k.setStaticType(type);
+            table.put(key, k);
+        }
+        return k;
+    }
+
+    /**
+     * @param e An expression
+     * @return The operator of <code>e</code>, if it is an arithmetic
+     * expression, otherwise <code>null</code>.
+     */
+    static ArithSite.Op operator(Exp e) {
+        if (e instanceof ExpAdd) {
+            return ArithSite.Op.ADD;
+        } else if (e instanceof ExpSub) {
+            return ArithSite.Op.SUB;
+        } else if (e instanceof ExpMul) {
+            return ArithSite.Op.MUL;
+        } else if (e instanceof ExpDiv) {
+            return ArithSite.Op.DIV;
+        } else if (e instanceof ExpMod) {
+            return ArithSite.Op.MOD;
+        } else if (e instanceof ExpExpo) {
+            return ArithSite.Op.EXPO;
+        }
+        return null;
+    }
+
+    /**
+     * @param e A pure expression
+     * @return The operands of <code>e</code>: both operands of an arithmetic
+     * expression, the operand of a promotion, and none for a literal or
+     * variable.
+     */
+    static Exp[] operands(Exp e) {
+        if (e instanceof ExpAdd) {
+            return new Exp[] {((ExpAdd) e).getExpL(), ((ExpAdd) e).getExpR()};
+        } else if (e instanceof ExpSub) {
+            return new Exp[] {((ExpSub) e).getExpL(), ((ExpSub) e).getExpR()};
+        } else if (e instanceof ExpMul) {
+            return new Exp[] {((ExpMul) e).getExpL(), ((ExpMul) e).getExpR()};
+        } else if (e instanceof ExpDiv) {
+            return new Exp[] {((ExpDiv) e).getExpL(), ((ExpDiv) e).getExpR()};
+        } else if (e instanceof ExpMod) {
+            return new Exp[] {((ExpMod) e).getExpL(), ((ExpMod) e).getExpR()};
+        } else if (e instanceof ExpExpo) {
+            return new Exp[] {((ExpExpo) e).getExpL(), ((ExpExpo) e).getExpR()};
+        } else if (e instanceof ExpPromote) {
+            return new Exp[] {((ExpPromote) e).getExp()};
+        }
+        return new Exp[0];
+    }
+}
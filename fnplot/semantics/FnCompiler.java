@@ -0,0 +1,699 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpExpo;
+import fnplot.syntax.ExpFuncall;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPromote;
+import fnplot.syntax.ExpSub;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.Statement;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtFor;
+import fnplot.syntax.StmtFun;
+import fnplot.syntax.StmtLet;
+import fnplot.syntax.StmtPlot;
+import fnplot.syntax.StmtSequence;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotFunction;
+import fnplot.values.FnPlotType;
+import fnplot.values.FnPlotValue;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import static fnplot.semantics.ClassBuilder.*;
+
+/**
+ * Translates the body of a user function into JVM bytecode, and loads it as a
+ * hidden class extending {@link CompiledFunction}.  The generated code works
+ * on primitive ints and doubles only, so no FnPlot values are allocated while
+ * it runs.
+ *
+ * Only arithmetic, <code>let</code>, blocks, definitions and loops with
+ * constant steps are compiled.
+ * Variables that are free in the function are looked up in its closing
+ * environment when it is compiled and built into the code as constants, so a
+ * compiled function is valid only while they keep those values.  A kernel can
+ * be kept on the function it was compiled from with {@link #remember}, and
+ * reused by {@link #recall} while the variables the function reads are
+ * unchanged, so that panning or zooming a plot does not load a new class.  A
+ * function whose body cannot be compiled causes a {@link FnPlotException},
+ * and callers are expected to fall back to the {@link Evaluator}.
+ *
+ * A loop counts its iterations in an int local, and its variable and the
+ * variables its body assigns occupy one local each for the whole loop, so a
+ * variable that is carried from one iteration to the next must keep the same
+ * type throughout.  A variable first defined within a loop body may not be
+ * read after the loop, since the loop might not have run.
+ *
+ * Each visit method leaves the value of its node on the operand stack and
+ * returns its type.  The typing rules are those of the operations on
+ * {@link fnplot.values.FnPlotInt} and {@link fnplot.values.FnPlotReal}.
+ */
+public class FnCompiler implements Visitor<FnCompiler.Scope, FnPlotType> {
+
+    private static final String SUPER_NAME = "fnplot/semantics/CompiledFunction";
+    private static final String CLASS_NAME = "fnplot/semantics/CompiledKernel";
+
+    private final ExpFunction funExp;
+    private final Environment<FnPlotValue<?>> closingEnv;
+    private ClassBuilder cls;
+    private ClassBuilder.Code code;
+    private int nextLocal;
+    // the verification types of the method's arguments, and the types of
+    // the values held in the locals allocated after them
+    private int[] argTypes;
+    private final HashMap<Integer, FnPlotType> stored = new HashMap<>();
+
+    /**
+     * Compile-time record of the local variable slots that hold the values of
+     * the FnPlot variables bound within the function.
+     */
+    static class Scope {
+
+        final Scope parent;
+        // whether this is the scope of a loop's variable
+        final boolean loop;
+        final HashMap<String, Integer> slots = new HashMap<>();
+        final HashMap<String, FnPlotType> types = new HashMap<>();
+
+        Scope(Scope parent) {
+            this(parent, false);
+        }
+
+        Scope(Scope parent, boolean loop) {
+            this.parent = parent;
+            this.loop = loop;
+        }
+
+        void bind(String var, int slot, FnPlotType type) {
+            slots.put(var, slot);
+            types.put(var, type);
+        }
+
+        Scope lookup(String var) {
+            Scope s = this;
+            while (s != null && !s.slots.containsKey(var)) {
+                s = s.parent;
+            }
+            return s;
+        }
+    }
+
+    private FnCompiler(ExpFunction funExp, Environment<FnPlotValue<?>> closingEnv) {
+        this.funExp = funExp;
+        this.closingEnv = closingEnv;
+    }
+
+    /**
+     * Compile a user function value.
+     * @param f The function to be compiled
+     * @return A compiled equivalent of the function.
+     * @throws FnPlotException if the function cannot be compiled.
+     */
+    public static CompiledFunction compile(FnPlotFunction f) throws FnPlotException {
+        return compile(f.getFunExp(), f.getClosingEnv());
+    }
+
+    /**
+     * Compile a function expression.
+     * @param funExp The function expression to be compiled
+     * @param env The environment in which free variables of the function are
+     * to be looked up
+     * @return A compiled equivalent of the function.
+     * @throws FnPlotException if the function cannot be compiled.
+     */
+    public static CompiledFunction compile(ExpFunction funExp,
+            Environment<FnPlotValue<?>> env) throws FnPlotException {
+        return new FnCompiler(funExp, env).compile();
+    }
+
+    /**
+     * Find the kernel kept for a function by {@link #remember}.
+     * @param f The function, as it was given to {@link #remember}
+     * @return The kernel, or <code>null</code> if none was kept or if any of
+     * the variables read by the function has changed its value since.
+     */
+    public static CompiledFunction recall(FnPlotFunction f) {
+        CompiledFunction kernel = f.getFunExp().getKernel();
+        if (kernel == null) {
+            return null;
+        }
+        for (Map.Entry<String, FnPlotValue<?>> e : kernel.captured.entrySet()) {
+            if (!Objects.equals(valueOf(e.getKey(), f.getClosingEnv()), e.getValue())) {
+                return null;
+            }
+        }
+        return kernel;
+    }
+
+    /**
+     * Keep a kernel on the function it was compiled from, either directly or
+     * after the function was specialized, with the current values of all the
+     * variables the function reads.
+     * @param f The function
+     * @param kernel The kernel compiled from <code>f</code>
+     * @throws FnPlotException if the body of <code>f</code> cannot be
+     * traversed.
+     */
+    public static void remember(FnPlotFunction f, CompiledFunction kernel)
+            throws FnPlotException {
+        HashMap<String, FnPlotValue<?>> captured = new HashMap<>();
+        for (String var : DependencyGraph.names(f.getFunExp().getBody())) {
+            captured.put(var, valueOf(var, f.getClosingEnv()));
+        }
+        kernel.captured = captured;
+        f.getFunExp().setKernel(kernel);
+    }
+
+    // the value of a variable, or null if it is not bound
+    private static FnPlotValue<?> valueOf(String var, Environment<FnPlotValue<?>> env) {
+        try {
+            return env.get(var);
+        } catch (FnPlotException e) {
+            return null;
+        }
+    }
+
+    private CompiledFunction compile() throws FnPlotException {
+        ArrayList<String> params = funExp.getParameters();
+        try {
+            cls = new ClassBuilder(CLASS_NAME, SUPER_NAME);
+            emitConstructor();
+            emitApply(params);
+            if (params.size() == 1) {
+                emitSample(params.get(0));
+            }
+        } catch (IllegalStateException e) {
+            throw new FnPlotException("Function too large to compile: " + funExp, e);
+        }
+        CompiledFunction result;
+        try {
+            MethodHandles.Lookup lookup =
+                    MethodHandles.lookup().defineHiddenClass(cls.toByteArray(), true);
+            result = (CompiledFunction) lookup.findConstructor(lookup.lookupClass(),
+                    MethodType.methodType(void.class)).invoke();
+        } catch (Throwable t) {
+            throw new FnPlotException("Failed to load compiled function: " + funExp, t);
+        }
+        result.source = funExp;
+        return result;
+    }
+
+    private void emitConstructor() {
+        code = new ClassBuilder.Code(1);
+        code.local(ALOAD, 0, 1, 1);
+        code.op2(INVOKESPECIAL, cls.methodRef(SUPER_NAME, "<init>", "()V"), -1);
+        code.op(RETURN, 0);
+        cls.addMethod(ACC_PUBLIC, "<init>", "()V", code);
+    }
+
+    /*
+     * double apply(double... args): copy the arguments into locals, then
+     * evaluate the body.
+     */
+    private void emitApply(ArrayList<String> params) throws FnPlotException {
+        code = new ClassBuilder.Code(2);
+        nextLocal = 2;
+        stored.clear();
+        argTypes = new int[] {cls.objectType(CLASS_NAME), cls.objectType("[D")};
+        Scope scope = new Scope(null);
+        for (int i = 0; i < params.size(); i++) {
+            code.local(ALOAD, 1, 1, 1);
+            pushInt(i);
+            code.op(DALOAD, 0);
+            int slot = allocate();
+            store(FnPlotType.REAL, slot);
+            scope.bind(params.get(i), slot, FnPlotType.REAL);
+        }
+        toDouble(funExp.getBody().visit(this, scope));
+        code.op(DRETURN, -2);
+        cls.addMethod(ACC_PUBLIC | ACC_VARARGS, "apply", "([D)D", code);
+    }
+
+    /*
+     * void sample(double[] xs, double[] ys, int from, int to): the body
+     * inlined into a counted loop, so that the JIT sees the whole sampling
+     * pass as one method.  The loop counts up in from.  The body starts on
+     * an empty operand stack, so that loops within it can be compiled.
+     */
+    private void emitSample(String param) throws FnPlotException {
+        code = new ClassBuilder.Code(5);
+        nextLocal = 5;
+        stored.clear();
+        int doubles = cls.objectType("[D");
+        argTypes = new int[] {cls.objectType(CLASS_NAME), doubles, doubles,
+            VT_INTEGER, VT_INTEGER};
+        int loop = code.position();
+        code.sameFrame();
+        code.local(ILOAD, 3, 1, 1);
+        code.local(ILOAD, 4, 1, 1);
+        int exit = code.branch(IF_ICMPGE, -2);
+        code.local(ALOAD, 1, 1, 1);
+        code.local(ILOAD, 3, 1, 1);
+        code.op(DALOAD, 0);
+        int slot = allocate();
+        store(FnPlotType.REAL, slot);
+        Scope scope = new Scope(null);
+        scope.bind(param, slot, FnPlotType.REAL);
+        toDouble(funExp.getBody().visit(this, scope));
+        int result = allocate();
+        store(FnPlotType.REAL, result);
+        code.local(ALOAD, 2, 1, 1);
+        code.local(ILOAD, 3, 1, 1);
+        code.local(DLOAD, result, 2, 2);
+        code.op(DASTORE, -4);
+        code.iinc(3, 1);
+        code.branchTo(GOTO, loop, 0);
+        code.patch(exit, code.position());
+        // the locals of the body are not set when the loop is not entered
+        code.fullFrame(argTypes);
+        code.op(RETURN, 0);
+        cls.addMethod(ACC_PUBLIC, "sample", "([D[DII)V", code);
+    }
+
+    private int allocate() {
+        int slot = nextLocal;
+        nextLocal += 2;
+        return slot;
+    }
+
+    private void pushInt(int v) {
+        if (v >= -1 && v <= 5) {
+            code.op(ICONST_0 + v, 1);
+        } else if (v >= Byte.MIN_VALUE && v <= Byte.MAX_VALUE) {
+            code.op1(BIPUSH, v, 1);
+        } else if (v >= Short.MIN_VALUE && v <= Short.MAX_VALUE) {
+            code.op2(SIPUSH, v, 1);
+        } else {
+            code.op2(LDC_W, cls.intConst(v), 1);
+        }
+    }
+
+    private void pushDouble(double v) {
+        code.op2(LDC2_W, cls.doubleConst(v), 2);
+    }
+
+    private void toDouble(FnPlotType t) {
+        if (t == FnPlotType.INTEGER) {
+            code.op(I2D, 1);
+        }
+    }
+
+    private void store(FnPlotType t, int slot) {
+        if (t == FnPlotType.INTEGER) {
+            code.local(ISTORE, slot, 1, -1);
+        } else {
+            code.local(DSTORE, slot, 2, -2);
+        }
+        stored.put(slot, t);
+    }
+
+    private void load(FnPlotType t, int slot) {
+        if (t == FnPlotType.INTEGER) {
+            code.local(ILOAD, slot, 1, 1);
+        } else {
+            code.local(DLOAD, slot, 2, 2);
+        }
+    }
+
+    /*
+     * The verification types of the locals that hold values at this point,
+     * for a stack map frame.  Every allocated local holds a value from the
+     * point at which it is first stored, except those of loop bodies, which
+     * are forgotten when the loop ends.
+     */
+    private int[] frameLocals() {
+        ArrayList<Integer> types = new ArrayList<>();
+        for (int t : argTypes) {
+            types.add(t);
+        }
+        int length = types.size();      // omitting trailing unset locals
+        for (int slot = argTypes.length; slot < nextLocal; slot += 2) {
+            FnPlotType t = stored.get(slot);
+            if (t == FnPlotType.INTEGER) {
+                types.add(VT_INTEGER);
+                length = types.size();
+                types.add(VT_TOP);
+            } else if (t == FnPlotType.REAL) {
+                types.add(VT_DOUBLE);   // covers both slots
+                length = types.size();
+            } else {
+                types.add(VT_TOP);
+                types.add(VT_TOP);
+            }
+        }
+        int[] locals = new int[length];
+        for (int i = 0; i < length; i++) {
+            locals[i] = types.get(i);
+        }
+        return locals;
+    }
+
+    private void pop(FnPlotType t) {
+        if (t == FnPlotType.INTEGER) {
+            code.op(POP, -1);
+        } else {
+            code.op(POP2, -2);
+        }
+    }
+
+    private void dup(FnPlotType t) {
+        if (t == FnPlotType.INTEGER) {
+            code.op(DUP, 1);
+        } else {
+            code.op(DUP2, 2);
+        }
+    }
+
+    /*
+     * Bring two operands on the stack, of the given types, to reals in the
+     * same order.  An integer left operand under a real one is converted by
+     * moving the real out of the way, and for operators that commute the
+     * operands are simply left swapped.
+     */
+    private void promote(FnPlotType tl, FnPlotType tr, boolean commutes) {
+        if (tl == FnPlotType.INTEGER && tr == FnPlotType.INTEGER) {
+            code.op(SWAP, 0);
+            code.op(I2D, 1);
+            code.op(DUP2_X1, 2);
+            code.op(POP2, -2);
+            code.op(I2D, 1);
+        } else if (tl == FnPlotType.INTEGER) {
+            code.op(DUP2_X1, 2);
+            code.op(POP2, -2);
+            code.op(I2D, 1);
+            if (!commutes) {
+                code.op(DUP2_X2, 2);
+                code.op(POP2, -2);
+            }
+        } else if (tr == FnPlotType.INTEGER) {
+            code.op(I2D, 1);
+        }
+    }
+
+    /*
+     * Arithmetic is performed on integers when both operands are integers,
+     * and otherwise on reals, with any integer operand promoted.
+     */
+    private FnPlotType arithmetic(Exp left, Exp right, int intOp, int realOp,
+            boolean commutes, Scope scope) throws FnPlotException {
+        FnPlotType tl = left.visit(this, scope);
+        FnPlotType tr = right.visit(this, scope);
+        if (tl == FnPlotType.INTEGER && tr == FnPlotType.INTEGER) {
+            code.op(intOp, -1);
+            return FnPlotType.INTEGER;
+        }
+        promote(tl, tr, commutes);
+        code.op(realOp, -2);
+        return FnPlotType.REAL;
+    }
+
+    @Override
+    public FnPlotType visitArithProgram(ArithProgram p, Scope arg) throws FnPlotException {
+        throw new FnPlotException("Cannot compile a program");
+    }
+
+    @Override
+    public FnPlotType visitStmtSequence(StmtSequence sseq, Scope scope)
+            throws FnPlotException {
+        ArrayList<Statement> seq = sseq.getSeq();
+        FnPlotType result = null;
+        for (Statement s : seq) {
+            if (result != null) {
+                pop(result);
+            }
+            result = s.visit(this, scope);
+        }
+        if (result == null) {
+            pushInt(0);
+            result = FnPlotType.INTEGER;
+        }
+        return result;
+    }
+
+    /*
+     * A definition binds its variable in the innermost scope that is not a
+     * loop's, as the Resolver does, and usually in a fresh local.  Within a
+     * loop, a variable that is already bound keeps its local instead, since
+     * the next iteration reads it from there.
+     */
+    @Override
+    public FnPlotType visitStmtDefinition(StmtDefinition sd, Scope scope)
+            throws FnPlotException {
+        FnPlotType t = sd.getExp().visit(this, scope);
+        dup(t);
+        String var = sd.getVar();
+        Scope target = target(scope, var);
+        Integer slot = target.slots.get(var);
+        if (scope.loop && slot != null && slot >= 0) {
+            if (target.types.get(var) != t) {
+                throw new FnPlotException("Cannot compile change of type of " + var
+                        + " within a loop");
+            }
+            store(t, slot);
+        } else {
+            slot = allocate();
+            store(t, slot);
+            target.bind(var, slot, t);
+        }
+        return t;
+    }
+
+    private static Scope target(Scope scope, String var) {
+        Scope s = scope;
+        while (s.loop && !s.slots.containsKey(var)) {
+            s = s.parent;
+        }
+        return s;
+    }
+
+    @Override
+    public FnPlotType visitFnDefn(ExpFunction sd, Scope scope) throws FnPlotException {
+        throw new FnPlotException("Cannot compile nested function " + sd);
+    }
+
+    @Override
+    public FnPlotType visitStmtFun(StmtFun funny, Scope scope) throws FnPlotException {
+        throw new FnPlotException("Cannot compile " + funny);
+    }
+
+    @Override
+    public FnPlotType visitStmtLet(StmtLet letExp, Scope scope) throws FnPlotException {
+        ArrayList<Binding> bindings = letExp.getBindings();
+        Scope inner = new Scope(scope);
+        // bindings are evaluated in the enclosing scope
+        for (Binding b : bindings) {
+            FnPlotType t = b.getValExp().visit(this, scope);
+            int slot = allocate();
+            store(t, slot);
+            inner.bind(b.getVar(), slot, t);
+        }
+        return letExp.getBody().visit(this, inner);
+    }
+
+    @Override
+    public FnPlotType visitStmtPlot(StmtPlot plot, Scope scope) throws FnPlotException {
+        throw new FnPlotException("Cannot compile " + plot);
+    }
+
+    @Override
+    public FnPlotType visitStmtFor(StmtFor loop, Scope scope) throws FnPlotException {
+        if (code.depth() != 0) {
+            // a stack map frame would have to describe the operands
+            throw new FnPlotException("Cannot compile loop within an expression: " + loop);
+        }
+        if (!(loop.getStep() instanceof ExpLit)) {
+            throw new FnPlotException("Cannot compile loop with variable step: " + loop);
+        }
+        FnPlotValue<?> step = ((ExpLit) loop.getStep()).getVal();
+        FnPlotType ts = step.getType();
+        if (ts != FnPlotType.INTEGER && ts != FnPlotType.REAL || step.doubleValue() == 0) {
+            // the Evaluator reports the error
+            throw new FnPlotException("Cannot compile loop with step " + step);
+        }
+        FnPlotType tl = loop.getLower().visit(this, scope);
+        int lower = allocate();
+        store(tl, lower);
+        FnPlotType tu = loop.getUpper().visit(this, scope);
+        int upper = allocate();
+        store(tu, upper);
+        boolean integer = tl == FnPlotType.INTEGER && tu == FnPlotType.INTEGER
+                && ts == FnPlotType.INTEGER;
+        FnPlotType t = integer ? FnPlotType.INTEGER : FnPlotType.REAL;
+        int lo = lower;
+        if (tl != t) {
+            load(tl, lower);
+            toDouble(tl);
+            lo = allocate();
+            store(t, lo);
+        }
+        load(t, lo);
+        load(tu, upper);
+        if (tu != t) {
+            toDouble(tu);
+        }
+        pushValue(integer ? step : FnPlotValue.make(step.doubleValue()), loop.getStep());
+        if (integer) {
+            code.op2(INVOKESTATIC, cls.methodRef("fnplot/semantics/Evaluator",
+                    "iterations", "(III)I"), -2);
+        } else {
+            code.op2(INVOKESTATIC, cls.methodRef("fnplot/semantics/Evaluator",
+                    "iterations", "(DDD)I"), -5);
+        }
+        int n = allocate();
+        store(FnPlotType.INTEGER, n);
+        pushInt(0);
+        int i = allocate();
+        store(FnPlotType.INTEGER, i);
+
+        // variables first defined in the body have no value before it
+        String var = loop.getVar();
+        ArrayList<String> defined = new ArrayList<>();
+        new Resolver.DefinitionCollector().collect(loop.getBody(), defined);
+        HashMap<String, Scope> unset = new HashMap<>();
+        for (String v : defined) {
+            Scope target = target(scope, v);
+            Integer slot = target.slots.get(v);
+            if (!v.equals(var) && (slot == null || slot < 0)) {
+                target.bind(v, -1, null);
+                unset.put(v, target);
+            }
+        }
+
+        int limit = nextLocal;
+        int[] locals = frameLocals();
+        int head = code.position();
+        code.fullFrame(locals);
+        load(FnPlotType.INTEGER, i);
+        load(FnPlotType.INTEGER, n);
+        int exit = code.branch(IF_ICMPGE, -2);
+        // computed afresh each time, as by the Evaluator
+        load(t, lo);
+        load(FnPlotType.INTEGER, i);
+        if (integer) {
+            pushInt(step.intValue());
+            code.op(IMUL, -1);
+            code.op(IADD, -1);
+        } else {
+            code.op(I2D, 1);
+            pushDouble(step.doubleValue());
+            code.op(DMUL, -2);
+            code.op(DADD, -2);
+        }
+        int slot = allocate();
+        store(t, slot);
+        Scope inner = new Scope(scope, true);
+        inner.bind(var, slot, t);
+        pop(loop.getBody().visit(this, inner));
+        code.iinc(i, 1);
+        code.branchTo(GOTO, head, 0);
+        code.patch(exit, code.position());
+        code.fullFrame(locals);
+        for (int s = limit; s < nextLocal; s += 2) {
+            stored.remove(s);
+        }
+        for (String v : unset.keySet()) {
+            unset.get(v).bind(v, -1, null);
+        }
+        pushInt(0);
+        return FnPlotType.INTEGER;
+    }
+
+    @Override
+    public FnPlotType visitExpAdd(ExpAdd exp, Scope scope) throws FnPlotException {
+        return arithmetic(exp.getExpL(), exp.getExpR(), IADD, DADD, true, scope);
+    }
+
+    @Override
+    public FnPlotType visitExpSub(ExpSub exp, Scope scope) throws FnPlotException {
+        return arithmetic(exp.getExpL(), exp.getExpR(), ISUB, DSUB, false, scope);
+    }
+
+    @Override
+    public FnPlotType visitExpMul(ExpMul exp, Scope scope) throws FnPlotException {
+        return arithmetic(exp.getExpL(), exp.getExpR(), IMUL, DMUL, true, scope);
+    }
+
+    @Override
+    public FnPlotType visitExpDiv(ExpDiv exp, Scope scope) throws FnPlotException {
+        return arithmetic(exp.getExpL(), exp.getExpR(), IDIV, DDIV, false, scope);
+    }
+
+    @Override
+    public FnPlotType visitExpMod(ExpMod exp, Scope scope) throws FnPlotException {
+        return arithmetic(exp.getExpL(), exp.getExpR(), IREM, DREM, false, scope);
+    }
+
+    @Override
+    public FnPlotType visitExpExpo(ExpExpo exp, Scope scope) throws FnPlotException {
+        FnPlotType tl = exp.getExpL().visit(this, scope);
+        FnPlotType tr = exp.getExpR().visit(this, scope);
+        // integer powers are computed as (int) Math.pow(l, r)
+        promote(tl, tr, false);
+        code.op2(INVOKESTATIC, cls.methodRef("java/lang/Math", "pow", "(DD)D"), -2);
+        if (tl == FnPlotType.INTEGER && tr == FnPlotType.INTEGER) {
+            code.op(D2I, -1);
+            return FnPlotType.INTEGER;
+        }
+        return FnPlotType.REAL;
+    }
+
+    @Override
+    public FnPlotType visitExpPromote(ExpPromote exp, Scope scope) throws FnPlotException {
+        toDouble(exp.getExp().visit(this, scope));
+        return FnPlotType.REAL;
+    }
+
+    @Override
+    public FnPlotType visitExpFuncall(ExpFuncall exp, Scope scope) throws FnPlotException {
+        throw new FnPlotException("Cannot compile function call " + exp);
+    }
+
+    @Override
+    public FnPlotType visitExpLit(ExpLit exp, Scope scope) throws FnPlotException {
+        return pushValue(exp.getVal(), exp);
+    }
+
+    @Override
+    public FnPlotType visitExpVar(ExpVar exp, Scope scope) throws FnPlotException {
+        String var = exp.getVar();
+        Scope s = scope.lookup(var);
+        if (s == null) {
+            // free in the function: its current value becomes a constant
+            return pushValue(closingEnv.get(var), exp);
+        }
+        FnPlotType t = s.types.get(var);
+        int slot = s.slots.get(var);
+        if (slot < 0) {
+            throw new FnPlotException("Cannot compile use of " + var
+                    + ", which may not have been defined by a loop");
+        }
+        load(t, slot);
+        return t;
+    }
+
+    private FnPlotType pushValue(FnPlotValue<?> v, Exp exp) throws FnPlotException {
+        switch (v.getType()) {
+            case INTEGER:
+                pushInt(v.intValue());
+                return FnPlotType.INTEGER;
+            case REAL:
+                pushDouble(v.doubleValue());
+                return FnPlotType.REAL;
+            default:
+                throw new FnPlotException("Cannot compile non-numeric value of " + exp);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package fnplot.semantics;
+
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotValue;
+import java.util.HashMap;
+
+/**
+ * An environment whose bindings are held in an array, laid out by the
+ * {@link Resolver}.  Variables that have been given lexical addresses are
+ * accessed by index, without hashing their names.
+ *
+ * A slot that has not yet been assigned behaves as though the variable were
+ * not bound in this frame at all, so that a reference that runs before a
+ * definition within the same scope still sees the enclosing binding.
+ */
+public class Frame extends Environment<FnPlotValue<?>> {
+
+    final String[] names;
+    final FnPlotValue<?>[] values;
+
+    /**
+     * Create a new frame, with all its slots unassigned.
+     * @param names The names of the slots, as laid out by the resolver
+     * @param parent The environment being extended
+     */
+    public Frame(String[] names, Environment<FnPlotValue<?>> parent) {
+        super(parent, null);
+        this.names = names;
+        this.values = new FnPlotValue<?>[names.length];
+    }
+
+    /**
+     * Create the frame of one iteration of a for loop, holding just the loop
+     * variable.  A definition of any other name made in it, as happens when
+     * the program has not been resolved, binds in the enclosing environment,
+     * which is where the resolver would have placed it.
+     * @param var The loop variable
+     * @param parent The environment in which the loop runs
+     * @return The new frame
+     */
+    static Frame loop(String var, Environment<FnPlotValue<?>> parent) {
+        return new Frame(new String[] {var}, parent) {
+            @Override
+            public void put(String id, FnPlotValue<?> value) {
+                if (id.equals(var)) {
+                    super.put(id, value);
+                } else {
+                    parent.put(id, value);
+                }
+            }
+        };
+    }
+
+    /**
+     * Assign the slot at the given index in this frame.
+     * @param slot The index of the slot
+     * @param value The value to be stored there
+     */
+    public void set(int slot, FnPlotValue<?> value) {
+        values[slot] = value;
+        version++;
+    }
+
+    @Override
+    FnPlotValue<?> getSlot(int slot, String id) throws FnPlotException {
+        FnPlotValue<?> result = slot < 0 ? null : values[slot];
+        if (result == null) {
+            return get(id);
+        }
+        return result;
+    }
+
+    @Override
+    void setSlot(int slot, String id, FnPlotValue<?> value) {
+        if (slot < 0) {
+            put(id, value);
+        } else {
+            values[slot] = value;
+            version++;
+        }
+    }
+
+    @Override
+    public void put(String id, FnPlotValue<?> value) {
+        int i = indexOf(id);
+        if (i >= 0) {
+            values[i] = value;
+            version++;
+        } else {
+            // not laid out by the resolver, so keep it by name
+            if (dictionary == null) {
+                dictionary = new HashMap<>();
+            }
+            dictionary.put(id, value);
+            version++;
+        }
+    }
+
+    @Override
+    public FnPlotValue<?> get(String id) throws FnPlotException {
+        int i = indexOf(id);
+        FnPlotValue<?> result = i >= 0 ? values[i] : null;
+        if (result == null && dictionary != null) {
+            result = dictionary.get(id);
+        }
+        if (result != null) {
+            return result;
+        } else if (parent == null) {
+            throw new FnPlotException("Unbound variable " + id);
+        } else {
+            return parent.get(id);
+        }
+    }
+
+    private int indexOf(String id) {
+        // later slots shadow earlier ones of the same name
+        for (int i = names.length - 1; i >= 0; i--) {
+            if (names[i].equals(id)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (String name : names) {
+            result.append(name);
+        }
+        return result.toString();
+    }
+}
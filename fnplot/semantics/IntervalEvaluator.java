@@ -0,0 +1,41 @@
+package fnplot.semantics;
+
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpPromote;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotInterval;
+import fnplot.values.FnPlotValue;
+
+/**
+ * An evaluator that bounds the values of an expression over a range of its
+ * variables.  When a variable is bound to a {@link FnPlotInterval}, every
+ * value computed from it is an interval too, guaranteed to contain the value
+ * the expression would have for any choice of the variable within its
+ * interval.  Values that do not depend on it are evaluated as usual.
+ *
+ * The enclosures may be wider than the true ranges of the values, since each
+ * occurrence of a variable is treated as independent of the others (so
+ * <code>x - x</code> over [0, 1] is enclosed by [-1, 1]); they narrow as the
+ * intervals do.
+ */
+public class IntervalEvaluator extends Evaluator {
+
+    @Override
+    protected FnPlotValue<?> arithmetic(Exp exp, ArithSite site, FnPlotValue<?> val1,
+            FnPlotValue<?> val2) throws FnPlotException {
+        if (val1 instanceof FnPlotInterval || val2 instanceof FnPlotInterval) {
+            return site.getOp().apply(FnPlotInterval.lift(val1), val2);
+        }
+        return super.arithmetic(exp, site, val1, val2);
+    }
+
+    @Override
+    public FnPlotValue<?> visitExpPromote(ExpPromote exp, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        FnPlotValue<?> val = exp.getExp().visit(this, env);
+        if (val instanceof FnPlotInterval) {
+            return val;
+        }
+        return FnPlotValue.make(val.doubleValue());
+    }
+}
@@ -0,0 +1,137 @@
+package fnplot.semantics;
+
+import fnplot.syntax.Exp;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotFunction;
+import fnplot.values.FnPlotInterval;
+import java.util.ArrayList;
+
+/**
+ * Chooses where to sample a function of one variable for plotting, guided by
+ * {@link IntervalEvaluator enclosures} of its values over ranges of its
+ * argument.  The range to be plotted is bisected until the enclosure of each
+ * part either lies entirely outside the visible range of output values, in
+ * which case the part is discarded, or is no taller than a given tolerance,
+ * in which case the function is sampled just at the ends of the part.  Parts
+ * are not bisected below a given width, so where the function varies quickly
+ * it is sampled at about that spacing.
+ *
+ * Since the enclosures are guaranteed, no part of the graph within the
+ * visible range is ever discarded.
+ */
+public class IntervalSampler {
+
+    private final Exp body;
+    private final FnPlotFunction f;
+    private final IntervalEvaluator evaluator;
+    private final double ylo;
+    private final double yhi;
+    private final double minWidth;
+    private final double tolerance;
+
+    // the runs collected so far, and the one being extended
+    private ArrayList<double[]> runs;
+    private double[] run;
+    private int runLength;
+
+    /**
+     * Create a new sampler.
+     * @param f The function to be sampled, of one variable
+     * @param ylo The lowest visible output value
+     * @param yhi The highest visible output value
+     * @param minWidth The narrowest range of the argument to be bisected
+     * @param tolerance The height of an enclosure below which the function is
+     * not sampled within its range
+     */
+    public IntervalSampler(FnPlotFunction f, double ylo, double yhi, double minWidth,
+            double tolerance) {
+        this.f = f;
+        this.body = f.getFunExp().getBody();
+        this.evaluator = new IntervalEvaluator();
+        this.ylo = ylo;
+        this.yhi = yhi;
+        this.minWidth = minWidth;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Compute an enclosure of the values of the function over a range of its
+     * argument.
+     * @param lo The lower bound of the range
+     * @param hi The upper bound of the range
+     * @return An interval containing the value of the function at every point
+     * from <code>lo</code> to <code>hi</code>.
+     * @throws FnPlotException if an error arises while evaluating the
+     * function, or if it is not numeric.
+     */
+    public FnPlotInterval enclose(double lo, double hi) throws FnPlotException {
+        Frame frame = Invoker.frame(f);
+        frame.set(0, new FnPlotInterval(lo, hi));
+        return FnPlotInterval.lift(body.visit(evaluator, frame));
+    }
+
+    /**
+     * Choose the points at which to sample the function over the given range.
+     * @param lo The lower bound of the range
+     * @param hi The upper bound of the range
+     * @return The sample points, in increasing order, split into runs that
+     * are separated by discarded parts of the range.  Each run holds at least
+     * two points, and should be drawn as a separate path.
+     * @throws FnPlotException if an error arises while evaluating the
+     * function, or if it is not numeric.
+     */
+    public ArrayList<double[]> sample(double lo, double hi) throws FnPlotException {
+        runs = new ArrayList<>();
+        run = new double[16];
+        runLength = 0;
+        subdivide(lo, hi);
+        endRun();
+        ArrayList<double[]> result = runs;
+        runs = null;
+        run = null;
+        return result;
+    }
+
+    private void subdivide(double lo, double hi) throws FnPlotException {
+        FnPlotInterval y = enclose(lo, hi);
+        if (y.isEmpty() || y.getHi() < ylo || y.getLo() > yhi) {
+            endRun();   // nothing to see here
+        } else if (y.width() <= tolerance || hi - lo <= minWidth) {
+            emit(lo, hi);
+        } else {
+            double mid = lo + (hi - lo) / 2;
+            subdivide(lo, mid);
+            subdivide(mid, hi);
+        }
+    }
+
+    /*
+     * Add a part of the range to the current run, starting a new one unless
+     * the part adjoins the last.
+     */
+    private void emit(double lo, double hi) {
+        if (runLength == 0 || run[runLength - 1] != lo) {
+            endRun();
+            append(lo);
+        }
+        append(hi);
+    }
+
+    private void append(double x) {
+        if (runLength == run.length) {
+            double[] bigger = new double[2 * run.length];
+            System.arraycopy(run, 0, bigger, 0, runLength);
+            run = bigger;
+        }
+        run[runLength++] = x;
+    }
+
+    private void endRun() {
+        if (runLength > 0) {
+            double[] xs = new double[runLength];
+            System.arraycopy(run, 0, xs, 0, runLength);
+            runs.add(xs);
+            runLength = 0;
+        }
+    }
+}
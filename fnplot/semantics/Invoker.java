@@ -0,0 +1,183 @@
+package fnplot.semantics;
+
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpFuncall;
+import fnplot.syntax.ExpFunction;
+import fnplot.sys.FnPlotException;
+import fnplot.sys.RuntimeFnPlotException;
+import fnplot.values.FnPlotFunction;
+import fnplot.values.FnPlotValue;
+import java.util.ArrayList;
+
+/**
+ * The calling convention for user-defined functions.  A call creates a
+ * {@link Frame} for the callee, laid out by the resolver, and evaluates each
+ * argument straight into its parameter's slot, so that no intermediate array
+ * or hash table is built.  There is an invoker specialized for each number of
+ * arguments up to {@link #MAX_SPECIALIZED}, with the argument evaluations
+ * unrolled, and a general one for calls with more arguments.  Calls of
+ * functions whose calls are memoized go through the memo table instead.
+ */
+abstract class Invoker {
+
+    /** The largest number of arguments with its own invoker. */
+    static final int MAX_SPECIALIZED = 4;
+
+    private static final Invoker[] SPECIALIZED = {
+        new Invoker() {
+            @Override
+            FnPlotValue<?> invoke(Evaluator ev, FnPlotFunction f, ArrayList<Exp> args,
+                    Environment<FnPlotValue<?>> env) throws FnPlotException {
+                return f.getFunExp().getBody().visit(ev, frame(f));
+            }
+        },
+        new Invoker() {
+            @Override
+            FnPlotValue<?> invoke(Evaluator ev, FnPlotFunction f, ArrayList<Exp> args,
+                    Environment<FnPlotValue<?>> env) throws FnPlotException {
+                Frame frame = frame(f);
+                frame.set(0, args.get(0).visit(ev, env));
+                return f.getFunExp().getBody().visit(ev, frame);
+            }
+        },
+        new Invoker() {
+            @Override
+            FnPlotValue<?> invoke(Evaluator ev, FnPlotFunction f, ArrayList<Exp> args,
+                    Environment<FnPlotValue<?>> env) throws FnPlotException {
+                Frame frame = frame(f);
+                frame.set(0, args.get(0).visit(ev, env));
+                frame.set(1, args.get(1).visit(ev, env));
+                return f.getFunExp().getBody().visit(ev, frame);
+            }
+        },
+        new Invoker() {
+            @Override
+            FnPlotValue<?> invoke(Evaluator ev, FnPlotFunction f, ArrayList<Exp> args,
+                    Environment<FnPlotValue<?>> env) throws FnPlotException {
+                Frame frame = frame(f);
+                frame.set(0, args.get(0).visit(ev, env));
+                frame.set(1, args.get(1).visit(ev, env));
+                frame.set(2, args.get(2).visit(ev, env));
+                return f.getFunExp().getBody().visit(ev, frame);
+            }
+        },
+        new Invoker() {
+            @Override
+            FnPlotValue<?> invoke(Evaluator ev, FnPlotFunction f, ArrayList<Exp> args,
+                    Environment<FnPlotValue<?>> env) throws FnPlotException {
+                Frame frame = frame(f);
+                frame.set(0, args.get(0).visit(ev, env));
+                frame.set(1, args.get(1).visit(ev, env));
+                frame.set(2, args.get(2).visit(ev, env));
+                frame.set(3, args.get(3).visit(ev, env));
+                return f.getFunExp().getBody().visit(ev, frame);
+            }
+        }
+    };
+
+    private static final Invoker GENERAL = new Invoker() {
+        @Override
+        FnPlotValue<?> invoke(Evaluator ev, FnPlotFunction f, ArrayList<Exp> args,
+                Environment<FnPlotValue<?>> env) throws FnPlotException {
+            Frame frame = frame(f);
+            int n = args.size();
+            for (int i = 0; i < n; i++) {
+                frame.set(i, args.get(i).visit(ev, env));
+            }
+            return f.getFunExp().getBody().visit(ev, frame);
+        }
+    };
+
+    /*
+     * Calls of a memoized function evaluate the arguments into an array first,
+     * to look them up in the function's memo table.
+     */
+    private static final Invoker MEMOIZED = new Invoker() {
+        @Override
+        FnPlotValue<?> invoke(Evaluator ev, FnPlotFunction f, ArrayList<Exp> args,
+                Environment<FnPlotValue<?>> env) throws FnPlotException {
+            int n = args.size();
+            FnPlotValue<?>[] vals = new FnPlotValue<?>[n];
+            for (int i = 0; i < n; i++) {
+                vals[i] = args.get(i).visit(ev, env);
+            }
+            FnPlotValue<?> result = f.recall(vals);
+            if (result == null) {
+                Frame frame = frame(f);
+                for (int i = 0; i < n; i++) {
+                    frame.set(i, vals[i]);
+                }
+                result = f.getFunExp().getBody().visit(ev, frame);
+                f.remember(vals, result);
+            }
+            return result;
+        }
+    };
+
+    /**
+     * Apply a function to the values of the given arguments.
+     * @param ev The evaluator of the arguments and of the function's body
+     * @param f The function
+     * @param args The argument expressions, as many as <code>f</code> has
+     * parameters
+     * @param env The environment in which to evaluate the arguments
+     * @return The value of the function's body.
+     * @throws FnPlotException if an error arises while evaluating the
+     * arguments or the body.
+     */
+    abstract FnPlotValue<?> invoke(Evaluator ev, FnPlotFunction f, ArrayList<Exp> args,
+            Environment<FnPlotValue<?>> env) throws FnPlotException;
+
+    /**
+     * Choose the invoker for a call.
+     * @param call The call
+     * @param f The function it calls
+     * @return The invoker for the number of arguments of the call, or the one
+     * that consults the memo table if <code>f</code> is memoized.
+     * @throws FnPlotException if the call does not give the function as many
+     * arguments as it has parameters.
+     */
+    static Invoker forCall(ExpFuncall call, FnPlotFunction f) throws FnPlotException {
+        int n = checkArity(call, f);
+        if (f.isMemoized()) {
+            return MEMOIZED;
+        }
+        return n <= MAX_SPECIALIZED ? SPECIALIZED[n] : GENERAL;
+    }
+
+    /**
+     * Check that a call gives a function as many arguments as it has
+     * parameters.
+     * @param call The call
+     * @param f The function it calls
+     * @return The number of arguments.
+     * @throws FnPlotException if the numbers differ.
+     */
+    static int checkArity(ExpFuncall call, FnPlotFunction f) throws FnPlotException {
+        int n = call.getArguments().size();
+        int expected = f.getFunExp().getParameters().size();
+        if (n != expected) {
+            throw new RuntimeFnPlotException(String.format(
+                    "%s expects %d arguments, but was given %d", call.getName(),
+                    expected, n));
+        }
+        return n;
+    }
+
+    /**
+     * Create the frame for a call of a function, with its parameters
+     * unassigned.  Its parameters occupy its first slots.
+     * @param f The function being called
+     * @return A new frame whose parent is the environment the function closes
+     * over.
+     */
+    static Frame frame(FnPlotFunction f) {
+        ExpFunction fun = f.getFunExp();
+        String[] layout = fun.getFrameVars();
+        if (layout == null) {
+            // not resolved, so the frame holds just the parameters
+            layout = fun.getParameters().toArray(new String[0]);
+        }
+        return new Frame(layout, f.getClosingEnv());
+    }
+}
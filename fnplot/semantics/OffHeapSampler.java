@@ -0,0 +1,70 @@
+package fnplot.semantics;
+
+import fnplot.sys.FnPlotException;
+
+/**
+ * Samples a curve into a {@link SampleStore}, off the Java heap, and draws
+ * the store as a single path.  The plotter's sample points are fetched and
+ * evaluated {@link SampleChunks#PLOT_CHUNK} at a time, and added to the
+ * store.  A store that is not kept in its curve is closed once drawn.
+ */
+class OffHeapSampler implements CurveSampler {
+
+    private final BatchSampler points;
+
+    OffHeapSampler(BatchSampler points) {
+        this.points = points;
+    }
+
+    @Override
+    public void trace(DependencyGraph.Curve curve, Plotter plotter) throws FnPlotException {
+        curve.release();
+        curve.store = store(curve, plotter);
+    }
+
+    @Override
+    public void draw(DependencyGraph.Curve curve, Plotter plotter, boolean keep)
+            throws FnPlotException {
+        SampleStore store = store(curve, plotter);
+        boolean kept = false;
+        try {
+            if (store.length() > 0) {
+                plotter.plot(store);
+            }
+            kept = keep;
+        } finally {
+            if (kept) {
+                curve.store = store;
+            } else {
+                store.close();
+            }
+        }
+    }
+
+    /*
+     * Sample a curve a chunk at a time into an off-heap store, which the
+     * caller must close.
+     */
+    private SampleStore store(DependencyGraph.Curve curve, Plotter plotter)
+            throws FnPlotException {
+        SampleChunks chunks = new SampleChunks(points, plotter, curve.f, curve.low, curve.hi);
+        int size = SampleChunks.PLOT_CHUNK;
+        double[] xs = new double[size];
+        double[] ys = new double[size];
+        SampleStore store = new SampleStore(size);
+        boolean done = false;
+        try {
+            int n;
+            do {
+                n = chunks.next(xs, ys, 0);
+                store.append(xs, ys, 0, n);
+            } while (n == size);
+            done = true;
+            return store;
+        } finally {
+            if (!done) {
+                store.close();
+            }
+        }
+    }
+}
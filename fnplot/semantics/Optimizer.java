@@ -0,0 +1,405 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ASTNode;
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpExpo;
+import fnplot.syntax.ExpFuncall;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPromote;
+import fnplot.syntax.ExpSub;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.Statement;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtFor;
+import fnplot.syntax.StmtFun;
+import fnplot.syntax.StmtLet;
+import fnplot.syntax.StmtPlot;
+import fnplot.syntax.StmtSequence;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotInt;
+import fnplot.values.FnPlotValue;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A pass that rewrites a program into a smaller program with the same
+ * meaning, before it is evaluated.  It
+ * <ul>
+ * <li>folds arithmetic on literals into a single literal;</li>
+ * <li>removes arithmetic with an integer identity, such as <code>e * 1</code>,
+ * <code>e + 0</code> and <code>e ^ 1</code>, where <code>e</code> is known
+ * to be a number;</li>
+ * <li>substitutes the values of variables bound to literals, where the
+ * binding can never change: <code>let</code> bindings that no definition in
+ * the body of the <code>let</code> may replace, and global definitions at the
+ * top level, up to the next definition of the same variable.</li>
+ * </ul>
+ * Global constants are not substituted into function bodies, since a
+ * function may be called after the global has been redefined.  Nor is a
+ * variable that the body of a loop defines known anywhere within the loop or
+ * after it, since the definition may be repeated.  A
+ * <code>let</code> whose bindings have all been substituted is replaced by
+ * its body, unless the body contains definitions that bind in its frame.
+ *
+ * Finally, arithmetic repeated within a function body is computed only once
+ * per call, by a {@link SubexpressionEliminator}.
+ *
+ * <code>0 * e</code> is only simplified when <code>e</code> is a literal:
+ * when <code>e</code> is real the product is a real, and may be NaN.  An
+ * identity is only removed when <code>e</code> is a literal or arithmetic,
+ * since <code>f + 0</code> is an error when <code>f</code> is a function,
+ * which <code>f</code> alone is not.
+ *
+ * The input program is left unchanged; the output shares no nodes with it.
+ */
+public class Optimizer implements Visitor<Optimizer.Scope, ASTNode> {
+
+    /**
+     * The variables bound by a <code>let</code> or function, mapped to the
+     * literals they are known to hold, or to <code>null</code> if their
+     * values are not known.  The global scope is represented by
+     * <code>null</code>.
+     */
+    static class Scope {
+
+        final HashMap<String, ExpLit> constants = new HashMap<>();
+        final Scope parent;
+        final boolean function;
+
+        Scope(Scope parent, boolean function) {
+            this.parent = parent;
+            this.function = function;
+        }
+
+        /*
+         * Mark the variables defined within the given body as unknown, since
+         * a definition may change their values.
+         */
+        void redefinable(ArrayList<String> defined) {
+            for (String var : defined) {
+                constants.put(var, null);
+            }
+        }
+    }
+
+    /* constants defined at the top level of the program being optimized */
+    private final HashMap<String, ExpLit> globals = new HashMap<>();
+
+    /* where to print programs before and after optimization, if anywhere */
+    private PrintStream dump;
+
+    /**
+     * @return The stream to which programs are printed before and after
+     * optimization, or <code>null</code> if they are not printed.
+     */
+    public PrintStream getDump() {
+        return dump;
+    }
+
+    /**
+     * Set whether to print programs before and after optimization.
+     * @param dump The stream on which to print them, or <code>null</code> to
+     * not print them
+     */
+    public void setDump(PrintStream dump) {
+        this.dump = dump;
+    }
+
+    /**
+     * Optimize a program.
+     * @param p The program to be optimized
+     * @return A new program equivalent to <code>p</code>.
+     * @throws FnPlotException if the program contains a node that cannot be
+     * optimized.
+     */
+    public ArithProgram optimize(ArithProgram p) throws FnPlotException {
+        // each program gets a pass of its own, so that an optimizer may be
+        // shared by evaluations on several threads
+        ArithProgram result = (ArithProgram) p.visit(new Optimizer(), null);
+        new SubexpressionEliminator().eliminate(result);
+        if (dump != null) {
+            dump.println("Before optimization:");
+            dump.print(p);
+            dump.println("After optimization:");
+            dump.print(result);
+        }
+        return result;
+    }
+
+    private static ArrayList<String> definitions(Exp body) throws FnPlotException {
+        ArrayList<String> defined = new ArrayList<>();
+        new Resolver.DefinitionCollector().collect(body, defined);
+        return defined;
+    }
+
+    /*
+     * Find the literal a variable is known to hold at this point, if any.
+     */
+    private ExpLit constant(String var, Scope scope) {
+        boolean deferred = false;
+        for (Scope s = scope; s != null; s = s.parent) {
+            if (s.constants.containsKey(var)) {
+                return s.constants.get(var);
+            }
+            deferred = deferred || s.function;
+        }
+        return free(var, deferred);
+    }
+
+    /**
+     * Find the literal a variable that is not bound by any enclosing
+     * <code>let</code> or function is known to hold.
+     * @param var The name of the variable
+     * @param deferred <code>true</code> if the reference is within a function
+     * body, and so may be evaluated after the variable is redefined
+     * @return The literal, or <code>null</code> if the value of the variable
+     * is not known.
+     */
+    ExpLit free(String var, boolean deferred) {
+        return deferred ? null : globals.get(var);
+    }
+
+    private static boolean isInt(Exp e, int v) {
+        if (e instanceof ExpLit) {
+            FnPlotValue<?> val = ((ExpLit) e).getVal();
+            return val instanceof FnPlotInt && ((FnPlotInt) val).intValue() == v;
+        }
+        return false;
+    }
+
+    /*
+     * Whether an expression is sure to be a number if it has a value at all,
+     * without knowing the values of any variables.
+     */
+    private static boolean isNumeric(Exp e) {
+        return e instanceof ExpLit || e instanceof ExpAdd || e instanceof ExpSub
+                || e instanceof ExpMul || e instanceof ExpDiv || e instanceof ExpMod
+                || e instanceof ExpExpo || e instanceof ExpPromote;
+    }
+
+    static Exp make(ArithSite.Op op, Exp l, Exp r) {
+        switch (op) {
+            case ADD: return new ExpAdd(l, r);
+            case SUB: return new ExpSub(l, r);
+            case MUL: return new ExpMul(l, r);
+            case DIV: return new ExpDiv(l, r);
+            case MOD: return new ExpMod(l, r);
+            default: return new ExpExpo(l, r);
+        }
+    }
+
+    private Exp arithmetic(ArithSite.Op op, Exp left, Exp right, Scope scope)
+            throws FnPlotException {
+        Exp l = (Exp) left.visit(this, scope);
+        Exp r = (Exp) right.visit(this, scope);
+        if (l instanceof ExpLit && r instanceof ExpLit) {
+            try {
+                return new ExpLit(op.apply(((ExpLit) l).getVal(), ((ExpLit) r).getVal()));
+            } catch (ArithmeticException | FnPlotException e) {
+                // leave the error to be reported when the program runs
+                return make(op, l, r);
+            }
+        }
+        switch (op) {
+            case ADD:
+                if (isInt(r, 0) && isNumeric(l)) {
+                    return l;
+                } else if (isInt(l, 0) && isNumeric(r)) {
+                    return r;
+                }
+                break;
+            case SUB:
+                if (isInt(r, 0) && isNumeric(l)) {
+                    return l;
+                }
+                break;
+            case MUL:
+                if (isInt(r, 1) && isNumeric(l)) {
+                    return l;
+                } else if (isInt(l, 1) && isNumeric(r)) {
+                    return r;
+                }
+                break;
+            case DIV:
+                if (isInt(r, 1) && isNumeric(l)) {
+                    return l;
+                }
+                break;
+            case EXPO:
+                if (isInt(r, 1) && isNumeric(l)) {
+                    return l;
+                }
+                break;
+            default:
+                break;
+        }
+        return make(op, l, r);
+    }
+
+    @Override
+    public ASTNode visitArithProgram(ArithProgram p, Scope scope) throws FnPlotException {
+        return new ArithProgram((StmtSequence) p.getSeq().visit(this, scope));
+    }
+
+    @Override
+    public ASTNode visitStmtSequence(StmtSequence sseq, Scope scope) throws FnPlotException {
+        StmtSequence result = new StmtSequence();
+        for (Statement s : sseq.getSeq()) {
+            result.add((Statement) s.visit(this, scope));
+        }
+        return result;
+    }
+
+    @Override
+    public ASTNode visitStmtDefinition(StmtDefinition sd, Scope scope) throws FnPlotException {
+        Exp e = (Exp) sd.getExp().visit(this, scope);
+        if (scope == null) {
+            // a global definition holds until the next one of the same name
+            if (e instanceof ExpLit) {
+                globals.put(sd.getVar(), (ExpLit) e);
+            } else {
+                globals.remove(sd.getVar());
+            }
+        }
+        return new StmtDefinition(sd.getVar(), e);
+    }
+
+    @Override
+    public ASTNode visitFnDefn(ExpFunction fn, Scope scope) throws FnPlotException {
+        Scope inner = new Scope(scope, true);
+        for (String param : fn.getParameters()) {
+            inner.constants.put(param, null);
+        }
+        inner.redefinable(definitions(fn.getBody()));
+        return new ExpFunction(new ArrayList<>(fn.getParameters()),
+                (Exp) fn.getBody().visit(this, inner));
+    }
+
+    @Override
+    public ASTNode visitStmtFun(StmtFun fun, Scope scope) throws FnPlotException {
+        Scope inner = new Scope(scope, false);
+        ArrayList<Binding> bindings = new ArrayList<>();
+        for (Binding b : fun.getBindings()) {
+            bindings.add(new Binding(b.getVar(), (Exp) b.getValExp().visit(this, scope)));
+            inner.constants.put(b.getVar(), null);
+        }
+        inner.redefinable(definitions(fun.getBody()));
+        return new StmtFun(bindings, (Exp) fun.getBody().visit(this, inner));
+    }
+
+    @Override
+    public ASTNode visitStmtLet(StmtLet let, Scope scope) throws FnPlotException {
+        ArrayList<String> defined = definitions(let.getBody());
+        Scope inner = new Scope(scope, false);
+        ArrayList<Binding> bindings = new ArrayList<>();
+        for (Binding b : let.getBindings()) {
+            Exp e = (Exp) b.getValExp().visit(this, scope);
+            if (e instanceof ExpLit && !defined.contains(b.getVar())) {
+                // substituted into the body, so the binding is not needed
+                inner.constants.put(b.getVar(), (ExpLit) e);
+            } else {
+                bindings.add(new Binding(b.getVar(), e));
+                inner.constants.put(b.getVar(), null);
+            }
+        }
+        inner.redefinable(defined);
+        Exp body = (Exp) let.getBody().visit(this, inner);
+        if (bindings.isEmpty() && defined.isEmpty()) {
+            return body;
+        }
+        return new StmtLet(bindings, body);
+    }
+
+    @Override
+    public ASTNode visitStmtFor(StmtFor loop, Scope scope) throws FnPlotException {
+        // the bounds are evaluated once, before the body
+        Exp lower = (Exp) loop.getLower().visit(this, scope);
+        Exp upper = (Exp) loop.getUpper().visit(this, scope);
+        Exp step = (Exp) loop.getStep().visit(this, scope);
+        ArrayList<String> defined = definitions(loop.getBody());
+        Scope inner = new Scope(scope, false);
+        inner.constants.put(loop.getVar(), null);
+        inner.redefinable(defined);
+        Exp body = (Exp) loop.getBody().visit(this, inner);
+        if (scope == null) {
+            for (String var : defined) {
+                globals.remove(var);
+            }
+        }
+        return new StmtFor(loop.getVar(), lower, upper, step, body);
+    }
+
+    @Override
+    public ASTNode visitStmtPlot(StmtPlot plot, Scope scope) throws FnPlotException {
+        ExpFunction fn = (ExpFunction) plot.getFunction().visit(this, scope);
+        return new StmtPlot(fn, (Exp) plot.getLower().visit(this, scope),
+                (Exp) plot.getUpper().visit(this, scope), plot.getStyle());
+    }
+
+    @Override
+    public ASTNode visitExpAdd(ExpAdd exp, Scope scope) throws FnPlotException {
+        return arithmetic(ArithSite.Op.ADD, exp.getExpL(), exp.getExpR(), scope);
+    }
+
+    @Override
+    public ASTNode visitExpSub(ExpSub exp, Scope scope) throws FnPlotException {
+        return arithmetic(ArithSite.Op.SUB, exp.getExpL(), exp.getExpR(), scope);
+    }
+
+    @Override
+    public ASTNode visitExpMul(ExpMul exp, Scope scope) throws FnPlotException {
+        return arithmetic(ArithSite.Op.MUL, exp.getExpL(), exp.getExpR(), scope);
+    }
+
+    @Override
+    public ASTNode visitExpDiv(ExpDiv exp, Scope scope) throws FnPlotException {
+        return arithmetic(ArithSite.Op.DIV, exp.getExpL(), exp.getExpR(), scope);
+    }
+
+    @Override
+    public ASTNode visitExpMod(ExpMod exp, Scope scope) throws FnPlotException {
+        return arithmetic(ArithSite.Op.MOD, exp.getExpL(), exp.getExpR(), scope);
+    }
+
+    @Override
+    public ASTNode visitExpExpo(ExpExpo exp, Scope scope) throws FnPlotException {
+        return arithmetic(ArithSite.Op.EXPO, exp.getExpL(), exp.getExpR(), scope);
+    }
+
+    @Override
+    public ASTNode visitExpFuncall(ExpFuncall exp, Scope scope) throws FnPlotException {
+        ArrayList<Exp> args = new ArrayList<>();
+        for (Exp arg : exp.getArguments()) {
+            args.add((Exp) arg.visit(this, scope));
+        }
+        return new ExpFuncall(exp.getName(), args);
+    }
+
+    @Override
+    public ASTNode visitExpLit(ExpLit exp, Scope scope) {
+        return new ExpLit(exp.getVal());
+    }
+
+    @Override
+    public ASTNode visitExpVar(ExpVar exp, Scope scope) {
+        ExpLit c = constant(exp.getVar(), scope);
+        if (c != null) {
+            return new ExpLit(c.getVal());
+        }
+        return new ExpVar(exp.getVar());
+    }
+
+    @Override
+    public ASTNode visitExpPromote(ExpPromote exp, Scope scope) throws FnPlotException {
+        // promotions are inserted again by type inference
+        return exp.getExp().visit(this, scope);
+    }
+}
@@ -0,0 +1,70 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpLit;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotFunction;
+import fnplot.values.FnPlotInt;
+import fnplot.values.FnPlotReal;
+import fnplot.values.FnPlotValue;
+
+/**
+ * Specializes a function to the current values of the variables it closes
+ * over.  The numbers bound to its free variables (by definitions or
+ * <code>let</code>s around it) are substituted into its body as literals,
+ * and the body is then {@link Optimizer optimized}, so that everything that
+ * does not depend on the function's parameters is computed once, here,
+ * rather than on every call.  For example, with <code>a</code> bound to 2
+ * and <code>b</code> to 3, <code>fun(x) mapsto a * b * x + b ^ 2</code>
+ * specializes to <code>fun(x) mapsto 6 * x + 9</code>.
+ *
+ * The residual function is resolved and typed against the same closing
+ * environment as the original.  It is only equivalent to the original while
+ * the variables it closes over keep their values, so it should not outlive
+ * the plot (or other batch of calls) it was made for.
+ */
+public class PartialEvaluator extends Optimizer {
+
+    private final Environment<FnPlotValue<?>> closingEnv;
+
+    private PartialEvaluator(Environment<FnPlotValue<?>> closingEnv) {
+        this.closingEnv = closingEnv;
+    }
+
+    /**
+     * Specialize a function to the current values of its free variables.
+     * @param f The function
+     * @return A function equivalent to <code>f</code> while its free
+     * variables keep their current values, with everything that does not
+     * depend on its parameters precomputed.
+     * @throws FnPlotException if the body of <code>f</code> contains a node
+     * that cannot be optimized.
+     */
+    public static FnPlotFunction specialize(FnPlotFunction f) throws FnPlotException {
+        Environment<FnPlotValue<?>> env = f.getClosingEnv();
+        ExpFunction residual = (ExpFunction) f.getFunExp().visit(new PartialEvaluator(env), null);
+        new Resolver().resolve(residual, env);
+        TypeInferencer.infer(residual, env);
+        return new FnPlotFunction(residual, env);
+    }
+
+    /**
+     * Look up a free variable of the function being specialized in its
+     * closing environment.  Only integers and reals become literals;
+     * anything else, including a variable that is not bound, is left to be
+     * looked up when the function is called.
+     */
+    @Override
+    ExpLit free(String var, boolean deferred) {
+        FnPlotValue<?> val;
+        try {
+            val = closingEnv.get(var);
+        } catch (FnPlotException e) {
+            return null;
+        }
+        if (val instanceof FnPlotInt || val instanceof FnPlotReal) {
+            return new ExpLit(val);
+        }
+        return null;
+    }
+}
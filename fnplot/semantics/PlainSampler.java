@@ -0,0 +1,41 @@
+package fnplot.semantics;
+
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotFunction;
+import java.util.ArrayList;
+
+/**
+ * Samples a curve at all of the plotter's own sample points for its
+ * interval, computing them at once, as a single path.
+ */
+class PlainSampler implements CurveSampler {
+
+    private final BatchSampler points;
+
+    PlainSampler(BatchSampler points) {
+        this.points = points;
+    }
+
+    @Override
+    public void trace(DependencyGraph.Curve curve, Plotter plotter) throws FnPlotException {
+        curve.paths = paths(curve.f, curve.low, curve.hi, plotter);
+    }
+
+    /**
+     * Sample a function at the plotter's sample points for an interval.
+     * @param f The function
+     * @param low The lower bound of the interval
+     * @param hi The upper bound of the interval
+     * @param plotter The plotter that chooses the sample points
+     * @return The path through the points sampled.
+     * @throws FnPlotException if an error arises while evaluating
+     * <code>f</code>.
+     */
+    ArrayList<PointBuffer> paths(FnPlotFunction f, double low, double hi, Plotter plotter)
+            throws FnPlotException {
+        double[] xs = plotter.sample(low, hi);
+        ArrayList<PointBuffer> paths = new ArrayList<>();
+        paths.add(new PointBuffer(xs, points.sample(f, xs)));
+        return paths;
+    }
+}
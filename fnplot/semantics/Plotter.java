@@ -29,14 +29,87 @@ import java.awt.geom.Point2D;
  * plotted.  The idea is that the interpretor should first call the sample method
  * to obtain a set of input points, compute the function's outputs for those inputs
  * and then call the plot method of the plotter on the collection of pairs of
- * points generated in that way.
+ * points generated in that way, usually as a {@link PointBuffer}.  A long
+ * curve may instead be sampled and plotted a piece at a time, each piece a
+ * path that starts where the last one ended.
  * @author newts
  */
 public interface Plotter {
     
     public double[] sample(double low, double hi);
+
+    /**
+     * Fill a buffer with a run of the sample points that
+     * {@link #sample(double, double)} would choose for the same interval,
+     * so that a curve can be sampled and plotted a piece at a time.  This
+     * default computes the whole sample and copies the run from it; a
+     * plotter that can compute its sample points individually should
+     * override it, so that the whole sample is never held at once.
+     * @param low The lower bound of the interval
+     * @param hi The upper bound of the interval
+     * @param from The index within the whole sample of the first point wanted
+     * @param xs The buffer to receive the points
+     * @return The number of points placed in <code>xs</code>, which is less
+     * than its length only if the sample has run out.
+     */
+    public default int sample(double low, double hi, int from, double[] xs) {
+        double[] all = sample(low, hi);
+        if (from >= all.length) {
+            return 0;
+        }
+        int n = Math.min(xs.length, all.length - from);
+        System.arraycopy(all, from, xs, 0, n);
+        return n;
+    }
     
     public void plot(Point2D[] points);
+
+    /**
+     * Plot a path through the points in a buffer.  The interpreter plots
+     * its samples this way, straight from the arrays it computed them in,
+     * and may reuse the buffer once this returns, so a plotter must copy any
+     * points it keeps.  This default makes an object of each point and
+     * passes them to {@link #plot(Point2D[])}; a plotter should override it
+     * to read the coordinates directly.
+     * @param points The points of the path, in order
+     */
+    public default void plot(PointBuffer points) {
+        plot(points.toPoints());
+    }
+
+    /**
+     * Plot a path through the points in a {@link SampleStore}, which the
+     * interpreter closes once this returns.  This default plots it a piece
+     * at a time, as buffers of at most {@link SampleStore#MIN_CAPACITY}
+     * points, each starting at the last point of the one before, so that
+     * the whole path is never copied onto the heap at once.  A plotter that
+     * can read the coordinates directly should override it.
+     * @param points The points of the path, in order
+     */
+    public default void plot(SampleStore points) {
+        int piece = SampleStore.MIN_CAPACITY;
+        double[] xs = new double[piece + 1];
+        double[] ys = new double[piece + 1];
+        int start = 0;
+        for (int from = 0; from < points.length(); from += piece) {
+            int n = Math.min(piece, points.length() - from);
+            points.get(from, xs, ys, start, n);
+            plot(new PointBuffer(xs, ys, start + n));
+            // joins the next piece to this one
+            xs[0] = xs[start + n - 1];
+            ys[0] = ys[start + n - 1];
+            start = 1;
+        }
+    }
+    
+    /**
+     * @return The range of output values that is visible on this plotter, as
+     * an array holding its lower and upper bounds, or <code>null</code> if
+     * every output value is visible, as this default has it.
+     */
+    public default double[] getYRange() {
+        return null;
+    }
     
     public void clear();
     
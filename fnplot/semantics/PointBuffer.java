@@ -0,0 +1,130 @@
+package fnplot.semantics;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+
+/**
+ * A sequence of points, kept as a pair of arrays of their coordinates
+ * rather than as an object per point.  The first {@link #length} elements of
+ * the arrays are the points; the rest are spare room.  A buffer may be made
+ * around the arrays into which a function has just been sampled, so that the
+ * samples are plotted without being copied.
+ */
+public class PointBuffer {
+
+    private double[] xs;
+    private double[] ys;
+    private int length;
+
+    /**
+     * Create an empty buffer.
+     * @param capacity The number of points it has room for at first
+     */
+    public PointBuffer(int capacity) {
+        this.xs = new double[capacity];
+        this.ys = new double[capacity];
+    }
+
+    /**
+     * Create a buffer of the points with the given coordinates.  The arrays
+     * are not copied.
+     * @param xs The x coordinates of the points
+     * @param ys The y coordinates of the points, at least as many
+     */
+    public PointBuffer(double[] xs, double[] ys) {
+        this(xs, ys, xs.length);
+    }
+
+    /**
+     * Create a buffer of the first points with the given coordinates.  The
+     * arrays are not copied.
+     * @param xs The x coordinates of the points
+     * @param ys The y coordinates of the points
+     * @param length The number of points, no more than the length of either
+     * array
+     */
+    public PointBuffer(double[] xs, double[] ys, int length) {
+        this.xs = xs;
+        this.ys = ys;
+        this.length = length;
+    }
+
+    /**
+     * @return The number of points in this buffer.
+     */
+    public int length() {
+        return length;
+    }
+
+    public double getX(int i) {
+        return xs[i];
+    }
+
+    public double getY(int i) {
+        return ys[i];
+    }
+
+    /**
+     * @return The array holding the x coordinates of the points, in its
+     * first {@link #length} elements.  It is not a copy.
+     */
+    public double[] getXs() {
+        return xs;
+    }
+
+    /**
+     * @return The array holding the y coordinates of the points, in its
+     * first {@link #length} elements.  It is not a copy.
+     */
+    public double[] getYs() {
+        return ys;
+    }
+
+    /**
+     * Add a point to the end of this buffer, making room for it if there is
+     * none.
+     * @param x The x coordinate of the point
+     * @param y The y coordinate of the point
+     */
+    public void add(double x, double y) {
+        if (length == xs.length) {
+            int capacity = Math.max(2 * length, 16);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+        }
+        xs[length] = x;
+        ys[length] = y;
+        length++;
+    }
+
+    /**
+     * Remove every point from this buffer, keeping its room for them.
+     */
+    public void clear() {
+        length = 0;
+    }
+
+    /**
+     * @return The points in this buffer, as an object per point.
+     */
+    public Point2D[] toPoints() {
+        Point2D[] points = new Point2D[length];
+        for (int i = 0; i < length; i++) {
+            points[i] = new Point2D.Double(xs[i], ys[i]);
+        }
+        return points;
+    }
+
+    /**
+     * Create a buffer of a copy of the coordinates of the given points.
+     * @param points The points
+     * @return The new buffer.
+     */
+    public static PointBuffer of(Point2D[] points) {
+        PointBuffer buffer = new PointBuffer(points.length);
+        for (Point2D p : points) {
+            buffer.add(p.getX(), p.getY());
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,476 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ASTNode;
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpExpo;
+import fnplot.syntax.ExpFuncall;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPromote;
+import fnplot.syntax.ExpSub;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.Statement;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtFor;
+import fnplot.syntax.StmtFun;
+import fnplot.syntax.StmtLet;
+import fnplot.syntax.StmtPlot;
+import fnplot.syntax.StmtSequence;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotValue;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A pass over a program that gives every variable reference, function call
+ * and definition a lexical address: the number of frames to walk up from the
+ * current environment (depth), and the index of the binding within the frame
+ * reached (slot).  It also records, on each <code>let</code> and function
+ * expression, the layout of the {@link Frame} that the evaluator should
+ * create for it.
+ *
+ * Variables that are not bound by any enclosing <code>let</code> or function
+ * are global.  They are given the depth of the global environment but no
+ * slot, so they are still looked up by name, since the global environment
+ * grows as the program runs.
+ *
+ * Definitions within a scope are given slots in that scope's frame before
+ * its body is resolved, so that functions defined earlier in the body can
+ * refer to them.
+ *
+ * A <code>for</code> loop has a frame of its own, holding just its variable,
+ * which is reused for every iteration.  Other definitions within the body of
+ * a loop bind in the enclosing scope, so that their values outlast the
+ * iteration that makes them.
+ */
+public class Resolver implements Visitor<Resolver.Scope, Void> {
+
+    /**
+     * The compile-time counterpart of a frame: the names of its slots, in
+     * order.  The global scope is represented by <code>null</code>.
+     */
+    static class Scope {
+
+        final ArrayList<String> names;
+        final Scope parent;
+        final boolean loop;
+
+        Scope(ArrayList<String> names, Scope parent) {
+            this(names, parent, false);
+        }
+
+        Scope(ArrayList<String> names, Scope parent, boolean loop) {
+            this.names = names;
+            this.parent = parent;
+            this.loop = loop;
+        }
+
+        void declare(String var) {
+            if (!names.contains(var)) {
+                names.add(var);
+            }
+        }
+
+        String[] layout() {
+            return names.toArray(new String[names.size()]);
+        }
+    }
+
+    /**
+     * Resolve all the variable references in a program.
+     * @param p The program to be resolved; its nodes are updated in place
+     * @throws FnPlotException if the program contains a node that cannot be
+     * resolved.
+     */
+    public void resolve(ArithProgram p) throws FnPlotException {
+        p.visit(this, null);
+    }
+
+    /**
+     * Resolve a function expression that closes over an existing environment,
+     * such as the residual of a function built by a {@link PartialEvaluator}.
+     * Its free variables are given the addresses of their bindings in the
+     * frames of that environment.  If the environment holds bindings that
+     * were not laid out by the resolver, the function is left unresolved, so
+     * that its variables are looked up by name.
+     * @param fn The function; its nodes are updated in place
+     * @param env The environment it closes over
+     * @throws FnPlotException if the function contains a node that cannot be
+     * resolved.
+     */
+    public void resolve(ExpFunction fn, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        Scope scope = null;
+        ArrayList<Frame> frames = new ArrayList<>();
+        for (Environment<FnPlotValue<?>> e = env; e.parent != null; e = e.parent) {
+            if (!(e instanceof Frame)) {
+                return;
+            }
+            frames.add((Frame) e);
+        }
+        for (int i = frames.size() - 1; i >= 0; i--) {
+            scope = new Scope(new ArrayList<>(Arrays.asList(frames.get(i).names)), scope);
+        }
+        fn.visit(this, scope);
+    }
+
+    /*
+     * Create the scope for a let or function body, with the given initial
+     * names followed by the variables defined within the body itself.
+     */
+    private Scope enter(ArrayList<String> names, Exp body, Scope parent)
+            throws FnPlotException {
+        Scope scope = new Scope(names, parent);
+        ArrayList<String> defined = new ArrayList<>();
+        new DefinitionCollector().collect(body, defined);
+        for (String var : defined) {
+            scope.declare(var);
+        }
+        return scope;
+    }
+
+    @Override
+    public Void visitArithProgram(ArithProgram p, Scope scope) throws FnPlotException {
+        return p.getSeq().visit(this, scope);
+    }
+
+    @Override
+    public Void visitStmtSequence(StmtSequence sseq, Scope scope) throws FnPlotException {
+        for (Statement s : sseq.getSeq()) {
+            s.visit(this, scope);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitStmtDefinition(StmtDefinition sd, Scope scope) throws FnPlotException {
+        sd.getExp().visit(this, scope);
+        // the frame of a loop only receives definitions of its variable
+        String var = sd.getVar();
+        int depth = 0;
+        Scope target = scope;
+        while (target != null && target.loop && !target.names.contains(var)) {
+            target = target.parent;
+            depth++;
+        }
+        if (target == null) {
+            sd.setAddress(depth, -1);
+        } else {
+            sd.setAddress(depth, target.names.lastIndexOf(var));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitFnDefn(ExpFunction fn, Scope scope) throws FnPlotException {
+        Scope inner = enter(new ArrayList<>(fn.getParameters()), fn.getBody(), scope);
+        fn.setFrameVars(inner.layout());
+        return fn.getBody().visit(this, inner);
+    }
+
+    @Override
+    public Void visitStmtFun(StmtFun fun, Scope scope) throws FnPlotException {
+        ArrayList<String> names = new ArrayList<>();
+        for (Binding b : fun.getBindings()) {
+            b.getValExp().visit(this, scope);
+            names.add(b.getVar());
+        }
+        return fun.getBody().visit(this, enter(names, fun.getBody(), scope));
+    }
+
+    @Override
+    public Void visitStmtLet(StmtLet let, Scope scope) throws FnPlotException {
+        // the bindings are evaluated in the enclosing scope, and occupy the
+        // first slots of the new frame, in order
+        ArrayList<String> names = new ArrayList<>();
+        for (Binding b : let.getBindings()) {
+            b.getValExp().visit(this, scope);
+            names.add(b.getVar());
+        }
+        Scope inner = enter(names, let.getBody(), scope);
+        let.setFrameVars(inner.layout());
+        return let.getBody().visit(this, inner);
+    }
+
+    @Override
+    public Void visitStmtFor(StmtFor loop, Scope scope) throws FnPlotException {
+        loop.getLower().visit(this, scope);
+        loop.getUpper().visit(this, scope);
+        loop.getStep().visit(this, scope);
+        ArrayList<String> names = new ArrayList<>();
+        names.add(loop.getVar());
+        return loop.getBody().visit(this, new Scope(names, scope, true));
+    }
+
+    @Override
+    public Void visitStmtPlot(StmtPlot plot, Scope scope) throws FnPlotException {
+        plot.getLower().visit(this, scope);
+        plot.getUpper().visit(this, scope);
+        return plot.getFunction().visit(this, scope);
+    }
+
+    @Override
+    public Void visitExpAdd(ExpAdd exp, Scope scope) throws FnPlotException {
+        return visitOperands(exp.getExpL(), exp.getExpR(), scope);
+    }
+
+    @Override
+    public Void visitExpSub(ExpSub exp, Scope scope) throws FnPlotException {
+        return visitOperands(exp.getExpL(), exp.getExpR(), scope);
+    }
+
+    @Override
+    public Void visitExpMul(ExpMul exp, Scope scope) throws FnPlotException {
+        return visitOperands(exp.getExpL(), exp.getExpR(), scope);
+    }
+
+    @Override
+    public Void visitExpDiv(ExpDiv exp, Scope scope) throws FnPlotException {
+        return visitOperands(exp.getExpL(), exp.getExpR(), scope);
+    }
+
+    @Override
+    public Void visitExpMod(ExpMod exp, Scope scope) throws FnPlotException {
+        return visitOperands(exp.getExpL(), exp.getExpR(), scope);
+    }
+
+    @Override
+    public Void visitExpExpo(ExpExpo exp, Scope scope) throws FnPlotException {
+        return visitOperands(exp.getExpL(), exp.getExpR(), scope);
+    }
+
+    private Void visitOperands(Exp left, Exp right, Scope scope) throws FnPlotException {
+        left.visit(this, scope);
+        right.visit(this, scope);
+        return null;
+    }
+
+    @Override
+    public Void visitExpFuncall(ExpFuncall exp, Scope scope) throws FnPlotException {
+        int[] address = address(exp.getName(), scope);
+        exp.setAddress(address[0], address[1]);
+        for (Exp arg : exp.getArguments()) {
+            arg.visit(this, scope);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitExpLit(ExpLit exp, Scope scope) throws FnPlotException {
+        return null;
+    }
+
+    @Override
+    public Void visitExpVar(ExpVar exp, Scope scope) throws FnPlotException {
+        int[] address = address(exp.getVar(), scope);
+        exp.setAddress(address[0], address[1]);
+        return null;
+    }
+
+    /*
+     * Find the depth and slot of the innermost binding of a name, or the
+     * depth of the global environment and -1 if it is not bound locally.
+     */
+    private static int[] address(String var, Scope scope) {
+        int depth = 0;
+        for (Scope s = scope; s != null; s = s.parent) {
+            int slot = s.names.lastIndexOf(var);
+            if (slot >= 0) {
+                return new int[] {depth, slot};
+            }
+            depth++;
+        }
+        return new int[] {depth, -1};
+    }
+
+    @Override
+    public Void visitExpPromote(ExpPromote exp, Scope scope) throws FnPlotException {
+        return exp.getExp().visit(this, scope);
+    }
+
+    /**
+     * Collects the names of the variables that definitions bind in the
+     * current scope.  It does not descend into the bodies of nested
+     * <code>let</code> or function expressions, since definitions there bind
+     * in the nested frame instead.  The tree is walked on an explicit stack
+     * rather than the Java stack, so that it may be as deep as a
+     * {@link StacklessEvaluator} can run: each visit just schedules the parts
+     * of the node that are to be collected, in order.
+     */
+    static class DefinitionCollector
+            implements Visitor<ArrayList<String>, Void> {
+
+        // the nodes still to be visited, the names still to be added, and
+        // the loops whose bodies are being collected, the next one last
+        private final ArrayList<Object> pending = new ArrayList<>();
+
+        /**
+         * Collect the names of the variables that a node defines in the
+         * current scope.
+         * @param node The node
+         * @param defs The list to which the names are added, in the order of
+         * their definitions
+         * @throws FnPlotException if the node contains a node that cannot be
+         * traversed.
+         */
+        void collect(ASTNode node, ArrayList<String> defs) throws FnPlotException {
+            int base = pending.size();
+            pending.add(node);
+            while (pending.size() > base) {
+                Object next = pending.remove(pending.size() - 1);
+                if (next instanceof ASTNode) {
+                    ((ASTNode) next).visit(this, defs);
+                } else if (next instanceof String) {
+                    defs.add((String) next);
+                } else {
+                    ((LoopBody) next).reach(defs);
+                }
+            }
+        }
+
+        /*
+         * Schedule the given nodes and names to be collected in order.
+         */
+        private Void schedule(Object... parts) {
+            for (int i = parts.length - 1; i >= 0; i--) {
+                pending.add(parts[i]);
+            }
+            return null;
+        }
+
+        /*
+         * The definitions in the body of a loop bind in the scope of the
+         * loop, except those of the loop variable, which bind in the loop's
+         * own frame.  The body is scheduled between two visits to the same
+         * LoopBody: the first notes where its definitions start, and the
+         * second drops those of the loop variable.
+         */
+        private static class LoopBody {
+
+            private final String var;
+            private int start = -1;
+
+            LoopBody(String var) {
+                this.var = var;
+            }
+
+            void reach(ArrayList<String> defs) {
+                if (start < 0) {
+                    start = defs.size();
+                    return;
+                }
+                for (int i = defs.size() - 1; i >= start; i--) {
+                    if (defs.get(i).equals(var)) {
+                        defs.remove(i);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public Void visitArithProgram(ArithProgram p, ArrayList<String> defs) {
+            return schedule(p.getSeq());
+        }
+
+        @Override
+        public Void visitStmtSequence(StmtSequence sseq, ArrayList<String> defs) {
+            return schedule(sseq.getSeq().toArray());
+        }
+
+        @Override
+        public Void visitStmtDefinition(StmtDefinition sd, ArrayList<String> defs) {
+            return schedule(sd.getExp(), sd.getVar());
+        }
+
+        @Override
+        public Void visitFnDefn(ExpFunction sd, ArrayList<String> defs) {
+            return null;
+        }
+
+        @Override
+        public Void visitStmtFun(StmtFun fun, ArrayList<String> defs) {
+            return schedule(values(fun.getBindings()));
+        }
+
+        @Override
+        public Void visitStmtLet(StmtLet let, ArrayList<String> defs) {
+            return schedule(values(let.getBindings()));
+        }
+
+        private Object[] values(ArrayList<Binding> bindings) {
+            Object[] exps = new Object[bindings.size()];
+            for (int i = 0; i < exps.length; i++) {
+                exps[i] = bindings.get(i).getValExp();
+            }
+            return exps;
+        }
+
+        @Override
+        public Void visitStmtFor(StmtFor loop, ArrayList<String> defs) {
+            LoopBody body = new LoopBody(loop.getVar());
+            return schedule(loop.getLower(), loop.getUpper(), loop.getStep(), body,
+                    loop.getBody(), body);
+        }
+
+        @Override
+        public Void visitStmtPlot(StmtPlot plot, ArrayList<String> defs) {
+            return schedule(plot.getLower(), plot.getUpper());
+        }
+
+        @Override
+        public Void visitExpAdd(ExpAdd exp, ArrayList<String> defs) {
+            return schedule(exp.getExpL(), exp.getExpR());
+        }
+
+        @Override
+        public Void visitExpSub(ExpSub exp, ArrayList<String> defs) {
+            return schedule(exp.getExpL(), exp.getExpR());
+        }
+
+        @Override
+        public Void visitExpMul(ExpMul exp, ArrayList<String> defs) {
+            return schedule(exp.getExpL(), exp.getExpR());
+        }
+
+        @Override
+        public Void visitExpDiv(ExpDiv exp, ArrayList<String> defs) {
+            return schedule(exp.getExpL(), exp.getExpR());
+        }
+
+        @Override
+        public Void visitExpMod(ExpMod exp, ArrayList<String> defs) {
+            return schedule(exp.getExpL(), exp.getExpR());
+        }
+
+        @Override
+        public Void visitExpExpo(ExpExpo exp, ArrayList<String> defs) {
+            return schedule(exp.getExpL(), exp.getExpR());
+        }
+
+        @Override
+        public Void visitExpFuncall(ExpFuncall exp, ArrayList<String> defs) {
+            return schedule(exp.getArguments().toArray());
+        }
+
+        @Override
+        public Void visitExpLit(ExpLit exp, ArrayList<String> defs) {
+            return null;
+        }
+
+        @Override
+        public Void visitExpVar(ExpVar exp, ArrayList<String> defs) {
+            return null;
+        }
+
+        @Override
+        public Void visitExpPromote(ExpPromote exp, ArrayList<String> defs) {
+            return schedule(exp.getExp());
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package fnplot.semantics;
+
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotFunction;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps the values of functions at the points of evenly spaced grids, so
+ * that a view that is panned or zoomed can be drawn again without evaluating
+ * the function afresh at every point.
+ *
+ * The points of a grid are the multiples of its spacing, which is always a
+ * power of two.  So the grids do not depend on where the view happens to
+ * be: panning a view keeps the same grid, and only the points that come into
+ * view are new.  Each grid also holds every point of the coarser ones.  So
+ * the values computed on a grid are kept as a pyramid: every other one of
+ * them is kept on the grid twice as coarse, every fourth on the one four
+ * times as coarse, and so on for {@link #PYRAMID_LEVELS} levels, which at
+ * most doubles the space they take.  When a view is zoomed out, its points
+ * are then found on the coarser grid without evaluating anything; when it
+ * is zoomed in, just the points that the finer grid adds, within the view,
+ * are evaluated.
+ *
+ * The values of each function are kept, for each grid, as runs of
+ * consecutive points, and a run that meets or overlaps another on the same
+ * grid is merged with it.  The values of a function are discarded when
+ * the bindings visible from its closing environment change, since they may
+ * no longer be its values.  The cache holds a bounded number of points,
+ * and when it is full, discards the values of the functions sampled least
+ * recently, or, if the function being sampled has filled it alone, all of
+ * its values but those just computed.
+ */
+public class SampleCache {
+
+    /**
+     * The number of coarser grids on which the values computed on a grid
+     * are also kept.
+     */
+    public static final int PYRAMID_LEVELS = 8;
+
+    /**
+     * The largest grid index kept; beyond this, neighbouring multiples of a
+     * spacing might not be distinct doubles.
+     */
+    private static final long MAX_INDEX = 1L << 52;
+
+    /*
+     * A run of values at consecutive points of a grid, starting at the
+     * given index.
+     */
+    private static class Run {
+
+        final long first;
+        final double[] ys;
+
+        Run(long first, double[] ys) {
+            this.first = first;
+            this.ys = ys;
+        }
+
+        long last() {
+            return first + ys.length - 1;
+        }
+    }
+
+    /*
+     * The values kept for one function: its runs on each grid, by the
+     * exponent of the grid's spacing, and by the index of their first points.
+     */
+    private static class Entry {
+
+        long stamp;     // the version of the closing environment they are valid for
+        final HashMap<Integer, TreeMap<Long, Run>> levels = new HashMap<>();
+        int size;
+    }
+
+    private final int capacity;
+    private final LinkedHashMap<FnPlotFunction, Entry> entries =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private int size;
+    private long hits;
+    private long misses;
+
+    /**
+     * Create a new cache.
+     * @param capacity The greatest number of points whose values are kept,
+     * over all functions
+     */
+    public SampleCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return The number of points whose values were found in the cache.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The number of points whose values were not found in the cache,
+     * and so had to be computed.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Discard all the values kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Sample a function over the given range, at the points of the finest
+     * grid whose spacing is no more than the given one, together with the
+     * bounds of the range.  Only the points not already in the cache are
+     * evaluated, as a single batch.
+     * @param f The function, by which its values are kept
+     * @param values The way to compute the values of <code>f</code>
+     * @param lo The lower bound of the range
+     * @param hi The upper bound of the range
+     * @param spacing The greatest distance wanted between adjacent points
+     * @return The sample points, in increasing order, and the values of
+     * <code>f</code> at them, as a pair of arrays, or <code>null</code> if
+     * the range is too far out, or the spacing too fine or too coarse, to be
+     * sampled on a grid, or if the points would fill half the cache.
+     * @throws FnPlotException if an error arises while evaluating
+     * <code>f</code>.
+     */
+    public synchronized double[][] sample(FnPlotFunction f, AdaptiveSampler.Values values,
+            double lo, double hi, double spacing) throws FnPlotException {
+        int level = Math.getExponent(spacing);
+        double h = Math.scalb(1.0, level);
+        double from = Math.ceil(lo / h);
+        double to = Math.floor(hi / h);
+        if (!(spacing > 0) || level < Double.MIN_EXPONENT || Double.isInfinite(spacing)
+                || Math.abs(from) > MAX_INDEX || Math.abs(to) > MAX_INDEX
+                || to - from >= capacity / 2) {
+            return null;    // too fine, too coarse or too far out for a grid
+        }
+        long first = (long) from;
+        long last = (long) to;
+
+        // the grid points in range, with the bounds of the range if off it
+        boolean head = lo < first * h;
+        boolean tail = hi > last * h;
+        int points = (int) Math.max(last - first + 1, 0);
+        int n = points + (head ? 1 : 0) + (tail ? 1 : 0);
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        int offset = head ? 1 : 0;
+        if (head) {
+            xs[0] = lo;
+        }
+        for (int i = 0; i < points; i++) {
+            xs[offset + i] = (first + i) * h;
+        }
+        if (tail) {
+            xs[n - 1] = hi;
+        }
+
+        Entry entry = entry(f);
+        int[] missing = new int[n];
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            int j = i - offset;
+            if (j < 0 || j >= points || !find(entry, level, first + j, ys, i)) {
+                missing[m++] = i;
+            }
+        }
+        hits += n - m;
+        misses += m;
+        if (m > 0) {
+            double[] missingXs = new double[m];
+            for (int k = 0; k < m; k++) {
+                missingXs[k] = xs[missing[k]];
+            }
+            double[] missingYs = values.at(missingXs);
+            for (int k = 0; k < m; k++) {
+                ys[missing[k]] = missingYs[k];
+            }
+        }
+        if (points > 0) {
+            double[] run = new double[points];
+            System.arraycopy(ys, offset, run, 0, points);
+            keep(entry, level, first, run);
+            evict(f, entry, level, first, run);
+        }
+        return new double[][]{xs, ys};
+    }
+
+    /*
+     * The values kept for a function, emptied if its closing environment
+     * has changed since they were computed.
+     */
+    private Entry entry(FnPlotFunction f) {
+        long stamp = f.getClosingEnv().getVersion();
+        Entry entry = entries.get(f);
+        if (entry == null) {
+            entry = new Entry();
+            entry.stamp = stamp;
+            entries.put(f, entry);
+        } else if (entry.stamp != stamp) {
+            // something the function may refer to has been redefined
+            size -= entry.size;
+            entry.levels.clear();
+            entry.size = 0;
+            entry.stamp = stamp;
+        }
+        return entry;
+    }
+
+    /*
+     * Look for the value at a point of a grid on that grid or, as long as
+     * the point is on it, a coarser one, and put it in ys[i] if it is found.
+     * A grid finer than the one asked for need not be searched, since its
+     * points in common with this one are kept on this one too.
+     */
+    private static boolean find(Entry entry, int level, long index, double[] ys, int i) {
+        for (int k = 0; k <= PYRAMID_LEVELS; k++) {
+            TreeMap<Long, Run> runs = entry.levels.get(level + k);
+            Map.Entry<Long, Run> e = runs == null ? null : runs.floorEntry(index);
+            if (e != null && e.getValue().last() >= index) {
+                Run run = e.getValue();
+                ys[i] = run.ys[(int) (index - run.first)];
+                return true;
+            }
+            if ((index & 1) != 0) {
+                break;      // not on the next coarser grid
+            }
+            index >>= 1;
+        }
+        return false;
+    }
+
+    /*
+     * Keep a run of values on a grid, and every other one of them on each
+     * of the coarser grids of its pyramid.
+     */
+    private void keep(Entry entry, int level, long first, double[] ys) {
+        for (int k = 0; k <= PYRAMID_LEVELS && ys.length > 0; k++) {
+            merge(entry, level + k, first, ys);
+            // the points with even indices are those on the next grid
+            int skip = (int) (first & 1);
+            double[] coarser = new double[(ys.length - skip + 1) / 2];
+            for (int i = 0; i < coarser.length; i++) {
+                coarser[i] = ys[skip + 2 * i];
+            }
+            first = (first + skip) >> 1;
+            ys = coarser;
+        }
+    }
+
+    /*
+     * Keep a run of values on a grid, merged with the runs on it that it
+     * meets or overlaps.
+     */
+    private void merge(Entry entry, int level, long first, double[] ys) {
+        TreeMap<Long, Run> runs = entry.levels.get(level);
+        if (runs == null) {
+            runs = new TreeMap<>();
+            entry.levels.put(level, runs);
+        }
+        long last = first + ys.length - 1;
+        ArrayList<Run> merged = new ArrayList<>();
+        Map.Entry<Long, Run> before = runs.floorEntry(first);
+        if (before != null && before.getValue().last() >= first - 1) {
+            merged.add(before.getValue());
+        }
+        merged.addAll(runs.subMap(first, false, last + 1, true).values());
+        long lo = first, hi = last;
+        for (Run r : merged) {
+            lo = Math.min(lo, r.first);
+            hi = Math.max(hi, r.last());
+        }
+        double[] all = new double[(int) (hi - lo + 1)];
+        for (Run r : merged) {
+            System.arraycopy(r.ys, 0, all, (int) (r.first - lo), r.ys.length);
+            runs.remove(r.first);
+            entry.size -= r.ys.length;
+            size -= r.ys.length;
+        }
+        // the new values replace any older ones at the same points
+        System.arraycopy(ys, 0, all, (int) (first - lo), ys.length);
+        runs.put(lo, new Run(lo, all));
+        entry.size += all.length;
+        size += all.length;
+    }
+
+    /*
+     * Discard the values of the functions sampled least recently until the
+     * cache is no longer over capacity.  If the given function alone is
+     * over capacity, all but the given run and its pyramid are discarded.
+     */
+    private void evict(FnPlotFunction f, Entry entry, int level, long first, double[] ys) {
+        Iterator<Map.Entry<FnPlotFunction, Entry>> it = entries.entrySet().iterator();
+        while (size > capacity && it.hasNext()) {
+            Map.Entry<FnPlotFunction, Entry> e = it.next();
+            if (e.getKey() != f) {
+                size -= e.getValue().size;
+                it.remove();
+            }
+        }
+        if (size > capacity) {
+            size -= entry.size;
+            entry.levels.clear();
+            entry.size = 0;
+            keep(entry, level, first, ys);
+        }
+    }
+}
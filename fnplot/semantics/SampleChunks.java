@@ -0,0 +1,80 @@
+package fnplot.semantics;
+
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotFunction;
+import java.util.Arrays;
+
+/**
+ * The plotter's sample points for an interval, and the values of a function
+ * at them, fetched and computed a chunk of at most {@link #PLOT_CHUNK} points
+ * at a time.  The function is specialized, and the way of sampling it
+ * chosen, just once.
+ */
+class SampleChunks {
+
+    /**
+     * The number of sample points evaluated at a time, and so drawn at a
+     * time by a streamed plot.
+     */
+    static final int PLOT_CHUNK = 1024;
+
+    private final BatchSampler points;
+    private final Plotter plotter;
+    private final FnPlotFunction f;
+    private final double low;
+    private final double hi;
+    private final double[] chunk = new double[PLOT_CHUNK];
+    private BatchSampler.Batch batch;
+    private int from;
+
+    /**
+     * Prepare to sample a function over an interval.
+     * @param points The sampler that computes the values of the function
+     * @param plotter The plotter that chooses the sample points
+     * @param f The function
+     * @param low The lower bound of the interval
+     * @param hi The upper bound of the interval
+     * @throws FnPlotException if <code>f</code> does not take exactly one
+     * argument.
+     */
+    SampleChunks(BatchSampler points, Plotter plotter, FnPlotFunction f, double low, double hi)
+            throws FnPlotException {
+        BatchSampler.checkUnary(f);
+        this.points = points;
+        this.plotter = plotter;
+        this.f = f;
+        this.low = low;
+        this.hi = hi;
+    }
+
+    /**
+     * Put the next chunk of points, and the values at them, in the arrays
+     * from the given index.
+     * @param xs The array to receive the points
+     * @param ys The array to receive the values
+     * @param start The index in the arrays of the first point
+     * @return The number of points, which is less than a whole chunk only if
+     * the sample has run out.
+     * @throws FnPlotException if an error arises while evaluating the
+     * function.
+     */
+    int next(double[] xs, double[] ys, int start) throws FnPlotException {
+        int n = plotter.sample(low, hi, from, chunk);
+        if (n == 0) {
+            return 0;
+        }
+        from += n;
+        System.arraycopy(chunk, 0, xs, start, n);
+        if (f.isMemoized()) {
+            double[] vals = points.sampleMemoized(f, n == chunk.length ? chunk
+                    : Arrays.copyOf(chunk, n));
+            System.arraycopy(vals, 0, ys, start, n);
+        } else {
+            if (batch == null) {
+                batch = points.batch(f, chunk);
+            }
+            points.fill(batch, xs, ys, start, start + n);
+        }
+        return n;
+    }
+}
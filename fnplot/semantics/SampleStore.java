@@ -0,0 +1,223 @@
+package fnplot.semantics;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A sequence of sample points held outside the Java heap, for plots of so
+ * many points that arrays of them would burden the garbage collector.  The
+ * coordinates are kept in a direct buffer, which is taken from a pool shared
+ * by all stores, and given back to it as soon as the store is
+ * {@link #close closed}; so a store is meant to be used in a
+ * <code>try</code>-with-resources statement around the plotting of its
+ * points.  The pool keeps at most {@link #POOL_LIMIT} bytes of buffers that
+ * are not in use; any other buffer given back is left for the collector.
+ * Since a buffer in the pool may be taken by another store, a store never
+ * hands out its buffers: its points are read one at a time, or copied out
+ * in runs, and neither may be done once it is closed.
+ *
+ * A store grows as points are added, taking a buffer of twice the capacity
+ * from the pool whenever it is full.  Capacities are powers of two, so that
+ * the buffers given back to the pool fit later stores.
+ */
+public class SampleStore implements AutoCloseable {
+
+    /** The number of points that the smallest buffer has room for. */
+    public static final int MIN_CAPACITY = 1024;
+
+    /** The greatest number of bytes of buffers kept in the pool. */
+    public static final long POOL_LIMIT = 64L << 20;
+
+    // the buffers not in use, by the number of points they have room for
+    private static final HashMap<Integer, ArrayList<ByteBuffer>> pool = new HashMap<>();
+    private static long pooled;
+
+    private ByteBuffer block;
+    // the x coordinates, then the y coordinates, in halves of the block
+    private DoubleBuffer xs;
+    private DoubleBuffer ys;
+    private int capacity;
+    private int length;
+
+    /**
+     * Create an empty store.
+     * @param capacity The number of points it should have room for at first
+     */
+    public SampleStore(int capacity) {
+        this.capacity = capacityFor(capacity);
+        setBlock(take(this.capacity));
+    }
+
+    /**
+     * @return The number of points in this store.
+     */
+    public int length() {
+        return length;
+    }
+
+    public double getX(int i) {
+        check(i);
+        return xs.get(i);
+    }
+
+    public double getY(int i) {
+        check(i);
+        return ys.get(i);
+    }
+
+    /**
+     * Add points to the end of this store.
+     * @param xs The x coordinates of the points
+     * @param ys The y coordinates of the points
+     * @param from The index in the arrays of the first point to be added
+     * @param to The index in the arrays just after the last point
+     */
+    public void append(double[] xs, double[] ys, int from, int to) {
+        open();
+        int n = to - from;
+        if (length + n > capacity) {
+            grow(length + n);
+        }
+        DoubleBuffer x = this.xs.duplicate();
+        x.position(length);
+        x.put(xs, from, n);
+        DoubleBuffer y = this.ys.duplicate();
+        y.position(length);
+        y.put(ys, from, n);
+        length += n;
+    }
+
+    /**
+     * Copy a run of the points in this store into arrays.
+     * @param from The index of the first point to be copied
+     * @param xs The array to receive the x coordinates
+     * @param ys The array to receive the y coordinates
+     * @param start The index in the arrays at which to put the first point
+     * @param n The number of points to copy
+     * @throws IllegalStateException if the store has been closed
+     */
+    public void get(int from, double[] xs, double[] ys, int start, int n) {
+        open();
+        if (from < 0 || n < 0 || from + n > length) {
+            throw new IndexOutOfBoundsException("Points " + from + " to " + (from + n)
+                    + " of " + length);
+        }
+        DoubleBuffer x = this.xs.duplicate();
+        x.position(from);
+        x.get(xs, start, n);
+        DoubleBuffer y = this.ys.duplicate();
+        y.position(from);
+        y.get(ys, start, n);
+    }
+
+    /**
+     * Give this store's buffer back to the pool.  The store is then empty,
+     * and may not be used again.  Closing it again has no effect.
+     */
+    @Override
+    public void close() {
+        if (block != null) {
+            give(block, capacity);
+            block = null;
+            xs = null;
+            ys = null;
+            length = 0;
+        }
+    }
+
+    /**
+     * @return The number of bytes of buffers in the pool, not in use by any
+     * store.
+     */
+    public static synchronized long getPooledBytes() {
+        return pooled;
+    }
+
+    private void grow(int needed) {
+        int bigger = capacityFor(needed);
+        ByteBuffer old = block;
+        DoubleBuffer oldXs = xs;
+        DoubleBuffer oldYs = ys;
+        int oldCapacity = capacity;
+        capacity = bigger;
+        setBlock(take(bigger));
+        copy(oldXs, xs);
+        copy(oldYs, ys);
+        give(old, oldCapacity);
+    }
+
+    private void copy(DoubleBuffer from, DoubleBuffer to) {
+        DoubleBuffer src = from.duplicate();
+        src.position(0);
+        src.limit(length);
+        DoubleBuffer dst = to.duplicate();
+        dst.position(0);
+        dst.put(src);
+    }
+
+    private void setBlock(ByteBuffer block) {
+        this.block = block;
+        ByteBuffer half = block.duplicate().order(ByteOrder.nativeOrder());
+        half.position(0);
+        half.limit(capacity * 8);
+        xs = half.slice().order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        half.limit(capacity * 16);
+        half.position(capacity * 8);
+        ys = half.slice().order(ByteOrder.nativeOrder()).asDoubleBuffer();
+    }
+
+    private void open() {
+        if (block == null) {
+            throw new IllegalStateException("Sample store has been closed");
+        }
+    }
+
+    private void check(int i) {
+        open();
+        if (i < 0 || i >= length) {
+            throw new IndexOutOfBoundsException("Point " + i + " of " + length);
+        }
+    }
+
+    /*
+     * The power of two, no less than the minimum, with room for the given
+     * number of points.
+     */
+    private static int capacityFor(int points) {
+        if (points > 1 << 26) {
+            // two coordinates of eight bytes each must fit in one buffer
+            throw new IllegalArgumentException("Too many points for a sample store: " + points);
+        }
+        int capacity = MIN_CAPACITY;
+        while (capacity < points) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static synchronized ByteBuffer take(int capacity) {
+        ArrayList<ByteBuffer> free = pool.get(capacity);
+        if (free != null && !free.isEmpty()) {
+            ByteBuffer block = free.remove(free.size() - 1);
+            pooled -= block.capacity();
+            return block;
+        }
+        return ByteBuffer.allocateDirect(capacity * 16);
+    }
+
+    private static synchronized void give(ByteBuffer block, int capacity) {
+        if (pooled + block.capacity() > POOL_LIMIT) {
+            return;     // left for the collector
+        }
+        ArrayList<ByteBuffer> free = pool.get(capacity);
+        if (free == null) {
+            free = new ArrayList<>();
+            pool.put(capacity, free);
+        }
+        free.add(block);
+        pooled += block.capacity();
+    }
+}
@@ -0,0 +1,547 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ASTNode;
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpExpo;
+import fnplot.syntax.ExpFuncall;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPromote;
+import fnplot.syntax.ExpSub;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.Statement;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtFor;
+import fnplot.syntax.StmtFun;
+import fnplot.syntax.StmtLet;
+import fnplot.syntax.StmtPlot;
+import fnplot.syntax.StmtSequence;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotFunction;
+import fnplot.values.FnPlotType;
+import fnplot.values.FnPlotValue;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * An evaluator that does not use the Java stack to keep track of the
+ * evaluation in progress, so that the depth of nesting of expressions and of
+ * function calls is limited only by the heap.
+ *
+ * Instead of evaluating the node it visits, each visit method schedules the
+ * work needed to evaluate it on an explicit work stack: the evaluation of
+ * its subexpressions, followed by an instruction that combines their values.
+ * Values are passed between instructions on a separate value stack.  Both
+ * stacks are arrays that are kept between evaluations, so running an
+ * instruction allocates nothing beyond the values it computes and the frames
+ * of the <code>let</code>s, loops and function calls it enters.
+ *
+ * Calls in tail position are proper tail calls, unless the function called
+ * is memoized.  A call schedules the
+ * evaluation of the callee's body and nothing else, since the value of the
+ * body is the value of the call; so when a body ends in a call (possibly
+ * within a <code>let</code> or as the last statement of a block), the work
+ * stack is no deeper during the callee than it was during the caller.
+ *
+ * The results are the same as those of {@link Evaluator}, including the
+ * specialization of arithmetic whose operand types were not inferred.  An
+ * instance may only be used by one thread at a time.
+ */
+public class StacklessEvaluator implements Visitor<Environment<FnPlotValue<?>>, Void> {
+
+    /* the instructions on the work stack */
+    private static final int EVAL = 0;         // evaluate the node in the environment
+    private static final int ARITH_INT = 1;    // combine the top two values as integers
+    private static final int ARITH_REAL = 2;   // combine the top two values as reals
+    private static final int ARITH = 3;        // combine the top two values at the site
+    private static final int PROMOTE = 4;      // convert the top value to a real
+    private static final int DROP = 5;         // discard the top value
+    private static final int DEFINE = 6;       // bind the top value, leaving it in place
+    private static final int LET = 7;          // bind values to a let's variables, then evaluate its body
+    private static final int CALL = 8;         // apply a function to the values of its arguments
+    private static final int MEMO = 9;         // keep the top value as the result of a memoized call
+    private static final int FOR = 10;         // start a loop over the bounds and step on top
+    private static final int NEXT = 11;        // run the next iteration of a loop, if any
+    private static final int PLOT = 12;        // plot the function and bounds on top
+
+    private static final int INITIAL_DEPTH = 64;
+
+    /* the operand of a MEMO instruction */
+    private static class PendingCall {
+
+        final FnPlotFunction f;
+        final FnPlotValue<?>[] args;
+
+        PendingCall(FnPlotFunction f, FnPlotValue<?>[] args) {
+            this.f = f;
+            this.args = args;
+        }
+    }
+
+    /* the operand of a NEXT instruction: a loop in progress */
+    private static class Loop {
+
+        final Exp body;
+        final Frame frame;
+        final int n;
+        final boolean integer;
+        final double lo;
+        final double step;
+        int i;
+
+        Loop(StmtFor loop, Frame frame, int n, boolean integer, double lo, double step) {
+            this.body = loop.getBody();
+            this.frame = frame;
+            this.n = n;
+            this.integer = integer;
+            this.lo = lo;
+            this.step = step;
+        }
+    }
+
+    /* the work stack, as parallel arrays */
+    private int[] ops = new int[INITIAL_DEPTH];
+    private Object[] operands = new Object[INITIAL_DEPTH];
+    @SuppressWarnings("unchecked")
+    private Environment<FnPlotValue<?>>[] envs =
+            (Environment<FnPlotValue<?>>[]) new Environment<?>[INITIAL_DEPTH];
+    private int top;
+
+    /* the capacity of the memo table of each function created, if any */
+    int memoCapacity;
+
+    /* the interpreter whose plotter plot statements draw on, if any */
+    Evaluator plotting;
+
+    /* the value stack */
+    private FnPlotValue<?>[] values = new FnPlotValue<?>[INITIAL_DEPTH];
+    private int vtop;
+
+    /**
+     * Evaluate a statement or program.
+     * @param node The node to be evaluated, either as prepared by
+     * {@link Evaluator#prepare(ArithProgram)} or, if it is too deep for
+     * that, as parsed; the latter is slower, since each variable is then
+     * looked up by name and each operation dispatched on the types of its
+     * operands
+     * @param env The environment in which to evaluate it
+     * @return The value of <code>node</code>.
+     * @throws FnPlotException if an error arises during the evaluation.
+     */
+    public FnPlotValue<?> eval(ASTNode node, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        int base = top, vbase = vtop;
+        schedule(EVAL, node, env);
+        try {
+            while (top > base) {
+                step();
+            }
+            FnPlotValue<?> result = values[--vtop];
+            values[vtop] = null;
+            return result;
+        } finally {
+            // only an error leaves anything behind
+            unwind(base, vbase);
+        }
+    }
+
+    /*
+     * Run the instruction on top of the work stack.
+     */
+    private void step() throws FnPlotException {
+        int i = --top;
+        int op = ops[i];
+        Object operand = operands[i];
+        Environment<FnPlotValue<?>> env = envs[i];
+        operands[i] = null;
+        envs[i] = null;
+        switch (op) {
+            case EVAL:
+                ((ASTNode) operand).visit(this, env);
+                break;
+            case ARITH_INT: {
+                FnPlotValue<?> r = values[--vtop];
+                int l = values[vtop - 1].intValue();
+                values[vtop - 1] = FnPlotValue.make(
+                        ((ArithSite) operand).getOp().apply(l, r.intValue()));
+                break;
+            }
+            case ARITH_REAL: {
+                FnPlotValue<?> r = values[--vtop];
+                double l = values[vtop - 1].doubleValue();
+                values[vtop - 1] = FnPlotValue.make(
+                        ((ArithSite) operand).getOp().apply(l, r.doubleValue()));
+                break;
+            }
+            case ARITH: {
+                FnPlotValue<?> r = values[--vtop];
+                values[vtop - 1] = ((ArithSite) operand).apply(values[vtop - 1], r);
+                break;
+            }
+            case PROMOTE:
+                values[vtop - 1] = FnPlotValue.make(values[vtop - 1].doubleValue());
+                break;
+            case DROP:
+                values[--vtop] = null;
+                break;
+            case DEFINE: {
+                StmtDefinition sd = (StmtDefinition) operand;
+                if (sd.isResolved()) {
+                    env.assign(sd.getDepth(), sd.getSlot(), sd.getVar(), values[vtop - 1]);
+                } else {
+                    env.put(sd.getVar(), values[vtop - 1]);
+                }
+                break;
+            }
+            case LET:
+                bind(operand, env);
+                break;
+            case MEMO: {
+                PendingCall call = (PendingCall) operand;
+                call.f.remember(call.args, values[vtop - 1]);
+                break;
+            }
+            case FOR:
+                loop((StmtFor) operand, env);
+                break;
+            case NEXT:
+                next((Loop) operand);
+                break;
+            case PLOT: {
+                FnPlotValue<?> hi = values[--vtop];
+                FnPlotValue<?> low = values[--vtop];
+                values[vtop] = values[vtop + 1] = null;
+                if (plotting == null) {
+                    throw new FnPlotException("Cannot plot without an interpreter: " + operand);
+                }
+                plotting.plot(values[vtop - 1].funValue(), low.doubleValue(),
+                        hi.doubleValue(), ((StmtPlot) operand).getStyle());
+                values[vtop - 1] = FnPlotValue.make(0);
+                break;
+            }
+            default:
+                call((ExpFuncall) operand, env);
+                break;
+        }
+    }
+
+    /*
+     * Enter the let (or fun) whose binding values are on top of the value
+     * stack, and schedule its body.
+     */
+    private void bind(Object operand, Environment<FnPlotValue<?>> env) {
+        ArrayList<Binding> bindings;
+        Exp body;
+        String[] layout = null;
+        if (operand instanceof StmtLet) {
+            StmtLet let = (StmtLet) operand;
+            bindings = let.getBindings();
+            body = let.getBody();
+            layout = let.getFrameVars();
+        } else {
+            StmtFun fun = (StmtFun) operand;
+            bindings = fun.getBindings();
+            body = fun.getBody();
+        }
+        int n = bindings.size();
+        vtop -= n;
+        Environment<FnPlotValue<?>> inner;
+        if (layout != null) {
+            // resolved: bindings occupy the first slots of the frame, in order
+            Frame frame = new Frame(layout, env);
+            for (int i = 0; i < n; i++) {
+                frame.set(i, values[vtop + i]);
+            }
+            inner = frame;
+        } else {
+            String[] vars = new String[n];
+            FnPlotValue<?>[] vals = new FnPlotValue<?>[n];
+            for (int i = 0; i < n; i++) {
+                vars[i] = bindings.get(i).getVar();
+                vals[i] = values[vtop + i];
+            }
+            inner = new Environment<>(vars, vals, env);
+        }
+        Arrays.fill(values, vtop, vtop + n, null);
+        schedule(EVAL, body, inner);
+    }
+
+    /*
+     * Start the loop whose lower bound, upper bound and step are on top of
+     * the value stack.  Its single frame is kept by the NEXT instruction that
+     * runs each iteration.
+     */
+    private void loop(StmtFor stmt, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        FnPlotValue<?> step = values[--vtop];
+        FnPlotValue<?> upper = values[--vtop];
+        FnPlotValue<?> lower = values[--vtop];
+        values[vtop] = values[vtop + 1] = values[vtop + 2] = null;
+        int n = Evaluator.iterations(lower, upper, step);
+        boolean integer = Evaluator.isInteger(lower, upper, step);
+        Frame frame = Frame.loop(stmt.getVar(), env);
+        schedule(NEXT, new Loop(stmt, frame, n, integer,
+                lower.doubleValue(), step.doubleValue()), null);
+    }
+
+    /*
+     * Schedule the next iteration of a loop, to be followed by the one after
+     * it, or leave the value of the loop if it has finished.
+     */
+    private void next(Loop loop) throws FnPlotException {
+        if (loop.i < loop.n) {
+            if (plotting != null) {
+                plotting.checkCancelled();
+            }
+            int i = loop.i++;
+            if (loop.integer) {
+                loop.frame.set(0, FnPlotValue.make((int) loop.lo + i * (int) loop.step));
+            } else {
+                loop.frame.set(0, FnPlotValue.make(loop.lo + i * loop.step));
+            }
+            schedule(NEXT, loop, null);
+            schedule(DROP, null, null);
+            schedule(EVAL, loop.body, loop.frame);
+        } else {
+            push(FnPlotValue.make(0));
+        }
+    }
+
+    /*
+     * Apply the named function to the argument values on top of the value
+     * stack, by scheduling its body in a new frame.  Nothing is scheduled to
+     * run after the body, which is what makes tail calls proper, except to
+     * keep the result of a call of a memoized function.
+     */
+    private void call(ExpFuncall exp, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        if (plotting != null) {
+            plotting.checkCancelled();
+        }
+        FnPlotValue<?> callee;
+        if (exp.isResolved()) {
+            callee = env.lookup(exp.getDepth(), exp.getSlot(), exp.getName());
+        } else {
+            callee = env.get(exp.getName());
+        }
+        FnPlotFunction f = callee.funValue();
+        int n = Invoker.checkArity(exp, f);
+        vtop -= n;
+        if (f.isMemoized()) {
+            FnPlotValue<?>[] args = Arrays.copyOfRange(values, vtop, vtop + n);
+            FnPlotValue<?> result = f.recall(args);
+            if (result != null) {
+                Arrays.fill(values, vtop, vtop + n, null);
+                push(result);
+                return;
+            }
+            // not a tail call, since its result must be kept afterwards
+            schedule(MEMO, new PendingCall(f, args), null);
+        }
+        Frame frame = Invoker.frame(f);
+        for (int i = 0; i < n; i++) {
+            frame.set(i, values[vtop + i]);
+        }
+        Arrays.fill(values, vtop, vtop + n, null);
+        schedule(EVAL, f.getFunExp().getBody(), frame);
+    }
+
+    private void schedule(int op, Object operand, Environment<FnPlotValue<?>> env) {
+        if (top == ops.length) {
+            int size = 2 * top;
+            ops = Arrays.copyOf(ops, size);
+            operands = Arrays.copyOf(operands, size);
+            envs = Arrays.copyOf(envs, size);
+        }
+        ops[top] = op;
+        operands[top] = operand;
+        envs[top] = env;
+        top++;
+    }
+
+    private void push(FnPlotValue<?> value) {
+        if (vtop == values.length) {
+            values = Arrays.copyOf(values, 2 * vtop);
+        }
+        values[vtop++] = value;
+    }
+
+    /*
+     * Discard everything above the given heights, so that the stacks do not
+     * keep environments or values alive.
+     */
+    private void unwind(int base, int vbase) {
+        Arrays.fill(operands, base, Math.max(base, top), null);
+        Arrays.fill(envs, base, Math.max(base, top), null);
+        Arrays.fill(values, vbase, Math.max(vbase, vtop), null);
+        top = base;
+        vtop = vbase;
+    }
+
+    /*
+     * Schedule a binary operation: the left operand, then the right, then the
+     * combination of their values.
+     */
+    private Void arithmetic(Exp exp, ArithSite site, Exp left, Exp right,
+            Environment<FnPlotValue<?>> env) {
+        FnPlotType type = exp.getStaticType();
+        if (type == FnPlotType.REAL) {
+            schedule(ARITH_REAL, site, null);
+        } else if (type == FnPlotType.INTEGER) {
+            schedule(ARITH_INT, site, null);
+        } else {
+            schedule(ARITH, site, null);
+        }
+        schedule(EVAL, right, env);
+        schedule(EVAL, left, env);
+        return null;
+    }
+
+    @Override
+    public Void visitArithProgram(ArithProgram p, Environment<FnPlotValue<?>> env) {
+        schedule(EVAL, p.getSeq(), env);
+        return null;
+    }
+
+    @Override
+    public Void visitStmtSequence(StmtSequence sseq, Environment<FnPlotValue<?>> env) {
+        ArrayList<Statement> seq = sseq.getSeq();
+        int n = seq.size();
+        if (n == 0) {
+            push(FnPlotValue.make(0)); // default result
+            return null;
+        }
+        // the last statement is in tail position; the others' values are dropped
+        schedule(EVAL, seq.get(n - 1), env);
+        for (int i = n - 2; i >= 0; i--) {
+            schedule(DROP, null, null);
+            schedule(EVAL, seq.get(i), env);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitStmtDefinition(StmtDefinition sd, Environment<FnPlotValue<?>> env) {
+        schedule(DEFINE, sd, env);
+        schedule(EVAL, sd.getExp(), env);
+        return null;
+    }
+
+    @Override
+    public Void visitFnDefn(ExpFunction fn, Environment<FnPlotValue<?>> env) {
+        FnPlotFunction f = new FnPlotFunction(fn, env);
+        if (memoCapacity > 0) {
+            f.setMemoCapacity(memoCapacity);
+        }
+        push(f);
+        return null;
+    }
+
+    @Override
+    public Void visitStmtFun(StmtFun fun, Environment<FnPlotValue<?>> env) {
+        schedule(LET, fun, env);
+        ArrayList<Binding> bindings = fun.getBindings();
+        for (int i = bindings.size() - 1; i >= 0; i--) {
+            schedule(EVAL, bindings.get(i).getValExp(), env);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitStmtLet(StmtLet let, Environment<FnPlotValue<?>> env) {
+        schedule(LET, let, env);
+        ArrayList<Binding> bindings = let.getBindings();
+        for (int i = bindings.size() - 1; i >= 0; i--) {
+            schedule(EVAL, bindings.get(i).getValExp(), env);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitStmtFor(StmtFor loop, Environment<FnPlotValue<?>> env) {
+        schedule(FOR, loop, env);
+        schedule(EVAL, loop.getStep(), env);
+        schedule(EVAL, loop.getUpper(), env);
+        schedule(EVAL, loop.getLower(), env);
+        return null;
+    }
+
+    @Override
+    public Void visitStmtPlot(StmtPlot plot, Environment<FnPlotValue<?>> env) {
+        schedule(PLOT, plot, env);
+        schedule(EVAL, plot.getUpper(), env);
+        schedule(EVAL, plot.getLower(), env);
+        schedule(EVAL, plot.getFunction(), env);
+        return null;
+    }
+
+    @Override
+    public Void visitExpAdd(ExpAdd exp, Environment<FnPlotValue<?>> env) {
+        return arithmetic(exp, exp.getSite(), exp.getExpL(), exp.getExpR(), env);
+    }
+
+    @Override
+    public Void visitExpSub(ExpSub exp, Environment<FnPlotValue<?>> env) {
+        return arithmetic(exp, exp.getSite(), exp.getExpL(), exp.getExpR(), env);
+    }
+
+    @Override
+    public Void visitExpMul(ExpMul exp, Environment<FnPlotValue<?>> env) {
+        return arithmetic(exp, exp.getSite(), exp.getExpL(), exp.getExpR(), env);
+    }
+
+    @Override
+    public Void visitExpDiv(ExpDiv exp, Environment<FnPlotValue<?>> env) {
+        return arithmetic(exp, exp.getSite(), exp.getExpL(), exp.getExpR(), env);
+    }
+
+    @Override
+    public Void visitExpMod(ExpMod exp, Environment<FnPlotValue<?>> env) {
+        return arithmetic(exp, exp.getSite(), exp.getExpL(), exp.getExpR(), env);
+    }
+
+    @Override
+    public Void visitExpExpo(ExpExpo exp, Environment<FnPlotValue<?>> env) {
+        return arithmetic(exp, exp.getSite(), exp.getExpL(), exp.getExpR(), env);
+    }
+
+    @Override
+    public Void visitExpFuncall(ExpFuncall exp, Environment<FnPlotValue<?>> env) {
+        schedule(CALL, exp, env);
+        ArrayList<Exp> args = exp.getArguments();
+        for (int i = args.size() - 1; i >= 0; i--) {
+            schedule(EVAL, args.get(i), env);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitExpLit(ExpLit exp, Environment<FnPlotValue<?>> env) {
+        push(exp.getVal());
+        return null;
+    }
+
+    @Override
+    public Void visitExpVar(ExpVar exp, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        if (exp.isResolved()) {
+            push(env.lookup(exp.getDepth(), exp.getSlot(), exp.getVar()));
+        } else {
+            push(env.get(exp.getVar()));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitExpPromote(ExpPromote exp, Environment<FnPlotValue<?>> env) {
+        schedule(PROMOTE, null, null);
+        schedule(EVAL, exp.getExp(), env);
+        return null;
+    }
+}
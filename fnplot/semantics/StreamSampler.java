@@ -0,0 +1,69 @@
+package fnplot.semantics;
+
+import fnplot.sys.FnPlotException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Samples a curve as a stream of paths.  The plotter's sample points are
+ * fetched, evaluated and drawn {@link SampleChunks#PLOT_CHUNK} at a time,
+ * each path starting at the last point of the one before.  So the start of
+ * the curve is drawn before the rest has been computed, and only one chunk
+ * of it is held at a time, however many points the plotter asks for, unless
+ * the curve is to be kept; then a copy of each path is kept as well.
+ */
+class StreamSampler implements CurveSampler {
+
+    private final BatchSampler points;
+
+    StreamSampler(BatchSampler points) {
+        this.points = points;
+    }
+
+    @Override
+    public void trace(DependencyGraph.Curve curve, Plotter plotter) throws FnPlotException {
+        ArrayList<PointBuffer> paths = new ArrayList<>();
+        stream(curve, plotter, false, paths);
+        curve.paths = paths;
+    }
+
+    @Override
+    public void draw(DependencyGraph.Curve curve, Plotter plotter, boolean keep)
+            throws FnPlotException {
+        // drawn as it is sampled, and copied only if it may be redrawn
+        curve.paths = keep ? new ArrayList<PointBuffer>() : null;
+        stream(curve, plotter, true, curve.paths);
+    }
+
+    /*
+     * Sample a curve a chunk at a time, drawing each chunk as a path if
+     * asked to, and adding a copy of each path to the given list, if any.
+     */
+    private void stream(DependencyGraph.Curve curve, Plotter plotter, boolean draw,
+            ArrayList<PointBuffer> kept) throws FnPlotException {
+        SampleChunks chunks = new SampleChunks(points, plotter, curve.f, curve.low, curve.hi);
+        int size = SampleChunks.PLOT_CHUNK;
+        // each path is the last point of the one before, then a chunk
+        double[] xs = new double[size + 1];
+        double[] ys = new double[size + 1];
+        int start = 0;
+        int n;
+        do {
+            n = chunks.next(xs, ys, start);
+            if (n == 0) {
+                break;
+            }
+            if (draw) {
+                plotter.plot(new PointBuffer(xs, ys, start + n));
+            }
+            if (kept != null) {
+                kept.add(new PointBuffer(Arrays.copyOf(xs, start + n),
+                        Arrays.copyOf(ys, start + n)));
+            }
+            // joins the next path to this one
+            xs[0] = xs[start + n - 1];
+            ys[0] = ys[start + n - 1];
+            start = 1;
+        } while (n == size);
+    }
+}
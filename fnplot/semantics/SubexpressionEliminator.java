@@ -0,0 +1,279 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpPromote;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtFor;
+import fnplot.syntax.StmtLet;
+import fnplot.sys.FnPlotException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A pass that eliminates common subexpressions from function bodies.  When
+ * the same pure arithmetic expression occurs more than once in the body of a
+ * function, it is computed once, at the start of each call, into a temporary
+ * bound by a <code>let</code> around the body, and each occurrence is
+ * replaced by a reference to the temporary.  Occurrences are recognized by
+ * comparing the canonical forms given to them by an {@link ExpBuilder}.
+ *
+ * The largest repeated expression is taken first, so that
+ * <code>(x*x + 1) * (x*x + 1)</code> becomes
+ * <code>let t = x*x + 1 in t * t</code>.  An expression is only eliminated if
+ * none of its variables is bound within the body, by a <code>let</code>, a
+ * loop or a definition, since its occurrences might then not have the same value.
+ * Nor is it eliminated unless it occurs at least once outside the body of
+ * any loop, since a loop may run no iterations, and computing the expression
+ * anyway could raise an error that the program would not.
+ * Nested functions are dealt with separately: an expression is never moved
+ * into or out of a function body.
+ *
+ * The names of the temporaries contain a character that cannot appear in an
+ * identifier, so they cannot clash with the program's own variables.
+ *
+ * This pass must run before the program is resolved, since it introduces new
+ * bindings.  The program is modified in place.
+ */
+public class SubexpressionEliminator {
+
+    private static final String TEMP_PREFIX = "%t";
+
+    private int temps;
+
+    /**
+     * Eliminate common subexpressions from the functions in a program.
+     * @param p The program
+     * @throws FnPlotException if the program contains a node that cannot be
+     * traversed.
+     */
+    public void eliminate(ArithProgram p) throws FnPlotException {
+        temps = 0;
+        p.visit(new ChildRewriter() {
+            @Override
+            Exp rewrite(Exp child) throws FnPlotException {
+                child.visit(this, null);
+                return child;
+            }
+
+            @Override
+            public Void visitFnDefn(ExpFunction fn, Void arg) throws FnPlotException {
+                fn.getBody().visit(this, arg);
+                fn.setBody(eliminate(fn.getBody()));
+                return null;
+            }
+        }, null);
+    }
+
+    /*
+     * Eliminate the common subexpressions of a single function body, not
+     * counting the bodies of functions within it.
+     */
+    private Exp eliminate(Exp body) throws FnPlotException {
+        ExpBuilder builder = new ExpBuilder();
+        HashSet<String> bound = new HashSet<>();
+        body.visit(new ChildRewriter() {
+            @Override
+            Exp rewrite(Exp child) throws FnPlotException {
+                child.visit(this, null);
+                return child;
+            }
+
+            @Override
+            public Void visitStmtDefinition(StmtDefinition sd, Void arg)
+                    throws FnPlotException {
+                bound.add(sd.getVar());
+                return super.visitStmtDefinition(sd, arg);
+            }
+
+            @Override
+            public Void visitStmtLet(StmtLet let, Void arg) throws FnPlotException {
+                for (Binding b : let.getBindings()) {
+                    bound.add(b.getVar());
+                }
+                return super.visitStmtLet(let, arg);
+            }
+
+            @Override
+            public Void visitStmtFor(StmtFor loop, Void arg) throws FnPlotException {
+                bound.add(loop.getVar());
+                return super.visitStmtFor(loop, arg);
+            }
+
+            @Override
+            public Void visitFnDefn(ExpFunction fn, Void arg) {
+                return null;
+            }
+        }, null);
+
+        // the eliminated expressions, largest first, with their temporaries
+        LinkedHashMap<Exp, String> names = new LinkedHashMap<>();
+        HashMap<Exp, Integer> sizes = new HashMap<>();
+        while (true) {
+            Counter counter = new Counter(builder, names);
+            counter.rewrite(body);
+            for (Exp e : names.keySet()) {
+                for (Exp operand : ExpBuilder.operands(e)) {
+                    counter.rewrite(operand);
+                }
+            }
+            Exp best = null;
+            int bestSize = 0;
+            for (Map.Entry<Exp, Integer> entry : counter.counts.entrySet()) {
+                Exp e = entry.getKey();
+                if (entry.getValue() > 1 && !names.containsKey(e)
+                        && counter.always.contains(e)) {
+                    int size = size(e, sizes);
+                    if (size > bestSize && !mentions(e, bound)) {
+                        best = e;
+                        bestSize = size;
+                    }
+                }
+            }
+            if (best == null) {
+                break;
+            }
+            names.put(best, TEMP_PREFIX + temps++);
+        }
+        if (names.isEmpty()) {
+            return body;
+        }
+
+        body = new ChildRewriter() {
+            @Override
+            Exp rewrite(Exp child) throws FnPlotException {
+                String name = names.get(builder.canonical(child));
+                if (name != null) {
+                    return new ExpVar(name);
+                }
+                child.visit(this, null);
+                return child;
+            }
+
+            @Override
+            public Void visitFnDefn(ExpFunction fn, Void arg) {
+                return null;
+            }
+        }.rewrite(body);
+        // smaller expressions are bound outside the larger ones that use them
+        for (Exp e : names.keySet()) {
+            ArrayList<Binding> bindings = new ArrayList<>();
+            bindings.add(new Binding(names.get(e), copy(e, e, names)));
+            body = new StmtLet(bindings, body);
+        }
+        return body;
+    }
+
+    /*
+     * Counts the occurrences of the non-trivial canonical expressions within
+     * a function body.  An occurrence of an expression that has already been
+     * eliminated is counted, but not the expressions within it.  The
+     * expressions that occur outside the bodies of loops, and so are
+     * evaluated on every call, are recorded as well.
+     */
+    private static class Counter extends ChildRewriter {
+
+        final LinkedHashMap<Exp, Integer> counts = new LinkedHashMap<>();
+        final HashSet<Exp> always = new HashSet<>();
+        final ExpBuilder builder;
+        final Map<Exp, String> names;
+        // the number of loop bodies enclosing the expressions being counted
+        private int loops;
+
+        Counter(ExpBuilder builder, Map<Exp, String> names) {
+            this.builder = builder;
+            this.names = names;
+        }
+
+        @Override
+        Exp rewrite(Exp child) throws FnPlotException {
+            Exp e = builder.canonical(child);
+            if (e == null) {
+                child.visit(this, null);
+                return child;
+            }
+            Exp[] operands = ExpBuilder.operands(e);
+            if (operands.length > 0) {
+                counts.merge(e, 1, Integer::sum);
+                if (loops == 0) {
+                    always.add(e);
+                }
+                if (!names.containsKey(e)) {
+                    for (Exp operand : operands) {
+                        rewrite(operand);
+                    }
+                }
+            }
+            return child;
+        }
+
+        @Override
+        public Void visitStmtFor(StmtFor loop, Void arg) throws FnPlotException {
+            rewrite(loop.getLower());
+            rewrite(loop.getUpper());
+            rewrite(loop.getStep());
+            loops++;
+            try {
+                rewrite(loop.getBody());
+            } finally {
+                loops--;
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitFnDefn(ExpFunction fn, Void arg) {
+            return null;
+        }
+    }
+
+    private static int size(Exp e, HashMap<Exp, Integer> sizes) {
+        Integer size = sizes.get(e);
+        if (size == null) {
+            size = 1;
+            for (Exp operand : ExpBuilder.operands(e)) {
+                size += size(operand, sizes);
+            }
+            sizes.put(e, size);
+        }
+        return size;
+    }
+
+    private static boolean mentions(Exp e, HashSet<String> vars) {
+        if (e instanceof ExpVar) {
+            return vars.contains(((ExpVar) e).getVar());
+        }
+        for (Exp operand : ExpBuilder.operands(e)) {
+            if (mentions(operand, vars)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Build a new tree for a canonical expression, referring to the
+     * temporaries for any eliminated expressions within it other than itself.
+     */
+    private static Exp copy(Exp e, Exp self, Map<Exp, String> names) {
+        if (e != self && names.containsKey(e)) {
+            return new ExpVar(names.get(e));
+        } else if (e instanceof ExpLit) {
+            return new ExpLit(((ExpLit) e).getVal());
+        } else if (e instanceof ExpVar) {
+            return new ExpVar(((ExpVar) e).getVar());
+        } else if (e instanceof ExpPromote) {
+            return new ExpPromote(copy(((ExpPromote) e).getExp(), self, names));
+        }
+        Exp[] operands = ExpBuilder.operands(e);
+        return Optimizer.make(ExpBuilder.operator(e), copy(operands[0], self, names),
+                copy(operands[1], self, names));
+    }
+}
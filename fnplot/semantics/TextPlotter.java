@@ -57,17 +57,19 @@ public class TextPlotter implements Plotter {
 
     @Override
     public void plot(Point2D[] points) {
-        float[] xs = new float[points.length];
-        float[] ys = new float[points.length];
-        for (int i = 0; i < points.length; i++) {
-            xs[i] = (float) points[i].getX();
-            ys[i] = (float) points[i].getY();
-        }
+        plot(PointBuffer.of(points));
+    }
+
+    @Override
+    public void plot(PointBuffer points) {
+        double[] xs = points.getXs();
+        double[] ys = points.getYs();
+        int length = points.length();
         
         int n = 4;   // no. of points per line
         int p = 0;
         out.println("<PATH:");
-        for (int i = 0; i < points.length/n; i++) {
+        for (int i = 0; i < length/n; i++) {
             out.print("  ");
             for (int j = 0; j < n - 1; j++) {
                 out.format("(%.4f, %.4f), ", xs[p], ys[p]);
@@ -76,9 +78,9 @@ public class TextPlotter implements Plotter {
             out.format("(%.4f, %.4f)%n", xs[p], ys[p]);
             p = p + 1;
         }
-        if (p < points.length) {
+        if (p < length) {
             out.print("  ");
-            while (p < points.length - 1) {
+            while (p < length - 1) {
                 out.format("(%.4f, %.4f), ", xs[p], ys[p]);
                 p = p + 1;
             }
@@ -88,6 +90,11 @@ public class TextPlotter implements Plotter {
         out.flush();
     }
 
+    @Override
+    public double[] getYRange() {
+        return null;    // every point is printed
+    }
+
     @Override
     public void clear() {
         out.println("<CLEAR>");
@@ -0,0 +1,399 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpExpo;
+import fnplot.syntax.ExpFuncall;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPromote;
+import fnplot.syntax.ExpSub;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.Statement;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtFor;
+import fnplot.syntax.StmtFun;
+import fnplot.syntax.StmtLet;
+import fnplot.syntax.StmtPlot;
+import fnplot.syntax.StmtSequence;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotType;
+import fnplot.values.FnPlotValue;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A pass over a program that works out, where it can, the type that each
+ * expression will produce, and records it on the expression as its static
+ * type.  Wherever an integer operand meets a real one in an arithmetic
+ * operation, the integer operand is wrapped in an {@link ExpPromote} node, so
+ * that the operation can be carried out on reals without checking the types
+ * of its operands as it is evaluated.
+ *
+ * Types are only recorded where they hold for every evaluation.  Literals
+ * have the type of their value, and variables bound by <code>let</code> have
+ * the type of their binding, unless a definition in the scope of the
+ * <code>let</code> may rebind them.  Function parameters, global variables
+ * and the results of function calls are not known.
+ */
+public class TypeInferencer implements Visitor<TypeInferencer.Scope, FnPlotType> {
+
+    /**
+     * The types of the variables bound by a <code>let</code> or function, by
+     * name.  A variable mapped to <code>null</code> is bound here but its type
+     * is not known.  The global scope is represented by <code>null</code>.
+     */
+    static class Scope {
+
+        final HashMap<String, FnPlotType> types = new HashMap<>();
+        final Scope parent;
+
+        Scope(Scope parent) {
+            this.parent = parent;
+        }
+
+        /*
+         * Mark the variables defined within the given body as unknown, since
+         * a definition may rebind them to a value of any type.
+         */
+        void redefinable(Exp body) throws FnPlotException {
+            ArrayList<String> defined = new ArrayList<>();
+            new Resolver.DefinitionCollector().collect(body, defined);
+            for (String var : defined) {
+                types.put(var, null);
+            }
+        }
+    }
+
+    private final boolean annotate;
+    private final Environment<FnPlotValue<?>> globals;
+
+    /* the number of enclosing nodes that DoubleEvaluator hands to the boxed evaluator */
+    private int boxedDepth = 0;
+
+    /* cleared when an unboxed operation or let binding is not provably real */
+    private boolean realOnly = true;
+
+    /**
+     * Create a type inferencer that annotates the programs it is given.
+     */
+    public TypeInferencer() {
+        this(true, null);
+    }
+
+    /*
+     * Create a type inferencer.  If annotate is false, types are computed but
+     * the AST is left unchanged.  If globals is not null, global variables are
+     * taken to have the types of their current values in it.
+     */
+    private TypeInferencer(boolean annotate, Environment<FnPlotValue<?>> globals) {
+        this.annotate = annotate;
+        this.globals = globals;
+    }
+
+    /**
+     * Infer the types of all the expressions in a program.
+     * @param p The program; its nodes are annotated, and promotions inserted,
+     * in place
+     * @throws FnPlotException if the program contains a node that cannot be
+     * typed.
+     */
+    public void infer(ArithProgram p) throws FnPlotException {
+        p.visit(this, null);
+    }
+
+    /**
+     * Infer the types of all the expressions in a function that closes over
+     * an existing environment.  Its free variables are taken to have the
+     * types of their current values there.
+     * @param fn The function; its nodes are annotated, and promotions
+     * inserted, in place
+     * @param env The environment it closes over
+     * @throws FnPlotException if the function contains a node that cannot be
+     * typed.
+     */
+    static void infer(ExpFunction fn, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        fn.visit(new TypeInferencer(true, env), null);
+    }
+
+    /**
+     * Determine whether an expression, evaluated with some of its variables
+     * bound to reals, can be evaluated entirely on doubles.  That is the case
+     * when it produces a real, and every arithmetic operation and
+     * <code>let</code> binding in it (outside of function calls and blocks)
+     * produces a real, so that no integer arithmetic is needed.  The
+     * expression is not modified.
+     * @param exp The expression
+     * @param realVars The variables bound to reals around the expression
+     * @param env The environment in which any other variables are bound, as
+     * they will be when the expression is evaluated
+     * @return <code>true</code> if the expression is real-valued.
+     */
+    static boolean isRealValued(Exp exp, ArrayList<String> realVars,
+            Environment<FnPlotValue<?>> env) {
+        TypeInferencer typer = new TypeInferencer(false, env);
+        try {
+            Scope scope = new Scope(null);
+            for (String var : realVars) {
+                scope.types.put(var, FnPlotType.REAL);
+            }
+            scope.redefinable(exp);
+            return exp.visit(typer, scope) == FnPlotType.REAL && typer.realOnly;
+        } catch (FnPlotException e) {
+            return false;
+        }
+    }
+
+    private FnPlotType record(Exp exp, FnPlotType type) {
+        if (annotate) {
+            exp.setStaticType(type);
+        }
+        return type;
+    }
+
+    private boolean numeric(FnPlotType t) {
+        return t == FnPlotType.INTEGER || t == FnPlotType.REAL;
+    }
+
+    /*
+     * Operations on two integers produce integers; an operation on a real
+     * and a number (or an operand that may turn out to be one) produces a
+     * real.
+     */
+    private FnPlotType arithmetic(FnPlotType tl, FnPlotType tr) {
+        FnPlotType t = null;
+        if (tl == FnPlotType.INTEGER && tr == FnPlotType.INTEGER) {
+            t = FnPlotType.INTEGER;
+        } else if (tl == FnPlotType.REAL && (tr == null || numeric(tr))) {
+            t = FnPlotType.REAL;
+        } else if (tr == FnPlotType.REAL && (tl == null || numeric(tl))) {
+            t = FnPlotType.REAL;
+        }
+        if (t != FnPlotType.REAL && boxedDepth == 0) {
+            realOnly = false;
+        }
+        return t;
+    }
+
+    /*
+     * Return the operand to be used for an operation of type t, promoting
+     * it if it is an integer and t is real.
+     */
+    private Exp operand(Exp e, FnPlotType te, FnPlotType t) {
+        if (annotate && t == FnPlotType.REAL && te == FnPlotType.INTEGER) {
+            return new ExpPromote(e);
+        }
+        return e;
+    }
+
+    /* visit a node that DoubleEvaluator evaluates with the boxed evaluator */
+    private FnPlotType boxed(Exp exp, Scope scope) throws FnPlotException {
+        boxedDepth++;
+        try {
+            return exp.visit(this, scope);
+        } finally {
+            boxedDepth--;
+        }
+    }
+
+    @Override
+    public FnPlotType visitArithProgram(ArithProgram p, Scope scope) throws FnPlotException {
+        return p.getSeq().visit(this, scope);
+    }
+
+    @Override
+    public FnPlotType visitStmtSequence(StmtSequence sseq, Scope scope)
+            throws FnPlotException {
+        boxedDepth++;
+        try {
+            for (Statement s : sseq.getSeq()) {
+                s.visit(this, scope);
+            }
+        } finally {
+            boxedDepth--;
+        }
+        return record(sseq, null);
+    }
+
+    @Override
+    public FnPlotType visitStmtDefinition(StmtDefinition sd, Scope scope)
+            throws FnPlotException {
+        sd.getExp().visit(this, scope);
+        return null;
+    }
+
+    @Override
+    public FnPlotType visitFnDefn(ExpFunction fn, Scope scope) throws FnPlotException {
+        Scope inner = new Scope(scope);
+        for (String param : fn.getParameters()) {
+            inner.types.put(param, null);
+        }
+        inner.redefinable(fn.getBody());
+        boxed(fn.getBody(), inner);
+        return record(fn, FnPlotType.FUNCTION);
+    }
+
+    @Override
+    public FnPlotType visitStmtFun(StmtFun fun, Scope scope) throws FnPlotException {
+        boxedDepth++;
+        try {
+            Scope inner = new Scope(scope);
+            for (Binding b : fun.getBindings()) {
+                inner.types.put(b.getVar(), b.getValExp().visit(this, scope));
+            }
+            inner.redefinable(fun.getBody());
+            return record(fun, fun.getBody().visit(this, inner));
+        } finally {
+            boxedDepth--;
+        }
+    }
+
+    @Override
+    public FnPlotType visitStmtLet(StmtLet let, Scope scope) throws FnPlotException {
+        Scope inner = new Scope(scope);
+        for (Binding b : let.getBindings()) {
+            FnPlotType t = b.getValExp().visit(this, scope);
+            if (t != FnPlotType.REAL && boxedDepth == 0) {
+                realOnly = false;
+            }
+            inner.types.put(b.getVar(), t);
+        }
+        inner.redefinable(let.getBody());
+        return record(let, let.getBody().visit(this, inner));
+    }
+
+    /**
+     * The variable of a loop is an integer if its bounds and step are all
+     * integers, and a real if any of them is a real, unless the body of the
+     * loop may redefine it.
+     */
+    @Override
+    public FnPlotType visitStmtFor(StmtFor loop, Scope scope) throws FnPlotException {
+        FnPlotType tl = loop.getLower().visit(this, scope);
+        FnPlotType tu = loop.getUpper().visit(this, scope);
+        FnPlotType ts = loop.getStep().visit(this, scope);
+        FnPlotType t = null;
+        if (tl == FnPlotType.INTEGER && tu == FnPlotType.INTEGER && ts == FnPlotType.INTEGER) {
+            t = FnPlotType.INTEGER;
+        } else if (tl == FnPlotType.REAL || tu == FnPlotType.REAL || ts == FnPlotType.REAL) {
+            t = FnPlotType.REAL;
+        }
+        Scope inner = new Scope(scope);
+        inner.types.put(loop.getVar(), t);
+        inner.redefinable(loop.getBody());
+        loop.getBody().visit(this, inner);
+        return null;
+    }
+
+    @Override
+    public FnPlotType visitStmtPlot(StmtPlot plot, Scope scope) throws FnPlotException {
+        plot.getFunction().visit(this, scope);
+        plot.getLower().visit(this, scope);
+        plot.getUpper().visit(this, scope);
+        return null;
+    }
+
+    @Override
+    public FnPlotType visitExpAdd(ExpAdd exp, Scope scope) throws FnPlotException {
+        FnPlotType tl = exp.getExpL().visit(this, scope);
+        FnPlotType tr = exp.getExpR().visit(this, scope);
+        FnPlotType t = arithmetic(tl, tr);
+        exp.setExpL(operand(exp.getExpL(), tl, t));
+        exp.setExpR(operand(exp.getExpR(), tr, t));
+        return record(exp, t);
+    }
+
+    @Override
+    public FnPlotType visitExpSub(ExpSub exp, Scope scope) throws FnPlotException {
+        FnPlotType tl = exp.getExpL().visit(this, scope);
+        FnPlotType tr = exp.getExpR().visit(this, scope);
+        FnPlotType t = arithmetic(tl, tr);
+        exp.setExpL(operand(exp.getExpL(), tl, t));
+        exp.setExpR(operand(exp.getExpR(), tr, t));
+        return record(exp, t);
+    }
+
+    @Override
+    public FnPlotType visitExpMul(ExpMul exp, Scope scope) throws FnPlotException {
+        FnPlotType tl = exp.getExpL().visit(this, scope);
+        FnPlotType tr = exp.getExpR().visit(this, scope);
+        FnPlotType t = arithmetic(tl, tr);
+        exp.setExpL(operand(exp.getExpL(), tl, t));
+        exp.setExpR(operand(exp.getExpR(), tr, t));
+        return record(exp, t);
+    }
+
+    @Override
+    public FnPlotType visitExpDiv(ExpDiv exp, Scope scope) throws FnPlotException {
+        FnPlotType tl = exp.getExpL().visit(this, scope);
+        FnPlotType tr = exp.getExpR().visit(this, scope);
+        FnPlotType t = arithmetic(tl, tr);
+        exp.setExpL(operand(exp.getExpL(), tl, t));
+        exp.setExpR(operand(exp.getExpR(), tr, t));
+        return record(exp, t);
+    }
+
+    @Override
+    public FnPlotType visitExpMod(ExpMod exp, Scope scope) throws FnPlotException {
+        FnPlotType tl = exp.getExpL().visit(this, scope);
+        FnPlotType tr = exp.getExpR().visit(this, scope);
+        FnPlotType t = arithmetic(tl, tr);
+        exp.setExpL(operand(exp.getExpL(), tl, t));
+        exp.setExpR(operand(exp.getExpR(), tr, t));
+        return record(exp, t);
+    }
+
+    @Override
+    public FnPlotType visitExpExpo(ExpExpo exp, Scope scope) throws FnPlotException {
+        FnPlotType tl = exp.getExpL().visit(this, scope);
+        FnPlotType tr = exp.getExpR().visit(this, scope);
+        FnPlotType t = arithmetic(tl, tr);
+        exp.setExpL(operand(exp.getExpL(), tl, t));
+        exp.setExpR(operand(exp.getExpR(), tr, t));
+        return record(exp, t);
+    }
+
+    @Override
+    public FnPlotType visitExpFuncall(ExpFuncall exp, Scope scope) throws FnPlotException {
+        for (Exp arg : exp.getArguments()) {
+            boxed(arg, scope);
+        }
+        return record(exp, null);
+    }
+
+    @Override
+    public FnPlotType visitExpLit(ExpLit exp, Scope scope) {
+        return record(exp, exp.getVal().getType());
+    }
+
+    @Override
+    public FnPlotType visitExpVar(ExpVar exp, Scope scope) {
+        String var = exp.getVar();
+        for (Scope s = scope; s != null; s = s.parent) {
+            if (s.types.containsKey(var)) {
+                return record(exp, s.types.get(var));
+            }
+        }
+        FnPlotType t = null;
+        if (globals != null) {
+            try {
+                t = globals.get(var).getType();
+            } catch (FnPlotException e) {
+                t = null;
+            }
+        }
+        return record(exp, t);
+    }
+
+    @Override
+    public FnPlotType visitExpPromote(ExpPromote exp, Scope scope) throws FnPlotException {
+        exp.getExp().visit(this, scope);
+        return FnPlotType.REAL;
+    }
+}
@@ -0,0 +1,80 @@
+package fnplot.semantics;
+
+import fnplot.sys.FnPlotException;
+import java.util.ArrayList;
+
+/**
+ * Samples a curve over just the part of its interval that is in view, on
+ * the grid of a {@link SampleCache} about as fine as the plotter's own
+ * sample of the whole view.  The values computed are kept in the cache, so
+ * that when the view is panned or zoomed, only the points that come into
+ * view, or that the finer grid of a closer view adds, are evaluated.
+ */
+class ViewSampler implements CurveSampler {
+
+    /**
+     * The greatest number of sample points whose values are kept for
+     * drawing the plots in a view again.
+     */
+    static final int VIEW_CACHE_CAPACITY = 1 << 20;
+
+    private final BatchSampler points;
+    private final PlainSampler plain;
+    private final SampleCache cache = new SampleCache(VIEW_CACHE_CAPACITY);
+
+    /**
+     * The visible range of input values, as an array holding its lower and
+     * upper bounds, or <code>null</code> if none has been set.
+     */
+    private double[] view;
+
+    ViewSampler(BatchSampler points, PlainSampler plain) {
+        this.points = points;
+        this.plain = plain;
+    }
+
+    /**
+     * @return The visible range of input values, as an array holding its
+     * lower and upper bounds, or <code>null</code> if none has been set.
+     */
+    double[] getView() {
+        return view == null ? null : view.clone();
+    }
+
+    /**
+     * Set the range of input values over which curves are sampled.
+     * @param low The lower bound of the visible range
+     * @param hi The upper bound of the visible range
+     */
+    void setView(double low, double hi) {
+        view = new double[]{low, hi};
+    }
+
+    /**
+     * @return The cache of the values of the functions sampled.
+     */
+    SampleCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public void trace(DependencyGraph.Curve curve, Plotter plotter) throws FnPlotException {
+        BatchSampler.checkUnary(curve.f);
+        double[] v = view;
+        ArrayList<PointBuffer> paths = new ArrayList<>();
+        double lo = Math.max(curve.low, v[0]);
+        double up = Math.min(curve.hi, v[1]);
+        if (lo > up) {
+            curve.paths = paths;    // wholly out of view
+            return;
+        }
+        double spacing = (v[1] - v[0]) / (plotter.sample(v[0], v[1]).length - 1);
+        double[][] sample = cache.sample(curve.f, points.values(curve.f), lo, up, spacing);
+        if (sample == null) {
+            curve.paths = plain.paths(curve.f, lo, up, plotter);
+            return;
+        }
+        paths.add(new PointBuffer(sample[0], sample[1]));
+        curve.paths = paths;
+    }
+}
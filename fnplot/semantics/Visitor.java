@@ -4,10 +4,13 @@ import fnplot.syntax.Statement;
 import fnplot.syntax.StmtDefinition;
 import fnplot.syntax.StmtLet;
 import fnplot.syntax.StmtFun;
+import fnplot.syntax.StmtFor;
+import fnplot.syntax.StmtPlot;
 import fnplot.syntax.StmtSequence;
 import fnplot.syntax.ExpDiv;
 import fnplot.syntax.ExpLit;
 import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPromote;
 import fnplot.syntax.ExpSub;
 import fnplot.syntax.ExpMod;
 import fnplot.syntax.ExpVar;
@@ -64,6 +67,26 @@ public interface Visitor<S, T> {
      */
     public T visitStmtLet(StmtLet letExp, S arg) throws FnPlotException;
 
+    /**
+     * Visit a for loop.
+     * @param loop The loop AST node to be visited.
+     * @param arg The "state" to be referenced by this visitor while visiting 
+     * the given node.
+     * @return The result of visiting the subtree rooted at this node in the AST.
+     * @throws FnPlotException If an error arises while visiting the subtree.
+     */
+    public T visitStmtFor(StmtFor loop, S arg) throws FnPlotException;
+
+    /**
+     * Visit a plot statement.
+     * @param plot The plot AST node to be visited.
+     * @param arg The "state" to be referenced by this visitor while visiting 
+     * the given node.
+     * @return The result of visiting the subtree rooted at this node in the AST.
+     * @throws FnPlotException If an error arises while visiting the subtree.
+     */
+    public T visitStmtPlot(StmtPlot plot, S arg) throws FnPlotException;
+
     // expressions
     /**
      * Visit an add expression.
@@ -138,4 +161,14 @@ public interface Visitor<S, T> {
      * @throws FnPlotException If an error arises while visiting the subtree.
      */
     public T visitExpVar(ExpVar exp, S arg) throws FnPlotException;
+
+    /**
+     * Visit the promotion of an integer operand to a real.
+     * @param exp The promotion AST node to be visited.
+     * @param arg The "state" to be referenced by this visitor while visiting 
+     * the given node.
+     * @return The result of visiting the subtree rooted at this node in the AST.
+     * @throws FnPlotException If an error arises while visiting the subtree.
+     */
+    public T visitExpPromote(ExpPromote exp, S arg) throws FnPlotException;
 }
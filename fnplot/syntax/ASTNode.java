@@ -25,6 +25,7 @@
 
 package fnplot.syntax;
 
+import fnplot.semantics.DoubleVisitor;
 import fnplot.semantics.Visitor;
 import fnplot.sys.FnPlotException;
 
@@ -49,6 +50,21 @@ public abstract class ASTNode {
      */
     public abstract <S, T> T visit(Visitor<S, T> v, S state) throws FnPlotException ;
 
+    /**
+     * Visit this expression with a visitor that computes a primitive double.
+     * Nodes that have no specific method in {@link DoubleVisitor} are passed
+     * to its <code>visitOther</code> method.
+     * @param <S> The type of the state to be passed.
+     * @param v The visitor instance
+     * @param state The state of the computation inherited from the parent of 
+     * this node.
+     * @return The result of the visitor calling its appropriate method.
+     * @throws FnPlotException If a runtime error occurs.
+     */
+    public <S> double visitDouble(DoubleVisitor<S> v, S state) throws FnPlotException {
+        return v.visitOther(this, state);
+    }
+
     @Override
     public abstract String toString();
 
@@ -18,4 +18,12 @@ public class Binding {
 	return valExp;
     }
 
+    public void setValExp(Exp valExp) {
+	this.valExp = valExp;
+    }
+
+    @Override
+    public String toString() {
+	return var + " = " + valExp;
+    }
 }
@@ -2,8 +2,25 @@ package fnplot.syntax;
 
 import fnplot.semantics.Visitor;
 import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotType;
 
 public abstract class Exp extends Statement {
 
-    
+    FnPlotType staticType;
+
+    /**
+     * @return The type that every evaluation of this expression is known to
+     * produce, or <code>null</code> if it is not known before evaluation.
+     */
+    public FnPlotType getStaticType() {
+        return staticType;
+    }
+
+    /**
+     * Record the type that every evaluation of this expression produces.
+     * @param type The type, or <code>null</code> if it is not known
+     */
+    public void setStaticType(FnPlotType type) {
+        staticType = type;
+    }
 }
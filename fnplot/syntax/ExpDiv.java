@@ -1,5 +1,7 @@
 package fnplot.syntax;
 
+import fnplot.semantics.ArithSite;
+import fnplot.semantics.DoubleVisitor;
 import fnplot.semantics.Visitor;
 import fnplot.sys.FnPlotException;
 
@@ -7,6 +9,7 @@ public class ExpDiv extends Exp {
 
     Exp exp1;
     Exp exp2;
+    final ArithSite site = new ArithSite(ArithSite.Op.DIV);
 
     public ExpDiv(Exp e1, Exp e2) {
 	exp1 = e1;
@@ -20,11 +23,31 @@ public class ExpDiv extends Exp {
 	return exp2;
     }
 
+    public void setExpL(Exp e) {
+	exp1 = e;
+    }
+
+    public void setExpR(Exp e) {
+	exp2 = e;
+    }
+
+    /**
+     * @return The execution state of this operation in the evaluator.
+     */
+    public ArithSite getSite() {
+	return site;
+    }
+
     @Override
     public <S, T> T visit(Visitor<S,T> v, S arg) throws FnPlotException {
 	return v.visitExpDiv(this, arg);
     }
 
+    @Override
+    public <S> double visitDouble(DoubleVisitor<S> v, S arg) throws FnPlotException {
+        return v.visitExpDiv(this, arg);
+    }
+
     @Override
     public String toString() {
 	return exp1.toString() + " / " + exp2.toString();
@@ -10,6 +10,8 @@ import java.util.ArrayList;
 public class ExpFuncall  extends Exp {
     String name;
     ArrayList<Exp> argList;
+    int depth = -1;
+    int slot = -1;
     public ExpFuncall(String name,ArrayList<Exp> argList){
        this.name=name;
        this.argList=argList;
@@ -23,6 +25,34 @@ public class ExpFuncall  extends Exp {
         return argList;
     }  
 
+    /**
+     * Record the lexical address of the binding of the function called.
+     * @param depth The number of frames between the call and the frame
+     * holding the binding
+     * @param slot The index of the binding within that frame, or -1 if the
+     * binding is to be looked up by name (as for globals)
+     */
+    public void setAddress(int depth, int slot) {
+        this.depth = depth;
+        this.slot = slot;
+    }
+
+    /**
+     * @return <code>true</code> if the name of the function called has been
+     * given a lexical address by the resolver.
+     */
+    public boolean isResolved() {
+        return depth >= 0;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
     @Override
     public <S, T> T visit(Visitor<S, T> v, S arg) throws FnPlotException {
         return v.visitExpFuncall(this, arg);
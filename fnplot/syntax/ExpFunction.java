@@ -25,6 +25,7 @@
 
 package fnplot.syntax;
 
+import fnplot.semantics.CompiledFunction;
 import fnplot.semantics.Visitor;
 import fnplot.sys.FnPlotException;
 import java.util.ArrayList;
@@ -37,6 +38,9 @@ public class ExpFunction  extends Exp {
     
     ArrayList<String> parameters;
     Exp body;
+    String[] frameVars;
+    // the kernel last compiled from this function, if any
+    private volatile CompiledFunction kernel;
 
     public ExpFunction() {
         super();
@@ -54,6 +58,39 @@ public class ExpFunction  extends Exp {
     public Exp getBody() {
         return body;
     }
+
+    public void setBody(Exp body) {
+        this.body = body;
+        this.kernel = null;
+    }
+
+    /**
+     * @return The names of the slots in the frame created for a call of this
+     * function, as laid out by the resolver (the parameters in order, followed
+     * by any variables defined within the body), or <code>null</code> if the
+     * function has not been resolved.
+     */
+    public String[] getFrameVars() {
+        return frameVars;
+    }
+
+    public void setFrameVars(String[] frameVars) {
+        this.frameVars = frameVars;
+    }
+
+    /**
+     * @return The kernel last compiled from this function by the
+     * {@link fnplot.semantics.FnCompiler}, or <code>null</code> if there is
+     * none.  It is valid only while the variables it captured keep the values
+     * they had when it was compiled.
+     */
+    public CompiledFunction getKernel() {
+        return kernel;
+    }
+
+    public void setKernel(CompiledFunction kernel) {
+        this.kernel = kernel;
+    }
     
     @Override
     public <S, T> T visit(Visitor<S, T> v, S state) throws FnPlotException {
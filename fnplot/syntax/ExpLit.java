@@ -1,5 +1,6 @@
 package fnplot.syntax;
 
+import fnplot.semantics.DoubleVisitor;
 import fnplot.semantics.Visitor;
 import fnplot.sys.FnPlotException;
 import fnplot.values.FnPlotValue;
@@ -33,6 +34,11 @@ public class ExpLit extends Exp {
         return v.visitExpLit(this, arg);
     }
 
+    @Override
+    public <S> double visitDouble(DoubleVisitor<S> v, S arg) throws FnPlotException {
+        return v.visitExpLit(this, arg);
+    }
+
     @Override
     public String toString() {
         return val.toString();
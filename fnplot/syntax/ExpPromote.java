@@ -0,0 +1,44 @@
+package fnplot.syntax;
+
+import fnplot.semantics.DoubleVisitor;
+import fnplot.semantics.Visitor;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotType;
+
+/**
+ * Class to represent the conversion of an integer operand to a real, where
+ * it is combined with a real in an arithmetic operation.  These nodes are
+ * not produced by the parser; they are inserted by type inference.
+ */
+public class ExpPromote extends Exp {
+
+    Exp exp;
+
+    public ExpPromote(Exp e) {
+        exp = e;
+        staticType = FnPlotType.REAL;
+    }
+
+    public Exp getExp() {
+        return exp;
+    }
+
+    public void setExp(Exp exp) {
+        this.exp = exp;
+    }
+
+    @Override
+    public <S, T> T visit(Visitor<S, T> v, S arg) throws FnPlotException {
+        return v.visitExpPromote(this, arg);
+    }
+
+    @Override
+    public <S> double visitDouble(DoubleVisitor<S> v, S arg) throws FnPlotException {
+        return v.visitExpPromote(this, arg);
+    }
+
+    @Override
+    public String toString() {
+        return exp.toString();
+    }
+}
@@ -1,5 +1,7 @@
 package fnplot.syntax;
 
+import fnplot.semantics.ArithSite;
+import fnplot.semantics.DoubleVisitor;
 import fnplot.semantics.Visitor;
 import fnplot.sys.FnPlotException;
 
@@ -11,6 +13,7 @@ public class ExpSub extends Exp {
 
     Exp exp1;
     Exp exp2;
+    final ArithSite site = new ArithSite(ArithSite.Op.SUB);
 
     public ExpSub(Exp e1, Exp e2) {
         exp1 = e1;
@@ -25,11 +28,31 @@ public class ExpSub extends Exp {
         return exp2;
     }
 
+    public void setExpL(Exp e) {
+        exp1 = e;
+    }
+
+    public void setExpR(Exp e) {
+        exp2 = e;
+    }
+
+    /**
+     * @return The execution state of this operation in the evaluator.
+     */
+    public ArithSite getSite() {
+        return site;
+    }
+
     @Override
     public <S, T> T visit(Visitor<S, T> v, S arg) throws FnPlotException {
         return v.visitExpSub(this, arg);
     }
 
+    @Override
+    public <S> double visitDouble(DoubleVisitor<S> v, S arg) throws FnPlotException {
+        return v.visitExpSub(this, arg);
+    }
+
     @Override
     public String toString() {
         return exp1.toString() + " - " + exp2.toString();
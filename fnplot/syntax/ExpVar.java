@@ -1,11 +1,14 @@
 package fnplot.syntax;
 
+import fnplot.semantics.DoubleVisitor;
 import fnplot.semantics.Visitor;
 import fnplot.sys.FnPlotException;
 
 public class ExpVar extends Exp {
 
     String var;
+    int depth = -1;
+    int slot = -1;
 
     public ExpVar(String id) {
 	var = id;
@@ -15,11 +18,44 @@ public class ExpVar extends Exp {
 	return var;
     }
 
+    /**
+     * Record the lexical address of the binding this variable refers to.
+     * @param depth The number of frames between the reference and the frame
+     * holding the binding
+     * @param slot The index of the binding within that frame, or -1 if the
+     * binding is to be looked up by name (as for globals)
+     */
+    public void setAddress(int depth, int slot) {
+	this.depth = depth;
+	this.slot = slot;
+    }
+
+    /**
+     * @return <code>true</code> if this reference has been given a lexical
+     * address by the resolver.
+     */
+    public boolean isResolved() {
+	return depth >= 0;
+    }
+
+    public int getDepth() {
+	return depth;
+    }
+
+    public int getSlot() {
+	return slot;
+    }
+
     @Override
     public <S, T> T visit(Visitor<S, T> v, S arg) throws FnPlotException {
 	return v.visitExpVar(this, arg);
     }
 
+    @Override
+    public <S> double visitDouble(DoubleVisitor<S> v, S arg) throws FnPlotException {
+        return v.visitExpVar(this, arg);
+    }
+
     @Override
     public String toString() {
 	return var;
@@ -37,20 +37,22 @@ public class FnPlotParser extends java_cup.runtime.lr_parser {
   /** Production table. */
   protected static final short _production_table[][] = 
     unpackFromStrings(new String[] {
-    "\000\052\000\002\002\003\000\002\002\004\000\002\003" +
-    "\004\000\002\003\003\000\002\004\003\000\002\004\004" +
-    "\000\002\022\003\000\002\022\005\000\002\022\003\000" +
-    "\002\006\006\000\002\014\005\000\002\014\003\000\002" +
-    "\015\003\000\002\015\003\000\002\007\010\000\002\016" +
-    "\005\000\002\016\003\000\002\017\003\000\002\017\003" +
-    "\000\002\021\006\000\002\020\005\000\002\012\004\000" +
-    "\002\012\003\000\002\013\005\000\002\013\003\000\002" +
-    "\005\006\000\002\005\006\000\002\005\006\000\002\023" +
-    "\005\000\002\023\005\000\002\023\003\000\002\024\005" +
-    "\000\002\024\005\000\002\024\005\000\002\024\003\000" +
-    "\002\024\005\000\002\026\003\000\002\026\003\000\002" +
-    "\025\003\000\002\025\003\000\002\025\005\000\002\027" +
-    "\002" });
+    "\000\062\000\002\002\003\000\002\002\004\000\002\003" +
+    "\004\000\002\003\003\000\002\004\003\000\002\004\003" +
+    "\000\002\004\003\000\002\004\004\000\002\006\013\000" +
+    "\002\006\015\000\002\013\015\000\002\013\016\000\002" +
+    "\007\005\000\002\007\006\000\002\024\003\000\002\024" +
+    "\005\000\002\024\003\000\002\010\006\000\002\016\005" +
+    "\000\002\016\003\000\002\017\003\000\002\017\003\000" +
+    "\002\011\010\000\002\020\005\000\002\020\003\000\002" +
+    "\021\003\000\002\021\003\000\002\023\006\000\002\022" +
+    "\005\000\002\014\004\000\002\014\003\000\002\015\005" +
+    "\000\002\015\003\000\002\005\006\000\002\005\006\000" +
+    "\002\025\005\000\002\025\005\000\002\025\003\000\002" +
+    "\026\005\000\002\026\005\000\002\026\005\000\002\026" +
+    "\003\000\002\026\005\000\002\030\003\000\002\030\003" +
+    "\000\002\027\003\000\002\027\003\000\002\027\003\000" +
+    "\002\027\005\000\002\031\002" });
 
   /** Access to production table. */
   public short[][] production_table() {return _production_table;}
@@ -58,86 +60,131 @@ public class FnPlotParser extends java_cup.runtime.lr_parser {
   /** Parse-action table. */
   protected static final short[][] _action_table = 
     unpackFromStrings(new String[] {
-    "\000\115\000\016\004\023\016\021\020\004\034\005\035" +
-    "\016\036\014\001\002\000\016\004\023\016\021\020\004" +
-    "\034\005\035\016\036\014\001\002\000\026\005\uffdd\010" +
-    "\uffdd\011\uffdd\012\uffdd\013\uffdd\014\uffdd\017\uffdd\022\uffdd" +
-    "\030\uffdd\031\uffdd\001\002\000\022\002\ufffd\004\ufffd\016" +
-    "\ufffd\020\ufffd\021\ufffd\034\ufffd\035\ufffd\036\ufffd\001\002" +
-    "\000\022\002\ufffe\004\ufffe\016\ufffe\020\ufffe\021\ufffe\034" +
-    "\ufffe\035\ufffe\036\ufffe\001\002\000\026\005\uffe3\010\uffe3" +
-    "\011\uffe3\012\033\013\035\014\032\017\uffe3\022\uffe3\030" +
-    "\034\031\uffe3\001\002\000\026\005\uffdb\010\uffdb\011\uffdb" +
-    "\012\uffdb\013\uffdb\014\uffdb\017\uffdb\022\uffdb\030\uffdb\031" +
-    "\uffdb\001\002\000\004\002\115\001\002\000\012\005\ufffb" +
-    "\017\ufffb\022\ufffb\031\ufffb\001\002\000\022\010\uffda\011" +
-    "\uffda\012\uffda\013\uffda\014\uffda\015\062\030\uffda\031\uffda" +
-    "\001\002\000\020\002\001\004\023\016\021\020\004\034" +
-    "\005\035\016\036\014\001\002\000\026\005\uffdc\010\uffdc" +
-    "\011\uffdc\012\uffdc\013\uffdc\014\uffdc\017\uffdc\022\uffdc\030" +
-    "\uffdc\031\uffdc\001\002\000\004\031\060\001\002\000\026" +
-    "\005\uffdf\010\uffdf\011\uffdf\012\uffdf\013\uffdf\014\uffdf\017" +
-    "\uffdf\022\uffdf\030\uffdf\031\uffdf\001\002\000\006\017\uffd8" +
-    "\036\045\001\002\000\016\005\ufff9\010\027\011\030\017" +
-    "\ufff9\022\ufff9\031\ufff9\001\002\000\016\004\023\016\021" +
-    "\020\004\034\005\035\016\036\024\001\002\000\026\005" +
-    "\uffda\010\uffda\011\uffda\012\uffda\013\uffda\014\uffda\017\uffda" +
-    "\022\uffda\030\uffda\031\uffda\001\002\000\004\005\026\001" +
-    "\002\000\026\005\uffd9\010\uffd9\011\uffd9\012\uffd9\013\uffd9" +
-    "\014\uffd9\017\uffd9\022\uffd9\030\uffd9\031\uffd9\001\002\000" +
-    "\012\004\023\034\005\035\016\036\024\001\002\000\012" +
-    "\004\023\034\005\035\016\036\024\001\002\000\026\005" +
-    "\uffe4\010\uffe4\011\uffe4\012\033\013\035\014\032\017\uffe4" +
-    "\022\uffe4\030\034\031\uffe4\001\002\000\012\004\023\034" +
-    "\005\035\016\036\024\001\002\000\012\004\023\034\005" +
-    "\035\016\036\024\001\002\000\012\004\023\034\005\035" +
-    "\016\036\024\001\002\000\012\004\023\034\005\035\016" +
-    "\036\024\001\002\000\026\005\uffe1\010\uffe1\011\uffe1\012" +
-    "\uffe1\013\uffe1\014\uffe1\017\uffe1\022\uffe1\030\uffe1\031\uffe1" +
-    "\001\002\000\026\005\uffde\010\uffde\011\uffde\012\uffde\013" +
-    "\uffde\014\uffde\017\uffde\022\uffde\030\uffde\031\uffde\001\002" +
-    "\000\026\005\uffe2\010\uffe2\011\uffe2\012\uffe2\013\uffe2\014" +
-    "\uffe2\017\uffe2\022\uffe2\030\uffe2\031\uffe2\001\002\000\026" +
-    "\005\uffe0\010\uffe0\011\uffe0\012\uffe0\013\uffe0\014\uffe0\017" +
-    "\uffe0\022\uffe0\030\uffe0\031\uffe0\001\002\000\026\005\uffe5" +
-    "\010\uffe5\011\uffe5\012\033\013\035\014\032\017\uffe5\022" +
-    "\uffe5\030\034\031\uffe5\001\002\000\004\017\uffeb\001\002" +
-    "\000\006\017\uffd8\022\053\001\002\000\004\015\051\001" +
-    "\002\000\004\017\047\001\002\000\016\004\023\016\021" +
-    "\020\004\034\005\035\016\036\024\001\002\000\012\005" +
-    "\ufff8\017\ufff8\022\ufff8\031\ufff8\001\002\000\016\004\023" +
-    "\016\021\020\004\034\005\035\016\036\024\001\002\000" +
-    "\006\017\uffed\022\uffed\001\002\000\004\036\045\001\002" +
-    "\000\004\017\uffe9\001\002\000\004\017\uffec\001\002\000" +
-    "\006\017\uffd8\022\053\001\002\000\004\017\uffea\001\002" +
-    "\000\022\002\ufffc\004\ufffc\016\ufffc\020\ufffc\021\ufffc\034" +
-    "\ufffc\035\ufffc\036\ufffc\001\002\000\022\002\uffff\004\uffff" +
-    "\016\uffff\020\uffff\021\uffff\034\uffff\035\uffff\036\uffff\001" +
-    "\002\000\020\004\023\016\021\020\004\024\063\034\005" +
-    "\035\016\036\064\001\002\000\004\004\103\001\002\000" +
-    "\022\004\073\010\uffda\011\uffda\012\uffda\013\uffda\014\uffda" +
-    "\030\uffda\031\uffda\001\002\000\004\031\072\001\002\000" +
-    "\004\031\071\001\002\000\004\031\070\001\002\000\022" +
-    "\002\uffe8\004\uffe8\016\uffe8\020\uffe8\021\uffe8\034\uffe8\035" +
-    "\uffe8\036\uffe8\001\002\000\022\002\uffe7\004\uffe7\016\uffe7" +
-    "\020\uffe7\021\uffe7\034\uffe7\035\uffe7\036\uffe7\001\002\000" +
-    "\022\002\uffe6\004\uffe6\016\uffe6\020\uffe6\021\uffe6\034\uffe6" +
-    "\035\uffe6\036\uffe6\001\002\000\020\004\023\005\uffd8\016" +
-    "\021\020\004\034\005\035\016\036\024\001\002\000\004" +
-    "\005\102\001\002\000\004\005\uffef\001\002\000\006\005" +
-    "\ufff0\022\100\001\002\000\006\005\ufff1\022\ufff1\001\002" +
-    "\000\016\004\023\016\021\020\004\034\005\035\016\036" +
-    "\024\001\002\000\006\005\ufff2\022\ufff2\001\002\000\004" +
-    "\031\uffee\001\002\000\006\005\uffd8\036\107\001\002\000" +
-    "\006\005\ufff5\022\113\001\002\000\004\005\ufff4\001\002" +
-    "\000\004\005\110\001\002\000\006\005\ufff6\022\ufff6\001" +
-    "\002\000\004\025\111\001\002\000\016\004\023\016\021" +
-    "\020\004\034\005\035\016\036\024\001\002\000\004\031" +
-    "\ufff3\001\002\000\004\036\114\001\002\000\006\005\ufff7" +
-    "\022\ufff7\001\002\000\004\002\000\001\002\000\020\004" +
-    "\023\016\021\020\004\021\117\034\005\035\016\036\014" +
-    "\001\002\000\012\005\ufffa\017\ufffa\022\ufffa\031\ufffa\001" +
-    "\002" });
+    "\000\153\000\022\004\012\016\022\020\014\023\004\026" +
+    "\024\034\023\035\030\036\011\001\002\000\016\004\012" +
+    "\016\022\020\014\034\023\035\030\036\035\001\002\000" +
+    "\034\005\uffd4\007\uffd4\010\uffd4\011\uffd4\012\uffd4\013\uffd4" +
+    "\014\uffd4\017\uffd4\022\uffd4\026\uffd4\030\uffd4\031\uffd4\032" +
+    "\uffd4\001\002\000\024\005\ufff1\007\ufff1\010\136\011\137" +
+    "\017\ufff1\022\ufff1\026\ufff1\031\ufff1\032\ufff1\001\002\000" +
+    "\026\002\ufffd\004\ufffd\016\ufffd\020\ufffd\021\ufffd\023\ufffd" +
+    "\026\ufffd\034\ufffd\035\ufffd\036\ufffd\001\002\000\026\002" +
+    "\ufffb\004\ufffb\016\ufffb\020\ufffb\021\ufffb\023\ufffb\026\ufffb" +
+    "\034\ufffb\035\ufffb\036\ufffb\001\002\000\024\004\053\010" +
+    "\uffd3\011\uffd3\012\uffd3\013\uffd3\014\uffd3\015\116\030\uffd3" +
+    "\031\uffd3\001\002\000\016\004\012\016\022\020\014\034" +
+    "\023\035\030\036\035\001\002\000\004\002\113\001\002" +
+    "\000\022\004\012\016\022\020\014\023\004\026\024\034" +
+    "\023\035\030\036\011\001\002\000\020\005\ufff3\007\ufff3" +
+    "\017\ufff3\022\ufff3\026\ufff3\031\ufff3\032\ufff3\001\002\000" +
+    "\034\005\uffd2\007\uffd2\010\uffd2\011\uffd2\012\uffd2\013\uffd2" +
+    "\014\uffd2\017\uffd2\022\uffd2\026\uffd2\030\uffd2\031\uffd2\032" +
+    "\uffd2\001\002\000\004\031\110\001\002\000\034\005\uffd8" +
+    "\007\uffd8\010\uffd8\011\uffd8\012\uffd8\013\uffd8\014\uffd8\017" +
+    "\uffd8\022\uffd8\026\uffd8\030\uffd8\031\uffd8\032\uffd8\001\002" +
+    "\000\034\005\uffdc\007\uffdc\010\uffdc\011\uffdc\012\102\013" +
+    "\103\014\100\017\uffdc\022\uffdc\026\uffdc\030\101\031\uffdc" +
+    "\032\uffdc\001\002\000\006\017\uffd0\036\065\001\002\000" +
+    "\034\005\uffd6\007\uffd6\010\uffd6\011\uffd6\012\uffd6\013\uffd6" +
+    "\014\uffd6\017\uffd6\022\uffd6\026\uffd6\030\uffd6\031\uffd6\032" +
+    "\uffd6\001\002\000\004\036\032\001\002\000\026\002\ufffc" +
+    "\004\ufffc\016\ufffc\020\ufffc\021\ufffc\023\ufffc\026\ufffc\034" +
+    "\ufffc\035\ufffc\036\ufffc\001\002\000\026\002\ufffe\004\ufffe" +
+    "\016\ufffe\020\ufffe\021\ufffe\023\ufffe\026\ufffe\034\ufffe\035" +
+    "\ufffe\036\ufffe\001\002\000\024\002\001\004\012\016\022" +
+    "\020\014\023\004\026\024\034\023\035\030\036\011\001" +
+    "\002\000\034\005\uffd5\007\uffd5\010\uffd5\011\uffd5\012\uffd5" +
+    "\013\uffd5\014\uffd5\017\uffd5\022\uffd5\026\uffd5\030\uffd5\031" +
+    "\uffd5\032\uffd5\001\002\000\026\002\uffff\004\uffff\016\uffff" +
+    "\020\uffff\021\uffff\023\uffff\026\uffff\034\uffff\035\uffff\036" +
+    "\uffff\001\002\000\004\017\033\001\002\000\004\006\034" +
+    "\001\002\000\016\004\012\016\022\020\014\034\023\035" +
+    "\030\036\035\001\002\000\036\004\053\005\uffd3\007\uffd3" +
+    "\010\uffd3\011\uffd3\012\uffd3\013\uffd3\014\uffd3\017\uffd3\022" +
+    "\uffd3\026\uffd3\030\uffd3\031\uffd3\032\uffd3\001\002\000\004" +
+    "\032\037\001\002\000\016\004\012\016\022\020\014\034" +
+    "\023\035\030\036\035\001\002\000\006\007\041\032\042" +
+    "\001\002\000\004\020\045\001\002\000\016\004\012\016" +
+    "\022\020\014\034\023\035\030\036\035\001\002\000\004" +
+    "\007\044\001\002\000\004\020\045\001\002\000\022\004" +
+    "\012\016\022\020\014\023\004\026\024\034\023\035\030" +
+    "\036\011\001\002\000\026\002\ufff8\004\ufff8\016\ufff8\020" +
+    "\ufff8\021\ufff8\023\ufff8\026\ufff8\034\ufff8\035\ufff8\036\ufff8" +
+    "\001\002\000\024\004\012\016\022\020\014\021\050\023" +
+    "\004\026\024\034\023\035\030\036\011\001\002\000\030" +
+    "\002\ufff5\004\ufff5\016\ufff5\020\ufff5\021\ufff5\023\ufff5\026" +
+    "\ufff5\031\051\034\ufff5\035\ufff5\036\ufff5\001\002\000\026" +
+    "\002\ufff4\004\ufff4\016\ufff4\020\ufff4\021\ufff4\023\ufff4\026" +
+    "\ufff4\034\ufff4\035\ufff4\036\ufff4\001\002\000\026\002\ufff9" +
+    "\004\ufff9\016\ufff9\020\ufff9\021\ufff9\023\ufff9\026\ufff9\034" +
+    "\ufff9\035\ufff9\036\ufff9\001\002\000\020\004\012\005\uffd0" +
+    "\016\022\020\014\034\023\035\030\036\035\001\002\000" +
+    "\004\005\062\001\002\000\004\005\uffe7\001\002\000\006" +
+    "\005\uffe8\022\060\001\002\000\006\005\uffe9\022\uffe9\001" +
+    "\002\000\016\004\012\016\022\020\014\034\023\035\030" +
+    "\036\035\001\002\000\006\005\uffea\022\uffea\001\002\000" +
+    "\034\005\uffe6\007\uffe6\010\uffe6\011\uffe6\012\uffe6\013\uffe6" +
+    "\014\uffe6\017\uffe6\022\uffe6\026\uffe6\030\uffe6\031\uffe6\032" +
+    "\uffe6\001\002\000\004\017\uffe3\001\002\000\006\017\uffd0" +
+    "\022\073\001\002\000\004\015\071\001\002\000\004\017" +
+    "\067\001\002\000\016\004\012\016\022\020\014\034\023" +
+    "\035\030\036\035\001\002\000\020\005\ufff0\007\ufff0\017" +
+    "\ufff0\022\ufff0\026\ufff0\031\ufff0\032\ufff0\001\002\000\016" +
+    "\004\012\016\022\020\014\034\023\035\030\036\035\001" +
+    "\002\000\006\017\uffe5\022\uffe5\001\002\000\004\036\065" +
+    "\001\002\000\004\017\uffe1\001\002\000\004\017\uffe4\001" +
+    "\002\000\006\017\uffd0\022\073\001\002\000\004\017\uffe2" +
+    "\001\002\000\012\004\012\034\023\035\030\036\035\001" +
+    "\002\000\012\004\012\034\023\035\030\036\035\001\002" +
+    "\000\012\004\012\034\023\035\030\036\035\001\002\000" +
+    "\012\004\012\034\023\035\030\036\035\001\002\000\034" +
+    "\005\uffda\007\uffda\010\uffda\011\uffda\012\uffda\013\uffda\014" +
+    "\uffda\017\uffda\022\uffda\026\uffda\030\uffda\031\uffda\032\uffda" +
+    "\001\002\000\034\005\uffdb\007\uffdb\010\uffdb\011\uffdb\012" +
+    "\uffdb\013\uffdb\014\uffdb\017\uffdb\022\uffdb\026\uffdb\030\uffdb" +
+    "\031\uffdb\032\uffdb\001\002\000\034\005\uffd7\007\uffd7\010" +
+    "\uffd7\011\uffd7\012\uffd7\013\uffd7\014\uffd7\017\uffd7\022\uffd7" +
+    "\026\uffd7\030\uffd7\031\uffd7\032\uffd7\001\002\000\034\005" +
+    "\uffd9\007\uffd9\010\uffd9\011\uffd9\012\uffd9\013\uffd9\014\uffd9" +
+    "\017\uffd9\022\uffd9\026\uffd9\030\uffd9\031\uffd9\032\uffd9\001" +
+    "\002\000\026\002\ufffa\004\ufffa\016\ufffa\020\ufffa\021\ufffa" +
+    "\023\ufffa\026\ufffa\034\ufffa\035\ufffa\036\ufffa\001\002\000" +
+    "\024\004\012\016\022\020\014\021\112\023\004\026\024" +
+    "\034\023\035\030\036\011\001\002\000\020\005\ufff2\007" +
+    "\ufff2\017\ufff2\022\ufff2\026\ufff2\031\ufff2\032\ufff2\001\002" +
+    "\000\004\002\000\001\002\000\004\005\115\001\002\000" +
+    "\034\005\uffd1\007\uffd1\010\uffd1\011\uffd1\012\uffd1\013\uffd1" +
+    "\014\uffd1\017\uffd1\022\uffd1\026\uffd1\030\uffd1\031\uffd1\032" +
+    "\uffd1\001\002\000\020\004\012\016\022\020\014\024\117" +
+    "\034\023\035\030\036\035\001\002\000\004\004\124\001" +
+    "\002\000\004\031\123\001\002\000\004\031\122\001\002" +
+    "\000\026\002\uffe0\004\uffe0\016\uffe0\020\uffe0\021\uffe0\023" +
+    "\uffe0\026\uffe0\034\uffe0\035\uffe0\036\uffe0\001\002\000\026" +
+    "\002\uffdf\004\uffdf\016\uffdf\020\uffdf\021\uffdf\023\uffdf\026" +
+    "\uffdf\034\uffdf\035\uffdf\036\uffdf\001\002\000\006\005\uffd0" +
+    "\036\130\001\002\000\006\005\uffed\022\134\001\002\000" +
+    "\004\005\uffec\001\002\000\004\005\131\001\002\000\006" +
+    "\005\uffee\022\uffee\001\002\000\004\025\132\001\002\000" +
+    "\016\004\012\016\022\020\014\034\023\035\030\036\035" +
+    "\001\002\000\004\031\uffeb\001\002\000\004\036\135\001" +
+    "\002\000\006\005\uffef\022\uffef\001\002\000\012\004\012" +
+    "\034\023\035\030\036\035\001\002\000\012\004\012\034" +
+    "\023\035\030\036\035\001\002\000\034\005\uffdd\007\uffdd" +
+    "\010\uffdd\011\uffdd\012\102\013\103\014\100\017\uffdd\022" +
+    "\uffdd\026\uffdd\030\101\031\uffdd\032\uffdd\001\002\000\034" +
+    "\005\uffde\007\uffde\010\uffde\011\uffde\012\102\013\103\014" +
+    "\100\017\uffde\022\uffde\026\uffde\030\101\031\uffde\032\uffde" +
+    "\001\002\000\004\026\143\001\002\000\004\036\144\001" +
+    "\002\000\004\017\145\001\002\000\004\006\146\001\002" +
+    "\000\016\004\012\016\022\020\014\034\023\035\030\036" +
+    "\035\001\002\000\004\032\150\001\002\000\016\004\012" +
+    "\016\022\020\014\034\023\035\030\036\035\001\002\000" +
+    "\004\007\152\001\002\000\006\031\153\036\154\001\002" +
+    "\000\026\002\ufff7\004\ufff7\016\ufff7\020\ufff7\021\ufff7\023" +
+    "\ufff7\026\ufff7\034\ufff7\035\ufff7\036\ufff7\001\002\000\004" +
+    "\031\155\001\002\000\026\002\ufff6\004\ufff6\016\ufff6\020" +
+    "\ufff6\021\ufff6\023\ufff6\026\ufff6\034\ufff6\035\ufff6\036\ufff6" +
+    "\001\002" });
 
   /** Access to parse-action table. */
   public short[][] action_table() {return _action_table;}
@@ -145,47 +192,70 @@ public class FnPlotParser extends java_cup.runtime.lr_parser {
   /** <code>reduce_goto</code> table. */
   protected static final short[][] _reduce_table = 
     unpackFromStrings(new String[] {
-    "\000\115\000\026\002\011\003\014\004\006\005\005\006" +
-    "\012\022\016\023\021\024\007\025\017\026\010\001\001" +
-    "\000\024\003\115\004\006\005\005\006\012\022\016\023" +
-    "\021\024\007\025\017\026\010\001\001\000\002\001\001" +
-    "\000\002\001\001\000\002\001\001\000\002\001\001\000" +
-    "\002\001\001\000\002\001\001\000\002\001\001\000\002" +
-    "\001\001\000\022\004\060\005\005\006\012\022\016\023" +
-    "\021\024\007\025\017\026\010\001\001\000\002\001\001" +
-    "\000\002\001\001\000\002\001\001\000\010\012\045\020" +
-    "\043\027\042\001\001\000\002\001\001\000\016\006\012" +
-    "\022\024\023\021\024\007\025\017\026\010\001\001\000" +
-    "\002\001\001\000\002\001\001\000\002\001\001\000\010" +
-    "\024\041\025\017\026\010\001\001\000\010\024\030\025" +
-    "\017\026\010\001\001\000\002\001\001\000\006\025\040" +
-    "\026\010\001\001\000\006\025\037\026\010\001\001\000" +
-    "\006\025\036\026\010\001\001\000\006\025\035\026\010" +
+    "\000\153\000\034\002\012\003\026\004\025\005\006\006" +
+    "\024\010\014\013\007\023\015\024\016\025\005\026\020" +
+    "\027\017\030\004\001\001\000\020\010\014\023\015\024" +
+    "\141\025\005\026\020\027\017\030\004\001\001\000\002" +
     "\001\001\000\002\001\001\000\002\001\001\000\002\001" +
+    "\001\000\002\001\001\000\020\010\014\023\015\024\113" +
+    "\025\005\026\020\027\017\030\004\001\001\000\002\001" +
+    "\001\000\032\003\110\004\025\005\006\006\024\010\014" +
+    "\013\007\023\015\024\016\025\005\026\020\027\017\030" +
+    "\004\001\001\000\002\001\001\000\002\001\001\000\002" +
+    "\001\001\000\002\001\001\000\002\001\001\000\010\014" +
+    "\065\022\063\031\062\001\001\000\002\001\001\000\002" +
+    "\001\001\000\002\001\001\000\002\001\001\000\030\004" +
+    "\030\005\006\006\024\010\014\013\007\023\015\024\016" +
+    "\025\005\026\020\027\017\030\004\001\001\000\002\001" +
     "\001\000\002\001\001\000\002\001\001\000\002\001\001" +
-    "\000\006\013\054\027\053\001\001\000\002\001\001\000" +
-    "\002\001\001\000\016\006\012\022\047\023\021\024\007" +
-    "\025\017\026\010\001\001\000\002\001\001\000\016\006" +
-    "\012\022\051\023\021\024\007\025\017\026\010\001\001" +
-    "\000\002\001\001\000\004\020\055\001\001\000\002\001" +
-    "\001\000\002\001\001\000\006\013\056\027\053\001\001" +
-    "\000\002\001\001\000\002\001\001\000\002\001\001\000" +
-    "\022\006\012\007\065\021\064\022\066\023\021\024\007" +
-    "\025\017\026\010\001\001\000\002\001\001\000\002\001" +
+    "\000\020\010\014\023\015\024\035\025\005\026\020\027" +
+    "\017\030\004\001\001\000\002\001\001\000\002\001\001" +
+    "\000\020\010\014\023\015\024\037\025\005\026\020\027" +
+    "\017\030\004\001\001\000\002\001\001\000\004\007\051" +
+    "\001\001\000\020\010\014\023\015\024\042\025\005\026" +
+    "\020\027\017\030\004\001\001\000\002\001\001\000\004" +
+    "\007\045\001\001\000\032\003\046\004\025\005\006\006" +
+    "\024\010\014\013\007\023\015\024\016\025\005\026\020" +
+    "\027\017\030\004\001\001\000\002\001\001\000\030\004" +
+    "\030\005\006\006\024\010\014\013\007\023\015\024\016" +
+    "\025\005\026\020\027\017\030\004\001\001\000\002\001" +
+    "\001\000\002\001\001\000\002\001\001\000\026\010\014" +
+    "\020\055\021\053\023\015\024\056\025\005\026\020\027" +
+    "\017\030\004\031\054\001\001\000\002\001\001\000\002" +
+    "\001\001\000\002\001\001\000\002\001\001\000\020\010" +
+    "\014\023\015\024\060\025\005\026\020\027\017\030\004" +
+    "\001\001\000\002\001\001\000\002\001\001\000\002\001" +
+    "\001\000\006\015\074\031\073\001\001\000\002\001\001" +
+    "\000\002\001\001\000\020\010\014\023\015\024\067\025" +
+    "\005\026\020\027\017\030\004\001\001\000\002\001\001" +
+    "\000\020\010\014\023\015\024\071\025\005\026\020\027" +
+    "\017\030\004\001\001\000\002\001\001\000\004\022\075" +
+    "\001\001\000\002\001\001\000\002\001\001\000\006\015" +
+    "\076\031\073\001\001\000\002\001\001\000\010\023\015" +
+    "\027\106\030\004\001\001\000\010\023\015\027\105\030" +
+    "\004\001\001\000\010\023\015\027\104\030\004\001\001" +
+    "\000\010\023\015\027\103\030\004\001\001\000\002\001" +
     "\001\000\002\001\001\000\002\001\001\000\002\001\001" +
+    "\000\002\001\001\000\030\004\030\005\006\006\024\010" +
+    "\014\013\007\023\015\024\016\025\005\026\020\027\017" +
+    "\030\004\001\001\000\002\001\001\000\002\001\001\000" +
+    "\002\001\001\000\002\001\001\000\022\010\014\011\117" +
+    "\023\015\024\120\025\005\026\020\027\017\030\004\001" +
+    "\001\000\002\001\001\000\002\001\001\000\002\001\001" +
+    "\000\002\001\001\000\002\001\001\000\010\016\124\017" +
+    "\126\031\125\001\001\000\002\001\001\000\002\001\001" +
     "\000\002\001\001\000\002\001\001\000\002\001\001\000" +
-    "\024\006\012\016\075\017\073\022\076\023\021\024\007" +
-    "\025\017\026\010\027\074\001\001\000\002\001\001\000" +
-    "\002\001\001\000\002\001\001\000\002\001\001\000\016" +
-    "\006\012\022\100\023\021\024\007\025\017\026\010\001" +
-    "\001\000\002\001\001\000\002\001\001\000\010\014\103" +
-    "\015\105\027\104\001\001\000\002\001\001\000\002\001" +
+    "\020\010\014\023\015\024\132\025\005\026\020\027\017" +
+    "\030\004\001\001\000\002\001\001\000\002\001\001\000" +
+    "\002\001\001\000\012\023\015\026\140\027\017\030\004" +
+    "\001\001\000\012\023\015\026\137\027\017\030\004\001" +
     "\001\000\002\001\001\000\002\001\001\000\002\001\001" +
-    "\000\016\006\012\022\111\023\021\024\007\025\017\026" +
-    "\010\001\001\000\002\001\001\000\002\001\001\000\002" +
-    "\001\001\000\002\001\001\000\022\004\060\005\005\006" +
-    "\012\022\016\023\021\024\007\025\017\026\010\001\001" +
-    "\000\002\001\001" });
+    "\000\002\001\001\000\002\001\001\000\002\001\001\000" +
+    "\020\010\014\023\015\024\146\025\005\026\020\027\017" +
+    "\030\004\001\001\000\002\001\001\000\020\010\014\023" +
+    "\015\024\150\025\005\026\020\027\017\030\004\001\001" +
+    "\000\002\001\001\000\002\001\001\000\002\001\001\000" +
+    "\002\001\001\000\002\001\001" });
 
   /** Access to <code>reduce_goto</code> table. */
   public short[][] reduce_table() {return _reduce_table;}
@@ -364,7 +434,31 @@ class CUP$FnPlotParser$actions {
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 5: // stmt ::= expression SEMI 
+          case 5: // stmt ::= loop 
+            {
+              Statement RESULT =null;
+		int lleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
+		int lright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
+		StmtFor l = (StmtFor)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
+		 RESULT = l; 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("stmt",2, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 6: // stmt ::= plotStmt 
+            {
+              Statement RESULT =null;
+		int pleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
+		int pright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
+		StmtPlot p = (StmtPlot)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
+		 RESULT = p; 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("stmt",2, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 7: // stmt ::= expression SEMI 
             {
               Statement RESULT =null;
 		int eleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).left;
@@ -376,43 +470,165 @@ class CUP$FnPlotParser$actions {
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 6: // expression ::= letExp 
+          case 8: // loop ::= FOR VARIABLE IN LSBRACE expression COLON expression RSBRACE loopBody 
+            {
+              StmtFor RESULT =null;
+		int vleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-7)).left;
+		int vright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-7)).right;
+		String v = (String)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-7)).value;
+		int loleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-4)).left;
+		int loright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-4)).right;
+		Exp lo = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-4)).value;
+		int hileft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).left;
+		int hiright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).right;
+		Exp hi = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).value;
+		int bodyleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
+		int bodyright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
+		Exp body = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
+		
+		   RESULT = new StmtFor(v, lo, hi, new ExpLit(FnPlotValue.make(1)), body);
+		
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("loop",4, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-8)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 9: // loop ::= FOR VARIABLE IN LSBRACE expression COLON expression COLON expression RSBRACE loopBody 
+            {
+              StmtFor RESULT =null;
+		int vleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-9)).left;
+		int vright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-9)).right;
+		String v = (String)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-9)).value;
+		int loleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-6)).left;
+		int loright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-6)).right;
+		Exp lo = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-6)).value;
+		int hileft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-4)).left;
+		int hiright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-4)).right;
+		Exp hi = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-4)).value;
+		int stepleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).left;
+		int stepright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).right;
+		Exp step = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).value;
+		int bodyleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
+		int bodyright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
+		Exp body = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
+		
+		   RESULT = new StmtFor(v, lo, hi, step, body);
+		
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("loop",4, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-10)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 10: // plotStmt ::= PLOT expression FOR VARIABLE IN LSBRACE expression COLON expression RSBRACE SEMI 
+            {
+              StmtPlot RESULT =null;
+		int eleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-9)).left;
+		int eright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-9)).right;
+		Exp e = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-9)).value;
+		int vleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-7)).left;
+		int vright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-7)).right;
+		String v = (String)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-7)).value;
+		int loleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-4)).left;
+		int loright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-4)).right;
+		Exp lo = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-4)).value;
+		int hileft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).left;
+		int hiright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).right;
+		Exp hi = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).value;
+		
+		   RESULT = new StmtPlot(v, e, lo, hi);
+		
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("plotStmt",9, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-10)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 11: // plotStmt ::= PLOT expression FOR VARIABLE IN LSBRACE expression COLON expression RSBRACE VARIABLE SEMI 
+            {
+              StmtPlot RESULT =null;
+		int eleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-10)).left;
+		int eright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-10)).right;
+		Exp e = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-10)).value;
+		int vleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-8)).left;
+		int vright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-8)).right;
+		String v = (String)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-8)).value;
+		int loleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-5)).left;
+		int loright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-5)).right;
+		Exp lo = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-5)).value;
+		int hileft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)).left;
+		int hiright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)).right;
+		Exp hi = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)).value;
+		int styleleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).left;
+		int styleright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).right;
+		String style = (String)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).value;
+		
+		   RESULT = new StmtPlot(v, e, lo, hi, style);
+		
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("plotStmt",9, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-11)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 12: // loopBody ::= LBRACE stmtList RBRACE 
+            {
+              Exp RESULT =null;
+		int bodyleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).left;
+		int bodyright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).right;
+		StmtSequence body = (StmtSequence)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).value;
+		 RESULT = body; 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("loopBody",5, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 13: // loopBody ::= LBRACE stmtList RBRACE SEMI 
+            {
+              Exp RESULT =null;
+		int bodyleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).left;
+		int bodyright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).right;
+		StmtSequence body = (StmtSequence)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).value;
+		 RESULT = body; 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("loopBody",5, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 14: // expression ::= letExp 
             {
               Exp RESULT =null;
 		int lleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
 		int lright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		StmtLet l = (StmtLet)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		 RESULT = l; 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("expression",16, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("expression",18, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 7: // expression ::= LBRACE stmtList RBRACE 
+          case 15: // expression ::= LBRACE stmtList RBRACE 
             {
               Exp RESULT =null;
 		int bodyleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).left;
 		int bodyright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).right;
 		StmtSequence body = (StmtSequence)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).value;
 		 RESULT = body; 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("expression",16, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("expression",18, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 8: // expression ::= arithExp 
+          case 16: // expression ::= arithExp 
             {
               Exp RESULT =null;
 		int aleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
 		int aright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		Exp a = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		 RESULT = a; 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("expression",16, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("expression",18, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 9: // letExp ::= LET bindings IN expression 
+          case 17: // letExp ::= LET bindings IN expression 
             {
               StmtLet RESULT =null;
 		int bsleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).left;
@@ -424,12 +640,12 @@ class CUP$FnPlotParser$actions {
 		
 			RESULT = new StmtLet(bs, body);
            
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("letExp",4, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("letExp",6, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 10: // paramlist ::= paramlist COMMA VARIABLE 
+          case 18: // paramlist ::= paramlist COMMA VARIABLE 
             {
               ArrayList<String> RESULT =null;
 		int plleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).left;
@@ -439,45 +655,45 @@ class CUP$FnPlotParser$actions {
 		int vright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		String v = (String)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		 pl.add(v); RESULT=pl; 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("paramlist",10, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("paramlist",12, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 11: // paramlist ::= VARIABLE 
+          case 19: // paramlist ::= VARIABLE 
             {
               ArrayList<String> RESULT =null;
 		int vleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
 		int vright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		String v = (String)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		 ArrayList<String> ls = new ArrayList<>(); ls.add(v); RESULT =ls; 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("paramlist",10, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("paramlist",12, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 12: // paramlistE ::= paramlist 
+          case 20: // paramlistE ::= paramlist 
             {
               ArrayList<String> RESULT =null;
 		int plleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
 		int plright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		ArrayList<String> pl = (ArrayList<String>)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		 RESULT=pl; 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("paramlistE",11, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("paramlistE",13, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 13: // paramlistE ::= empty 
+          case 21: // paramlistE ::= empty 
             {
               ArrayList<String> RESULT =null;
 		 RESULT= new ArrayList<> (); 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("paramlistE",11, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("paramlistE",13, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 14: // fundef ::= FUN LPAREN paramlistE RPAREN MAPSTO expression 
+          case 22: // fundef ::= FUN LPAREN paramlistE RPAREN MAPSTO expression 
             {
               ExpFunction RESULT =null;
 		int plleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)).left;
@@ -487,12 +703,12 @@ class CUP$FnPlotParser$actions {
 		int bodyright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		Exp body = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		 RESULT = new ExpFunction(pl,body); 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("fundef",5, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-5)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("fundef",7, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-5)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 15: // explist ::= explist COMMA expression 
+          case 23: // explist ::= explist COMMA expression 
             {
               ArrayList<Exp> RESULT =null;
 		int plleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).left;
@@ -502,45 +718,45 @@ class CUP$FnPlotParser$actions {
 		int vright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		Exp v = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		 pl.add(v); RESULT=pl; 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("explist",12, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("explist",14, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 16: // explist ::= expression 
+          case 24: // explist ::= expression 
             {
               ArrayList<Exp> RESULT =null;
 		int vleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
 		int vright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		Exp v = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		 ArrayList<Exp> ls = new ArrayList<>(); ls.add(v); RESULT =ls; 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("explist",12, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("explist",14, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 17: // explistE ::= explist 
+          case 25: // explistE ::= explist 
             {
               ArrayList<Exp> RESULT =null;
 		int plleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
 		int plright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		ArrayList<Exp> pl = (ArrayList<Exp>)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		 RESULT=pl; 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("explistE",13, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("explistE",15, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 18: // explistE ::= empty 
+          case 26: // explistE ::= empty 
             {
               ArrayList<Exp> RESULT =null;
 		 RESULT= new ArrayList<> (); 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("explistE",13, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("explistE",15, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 19: // funcall ::= VARIABLE LPAREN explistE RPAREN 
+          case 27: // funcall ::= VARIABLE LPAREN explistE RPAREN 
             {
               ExpFuncall RESULT =null;
 		int rleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)).left;
@@ -550,12 +766,12 @@ class CUP$FnPlotParser$actions {
 		int eright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).right;
 		ArrayList<Exp> e = (ArrayList<Exp>)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).value;
 		RESULT= new ExpFuncall(r,e);
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("funcall",15, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("funcall",17, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 20: // binding ::= VARIABLE ASSIGN expression 
+          case 28: // binding ::= VARIABLE ASSIGN expression 
             {
               Binding RESULT =null;
 		int vleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).left;
@@ -567,12 +783,12 @@ class CUP$FnPlotParser$actions {
 		
 		RESULT = new Binding(v, e);
 	    
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("binding",14, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("binding",16, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 21: // bindings ::= binding bindingsAux 
+          case 29: // bindings ::= binding bindingsAux 
             {
               ArrayList<Binding> RESULT =null;
 		int bleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).left;
@@ -585,21 +801,21 @@ class CUP$FnPlotParser$actions {
 		bl.add(0,b);
 		RESULT = bl;
 	     
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("bindings",8, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("bindings",10, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 22: // bindings ::= empty 
+          case 30: // bindings ::= empty 
             {
               ArrayList<Binding> RESULT =null;
 		 RESULT = new ArrayList(); 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("bindings",8, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("bindings",10, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 23: // bindingsAux ::= COMMA binding bindingsAux 
+          case 31: // bindingsAux ::= COMMA binding bindingsAux 
             {
               ArrayList<Binding> RESULT =null;
 		int bleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).left;
@@ -612,21 +828,21 @@ class CUP$FnPlotParser$actions {
 		  bl.add(0,b);
 		  RESULT = bl;
 		
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("bindingsAux",9, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("bindingsAux",11, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 24: // bindingsAux ::= empty 
+          case 32: // bindingsAux ::= empty 
             {
               ArrayList<Binding> RESULT =null;
 		 RESULT = new ArrayList(); 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("bindingsAux",9, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("bindingsAux",11, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 25: // definition ::= VARIABLE ASSIGN expression SEMI 
+          case 33: // definition ::= VARIABLE ASSIGN expression SEMI 
             {
               StmtDefinition RESULT =null;
 		int vleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)).left;
@@ -643,7 +859,7 @@ class CUP$FnPlotParser$actions {
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 26: // definition ::= VARIABLE ASSIGN fundef SEMI 
+          case 34: // definition ::= VARIABLE ASSIGN fundef SEMI 
             {
               StmtDefinition RESULT =null;
 		int vleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)).left;
@@ -658,22 +874,7 @@ class CUP$FnPlotParser$actions {
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 27: // definition ::= VARIABLE ASSIGN funcall SEMI 
-            {
-              StmtDefinition RESULT =null;
-		int vleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)).left;
-		int vright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)).right;
-		String v = (String)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)).value;
-		int tleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).left;
-		int tright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).right;
-		ExpFuncall t = (ExpFuncall)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).value;
-		 RESULT=new StmtDefinition(v,t);
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("definition",3, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
-            }
-          return CUP$FnPlotParser$result;
-
-          /*. . . . . . . . . . . . . . . . . . . .*/
-          case 28: // arithExp ::= arithExp PLUS term 
+          case 35: // arithExp ::= arithExp PLUS term 
             {
               Exp RESULT =null;
 		int eleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).left;
@@ -684,12 +885,12 @@ class CUP$FnPlotParser$actions {
 		Exp t = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		
 			RESULT = new ExpAdd(e, t); 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("arithExp",17, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("arithExp",19, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 29: // arithExp ::= arithExp MINUS term 
+          case 36: // arithExp ::= arithExp MINUS term 
             {
               Exp RESULT =null;
 		int eleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).left;
@@ -700,24 +901,24 @@ class CUP$FnPlotParser$actions {
 		Exp t = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		
 			RESULT = new ExpSub(e, t); 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("arithExp",17, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("arithExp",19, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 30: // arithExp ::= term 
+          case 37: // arithExp ::= term 
             {
               Exp RESULT =null;
 		int tleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
 		int tright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		Exp t = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		 RESULT = t; 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("arithExp",17, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("arithExp",19, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 31: // term ::= term MUL factor 
+          case 38: // term ::= term MUL factor 
             {
               Exp RESULT =null;
 		int tleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).left;
@@ -728,12 +929,12 @@ class CUP$FnPlotParser$actions {
 		Exp f = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		
 		RESULT = new ExpMul(t, f); 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("term",18, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("term",20, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 32: // term ::= term DIV factor 
+          case 39: // term ::= term DIV factor 
             {
               Exp RESULT =null;
 		int tleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).left;
@@ -744,12 +945,12 @@ class CUP$FnPlotParser$actions {
 		Exp f = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		
 		RESULT = new ExpDiv(t, f); 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("term",18, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("term",20, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 33: // term ::= term MOD factor 
+          case 40: // term ::= term MOD factor 
             {
               Exp RESULT =null;
 		int tleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).left;
@@ -760,24 +961,24 @@ class CUP$FnPlotParser$actions {
 		Exp f = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		
 		RESULT = new ExpMod(t, f); 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("term",18, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("term",20, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 34: // term ::= factor 
+          case 41: // term ::= factor 
             {
               Exp RESULT =null;
 		int fleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
 		int fright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		Exp f = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		 RESULT = f; 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("term",18, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("term",20, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 35: // term ::= term EXPO factor 
+          case 42: // term ::= term EXPO factor 
             {
               Exp RESULT =null;
 		int tleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).left;
@@ -787,76 +988,88 @@ class CUP$FnPlotParser$actions {
 		int fright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		Exp f = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		 RESULT= new ExpExpo(t, f);
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("term",18, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("term",20, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 36: // number ::= INTEGER 
+          case 43: // number ::= INTEGER 
             {
               FnPlotValue< ? > RESULT =null;
 		int ilitleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
 		int ilitright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		Integer ilit = (Integer)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		 RESULT = FnPlotValue.make(ilit); 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("number",20, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("number",22, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 37: // number ::= DOUBLE 
+          case 44: // number ::= DOUBLE 
             {
               FnPlotValue< ? > RESULT =null;
 		int ilitleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
 		int ilitright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		Double ilit = (Double)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		 RESULT = FnPlotReal.make(ilit); 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("number",20, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("number",22, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 38: // factor ::= number 
+          case 45: // factor ::= number 
             {
               Exp RESULT =null;
 		int nleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
 		int nright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		FnPlotValue< ? > n = (FnPlotValue< ? >)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		 RESULT = new ExpLit(n); 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("factor",19, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("factor",21, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 39: // factor ::= VARIABLE 
+          case 46: // factor ::= VARIABLE 
             {
               Exp RESULT =null;
 		int varleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
 		int varright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		String var = (String)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		 RESULT = new ExpVar(var); 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("factor",19, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("factor",21, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 47: // factor ::= funcall 
+            {
+              Exp RESULT =null;
+		int cleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
+		int cright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
+		ExpFuncall c = (ExpFuncall)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
+		 RESULT = c; 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("factor",21, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 40: // factor ::= LPAREN expression RPAREN 
+          case 48: // factor ::= LPAREN expression RPAREN 
             {
               Exp RESULT =null;
 		int eleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).left;
 		int eright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).right;
 		Exp e = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).value;
 		 RESULT = e; 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("factor",19, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("factor",21, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 41: // empty ::= 
+          case 49: // empty ::= 
             {
               Object RESULT =null;
 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("empty",21, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("empty",23, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
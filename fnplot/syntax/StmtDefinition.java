@@ -12,6 +12,8 @@ public class StmtDefinition extends Statement {
 
     String var;
     Exp exp;
+    int depth = -1;
+    int slot = -1;
 
     public StmtDefinition(String id, Exp e) {
         var = id;
@@ -26,6 +28,38 @@ public class StmtDefinition extends Statement {
         return exp;
     }
 
+    public void setExp(Exp exp) {
+        this.exp = exp;
+    }
+
+    /**
+     * Record the lexical address of the binding created by this definition.
+     * @param depth The number of frames between the definition and the frame
+     * that receives the binding
+     * @param slot The index of the binding within that frame, or -1 if the
+     * binding is to be made by name (as for globals)
+     */
+    public void setAddress(int depth, int slot) {
+        this.depth = depth;
+        this.slot = slot;
+    }
+
+    /**
+     * @return <code>true</code> if this definition has been given a lexical
+     * address by the resolver.
+     */
+    public boolean isResolved() {
+        return depth >= 0;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
     @Override
     public <S, T> T visit(Visitor<S, T> v, S arg) throws FnPlotException {
         return v.visitStmtDefinition(this, arg);
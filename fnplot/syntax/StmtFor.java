@@ -0,0 +1,73 @@
+package fnplot.syntax;
+
+import fnplot.semantics.Visitor;
+import fnplot.sys.FnPlotException;
+
+/**
+ * Class to represent a loop in the AST:
+ * <code>for v in [lower:upper:step] { body }</code>.  The loop variable takes
+ * the values <code>lower</code>, <code>lower + step</code>, ... that do not
+ * pass <code>upper</code>, and the body is evaluated once for each of them.
+ */
+public class StmtFor extends Statement {
+
+    String var;
+    Exp lower;
+    Exp upper;
+    Exp step;
+    Exp body;
+
+    public StmtFor(String var, Exp lower, Exp upper, Exp step, Exp body) {
+        this.var = var;
+        this.lower = lower;
+        this.upper = upper;
+        this.step = step;
+        this.body = body;
+    }
+
+    public String getVar() {
+        return var;
+    }
+
+    public Exp getLower() {
+        return lower;
+    }
+
+    public void setLower(Exp lower) {
+        this.lower = lower;
+    }
+
+    public Exp getUpper() {
+        return upper;
+    }
+
+    public void setUpper(Exp upper) {
+        this.upper = upper;
+    }
+
+    public Exp getStep() {
+        return step;
+    }
+
+    public void setStep(Exp step) {
+        this.step = step;
+    }
+
+    public Exp getBody() {
+        return body;
+    }
+
+    public void setBody(Exp body) {
+        this.body = body;
+    }
+
+    @Override
+    public <S, T> T visit(Visitor<S, T> v, S arg) throws FnPlotException {
+        return v.visitStmtFor(this, arg);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("for %s in [%s:%s:%s] {\n%s}", var, lower, upper, step, body);
+    }
+}
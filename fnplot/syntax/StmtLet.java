@@ -1,5 +1,6 @@
 package fnplot.syntax;
 
+import fnplot.semantics.DoubleVisitor;
 import fnplot.semantics.Visitor;
 import fnplot.sys.FnPlotException;
 import java.util.ArrayList;
@@ -11,6 +12,7 @@ import java.util.ArrayList;
 public class StmtLet extends Exp {
     ArrayList<Binding> bindings;
     Exp body;
+    String[] frameVars;
 
     public StmtLet(ArrayList<Binding> bs, Exp bod) {
 	bindings = bs;
@@ -24,12 +26,35 @@ public class StmtLet extends Exp {
     public Exp getBody() {
 	return body;
     }
+
+    public void setBody(Exp body) {
+	this.body = body;
+    }
+
+    /**
+     * @return The names of the slots in the frame created for this let, as
+     * laid out by the resolver (the bindings in order, followed by any
+     * variables defined within the body), or <code>null</code> if the let has
+     * not been resolved.
+     */
+    public String[] getFrameVars() {
+	return frameVars;
+    }
+
+    public void setFrameVars(String[] frameVars) {
+	this.frameVars = frameVars;
+    }
     
     @Override
     public <S, T> T visit(Visitor<S, T> v, S state) throws FnPlotException {
         return v.visitStmtLet(this, state);
     }
 
+    @Override
+    public <S> double visitDouble(DoubleVisitor<S> v, S state) throws FnPlotException {
+        return v.visitStmtLet(this, state);
+    }
+
     @Override
     public String toString() {
 	return "let " + bindings + " in " + body;
@@ -0,0 +1,95 @@
+package fnplot.syntax;
+
+import fnplot.semantics.Visitor;
+import fnplot.sys.FnPlotException;
+import java.util.ArrayList;
+
+/**
+ * Class to represent a plot in the AST:
+ * <code>plot e for x in [lower:upper] style</code>, where the name of the
+ * style is optional.  The expression is kept as the
+ * body of a function of its variable, so that it is scoped, optimized and
+ * sampled in the same way as any other function of one variable.
+ */
+public class StmtPlot extends Statement {
+
+    ExpFunction fn;
+    Exp lower;
+    Exp upper;
+    String style;
+
+    public StmtPlot(String var, Exp exp, Exp lower, Exp upper) {
+        this(var, exp, lower, upper, null);
+    }
+
+    public StmtPlot(String var, Exp exp, Exp lower, Exp upper, String style) {
+        ArrayList<String> params = new ArrayList<>();
+        params.add(var);
+        this.fn = new ExpFunction(params, exp);
+        this.lower = lower;
+        this.upper = upper;
+        this.style = style;
+    }
+
+    public StmtPlot(ExpFunction fn, Exp lower, Exp upper) {
+        this(fn, lower, upper, null);
+    }
+
+    public StmtPlot(ExpFunction fn, Exp lower, Exp upper, String style) {
+        this.fn = fn;
+        this.lower = lower;
+        this.upper = upper;
+        this.style = style;
+    }
+
+    public String getVar() {
+        return fn.getParameters().get(0);
+    }
+
+    /**
+     * @return The function of the plot's variable whose graph is plotted.
+     */
+    public ExpFunction getFunction() {
+        return fn;
+    }
+
+    public void setFunction(ExpFunction fn) {
+        this.fn = fn;
+    }
+
+    public Exp getLower() {
+        return lower;
+    }
+
+    public void setLower(Exp lower) {
+        this.lower = lower;
+    }
+
+    public Exp getUpper() {
+        return upper;
+    }
+
+    public void setUpper(Exp upper) {
+        this.upper = upper;
+    }
+
+    /**
+     * @return The name of the style in which the graph is to be drawn, or
+     * null if none was given.
+     */
+    public String getStyle() {
+        return style;
+    }
+
+    @Override
+    public <S, T> T visit(Visitor<S, T> v, S arg) throws FnPlotException {
+        return v.visitStmtPlot(this, arg);
+    }
+
+    @Override
+    public String toString() {
+        String result = String.format("plot %s for %s in [%s:%s]", fn.getBody(), getVar(),
+                lower, upper);
+        return style == null ? result : result + " " + style;
+    }
+}
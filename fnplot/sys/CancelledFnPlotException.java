@@ -0,0 +1,14 @@
+package fnplot.sys;
+
+/**
+ * Thrown when an evaluation stops early because it was asked to.
+ */
+public class CancelledFnPlotException extends RuntimeFnPlotException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CancelledFnPlotException() {
+        super("Evaluation cancelled");
+    }
+
+}
@@ -47,6 +47,7 @@ import java.util.logging.Logger;
 public class CmdLine {
 
     static String PROMPT = "Eval>";
+    static int MEMO_CAPACITY = 1024;
     Evaluator interp;
     
     public CmdLine() {
@@ -94,6 +95,31 @@ public class CmdLine {
         CmdLine cmd = new CmdLine();
         Reader r;
         for (String fname : args) {
+            if (fname.equals("-dump")) {
+                // show each program before and after optimization
+                cmd.interp.getOptimizer().setDump(System.out);
+                continue;
+            }
+            if (fname.equals("-stackless")) {
+                // run programs on an explicit stack, for deep recursion
+                cmd.interp.setStackless(true);
+                continue;
+            }
+            if (fname.equals("-parallel")) {
+                // sample functions on every available core
+                cmd.interp.setParallelism(Runtime.getRuntime().availableProcessors());
+                continue;
+            }
+            if (fname.equals("-incremental")) {
+                // redefinitions recompute whatever depends on them
+                cmd.interp.setIncremental(true);
+                continue;
+            }
+            if (fname.equals("-memo")) {
+                // keep the results of recent calls of each function
+                cmd.interp.setMemoCapacity(MEMO_CAPACITY);
+                continue;
+            }
             try {
                 if (fname.equals("-")) {
                     r = new InputStreamReader(System.in);
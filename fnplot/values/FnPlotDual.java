@@ -0,0 +1,126 @@
+package fnplot.values;
+
+import fnplot.sys.FnPlotException;
+
+/**
+ * A dual number: a real value together with its derivative with respect to
+ * some chosen variable.  Arithmetic on dual numbers applies the rules of
+ * differentiation alongside the operations on their values, so evaluating an
+ * expression on a dual number for its variable yields both the value of the
+ * expression and its derivative.
+ *
+ * Dual numbers behave as reals: an operation with an integer or real operand
+ * treats that operand as a constant, whose derivative is zero.
+ */
+public class FnPlotDual extends FnPlotValue<FnPlotDual> {
+
+    double value;
+    double derivative;
+
+    /**
+     * Create a new dual number.
+     * @param value The real value
+     * @param derivative Its derivative
+     */
+    public FnPlotDual(double value, double derivative) {
+        this.value = value;
+        this.derivative = derivative;
+    }
+
+    /**
+     * Convert a number to a dual number.
+     * @param v An integer, real or dual number
+     * @return <code>v</code> itself if it is a dual number, otherwise the
+     * dual number for the constant <code>v</code>.
+     * @throws TypeFnPlotException if <code>v</code> is not a number.
+     */
+    public static FnPlotDual lift(FnPlotValue<?> v) throws TypeFnPlotException {
+        if (v instanceof FnPlotDual) {
+            return (FnPlotDual) v;
+        }
+        return new FnPlotDual(v.doubleValue(), 0);
+    }
+
+    @Override
+    public FnPlotType getType() {
+        return FnPlotType.REAL;
+    }
+
+    /**
+     * @return The derivative carried by this dual number.
+     */
+    public double getDerivative() {
+        return derivative;
+    }
+
+    @Override
+    public FnPlotDual add(FnPlotValue<?> arg) throws FnPlotException {
+        FnPlotDual b = lift(arg);
+        return new FnPlotDual(value + b.value, derivative + b.derivative);
+    }
+
+    @Override
+    public FnPlotDual sub(FnPlotValue<?> arg) throws FnPlotException {
+        FnPlotDual b = lift(arg);
+        return new FnPlotDual(value - b.value, derivative - b.derivative);
+    }
+
+    @Override
+    public FnPlotDual mul(FnPlotValue<?> arg) throws FnPlotException {
+        FnPlotDual b = lift(arg);
+        return new FnPlotDual(value * b.value,
+                derivative * b.value + value * b.derivative);
+    }
+
+    @Override
+    public FnPlotDual div(FnPlotValue<?> arg) throws FnPlotException {
+        FnPlotDual b = lift(arg);
+        return new FnPlotDual(value / b.value,
+                (derivative * b.value - value * b.derivative) / (b.value * b.value));
+    }
+
+    /**
+     * Compute the remainder of dividing this value by the given value.  Away
+     * from the jumps of the remainder, <code>a % b</code> is
+     * <code>a - q * b</code> for a fixed integer <code>q</code>, so that is
+     * how it is differentiated.
+     * @param arg The divisor
+     * @return The residue modulo arg, with its derivative
+     * @throws FnPlotException if the divisor is not a number
+     */
+    @Override
+    public FnPlotDual mod(FnPlotValue<?> arg) throws FnPlotException {
+        FnPlotDual b = lift(arg);
+        double q = (value - value % b.value) / b.value;
+        return new FnPlotDual(value % b.value, derivative - q * b.derivative);
+    }
+
+    @Override
+    public FnPlotDual expo(FnPlotValue<?> arg) throws FnPlotException {
+        FnPlotDual b = lift(arg);
+        double result = Math.pow(value, b.value);
+        double d;
+        if (b.derivative == 0) {
+            // constant exponent: also defined where the base is not positive
+            d = derivative == 0 ? 0 : b.value * Math.pow(value, b.value - 1) * derivative;
+        } else {
+            d = result * (b.derivative * Math.log(value) + b.value * derivative / value);
+        }
+        return new FnPlotDual(result, d);
+    }
+
+    @Override
+    public int intValue() {
+        return (int) value;
+    }
+
+    @Override
+    public double doubleValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return value + " (d/dx " + derivative + ")";
+    }
+}
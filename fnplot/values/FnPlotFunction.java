@@ -28,8 +28,23 @@ package fnplot.values;
 import fnplot.semantics.Environment;
 import fnplot.syntax.ExpFunction;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
+ * A user-defined function: a function expression closed over the environment
+ * in which it was evaluated.
+ *
+ * Calls of a function may be memoized (see {@link #setMemoCapacity}).  Since
+ * expressions have no side effects, the result of a call depends only on the
+ * values of its arguments and the bindings visible from the closing
+ * environment, so a call with the same (integer or real) arguments as an
+ * earlier one can reuse its result, as long as none of those bindings has
+ * changed since.  The memo table holds a bounded number of results, and
+ * discards the least recently used when it is full; it is emptied whenever
+ * the closing environment changes.
  *
  * @author newts
  */
@@ -37,6 +52,33 @@ public class FnPlotFunction extends FnPlotValue<FnPlotFunction> {
     ExpFunction funExp;
     Environment<FnPlotValue<?>> closingEnv;
 
+    /* the results of earlier calls, or null if calls are not memoized */
+    private volatile Memo memo;
+    private long hits;
+    private long misses;
+
+    /**
+     * The results of calls, by their arguments, in order of use.
+     */
+    private static class Memo extends LinkedHashMap<List<FnPlotValue<?>>, FnPlotValue<?>> {
+
+        private static final long serialVersionUID = 1L;
+
+        final int capacity;
+        long stamp;     // the version of the closing environment they are valid for
+
+        Memo(int capacity, long stamp) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.stamp = stamp;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<FnPlotValue<?>>, FnPlotValue<?>> e) {
+            return size() > capacity;
+        }
+    }
+
     /**
      * Create a new instance of a user-defined function.
      * @param funExp The function expression that was evaluated
@@ -64,6 +106,96 @@ public class FnPlotFunction extends FnPlotValue<FnPlotFunction> {
     public Environment<FnPlotValue<?>> getClosingEnv() {
         return closingEnv;
     }
+
+    /**
+     * Choose whether to memoize calls of this function, and how many results
+     * to keep.  Any results already kept are discarded.
+     * @param capacity The largest number of results to keep, or 0 to stop
+     * memoizing calls
+     */
+    public synchronized void setMemoCapacity(int capacity) {
+        memo = capacity > 0 ? new Memo(capacity, closingEnv.getVersion()) : null;
+    }
+
+    /**
+     * @return The largest number of results of calls that are kept, or 0 if
+     * calls are not memoized.
+     */
+    public synchronized int getMemoCapacity() {
+        return memo == null ? 0 : memo.capacity;
+    }
+
+    /**
+     * @return <code>true</code> if calls of this function are memoized.
+     */
+    public boolean isMemoized() {
+        return memo != null;
+    }
+
+    /**
+     * @return The number of calls whose results were found in the memo table.
+     */
+    public synchronized long getMemoHits() {
+        return hits;
+    }
+
+    /**
+     * @return The number of memoizable calls whose results were not found in
+     * the memo table, and so had to be computed.
+     */
+    public synchronized long getMemoMisses() {
+        return misses;
+    }
+
+    /**
+     * Find the result of an earlier call of this function with the given
+     * arguments, if it is still valid.
+     * @param args The values of the arguments
+     * @return The result, or <code>null</code> if calls are not memoized, the
+     * arguments are not all integers and reals, or there is no valid result.
+     */
+    public synchronized FnPlotValue<?> recall(FnPlotValue<?>[] args) {
+        if (memo == null || !memoizable(args)) {
+            return null;
+        }
+        long stamp = closingEnv.getVersion();
+        if (stamp != memo.stamp) {
+            // something this function may refer to has been redefined
+            memo.clear();
+            memo.stamp = stamp;
+        }
+        FnPlotValue<?> result = memo.get(Arrays.asList(args));
+        if (result == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return result;
+    }
+
+    /**
+     * Keep the result of a call of this function, if calls are memoized.
+     * @param args The values of the arguments of the call
+     * @param result The value of the call
+     */
+    public synchronized void remember(FnPlotValue<?>[] args, FnPlotValue<?> result) {
+        if (memo != null && memoizable(args) && closingEnv.getVersion() == memo.stamp) {
+            memo.put(Arrays.asList(args.clone()), result);
+        }
+    }
+
+    /*
+     * Only integers and reals are compared by value, so only calls on them
+     * can be recognized as repeats.
+     */
+    private static boolean memoizable(FnPlotValue<?>[] args) {
+        for (FnPlotValue<?> arg : args) {
+            if (!(arg instanceof FnPlotInt || arg instanceof FnPlotReal)) {
+                return false;
+            }
+        }
+        return true;
+    }
     
     @Override
     public String toString() {
@@ -30,8 +30,19 @@ public class FnPlotInt extends FnPlotValue<FnPlotInt> {
         return FnPlotType.INTEGER;
     }
     
+    /*
+     * The real with the same value as this integer, for operations with a
+     * real argument.
+     */
+    private FnPlotReal promote() {
+        return make((double) value);
+    }
+
     @Override
-    public FnPlotInt add(FnPlotValue<?> arg) throws FnPlotException {
+    public FnPlotValue<?> add(FnPlotValue<?> arg) throws FnPlotException {
+        if (!arg.isInteger()) {
+            return promote().add(arg);
+        }
         return make(value + arg.intValue());
     }
 
@@ -42,7 +53,10 @@ public class FnPlotInt extends FnPlotValue<FnPlotInt> {
      * @throws fnplot.sys.FnPlotException
      */
     @Override
-    public FnPlotInt sub(FnPlotValue<?> arg) throws FnPlotException {
+    public FnPlotValue<?> sub(FnPlotValue<?> arg) throws FnPlotException {
+        if (!arg.isInteger()) {
+            return promote().sub(arg);
+        }
         return make(value - arg.intValue());
     }
 
@@ -53,11 +67,17 @@ public class FnPlotInt extends FnPlotValue<FnPlotInt> {
      * @throws fnplot.sys.FnPlotException
      */
     @Override
-    public FnPlotInt mul(FnPlotValue<?> arg) throws FnPlotException {
+    public FnPlotValue<?> mul(FnPlotValue<?> arg) throws FnPlotException {
+        if (!arg.isInteger()) {
+            return promote().mul(arg);
+        }
         return make(value * arg.intValue());
     }
     @Override
-    public FnPlotInt expo(FnPlotValue<?> arg) throws FnPlotException {
+    public FnPlotValue<?> expo(FnPlotValue<?> arg) throws FnPlotException {
+        if (!arg.isInteger()) {
+            return promote().expo(arg);
+        }
         return make((int) Math.pow(value ,arg.intValue()));
     }
     /**
@@ -67,7 +87,10 @@ public class FnPlotInt extends FnPlotValue<FnPlotInt> {
      * @throws fnplot.sys.FnPlotException
      */
     @Override
-    public FnPlotInt div(FnPlotValue<?> arg) throws FnPlotException {
+    public FnPlotValue<?> div(FnPlotValue<?> arg) throws FnPlotException {
+        if (!arg.isInteger()) {
+            return promote().div(arg);
+        }
         return make(value / arg.intValue());
     }
 
@@ -78,11 +101,11 @@ public class FnPlotInt extends FnPlotValue<FnPlotInt> {
      * @throws fnplot.values.TypeFnPlotException
      */
     @Override
-    public FnPlotInt mod(FnPlotValue<?> arg) throws FnPlotException {
+    public FnPlotValue<?> mod(FnPlotValue<?> arg) throws FnPlotException {
         if (arg.isInteger()) {
             return make(value % arg.intValue());
         } else {
-            return make(value % arg.intValue());
+            return promote().mod(arg);
         }
     }
     
@@ -96,6 +119,16 @@ public class FnPlotInt extends FnPlotValue<FnPlotInt> {
         return value;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof FnPlotInt && value == ((FnPlotInt) o).value;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(value);
+    }
+
     @Override
     public String toString() {
         return String.valueOf(value);
@@ -0,0 +1,282 @@
+package fnplot.values;
+
+import fnplot.sys.FnPlotException;
+
+/**
+ * A closed interval of reals, standing for some unknown real within it.  The
+ * result of an operation on intervals is an interval guaranteed to contain
+ * the result of the operation on any reals within its operands: each bound
+ * is rounded outwards, and where the operation may be undefined (as in
+ * division by an interval containing zero) the result is the whole real
+ * line.  Integer and real operands are treated as intervals containing just
+ * their values.
+ *
+ * A bound may be infinite.  An interval whose bounds are NaN contains no
+ * reals; it is the result of an operation that is undefined throughout its
+ * operands, such as raising a negative interval to a fractional power.
+ */
+public class FnPlotInterval extends FnPlotValue<FnPlotInterval> {
+
+    /** The interval containing every real. */
+    public static final FnPlotInterval ENTIRE =
+            new FnPlotInterval(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+
+    /** The interval containing no reals. */
+    public static final FnPlotInterval EMPTY = new FnPlotInterval(Double.NaN, Double.NaN);
+
+    /**
+     * The most integer exponents to which {@link #expo} raises the negative
+     * part of a base before giving up on a bound.
+     */
+    public static final int MAX_POWERS = 16;
+
+    double lo;
+    double hi;
+
+    /**
+     * Create a new interval.
+     * @param lo The lower bound
+     * @param hi The upper bound, no smaller than <code>lo</code>
+     */
+    public FnPlotInterval(double lo, double hi) {
+        this.lo = lo;
+        this.hi = hi;
+    }
+
+    /**
+     * Convert a number to an interval.
+     * @param v An integer, real or interval
+     * @return <code>v</code> itself if it is an interval, otherwise the
+     * interval containing just <code>v</code>.
+     * @throws TypeFnPlotException if <code>v</code> is not a number.
+     */
+    public static FnPlotInterval lift(FnPlotValue<?> v) throws TypeFnPlotException {
+        if (v instanceof FnPlotInterval) {
+            return (FnPlotInterval) v;
+        }
+        double d = v.doubleValue();
+        return new FnPlotInterval(d, d);
+    }
+
+    /*
+     * Build an interval from bounds computed with rounding to nearest, by
+     * widening it by one unit in the last place at each end.  A NaN bound
+     * means the operation may be undefined within the operands.
+     */
+    private static FnPlotInterval outward(double lo, double hi) {
+        if (Double.isNaN(lo) || Double.isNaN(hi)) {
+            return ENTIRE;
+        }
+        return new FnPlotInterval(Math.nextDown(lo), Math.nextUp(hi));
+    }
+
+    @Override
+    public FnPlotType getType() {
+        return FnPlotType.INTERVAL;
+    }
+
+    public double getLo() {
+        return lo;
+    }
+
+    public double getHi() {
+        return hi;
+    }
+
+    /**
+     * @return The width of this interval, or NaN if it is empty.
+     */
+    public double width() {
+        return hi - lo;
+    }
+
+    /**
+     * @return <code>true</code> if this interval contains no reals.
+     */
+    public boolean isEmpty() {
+        return Double.isNaN(lo);
+    }
+
+    /**
+     * @param x A real
+     * @return <code>true</code> if <code>x</code> lies within this interval.
+     */
+    public boolean contains(double x) {
+        return lo <= x && x <= hi;
+    }
+
+    /**
+     * @param other An interval
+     * @return The smallest interval containing both this interval and
+     * <code>other</code>.
+     */
+    public FnPlotInterval union(FnPlotInterval other) {
+        if (isEmpty()) {
+            return other;
+        } else if (other.isEmpty()) {
+            return this;
+        }
+        return new FnPlotInterval(Math.min(lo, other.lo), Math.max(hi, other.hi));
+    }
+
+    @Override
+    public FnPlotInterval add(FnPlotValue<?> arg) throws FnPlotException {
+        FnPlotInterval b = lift(arg);
+        if (isEmpty() || b.isEmpty()) {
+            return EMPTY;
+        }
+        return outward(lo + b.lo, hi + b.hi);
+    }
+
+    @Override
+    public FnPlotInterval sub(FnPlotValue<?> arg) throws FnPlotException {
+        FnPlotInterval b = lift(arg);
+        if (isEmpty() || b.isEmpty()) {
+            return EMPTY;
+        }
+        return outward(lo - b.hi, hi - b.lo);
+    }
+
+    @Override
+    public FnPlotInterval mul(FnPlotValue<?> arg) throws FnPlotException {
+        FnPlotInterval b = lift(arg);
+        if (isEmpty() || b.isEmpty()) {
+            return EMPTY;
+        }
+        double p1 = product(lo, b.lo), p2 = product(lo, b.hi);
+        double p3 = product(hi, b.lo), p4 = product(hi, b.hi);
+        return outward(Math.min(Math.min(p1, p2), Math.min(p3, p4)),
+                Math.max(Math.max(p1, p2), Math.max(p3, p4)));
+    }
+
+    /*
+     * The product of two bounds, taking zero times infinity to be zero, as it
+     * is for the reals the bounds stand for.
+     */
+    private static double product(double a, double b) {
+        return a == 0 || b == 0 ? 0 : a * b;
+    }
+
+    @Override
+    public FnPlotInterval div(FnPlotValue<?> arg) throws FnPlotException {
+        FnPlotInterval b = lift(arg);
+        if (isEmpty() || b.isEmpty()) {
+            return EMPTY;
+        }
+        if (b.contains(0)) {
+            return ENTIRE;
+        }
+        double q1 = lo / b.lo, q2 = lo / b.hi, q3 = hi / b.lo, q4 = hi / b.hi;
+        return outward(Math.min(Math.min(q1, q2), Math.min(q3, q4)),
+                Math.max(Math.max(q1, q2), Math.max(q3, q4)));
+    }
+
+    /**
+     * Compute the remainder of dividing this interval by the given value, as
+     * for reals: the result has the sign of the dividend, and is smaller in
+     * magnitude than the divisor.  When the divisor is a single value and the
+     * dividend lies between two consecutive multiples of it, the result is
+     * exact up to rounding.
+     * @param arg The divisor
+     * @return An interval containing every residue.
+     * @throws FnPlotException if the divisor is not a number
+     */
+    @Override
+    public FnPlotInterval mod(FnPlotValue<?> arg) throws FnPlotException {
+        FnPlotInterval b = lift(arg);
+        if (isEmpty() || b.isEmpty()) {
+            return EMPTY;
+        }
+        if (b.contains(0)) {
+            return ENTIRE;
+        }
+        if (lo >= 0) {
+            return modNonNegative(lo, hi, b);
+        } else if (hi <= 0) {
+            // x % y = -(-x % y)
+            FnPlotInterval r = modNonNegative(-hi, -lo, b);
+            return new FnPlotInterval(-r.hi, -r.lo);
+        } else {
+            FnPlotInterval neg = modNonNegative(0, -lo, b);
+            FnPlotInterval pos = modNonNegative(0, hi, b);
+            return new FnPlotInterval(-neg.hi, pos.hi);
+        }
+    }
+
+    private static FnPlotInterval modNonNegative(double lo, double hi, FnPlotInterval b) {
+        // only the magnitude of the divisor matters
+        double m = Math.max(Math.abs(b.lo), Math.abs(b.hi));
+        if (b.lo == b.hi && !Double.isInfinite(hi)) {
+            double k = Math.floor(lo / m);
+            if (Math.floor(hi / m) == k) {
+                double r1 = lo - k * m, r2 = hi - k * m;
+                return new FnPlotInterval(Math.max(0, Math.nextDown(r1)),
+                        Math.min(Math.nextDown(m), Math.nextUp(r2)));
+            }
+        }
+        return new FnPlotInterval(0, Math.min(hi, m));
+    }
+
+    /**
+     * Raise this interval to the given power.  An exponent that is a single
+     * integer is handled for any base, taking account of the sign of odd and
+     * even powers.  Otherwise the negative part of the base is raised only to
+     * the integers within the exponent, since a negative number raised to a
+     * fractional power is undefined; if there are more than
+     * {@link #MAX_POWERS} of them, the result is the whole real line.
+     * @param arg The exponent
+     * @return An interval containing every power.
+     * @throws FnPlotException if the exponent is not a number
+     */
+    @Override
+    public FnPlotInterval expo(FnPlotValue<?> arg) throws FnPlotException {
+        FnPlotInterval b = lift(arg);
+        if (isEmpty() || b.isEmpty()) {
+            return EMPTY;
+        }
+        if (b.lo == b.hi && b.lo == Math.rint(b.lo) && !Double.isInfinite(b.lo)) {
+            return power(b.lo);
+        }
+        FnPlotInterval result = EMPTY;
+        if (lo < 0) {
+            double first = Math.ceil(b.lo), last = Math.floor(b.hi);
+            if (last - first >= MAX_POWERS) {
+                return ENTIRE;
+            }
+            FnPlotInterval negative = new FnPlotInterval(lo, Math.min(hi, 0));
+            for (double n = first; n <= last; n++) {
+                result = result.union(negative.power(n));
+            }
+        }
+        if (hi < 0) {
+            return result;
+        }
+        // on a non-negative base, pow is monotonic in each argument, so its
+        // extremes are at the corners
+        double base = Math.max(lo, 0);
+        double p1 = Math.pow(base, b.lo), p2 = Math.pow(base, b.hi);
+        double p3 = Math.pow(hi, b.lo), p4 = Math.pow(hi, b.hi);
+        return result.union(outward(Math.min(Math.min(p1, p2), Math.min(p3, p4)),
+                Math.max(Math.max(p1, p2), Math.max(p3, p4))));
+    }
+
+    private FnPlotInterval power(double n) throws FnPlotException {
+        if (n == 0) {
+            return new FnPlotInterval(1, 1);
+        } else if (n < 0) {
+            return new FnPlotInterval(1, 1).div(power(-n));
+        }
+        double a = Math.pow(lo, n), b = Math.pow(hi, n);
+        if (n % 2 == 1) {
+            return outward(a, b);   // odd powers are increasing
+        } else if (contains(0)) {
+            return new FnPlotInterval(0, Math.nextUp(Math.max(a, b)));
+        }
+        return outward(Math.min(a, b), Math.max(a, b));
+    }
+
+    @Override
+    public String toString() {
+        return "[" + lo + ", " + hi + "]";
+    }
+}
@@ -95,6 +95,20 @@ public class FnPlotReal extends FnPlotValue<FnPlotReal> {
         return value;
     }
 
+    /**
+     * Two reals are equal if they have the same value, except that NaN equals
+     * itself and 0.0 does not equal -0.0, as for {@link Double#equals}.
+     */
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof FnPlotReal && Double.compare(value, ((FnPlotReal) o).value) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Double.hashCode(value);
+    }
+
     @Override
     public String toString() {
         return String.valueOf(value);
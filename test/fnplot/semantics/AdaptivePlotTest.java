@@ -0,0 +1,103 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import java.awt.geom.Point2D;
+import java.io.StringReader;
+import java.util.ArrayList;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests adaptive plots made by plot statements, from the source text to the
+ * paths the plotter receives.
+ */
+public class AdaptivePlotTest {
+
+    // a plot 100 pixels wide, and 100 high over the range [0:100]
+    private static final int PIXELS = 100;
+    // the number of parts in the coarse sample
+    private static final int PARTS = PIXELS / AdaptiveSampler.SPACING;
+
+    private Evaluator interp;
+    private final ArrayList<PointBuffer> paths = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        interp = new Evaluator();
+        interp.setPlotter(new Plotter() {
+            @Override
+            public double[] sample(double low, double hi) {
+                double[] xs = new double[PIXELS + 1];
+                for (int i = 0; i < xs.length; i++) {
+                    xs[i] = low + i * (hi - low) / PIXELS;
+                }
+                return xs;
+            }
+
+            @Override
+            public void plot(Point2D[] points) {
+                paths.add(PointBuffer.of(points));
+            }
+
+            @Override
+            public void plot(PointBuffer points) {
+                paths.add(new PointBuffer(points.getXs().clone(), points.getYs().clone(),
+                        points.length()));
+            }
+
+            @Override
+            public double[] getYRange() {
+                return new double[]{0, 100};
+            }
+
+            @Override
+            public void clear() {
+                paths.clear();
+            }
+        });
+    }
+
+    private void run(String source) throws Exception {
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(source)));
+        ArithProgram program = (ArithProgram) parser.parse().value;
+        program.visit(interp, interp.getGlobalEnv());
+    }
+
+    @Test
+    public void straightLineIsNotRefined() throws Exception {
+        run("plot 2 * x + 1 for x in [0:1] adaptive;");
+        assertEquals(1, paths.size());
+        PointBuffer path = paths.get(0);
+        // each coarse part is tested once at its midpoint, and no further
+        assertEquals(2 * PARTS + 1, path.length());
+        for (int i = 0; i < path.length(); i++) {
+            assertEquals(2 * path.getX(i) + 1, path.getY(i), 1e-12);
+        }
+    }
+
+    @Test
+    public void bendIsSampledMoreDensely() throws Exception {
+        run("plot 1 / x for x in [0.01:1] adaptive;");
+        assertEquals(1, paths.size());
+        PointBuffer path = paths.get(0);
+        int n = path.length();
+        assertTrue(n > 2 * PARTS + 1);
+        assertEquals(0.01, path.getX(0), 0);
+        assertEquals(1, path.getX(n - 1), 0);
+        for (int i = 0; i < n; i++) {
+            assertEquals(1 / path.getX(i), path.getY(i), 1e-9);
+            if (i > 0) {
+                assertTrue(path.getX(i) > path.getX(i - 1));
+            }
+        }
+        // halved repeatedly where it is steep, but only once where it is flat
+        double coarse = (1 - 0.01) / PARTS;
+        assertTrue(path.getX(1) - path.getX(0) < coarse / 8);
+        assertEquals(coarse / 2, path.getX(n - 1) - path.getX(n - 2), 1e-12);
+    }
+}
@@ -0,0 +1,95 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotValue;
+import java.io.StringReader;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests that arithmetic sites give the results of the generic operations
+ * whatever their state, and how they specialize and fall back.
+ */
+public class ArithSiteTest {
+
+    private static final FnPlotValue<?>[] NUMBERS = {
+        FnPlotValue.make(7), FnPlotValue.make(-2), FnPlotValue.make(2.5),
+        FnPlotValue.make(-0.5),
+    };
+
+    private static String show(FnPlotValue<?> v) {
+        return v.getType() + ":" + v;
+    }
+
+    @Test
+    public void resultsMatchGenericOperations() throws Exception {
+        for (ArithSite.Op op : ArithSite.Op.values()) {
+            // one site sees operands of every combination of types in turn
+            ArithSite shared = new ArithSite(op);
+            for (FnPlotValue<?> l : NUMBERS) {
+                for (FnPlotValue<?> r : NUMBERS) {
+                    String expected = show(op.apply(l, r));
+                    String msg = op + " " + l + " " + r;
+                    assertEquals(msg, expected, show(new ArithSite(op).apply(l, r)));
+                    assertEquals(msg, expected, show(shared.apply(l, r)));
+                }
+            }
+            assertSame(ArithSite.State.GENERIC, shared.getState());
+        }
+    }
+
+    @Test
+    public void siteSpecializesToFirstOperands() throws Exception {
+        ArithSite site = new ArithSite(ArithSite.Op.ADD);
+        assertSame(ArithSite.State.UNINITIALIZED, site.getState());
+        site.apply(FnPlotValue.make(1), FnPlotValue.make(2));
+        assertSame(ArithSite.State.INT_INT, site.getState());
+
+        site = new ArithSite(ArithSite.Op.ADD);
+        site.apply(FnPlotValue.make(1.5), FnPlotValue.make(2.5));
+        site.apply(FnPlotValue.make(3.5), FnPlotValue.make(2.5));
+        assertSame(ArithSite.State.REAL_REAL, site.getState());
+
+        site = new ArithSite(ArithSite.Op.ADD);
+        site.apply(FnPlotValue.make(1), FnPlotValue.make(2.5));
+        site.apply(FnPlotValue.make(1.5), FnPlotValue.make(2));
+        assertSame(ArithSite.State.MIXED, site.getState());
+    }
+
+    @Test
+    public void siteFallsBackForGood() throws Exception {
+        ArithSite site = new ArithSite(ArithSite.Op.DIV);
+        assertEquals("INTEGER:3", show(site.apply(FnPlotValue.make(7), FnPlotValue.make(2))));
+        assertEquals("REAL:3.5", show(site.apply(FnPlotValue.make(7), FnPlotValue.make(2.0))));
+        assertSame(ArithSite.State.GENERIC, site.getState());
+        assertEquals("INTEGER:3", show(site.apply(FnPlotValue.make(7), FnPlotValue.make(2))));
+        assertSame(ArithSite.State.GENERIC, site.getState());
+    }
+
+    @Test(expected = FnPlotException.class)
+    public void nonNumericOperandIsAnError() throws Exception {
+        Evaluator interp = new Evaluator();
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(
+                "f = fun(x) mapsto x; f;")));
+        FnPlotValue<?> f = ((ArithProgram) parser.parse().value)
+                .visit(interp, interp.getGlobalEnv());
+        new ArithSite(ArithSite.Op.MUL).apply(FnPlotValue.make(2), f);
+    }
+
+    @Test
+    public void callsWithOperandsOfChangingTypes() throws Exception {
+        Evaluator interp = new Evaluator();
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(
+                "f = fun(x) mapsto x * 2 + x / 4; a = f(3); b = f(1.5); c = f(4); d = f(3);")));
+        ((ArithProgram) parser.parse().value).visit(interp, interp.getGlobalEnv());
+        assertEquals("INTEGER:6", show(interp.getGlobalEnv().get("a")));
+        assertEquals("REAL:3.375", show(interp.getGlobalEnv().get("b")));
+        assertEquals("INTEGER:9", show(interp.getGlobalEnv().get("c")));
+        assertEquals("INTEGER:6", show(interp.getGlobalEnv().get("d")));
+    }
+}
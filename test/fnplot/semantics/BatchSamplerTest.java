@@ -0,0 +1,92 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotFunction;
+import java.io.StringReader;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Tests that sampling a function split between several threads gives the
+ * same values as sampling it on the calling thread, however it is sampled.
+ */
+public class BatchSamplerTest {
+
+    private static final String[] FUNCTIONS = {
+        "f = fun(x) mapsto x * x - 2 * x + 1;",
+        "a = 3; f = fun(x) mapsto let y = x / a in y * y * y;",
+        "g = fun(t) mapsto t * 2; f = fun(x) mapsto g(x) + 1;",
+        "f = fun(x) mapsto { s = 0; for i in [1:3:x] { s = s + i; }; s; };",
+        "n = 3; f = fun(x) mapsto n / 2 + x % n;",
+    };
+
+    // more points than one thread samples, and not a multiple of that
+    private static final int POINTS = 10 * BatchSampler.SEQUENTIAL_CUTOFF + 17;
+
+    private Evaluator interp;
+
+    @After
+    public void tearDown() {
+        if (interp != null) {
+            interp.setParallelism(1);
+        }
+    }
+
+    private static double[] points() {
+        double[] xs = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            xs[i] = 0.5 + 4.0 * i / POINTS;
+        }
+        return xs;
+    }
+
+    private FnPlotFunction define(String source) throws Exception {
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(source)));
+        ((ArithProgram) parser.parse().value).visit(interp, interp.getGlobalEnv());
+        return (FnPlotFunction) interp.getGlobalEnv().get("f");
+    }
+
+    private double[] sample(String def, int threads, boolean columnar, boolean stackless,
+            int memo) throws Exception {
+        tearDown();
+        interp = new Evaluator();
+        interp.setParallelism(threads);
+        interp.setColumnar(columnar);
+        interp.setStackless(stackless);
+        interp.setMemoCapacity(memo);
+        return interp.sample(define(def), points());
+    }
+
+    @Test
+    public void parallelSamplesMatchSequential() throws Exception {
+        for (String def : FUNCTIONS) {
+            double[] expected = sample(def, 1, false, false, 0);
+            assertArrayEquals(def, expected, sample(def, 4, false, false, 0), 0);
+            assertArrayEquals(def, expected, sample(def, 3, true, false, 0), 0);
+            assertArrayEquals(def, expected, sample(def, 4, false, true, 0), 0);
+            assertArrayEquals(def, expected, sample(def, 4, false, false, 100), 0);
+        }
+    }
+
+    @Test
+    public void smallBatchIsSampledSequentially() throws Exception {
+        interp = new Evaluator();
+        interp.setParallelism(4);
+        double[] ys = interp.sample(define("f = fun(x) mapsto x + 1;"), new double[]{1, 2});
+        assertArrayEquals(new double[]{2, 3}, ys, 0);
+        assertArrayEquals(new double[0], interp.sample(interp.getGlobalEnv().get("f")
+                .funValue(), new double[0]), 0);
+    }
+
+    @Test(expected = FnPlotException.class)
+    public void errorOfWorkerIsReported() throws Exception {
+        interp = new Evaluator();
+        interp.setParallelism(4);
+        interp.sample(define("g = fun(t) mapsto t; f = fun(x) mapsto x + g;"), points());
+    }
+}
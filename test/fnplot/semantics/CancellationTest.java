@@ -0,0 +1,134 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import fnplot.sys.CancelledFnPlotException;
+import fnplot.values.FnPlotFunction;
+import java.awt.geom.Point2D;
+import java.io.StringReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that an evaluation stops when its interpreter is cancelled, from the
+ * same thread or another, keeping what it had done, and that evaluations run
+ * again once the interpreter is no longer cancelled.
+ */
+public class CancellationTest {
+
+    private static final String LONG_LOOP =
+            "s = 0; for i in [1:2000000000] { s = s + 1; }; s;";
+
+    private Evaluator interp;
+    private int plots;
+
+    @Before
+    public void setUp() {
+        interp = new Evaluator();
+        interp.setPlotter(new Plotter() {
+            @Override
+            public double[] sample(double low, double hi) {
+                return new double[]{low, hi};
+            }
+
+            @Override
+            public void plot(Point2D[] points) {
+                // as when the Cancel button is pressed while drawing
+                plots++;
+                interp.setCancelled(true);
+            }
+
+            @Override
+            public void clear() {
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        interp.setParallelism(1);
+    }
+
+    private void run(String source) throws Exception {
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(source)));
+        ((ArithProgram) parser.parse().value).visit(interp, interp.getGlobalEnv());
+    }
+
+    @Test
+    public void cancelledProgramKeepsWhatItDid() throws Exception {
+        try {
+            run("a = 1; plot x for x in [0:1]; f = fun(x) mapsto x; b = f(2);");
+            fail("not cancelled");
+        } catch (CancelledFnPlotException e) {
+            // expected
+        }
+        assertEquals(1, plots);
+        assertEquals(1, interp.getGlobalEnv().get("a").intValue());
+        assertTrue(interp.isCancelled());
+
+        interp.setCancelled(false);
+        run("b = f(2);");
+        assertEquals(2, interp.getGlobalEnv().get("b").intValue());
+    }
+
+    @Test(expected = CancelledFnPlotException.class)
+    public void cancelledInterpreterSamplesNothing() throws Exception {
+        run("f = fun(x) mapsto x * x;");
+        interp.setCancelled(true);
+        interp.sample((FnPlotFunction) interp.getGlobalEnv().get("f"), new double[]{1, 2});
+    }
+
+    @Test(expected = CancelledFnPlotException.class)
+    public void cancelledInterpreterSamplesNothingInParallel() throws Exception {
+        interp.setParallelism(4);
+        run("f = fun(x) mapsto x * x;");
+        interp.setCancelled(true);
+        interp.sample((FnPlotFunction) interp.getGlobalEnv().get("f"),
+                new double[8 * BatchSampler.SEQUENTIAL_CUTOFF]);
+    }
+
+    // run a program on another thread, cancel it, and wait for it to stop
+    private void cancelWhileRunning(final String source) throws Exception {
+        final Throwable[] thrown = new Throwable[1];
+        Thread worker = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    CancellationTest.this.run(source);
+                } catch (Throwable t) {
+                    thrown[0] = t;
+                }
+            }
+        };
+        worker.start();
+        Thread.sleep(100);
+        interp.setCancelled(true);
+        worker.join(10000);
+        assertFalse(worker.isAlive());
+        assertTrue(String.valueOf(thrown[0]), thrown[0] instanceof CancelledFnPlotException);
+    }
+
+    @Test(timeout = 20000)
+    public void loopStopsWhenCancelledFromAnotherThread() throws Exception {
+        cancelWhileRunning(LONG_LOOP);
+    }
+
+    @Test(timeout = 20000)
+    public void stacklessLoopStopsWhenCancelledFromAnotherThread() throws Exception {
+        interp.setStackless(true);
+        cancelWhileRunning(LONG_LOOP);
+    }
+
+    @Test(timeout = 20000)
+    public void callsStopWhenCancelledFromAnotherThread() throws Exception {
+        cancelWhileRunning("g = fun(x) mapsto x + 1; s = 0; "
+                + "for i in [1:2000000000] { s = g(s); }; s;");
+    }
+}
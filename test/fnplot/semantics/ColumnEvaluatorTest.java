@@ -0,0 +1,93 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotFunction;
+import java.io.StringReader;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Tests that functions sampled a column at a time give the same values as
+ * when they are sampled point by point.
+ */
+public class ColumnEvaluatorTest {
+
+    private static final String[] FUNCTIONS = {
+        "f = fun(x) mapsto x;",
+        "f = fun(x) mapsto x * x - 2 * x + 1;",
+        "f = fun(x) mapsto 3 - x / 4 + x % 2;",
+        "f = fun(x) mapsto 2 ^ x - x ^ 2;",
+        "a = 1.5; f = fun(x) mapsto a * x - a;",
+        "a = 1.5; f = fun(x) mapsto a + 1;",
+        "f = fun(x) mapsto let y = x * 0.5, z = 2 in y * y + z * y;",
+        "f = fun(x) mapsto (x + x) * (x + x) / (x * x + 1);",
+        "g = fun(t) mapsto t * t; f = fun(x) mapsto g(x) + 0.5;",
+        "n = 3; f = fun(x) mapsto n / 2 + x;",
+    };
+
+    private static double[] points(int n) {
+        double[] xs = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = -5 + 10.0 * i / n;
+        }
+        return xs;
+    }
+
+    private static double[] sample(String def, boolean columnar, double[] xs)
+            throws Exception {
+        Evaluator interp = new Evaluator();
+        interp.setColumnar(columnar);
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(def)));
+        ((ArithProgram) parser.parse().value).visit(interp, interp.getGlobalEnv());
+        FnPlotFunction f = (FnPlotFunction) interp.getGlobalEnv().get("f");
+        return interp.sample(f, xs);
+    }
+
+    @Test
+    public void columnsMatchPointByPoint() throws Exception {
+        double[] xs = points(1000);
+        for (String def : FUNCTIONS) {
+            assertArrayEquals(def, sample(def, false, xs), sample(def, true, xs), 0);
+        }
+    }
+
+    @Test
+    public void emptyAndSingleBatches() throws Exception {
+        for (String def : FUNCTIONS) {
+            assertArrayEquals(def, new double[0], sample(def, true, new double[0]), 0);
+            assertArrayEquals(def, sample(def, false, new double[]{0.25}),
+                    sample(def, true, new double[]{0.25}), 0);
+        }
+    }
+
+    @Test
+    public void pointsAreNotOverwritten() throws Exception {
+        Evaluator interp = new Evaluator();
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(
+                "f = fun(x) mapsto (x + 1) * (x + 2);")));
+        ((ArithProgram) parser.parse().value).visit(interp, interp.getGlobalEnv());
+        ExpFunction fun = ((FnPlotFunction) interp.getGlobalEnv().get("f")).getFunExp();
+        double[] xs = points(100);
+        double[] ys = ColumnEvaluator.eval(fun.getBody(), "x", xs, interp.getGlobalEnv());
+        assertArrayEquals(points(100), xs, 0);
+        for (int i = 0; i < xs.length; i++) {
+            ys[i] = (xs[i] + 1) * (xs[i] + 2) - ys[i];
+        }
+        assertArrayEquals(new double[100], ys, 0);
+    }
+
+    @Test(expected = FnPlotException.class)
+    public void callIsNotEvaluatedByColumns() throws Exception {
+        Evaluator interp = new Evaluator();
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(
+                "g = fun(t) mapsto t * t; f = fun(x) mapsto g(x) + 0.5;")));
+        ((ArithProgram) parser.parse().value).visit(interp, interp.getGlobalEnv());
+        ExpFunction fun = ((FnPlotFunction) interp.getGlobalEnv().get("f")).getFunExp();
+        ColumnEvaluator.eval(fun.getBody(), "x", points(10), interp.getGlobalEnv());
+    }
+}
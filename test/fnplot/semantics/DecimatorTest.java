@@ -0,0 +1,189 @@
+package fnplot.semantics;
+
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that decimated paths keep the ends and extremes of every column of
+ * pixels, and that simplified paths stay within their tolerance, including
+ * at the edge cases.
+ */
+public class DecimatorTest {
+
+    // a random walk with increasing inputs, and some gaps
+    private static PointBuffer walk(int n, long seed, boolean gaps) {
+        Random random = new Random(seed);
+        PointBuffer path = new PointBuffer(n);
+        double y = 0;
+        for (int i = 0; i < n; i++) {
+            y += random.nextGaussian();
+            boolean gap = gaps && random.nextInt(50) == 0;
+            path.add(10.0 * i / n, gap ? Double.NaN : y);
+        }
+        return path;
+    }
+
+    private static long column(double x, double xlo, double xhi, int width) {
+        return (long) Math.floor((x - xlo) * (width / (xhi - xlo)));
+    }
+
+    // whether the points of b appear in a, in the same order
+    private static boolean isSubsequence(PointBuffer b, PointBuffer a) {
+        int j = 0;
+        for (int i = 0; i < a.length() && j < b.length(); i++) {
+            if (Double.compare(a.getX(i), b.getX(j)) == 0
+                    && Double.compare(a.getY(i), b.getY(j)) == 0) {
+                j++;
+            }
+        }
+        return j == b.length();
+    }
+
+    @Test
+    public void columnsKeepTheirEndsAndExtremes() {
+        PointBuffer path = walk(20000, 1, true);
+        int width = 300;
+        PointBuffer d = Decimator.decimate(path, 0, 10, width);
+        int gaps = 0;
+        for (int i = 0; i < path.length(); i++) {
+            gaps += Double.isNaN(path.getY(i)) ? 1 : 0;
+        }
+        // a gap splits a column's run in two
+        assertTrue(d.length() <= 4 * (width + gaps) + gaps);
+        assertTrue(isSubsequence(d, path));
+        // compare each run of points within one column
+        int i = 0, j = 0;
+        while (i < path.length()) {
+            if (Double.isNaN(path.getY(i))) {
+                assertTrue(Double.isNaN(d.getY(j)));
+                i++;
+                j++;
+                continue;
+            }
+            long col = column(path.getX(i), 0, 10, width);
+            int end = i;
+            double min = path.getY(i), max = path.getY(i);
+            while (end + 1 < path.length() && !Double.isNaN(path.getY(end + 1))
+                    && column(path.getX(end + 1), 0, 10, width) == col) {
+                end++;
+                min = Math.min(min, path.getY(end));
+                max = Math.max(max, path.getY(end));
+            }
+            int dend = j;
+            double dmin = d.getY(j), dmax = d.getY(j);
+            while (dend + 1 < d.length() && !Double.isNaN(d.getY(dend + 1))
+                    && column(d.getX(dend + 1), 0, 10, width) == col) {
+                dend++;
+                dmin = Math.min(dmin, d.getY(dend));
+                dmax = Math.max(dmax, d.getY(dend));
+            }
+            assertEquals(path.getX(i), d.getX(j), 0);
+            assertEquals(path.getX(end), d.getX(dend), 0);
+            assertEquals(min, dmin, 0);
+            assertEquals(max, dmax, 0);
+            assertTrue(dend - j < 4);
+            i = end + 1;
+            j = dend + 1;
+        }
+        assertEquals(d.length(), j);
+    }
+
+    @Test
+    public void monotoneRunKeepsJustItsEnds() {
+        PointBuffer path = new PointBuffer(0);
+        for (int i = 0; i < 10; i++) {
+            path.add(0.01 * i, i);
+        }
+        PointBuffer d = Decimator.decimate(path, 0, 1, 1);
+        assertEquals(2, d.length());
+        assertEquals(0, d.getY(0), 0);
+        assertEquals(9, d.getY(1), 0);
+    }
+
+    @Test
+    public void singleAndEmptyPaths() {
+        PointBuffer one = new PointBuffer(new double[]{0.5}, new double[]{3});
+        assertEquals(1, Decimator.decimate(one, 0, 1, 10).length());
+        assertEquals(0, Decimator.decimate(new PointBuffer(0), 0, 1, 10).length());
+        assertEquals(1, Decimator.simplify(one, 0.1, 0.1, 0.5).length());
+        assertEquals(0, Decimator.simplify(new PointBuffer(0), 0.1, 0.1, 0.5).length());
+    }
+
+    @Test
+    public void infiniteValuesAreKept() {
+        PointBuffer path = new PointBuffer(0);
+        path.add(0.1, 1);
+        path.add(0.2, Double.POSITIVE_INFINITY);
+        path.add(0.3, Double.NEGATIVE_INFINITY);
+        path.add(0.4, 2);
+        PointBuffer d = Decimator.decimate(path, 0, 1, 1);
+        assertEquals(4, d.length());
+        assertEquals(Double.POSITIVE_INFINITY, d.getY(1), 0);
+        assertEquals(Double.NEGATIVE_INFINITY, d.getY(2), 0);
+    }
+
+    @Test
+    public void degenerateExtentsAreNotDecimated() {
+        assertFalse(Decimator.canDecimate(0, 1, 0));
+        assertFalse(Decimator.canDecimate(1, 1, 100));
+        assertFalse(Decimator.canDecimate(1, 0, 100));
+        assertFalse(Decimator.canDecimate(Double.NaN, 1, 100));
+        assertFalse(Decimator.canDecimate(0, Double.NaN, 100));
+        assertFalse(Decimator.canDecimate(0, Double.POSITIVE_INFINITY, 100));
+        assertFalse(Decimator.canDecimate(0, Double.MIN_VALUE, 100));
+        assertTrue(Decimator.canDecimate(-1, 1, 100));
+        PointBuffer path = walk(100, 2, false);
+        assertSame(path, Decimator.decimate(path, 1, 1, 100));
+    }
+
+    @Test
+    public void simplifiedPathStaysWithinTolerance() {
+        PointBuffer path = walk(5000, 3, true);
+        double xPixel = 10.0 / 400, yPixel = 0.5, tolerance = 1;
+        PointBuffer s = Decimator.simplify(path, xPixel, yPixel, tolerance);
+        assertTrue(s.length() < path.length());
+        assertTrue(isSubsequence(s, path));
+        // each point left out is near the segment between the kept points
+        // around it
+        int k = 0;
+        for (int i = 0; i < path.length(); i++) {
+            if (k < s.length() && Double.compare(path.getX(i), s.getX(k)) == 0) {
+                k++;
+                continue;
+            }
+            assertFalse(Double.isNaN(path.getY(i)));
+            double ax = s.getX(k - 1) / xPixel, ay = s.getY(k - 1) / yPixel;
+            double bx = s.getX(k) / xPixel, by = s.getY(k) / yPixel;
+            double px = path.getX(i) / xPixel, py = path.getY(i) / yPixel;
+            double dist = Math.abs((px - ax) * (by - ay) - (py - ay) * (bx - ax))
+                    / Math.hypot(bx - ax, by - ay);
+            assertTrue(dist <= tolerance + 1e-9);
+        }
+    }
+
+    @Test
+    public void straightLineIsSimplifiedToItsEnds() {
+        PointBuffer path = new PointBuffer(0);
+        for (int i = 0; i <= 1000; i++) {
+            path.add(i, 3 * i + 1);
+        }
+        PointBuffer s = Decimator.simplify(path, 1, 1, 0.01);
+        assertEquals(2, s.length());
+        assertEquals(1000, s.getX(1), 0);
+    }
+
+    @Test
+    public void coincidentEndsMeasureDistanceFromThePoint() {
+        PointBuffer loop = new PointBuffer(0);
+        loop.add(0, 0);
+        loop.add(1, 5);
+        loop.add(0, 0);
+        assertEquals(3, Decimator.simplify(loop, 1, 1, 1).length());
+        assertEquals(2, Decimator.simplify(loop, 1, 1, 10).length());
+    }
+}
@@ -0,0 +1,111 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import fnplot.syntax.Statement;
+import fnplot.syntax.StmtDefinition;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the variables found to be read by definitions, the order in which
+ * dependent definitions are evaluated again, and their propagation when a
+ * program is run incrementally.
+ */
+public class DependencyGraphTest {
+
+    private static ArrayList<StmtDefinition> definitions(String source) throws Exception {
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(source)));
+        ArithProgram p = new Evaluator().prepare((ArithProgram) parser.parse().value);
+        ArrayList<StmtDefinition> result = new ArrayList<>();
+        for (Statement s : p.getSeq().getSeq()) {
+            result.add((StmtDefinition) s);
+        }
+        return result;
+    }
+
+    private static HashSet<String> set(String... names) {
+        return new HashSet<>(Arrays.asList(names));
+    }
+
+    private static ArrayList<String> vars(ArrayList<StmtDefinition> defs) {
+        ArrayList<String> result = new ArrayList<>();
+        for (StmtDefinition sd : defs) {
+            result.add(sd.getVar());
+        }
+        return result;
+    }
+
+    @Test
+    public void readsAreFreeVariablesIncludingFunctionBodies() throws Exception {
+        ArrayList<StmtDefinition> defs = definitions(
+                "y = a + (let b = 1 in b * c) + f(2); g = fun(x) mapsto x * k + h(x);");
+        assertEquals(set("a", "c", "f"), DependencyGraph.reads(defs.get(0).getExp()));
+        assertEquals(set("k", "h"), DependencyGraph.reads(defs.get(1).getExp()));
+        assertTrue(DependencyGraph.names(defs.get(1).getExp()).containsAll(set("x", "k", "h")));
+    }
+
+    @Test
+    public void dependentsFollowWhatTheyRead() throws Exception {
+        DependencyGraph graph = new DependencyGraph();
+        for (StmtDefinition sd : definitions("d = a + c; c = b * 2; b = a + 1; e = z;")) {
+            graph.define(sd);
+        }
+        assertEquals(Arrays.asList("b", "c", "d"),
+                vars(graph.dependents(Collections.singleton("a"))));
+        assertEquals(Arrays.asList("c", "d"),
+                vars(graph.dependents(Collections.singleton("b"))));
+        assertEquals(Arrays.asList("e"), vars(graph.dependents(Collections.singleton("z"))));
+        assertTrue(graph.dependents(Collections.singleton("d")).isEmpty());
+    }
+
+    @Test
+    public void forgottenFormulaIsNotEvaluatedAgain() throws Exception {
+        DependencyGraph graph = new DependencyGraph();
+        for (StmtDefinition sd : definitions("b = a + 1; c = b * 2;")) {
+            graph.define(sd);
+        }
+        graph.forget("b");
+        assertTrue(graph.dependents(Collections.singleton("a")).isEmpty());
+        assertEquals(Arrays.asList("c"), vars(graph.dependents(Collections.singleton("b"))));
+    }
+
+    @Test
+    public void updateIsNotRecorded() throws Exception {
+        DependencyGraph graph = new DependencyGraph();
+        for (StmtDefinition sd : definitions("n = n + a;")) {
+            graph.define(sd);
+        }
+        assertTrue(graph.dependents(Collections.singleton("a")).isEmpty());
+    }
+
+    private static Evaluator run(String source) throws Exception {
+        Evaluator interp = new Evaluator();
+        interp.setIncremental(true);
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(source)));
+        ((ArithProgram) parser.parse().value).visit(interp, interp.getGlobalEnv());
+        return interp;
+    }
+
+    @Test
+    public void redefinitionPropagatesThroughFormulae() throws Exception {
+        Evaluator interp = run("a = 1; b = a + 1; c = b * 2; n = 0; n = n + a; a = 5;");
+        assertEquals(6, interp.getGlobalEnv().get("b").intValue());
+        assertEquals(12, interp.getGlobalEnv().get("c").intValue());
+        assertEquals(1, interp.getGlobalEnv().get("n").intValue());
+    }
+
+    @Test
+    public void redefinitionPropagatesThroughFunctions() throws Exception {
+        Evaluator interp = run("k = 2; g = fun(x) mapsto x * k; y = g(3); k = 10;");
+        assertEquals(30, interp.getGlobalEnv().get("y").intValue());
+    }
+}
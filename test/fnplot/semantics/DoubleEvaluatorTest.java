@@ -0,0 +1,98 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import fnplot.values.FnPlotFunction;
+import fnplot.values.FnPlotValue;
+import java.io.StringReader;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that real-valued function bodies evaluated on unboxed doubles give
+ * the same results as the boxed evaluation, and which bodies are accepted.
+ */
+public class DoubleEvaluatorTest {
+
+    private static final String[] REAL_VALUED = {
+        "f = fun(x) mapsto x * x - 2 * x + 1;",
+        "f = fun(x) mapsto 3 - x / 4;",
+        "f = fun(x) mapsto (x + 1) % 3 + 2 ^ x;",
+        "a = 2; f = fun(x) mapsto a * x - a;",
+        "f = fun(x) mapsto let y = x * 0.5 in y * y + y;",
+        "g = fun(t) mapsto t * t; f = fun(x) mapsto g(x) + 0.5;",
+        "f = fun(x) mapsto ({ y = x + 1; y * y; }) - x;",
+    };
+
+    private static final double[] ARGUMENTS = {2.5, 0.5, -1.5, 3};
+
+    private Evaluator interp;
+
+    @Before
+    public void setUp() {
+        interp = new Evaluator();
+    }
+
+    private void run(String source) throws Exception {
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(source)));
+        ArithProgram program = (ArithProgram) parser.parse().value;
+        program.visit(interp, interp.getGlobalEnv());
+    }
+
+    private FnPlotFunction function(String name) throws Exception {
+        return (FnPlotFunction) interp.getGlobalEnv().get(name);
+    }
+
+    private static boolean realValued(FnPlotFunction f) {
+        ExpFunction fun = f.getFunExp();
+        return DoubleEvaluator.isRealValued(fun.getBody(), fun.getParameters(),
+                f.getClosingEnv());
+    }
+
+    // the frame of a call of f with the given argument
+    private static Frame frame(FnPlotFunction f, double x) {
+        Frame frame = Invoker.frame(f);
+        frame.set(0, FnPlotValue.make(x));
+        return frame;
+    }
+
+    @Test
+    public void unboxedResultsMatchBoxed() throws Exception {
+        DoubleEvaluator unboxed = new DoubleEvaluator(interp);
+        for (String def : REAL_VALUED) {
+            run(def);
+            FnPlotFunction f = function("f");
+            assertTrue(def, realValued(f));
+            for (double x : ARGUMENTS) {
+                double boxed = f.getFunExp().getBody().visit(interp, frame(f, x))
+                        .doubleValue();
+                assertEquals(def + " at " + x, boxed,
+                        unboxed.eval(f.getFunExp().getBody(), frame(f, x)), 0);
+            }
+        }
+    }
+
+    @Test
+    public void integerArithmeticIsNotRealValued() throws Exception {
+        run("n = 1; f = fun(x) mapsto n / 2 + x;");
+        assertFalse(realValued(function("f")));
+        run("f = fun(x) mapsto 3;");
+        assertFalse(realValued(function("f")));
+        run("f = fun(x) mapsto let k = n + 6 in k % 2 * x;");
+        assertFalse(realValued(function("f")));
+    }
+
+    @Test
+    public void integerArithmeticIsSampledExactly() throws Exception {
+        run("n = 7; f = fun(x) mapsto n / 2 + x;");
+        double[] ys = interp.sample(function("f"), new double[]{0.5, 1});
+        assertEquals(3.5, ys[0], 0);
+        assertEquals(4, ys[1], 0);
+    }
+}
@@ -0,0 +1,86 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import fnplot.values.FnPlotDual;
+import fnplot.values.FnPlotFunction;
+import java.io.StringReader;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the derivatives computed by evaluating functions on dual numbers
+ * against the derivatives worked out by hand, and that the values computed
+ * alongside them are those of the plain evaluation.
+ */
+public class DualEvaluatorTest {
+
+    // each function, followed by its derivative
+    private static final String[][] DERIVATIVES = {
+        {"f = fun(x) mapsto 5;", "d = fun(x) mapsto 0;"},
+        {"f = fun(x) mapsto x * x * x - 2 * x;", "d = fun(x) mapsto 3 * x * x - 2;"},
+        {"f = fun(x) mapsto 1 / x;", "d = fun(x) mapsto 0 - 1 / (x * x);"},
+        {"f = fun(x) mapsto x ^ 3;", "d = fun(x) mapsto 3 * (x ^ 2);"},
+        {"f = fun(x) mapsto 2 ^ x;", "d = fun(x) mapsto (2 ^ x) * 0.6931471805599453;"},
+        {"f = fun(x) mapsto x % 2;", "d = fun(x) mapsto 1;"},
+        {"a = 3; f = fun(x) mapsto let y = x * a in y * y;", "d = fun(x) mapsto 18 * x;"},
+        {"g = fun(t) mapsto t * t; f = fun(x) mapsto g(x + 1) + x;",
+            "d = fun(x) mapsto 2 * (x + 1) + 1;"},
+        {"f = fun(x) mapsto { y = x * 2; y * x; };", "d = fun(x) mapsto 4 * x;"},
+        {"f = fun(x) mapsto { s = 0.0; for i in [1:3] { s = s + i * x; }; s; };",
+            "d = fun(x) mapsto 6;"},
+        {"f = fun(x) mapsto { s = 0.0; for t in [x:x + 2] { s = s + t * t; }; s; };",
+            "d = fun(x) mapsto 2 * x + 2 * (x + 1) + 2 * (x + 2);"},
+    };
+
+    private static final double[] POINTS = {0.25, 0.5, 1.5, 2.75, 3.5};
+
+    private Evaluator interp;
+
+    @Before
+    public void setUp() {
+        interp = new Evaluator();
+    }
+
+    private FnPlotFunction define(String source, String name) throws Exception {
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(source)));
+        ((ArithProgram) parser.parse().value).visit(interp, interp.getGlobalEnv());
+        return (FnPlotFunction) interp.getGlobalEnv().get(name);
+    }
+
+    @Test
+    public void derivativesMatchAnalyticDerivatives() throws Exception {
+        for (String[] pair : DERIVATIVES) {
+            FnPlotFunction f = define(pair[0], "f");
+            double[] expected = interp.sample(define(pair[1], "d"), POINTS);
+            double[] dys = new double[POINTS.length];
+            interp.sample(f, POINTS, dys);
+            for (int i = 0; i < POINTS.length; i++) {
+                assertEquals(pair[0] + " at " + POINTS[i], expected[i], dys[i],
+                        1e-12 * Math.max(1, Math.abs(expected[i])));
+            }
+        }
+    }
+
+    @Test
+    public void valuesMatchPlainSampling() throws Exception {
+        for (String[] pair : DERIVATIVES) {
+            FnPlotFunction f = define(pair[0], "f");
+            double[] ys = interp.sample(f, POINTS, new double[POINTS.length]);
+            assertArrayEquals(pair[0], interp.sample(f, POINTS), ys, 1e-12);
+        }
+    }
+
+    @Test
+    public void constantExponentOfNonPositiveBase() throws Exception {
+        FnPlotDual x = new FnPlotDual(-2, 1);
+        FnPlotDual cube = x.expo(new FnPlotDual(3, 0));
+        assertEquals(-8, cube.doubleValue(), 0);
+        assertEquals(12, cube.getDerivative(), 0);
+        assertEquals(0, new FnPlotDual(0, 1).expo(new FnPlotDual(2, 0)).getDerivative(), 0);
+    }
+}
@@ -0,0 +1,138 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotFunction;
+import fnplot.values.FnPlotValue;
+import java.io.StringReader;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the functions compiled to bytecode, and the reuse of their kernels.
+ */
+public class FnCompilerTest {
+
+    private Evaluator interp;
+
+    @Before
+    public void setUp() {
+        interp = new Evaluator();
+    }
+
+    // functions of x whose integer and real operands are mixed in each order
+    private static final String[] FUNCTIONS = {
+        "f = fun(x) mapsto 3 - x;",
+        "f = fun(x) mapsto x - 3;",
+        "f = fun(x) mapsto 2 * x + 1;",
+        "f = fun(x) mapsto 7 / x - x % 2;",
+        "f = fun(x) mapsto let k = 3 in x * (k - x) / (k + 0.5);",
+        "f = fun(x) mapsto let n = 2 in n ^ 3 - x ^ n;",
+        "f = fun(x) mapsto let n = 7 in (n % 4) / (n / 2) - x;",
+        "a = 4; f = fun(x) mapsto { y = a - x; y * y - a; };",
+        "f = fun(x) mapsto { s = 0.0; for i in [1:5] { s = s + i * x; }; s; };",
+        "f = fun(x) mapsto { s = 0.5; for t in [0:x:0.25] { s = s + t; }; s; };",
+    };
+
+    private static final String[] ARGUMENTS = {"2.5", "0.5", "3.0", "(0 - 1.5)"};
+
+    private FnPlotValue<?> run(String source) throws Exception {
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(source)));
+        ArithProgram program = (ArithProgram) parser.parse().value;
+        return program.visit(interp, interp.getGlobalEnv());
+    }
+
+    private FnPlotFunction function(String name) throws Exception {
+        return (FnPlotFunction) interp.getGlobalEnv().get(name);
+    }
+
+    @Test
+    public void kernelIsReusedWhileCapturedValuesAreUnchanged() throws Exception {
+        run("a = 2; f = fun(x) mapsto a * x + 1;");
+        FnPlotFunction f = function("f");
+        assertEquals(5, interp.sample(f, new double[]{2})[0], 0);
+        CompiledFunction kernel = f.getFunExp().getKernel();
+        assertNotNull(kernel);
+
+        // as when the view is panned
+        assertEquals(7, interp.sample(f, new double[]{3})[0], 0);
+        assertSame(kernel, f.getFunExp().getKernel());
+
+        run("b = 4;");
+        interp.sample(f, new double[]{3});
+        assertSame(kernel, f.getFunExp().getKernel());
+
+        run("a = 3;");
+        assertEquals(10, interp.sample(f, new double[]{3})[0], 0);
+        assertNotSame(kernel, f.getFunExp().getKernel());
+    }
+
+    @Test
+    public void kernelOfClosureIsNotReusedForAnotherEnvironment() throws Exception {
+        run("g = fun(c) mapsto { m = fun(x) mapsto c * x; m; }; h = g(2); k = g(5);");
+        assertEquals(6, interp.sample(function("h"), new double[]{3})[0], 0);
+        // the same function expression, closed over another value of c
+        assertEquals(15, interp.sample(function("k"), new double[]{3})[0], 0);
+        assertEquals(6, interp.sample(function("h"), new double[]{3})[0], 0);
+    }
+
+    @Test
+    public void compiledFunctionsMatchCalls() throws Exception {
+        for (String def : FUNCTIONS) {
+            run(def);
+            CompiledFunction kernel = FnCompiler.compile(function("f"));
+            assertTrue(kernel.getClass().isHidden());
+            for (String arg : ARGUMENTS) {
+                double x = run(arg + ";").doubleValue();
+                assertEquals(def + " at " + arg, run("f(" + arg + ");").doubleValue(),
+                        kernel.apply(x), 0);
+            }
+        }
+    }
+
+    @Test
+    public void functionsOfSeveralVariablesAreCompiled() throws Exception {
+        run("f = fun(x, y) mapsto let k = 2 in k * x - y / k;");
+        assertEquals(5.5, FnCompiler.compile(function("f")).apply(3, 1), 0);
+    }
+
+    private void assertNotCompiled(String def) throws Exception {
+        run(def);
+        try {
+            FnCompiler.compile(function("f"));
+            fail("compiled " + def);
+        } catch (FnPlotException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void unsupportedShapesAreRejected() throws Exception {
+        assertNotCompiled("g = fun(x) mapsto x; f = fun(x) mapsto g(x) + 1;");
+        assertNotCompiled("f = fun(c) mapsto { m = fun(x) mapsto c * x; m; };");
+        assertNotCompiled("f = fun(x) mapsto { s = 0; for i in [1:4:x] { s = s + i; }; s; };");
+        assertNotCompiled("f = fun(x) mapsto { for i in [1:2] { y = x; }; y; };");
+        assertNotCompiled("f = fun(x) mapsto { s = 0; for i in [1:3] { s = s + x; }; s; };");
+    }
+
+    @Test
+    public void unsupportedFunctionIsSampledByInterpreter() throws Exception {
+        run("f = fun(x) mapsto { s = 0; for i in [1:4:x] { s = s + i; }; s; };");
+        FnPlotFunction f = function("f");
+        double[] ys = interp.sample(f, new double[]{1, 2, 1.5});
+        assertEquals(run("f(1.0);").doubleValue(), ys[0], 0);
+        assertEquals(run("f(2.0);").doubleValue(), ys[1], 0);
+        assertEquals(run("f(1.5);").doubleValue(), ys[2], 0);
+        assertNull(f.getFunExp().getKernel());
+    }
+}
@@ -0,0 +1,115 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotFunction;
+import java.awt.geom.Point2D;
+import java.io.StringReader;
+import java.util.ArrayList;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that a redefinition samples again just the curves that read it, and
+ * redraws the others from what was kept of them.
+ */
+public class IncrementalPlotTest {
+
+    private Evaluator interp;
+    private int samples;
+    private final ArrayList<PointBuffer> paths = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        interp = new Evaluator();
+        interp.setIncremental(true);
+        interp.setPlotter(new Plotter() {
+            @Override
+            public double[] sample(double low, double hi) {
+                samples++;
+                double[] xs = new double[11];
+                for (int i = 0; i < xs.length; i++) {
+                    xs[i] = low + i * (hi - low) / (xs.length - 1);
+                }
+                return xs;
+            }
+
+            @Override
+            public void plot(Point2D[] points) {
+                paths.add(PointBuffer.of(points));
+            }
+
+            @Override
+            public void plot(PointBuffer points) {
+                paths.add(new PointBuffer(points.getXs().clone(), points.getYs().clone(),
+                        points.length()));
+            }
+
+            @Override
+            public void clear() {
+                paths.clear();
+            }
+        });
+    }
+
+    private void run(String source) throws Exception {
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(source)));
+        ArithProgram program = (ArithProgram) parser.parse().value;
+        program.visit(interp, interp.getGlobalEnv());
+    }
+
+    @Test
+    public void redefinitionStreamsOnlyTheCurvesThatReadIt() throws Exception {
+        run("a = 1; b = 2; plot a * x for x in [0:1]; plot b * x for x in [0:1];");
+        assertEquals(2, samples);
+
+        samples = 0;
+        run("a = 3;");
+        assertEquals(1, samples);
+        assertEquals(2, paths.size());
+        assertEquals(3.0, paths.get(0).getY(10), 1e-12);
+        assertEquals(2.0, paths.get(1).getY(10), 1e-12);
+    }
+
+    @Test
+    public void unrelatedRedefinitionSamplesNothing() throws Exception {
+        run("a = 1; c = 1; plot a * x for x in [0:1];");
+        samples = 0;
+        run("c = 2;");
+        assertEquals(0, samples);
+        assertEquals(1, paths.size());
+    }
+
+    @Test
+    public void offHeapCurveIsRedrawnFromItsStore() throws Exception {
+        run("a = 1; b = 2; f = fun(x) mapsto a * x; plot b * x for x in [0:1];");
+        interp.plotOffHeap((FnPlotFunction) interp.getGlobalEnv().get("f"), 0, 1);
+        samples = 0;
+        run("b = 5;");
+        assertEquals(1, samples);
+        assertEquals(2, paths.size());
+        assertEquals(5.0, paths.get(0).getY(10), 1e-12);
+        assertEquals(1.0, paths.get(1).getY(10), 1e-12);
+        assertEquals(11, paths.get(1).length());
+    }
+
+    @Test
+    public void curveThatFailedToResampleIsNotRedrawn() throws Exception {
+        run("a = 1; b = 2; f = fun(x) mapsto a * x; plot b * x for x in [0:1];");
+        interp.plotOffHeap((FnPlotFunction) interp.getGlobalEnv().get("f"), 0, 1);
+        try {
+            run("a = fun(y) mapsto y;");
+            fail("a function times a number should not be plotted");
+        } catch (FnPlotException e) {
+            // expected
+        }
+        run("b = 5;");
+        assertEquals(1, paths.size());
+        assertEquals(5.0, paths.get(0).getY(10), 1e-12);
+    }
+}
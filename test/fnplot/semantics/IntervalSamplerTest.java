@@ -0,0 +1,117 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import fnplot.values.FnPlotFunction;
+import fnplot.values.FnPlotInterval;
+import java.io.StringReader;
+import java.util.ArrayList;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the enclosures of functions hold their sampled values, and that
+ * sampling guided by them keeps every visible part of the graph.
+ */
+public class IntervalSamplerTest {
+
+    private static final String[] FUNCTIONS = {
+        "f = fun(x) mapsto x * x - 2 * x;",
+        "f = fun(x) mapsto 1 / (x * x + 0.5);",
+        "f = fun(x) mapsto x ^ 3 - x;",
+        "f = fun(x) mapsto x % 1.5;",
+        "a = 2; f = fun(x) mapsto let y = x - a in y * y * y;",
+        "g = fun(t) mapsto t * t; f = fun(x) mapsto g(x) - x;",
+    };
+
+    private Evaluator interp;
+
+    @Before
+    public void setUp() {
+        interp = new Evaluator();
+    }
+
+    private FnPlotFunction define(String source) throws Exception {
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(source)));
+        ((ArithProgram) parser.parse().value).visit(interp, interp.getGlobalEnv());
+        return (FnPlotFunction) interp.getGlobalEnv().get("f");
+    }
+
+    private static double[] grid(double lo, double hi, int n) {
+        double[] xs = new double[n + 1];
+        for (int i = 0; i <= n; i++) {
+            xs[i] = lo + (hi - lo) * i / n;
+        }
+        return xs;
+    }
+
+    @Test
+    public void enclosuresHoldSampledValues() throws Exception {
+        double[][] ranges = {{-3, 3}, {-0.5, 0.25}, {1, 1.125}, {2, 2}};
+        for (String def : FUNCTIONS) {
+            FnPlotFunction f = define(def);
+            IntervalSampler sampler = new IntervalSampler(f, -10, 10, 0.01, 0.1);
+            for (double[] range : ranges) {
+                FnPlotInterval y = sampler.enclose(range[0], range[1]);
+                double[] xs = grid(range[0], range[1], 50);
+                double[] ys = interp.sample(f, xs);
+                for (int i = 0; i < xs.length; i++) {
+                    assertTrue(def + " at " + xs[i] + ": " + ys[i] + " not in " + y,
+                            y.contains(ys[i]));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void visiblePointsAreWithinRuns() throws Exception {
+        for (String def : FUNCTIONS) {
+            FnPlotFunction f = define(def);
+            ArrayList<double[]> runs = new IntervalSampler(f, -1, 1, 0.01, 0.05).sample(-3, 3);
+            double[] xs = grid(-3, 3, 600);
+            double[] ys = interp.sample(f, xs);
+            for (int i = 0; i < xs.length; i++) {
+                if (ys[i] >= -1 && ys[i] <= 1) {
+                    assertTrue(def + " at " + xs[i], covered(runs, xs[i]));
+                }
+            }
+            double last = Double.NEGATIVE_INFINITY;
+            for (double[] run : runs) {
+                assertTrue(run.length >= 2);
+                for (double x : run) {
+                    assertTrue(def, x > last);
+                    last = x;
+                }
+            }
+        }
+    }
+
+    private static boolean covered(ArrayList<double[]> runs, double x) {
+        for (double[] run : runs) {
+            if (run[0] <= x && x <= run[run.length - 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void invisibleGraphHasNoRuns() throws Exception {
+        FnPlotFunction f = define("f = fun(x) mapsto x * x + 100;");
+        assertEquals(0, new IntervalSampler(f, -1, 1, 0.01, 0.05).sample(-3, 3).size());
+    }
+
+    @Test
+    public void flatPartsAreNotBisected() throws Exception {
+        FnPlotFunction f = define("f = fun(x) mapsto x / 100;");
+        ArrayList<double[]> runs = new IntervalSampler(f, -1, 1, 0.001, 0.1).sample(-3, 3);
+        assertEquals(1, runs.size());
+        assertTrue(runs.get(0).length <= 9);
+        assertEquals(-3, runs.get(0)[0], 0);
+        assertEquals(3, runs.get(0)[runs.get(0).length - 1], 0);
+    }
+}
@@ -0,0 +1,77 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotValue;
+import java.io.StringReader;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests calls of user functions of every arity, and of closures, against the
+ * same calls with their variables looked up by name.
+ */
+public class InvokerTest {
+
+    private static final String[] PROGRAMS = {
+        "z = fun() mapsto 42; z() + 1;",
+        "f = fun(a) mapsto a * 2; f(f(1.5));",
+        "f = fun(a, b) mapsto a - b; f(1, 2) * f(2.5, 1);",
+        "f = fun(a, b, c) mapsto a * b + c; f(1, 2, 3);",
+        "f = fun(a, b, c, d) mapsto a - b - c - d; f(10, 1, 2, 3.5);",
+        "f = fun(a, b, c, d, e) mapsto a - b + c * d / e; f(1, 2, 3, 4, 5.0);",
+        "f = fun(a, b, c, d, e, g) mapsto a + b + c + d + e + g; f(1, 2, 3, 4, 5, 6);",
+        "f = fun(a, b) mapsto { a = a + b; a * b; }; f(2, 3) + f(2, 3);",
+        "add = fun(n) mapsto { g = fun(x) mapsto x + n; g; }; p = add(2); q = add(10); p(1) + q(1);",
+        "n = 1; f = fun(x) mapsto x + n; n = 5; f(1);",
+        "twice = fun(x) mapsto x * 2; apply = fun(g, x) mapsto g(g(x)); apply(twice, 3);",
+        "f = fun(x) mapsto let x = x * 10 in x + 1; f(2);",
+        "f = fun(x) mapsto x * x; s = 0; for i in [1:4] { s = s + f(i); }; s;",
+    };
+
+    private static ArithProgram parse(String source) throws Exception {
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(source)));
+        return (ArithProgram) parser.parse().value;
+    }
+
+    private static String run(String source, boolean prepare, int memo) throws Exception {
+        Evaluator interp = new Evaluator();
+        interp.setMemoCapacity(memo);
+        ArithProgram p = parse(source);
+        FnPlotValue<?> v = prepare ? p.visit(interp, interp.getGlobalEnv())
+                : p.getSeq().visit(interp, interp.getGlobalEnv());
+        return v.getType() + ":" + v;
+    }
+
+    @Test
+    public void callsMatchLookupByName() throws Exception {
+        for (String p : PROGRAMS) {
+            assertEquals(p, run(p, false, 0), run(p, true, 0));
+        }
+    }
+
+    @Test
+    public void memoizedCallsMatchLookupByName() throws Exception {
+        for (String p : PROGRAMS) {
+            assertEquals(p, run(p, false, 0), run(p, true, 4));
+        }
+    }
+
+    @Test(expected = FnPlotException.class)
+    public void tooFewArgumentsIsAnError() throws Exception {
+        run("f = fun(a, b) mapsto a - b; f(1);", true, 0);
+    }
+
+    @Test(expected = FnPlotException.class)
+    public void tooManyArgumentsIsAnError() throws Exception {
+        run("f = fun(a, b, c, d, e) mapsto a; f(1, 2, 3, 4, 5, 6);", true, 0);
+    }
+
+    @Test(expected = FnPlotException.class)
+    public void callingNumberIsAnError() throws Exception {
+        run("f = 3; f(1);", true, 0);
+    }
+}
@@ -0,0 +1,108 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotFunction;
+import fnplot.values.FnPlotValue;
+import java.io.StringReader;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Tests the number of iterations of <code>for</code> loops, and that loops
+ * in compiled functions compute what the evaluator does.
+ */
+public class LoopTest {
+
+    private Evaluator interp;
+
+    @Before
+    public void setUp() {
+        interp = new Evaluator();
+    }
+
+    private FnPlotValue<?> run(String source) throws Exception {
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(source)));
+        return ((ArithProgram) parser.parse().value).visit(interp, interp.getGlobalEnv());
+    }
+
+    private String show(String source) throws Exception {
+        FnPlotValue<?> v = run(source);
+        return v.getType() + ":" + v;
+    }
+
+    // the number of iterations of a loop over the given range
+    private int count(String range) throws Exception {
+        return run("n = 0; for i in " + range + " { n = n + 1; }; n;").intValue();
+    }
+
+    @Test
+    public void integerLoopsIncludeTheirUpperBound() throws Exception {
+        assertEquals(10, count("[1:10]"));
+        assertEquals(4, count("[1:10:3]"));
+        assertEquals(3, count("[1:9:3]"));
+        assertEquals(1, count("[5:5]"));
+        assertEquals(0, count("[1:0]"));
+        assertEquals(4, count("[10:1:0 - 3]"));
+        assertEquals(0, count("[1:10:0 - 1]"));
+    }
+
+    @Test
+    public void realLoopsAllowForRounding() throws Exception {
+        assertEquals(11, count("[0:1:0.1]"));
+        assertEquals(5, count("[1:0:0 - 0.25]"));
+        assertEquals(3, count("[0.5:2.5]"));
+        assertEquals(0, count("[0:0.0 / 0.0]"));
+    }
+
+    @Test
+    public void iterationsAreCappedForHugeRanges() {
+        assertEquals(Integer.MAX_VALUE, Evaluator.iterations(Integer.MIN_VALUE,
+                Integer.MAX_VALUE, 1));
+        assertEquals(3, Evaluator.iterations(0, Integer.MAX_VALUE, 1000000000));
+        assertEquals(Integer.MAX_VALUE, Evaluator.iterations(0, 1e300, 1e-300));
+    }
+
+    @Test(expected = FnPlotException.class)
+    public void zeroStepIsAnError() throws Exception {
+        run("for i in [1:10:0] { i; };");
+    }
+
+    @Test
+    public void loopVariableTakesEachValue() throws Exception {
+        assertEquals("INTEGER:55", show("s = 0; for i in [1:10] { s = s + i; }; s;"));
+        assertEquals("REAL:2.5", show("s = 0; for i in [0:1:0.25] { s = s + i; }; s;"));
+        assertEquals("INTEGER:7", show("for i in [1:7] { j = i; }; j;"));
+        assertEquals("INTEGER:100", show("i = 100; for i in [1:3] { i; }; i;"));
+    }
+
+    private static final String[] FUNCTIONS = {
+        "f = fun(x) mapsto { s = 0.0; for i in [1:10] { s = s + x / i; }; s; };",
+        "f = fun(x) mapsto { s = 0.0; for t in [0:1:0.125] { s = s + t * x; }; s; };",
+        "f = fun(x) mapsto { p = 1.0; for i in [5:1:0 - 2] { p = p * (x - i); }; p; };",
+        "f = fun(x) mapsto { s = 0.0; for i in [1:3] { for j in [i:3] { s = s + i * j * x; }; }; s; };",
+        "f = fun(x) mapsto { s = x; for i in [1:0] { s = 0.0; }; s; };",
+        "n = 4; f = fun(x) mapsto { s = 0.0; for i in [1:n] { s = s + x; }; s; };",
+    };
+
+    @Test
+    public void compiledLoopsMatchEvaluator() throws Exception {
+        double[] xs = {0.5, 1, 2.5, 3.25};
+        for (String def : FUNCTIONS) {
+            run(def);
+            FnPlotFunction f = (FnPlotFunction) interp.getGlobalEnv().get("f");
+            double[] expected = new double[xs.length];
+            for (int i = 0; i < xs.length; i++) {
+                expected[i] = run("f(" + xs[i] + ");").doubleValue();
+            }
+            assertArrayEquals(def, expected, interp.sample(f, xs), 0);
+            assertNotNull(def, f.getFunExp().getKernel());
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import fnplot.syntax.StmtDefinition;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotValue;
+import java.io.StringReader;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the optimizer simplifies arithmetic only where that cannot
+ * change what the program does.
+ */
+public class OptimizerTest {
+
+    private static final String[] PROGRAMS = {
+        "2 * 3 + 1;",
+        "7 / 2 + 0.5 * 4;",
+        "a = 2; b = a * 3; a = 2.5; c = a * 3; b + c;",
+        "a = 2; f = fun(x) mapsto x * a; a = 3; f(2);",
+        "let a = 1 in let a = a + 1 in a * 10;",
+        "let a = 2 in ({ a = 0.5; a * 4; }) + a;",
+        "let k = 3, j = 0.5 in k * j + 0;",
+        "s = 1; for i in [1:4] { s = s * 2; }; s + 0;",
+        "n = 4; for i in [1:3] { n = n + i; }; n * 1;",
+        "x = 0.0 / 0.0; 0 * x;",
+        "f = fun(x) mapsto (x * 2) * 1 + (x * 2) ^ 1 - 0; f(3) + f(1.5);",
+    };
+
+    private static ArithProgram parse(String source) throws Exception {
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(source)));
+        return (ArithProgram) parser.parse().value;
+    }
+
+    // the expression of the only definition in an optimized program
+    private static Exp optimized(String source) throws Exception {
+        return optimized(source, 0);
+    }
+
+    // the expression of a definition in an optimized program
+    private static Exp optimized(String source, int i) throws Exception {
+        ArithProgram p = new Optimizer().optimize(parse(source));
+        return ((StmtDefinition) p.getSeq().getSeq().get(i)).getExp();
+    }
+
+    private static String run(String source, boolean optimize) throws Exception {
+        ArithProgram p = parse(source);
+        if (optimize) {
+            p = new Optimizer().optimize(p);
+        }
+        Evaluator interp = new Evaluator();
+        FnPlotValue<?> v = p.getSeq().visit(interp, interp.getGlobalEnv());
+        return v.getType() + ":" + v;
+    }
+
+    @Test
+    public void resultsMatchUnoptimizedProgram() throws Exception {
+        for (String p : PROGRAMS) {
+            assertEquals(p, run(p, false), run(p, true));
+        }
+    }
+
+    @Test
+    public void arithmeticOnLiteralsIsFolded() throws Exception {
+        Exp e = optimized("y = 2 * 3 + 1;");
+        assertTrue(e instanceof ExpLit);
+        assertEquals(7, ((ExpLit) e).getVal().intValue());
+    }
+
+    @Test
+    public void divisionByZeroIsLeftToRun() throws Exception {
+        assertTrue(optimized("y = 1 / 0;") instanceof ExpDiv);
+    }
+
+    @Test
+    public void globalConstantIsSubstitutedUntilRedefined() throws Exception {
+        String source = "a = 2; y = a * 3; a = 0.5; z = a * 3;";
+        assertEquals("6", ((ExpLit) optimized(source, 1)).getVal().toString());
+        assertEquals("1.5", ((ExpLit) optimized(source, 3)).getVal().toString());
+    }
+
+    @Test
+    public void globalConstantIsNotSubstitutedIntoFunction() throws Exception {
+        ExpFunction f = (ExpFunction) optimized("a = 2; f = fun(x) mapsto a * 3;", 1);
+        assertTrue(f.getBody() instanceof ExpMul);
+    }
+
+    @Test
+    public void letConstantIsSubstituted() throws Exception {
+        Exp e = optimized("y = let k = 4 in k * 2;");
+        assertTrue(e instanceof ExpLit);
+        assertEquals(8, ((ExpLit) e).getVal().intValue());
+    }
+
+    @Test
+    public void identityOfArithmeticIsRemoved() throws Exception {
+        assertTrue(optimized("y = (x * 2) + 0;") instanceof ExpMul);
+        assertTrue(optimized("y = 1 * (x * 2);") instanceof ExpMul);
+        assertTrue(optimized("y = (x * 2) ^ 1;") instanceof ExpMul);
+    }
+
+    @Test
+    public void identityOfVariableIsKept() throws Exception {
+        assertTrue(optimized("y = x + 0;") instanceof ExpAdd);
+        assertTrue(optimized("y = 0 + x;") instanceof ExpAdd);
+    }
+
+    @Test(expected = FnPlotException.class)
+    public void functionPlusZeroIsAnError() throws Exception {
+        Evaluator interp = new Evaluator();
+        parse("f = fun(x) mapsto x; g = f + 0; g;").visit(interp, interp.getGlobalEnv());
+    }
+
+    @Test
+    public void numberPlusZeroIsUnchanged() throws Exception {
+        Evaluator interp = new Evaluator();
+        assertEquals(2.5, parse("a = 2.5; f = fun(x) mapsto a + 0; f(1);")
+                .visit(interp, interp.getGlobalEnv()).doubleValue(), 0);
+    }
+}
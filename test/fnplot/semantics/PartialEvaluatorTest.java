@@ -0,0 +1,98 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpExpo;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import fnplot.values.FnPlotFunction;
+import fnplot.values.FnPlotValue;
+import java.io.StringReader;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that functions specialized to the values of their free variables
+ * give the same results as the originals.
+ */
+public class PartialEvaluatorTest {
+
+    private static final String[] FUNCTIONS = {
+        "a = 2; b = 3; f = fun(x) mapsto a * b * x + b ^ 2;",
+        "a = 7; f = fun(x) mapsto a / 2 + a % 4 * x;",
+        "a = 2; f = fun(x) mapsto { a = x; a * 3; };",
+        "a = 2; f = fun(x) mapsto let a = x + a in a * a;",
+        "n = 1; f = fun(x) mapsto { s = 0; for i in [1:3] { s = s + n * x; n = n + 1; }; s; };",
+        "g = fun(t) mapsto t * t; c = 0.5; f = fun(x) mapsto g(x) * c;",
+        "mk = fun(c) mapsto { m = fun(x) mapsto c * x + c; m; }; f = mk(4);",
+        "mk = fun(c) mapsto { d = c * 2; m = fun(x) mapsto x - d; m; }; f = mk(1.5);",
+    };
+
+    private static final String[] ARGUMENTS = {"3", "0.5", "(0 - 2)"};
+
+    private Evaluator interp;
+
+    @Before
+    public void setUp() {
+        interp = new Evaluator();
+    }
+
+    private FnPlotValue<?> run(String source) throws Exception {
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(source)));
+        return ((ArithProgram) parser.parse().value).visit(interp, interp.getGlobalEnv());
+    }
+
+    private FnPlotFunction function(String name) throws Exception {
+        return (FnPlotFunction) interp.getGlobalEnv().get(name);
+    }
+
+    private FnPlotValue<?> apply(FnPlotFunction f, FnPlotValue<?> arg) throws Exception {
+        Frame frame = Invoker.frame(f);
+        frame.set(0, arg);
+        return f.getFunExp().getBody().visit(interp, frame);
+    }
+
+    private static String show(FnPlotValue<?> v) {
+        return v.getType() + ":" + v;
+    }
+
+    @Test
+    public void residualsMatchOriginals() throws Exception {
+        for (String def : FUNCTIONS) {
+            run(def);
+            FnPlotFunction f = function("f");
+            FnPlotFunction residual = PartialEvaluator.specialize(f);
+            for (String arg : ARGUMENTS) {
+                FnPlotValue<?> x = run(arg + ";");
+                assertEquals(def + " at " + arg, show(apply(f, x)),
+                        show(apply(residual, x)));
+            }
+        }
+    }
+
+    @Test
+    public void freeNumbersAreFolded() throws Exception {
+        run("a = 2; b = 3; f = fun(x) mapsto a * b * x + b ^ 2;");
+        FnPlotFunction f = function("f");
+        ExpAdd body = (ExpAdd) PartialEvaluator.specialize(f).getFunExp().getBody();
+        assertEquals(6, ((ExpLit) ((ExpMul) body.getExpL()).getExpL()).getVal().intValue());
+        assertEquals(9, ((ExpLit) body.getExpR()).getVal().intValue());
+        // the original is left as it was
+        assertTrue(((ExpAdd) f.getFunExp().getBody()).getExpR() instanceof ExpExpo);
+    }
+
+    @Test
+    public void residualIsOnlyValidForCurrentValues() throws Exception {
+        run("a = 2; f = fun(x) mapsto a * x;");
+        FnPlotFunction residual = PartialEvaluator.specialize(function("f"));
+        run("a = 5;");
+        assertEquals("INTEGER:6", show(apply(residual, FnPlotValue.make(3))));
+        assertEquals("INTEGER:15", show(apply(PartialEvaluator.specialize(function("f")),
+                FnPlotValue.make(3))));
+    }
+}
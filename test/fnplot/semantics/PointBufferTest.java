@@ -0,0 +1,122 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import java.awt.geom.Point2D;
+import java.io.StringReader;
+import java.util.ArrayList;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests point buffers, and the defaults by which plotters that only take
+ * arrays of points are given them.
+ */
+public class PointBufferTest {
+
+    @Test
+    public void bufferGrowsFromNoRoom() {
+        PointBuffer buffer = new PointBuffer(0);
+        for (int i = 0; i < 100; i++) {
+            buffer.add(i, 2 * i);
+        }
+        assertEquals(100, buffer.length());
+        assertEquals(99, buffer.getX(99), 0);
+        assertEquals(198, buffer.getY(99), 0);
+    }
+
+    @Test
+    public void clearKeepsRoom() {
+        PointBuffer buffer = new PointBuffer(4);
+        buffer.add(1, 2);
+        double[] xs = buffer.getXs();
+        buffer.clear();
+        assertEquals(0, buffer.length());
+        buffer.add(3, 4);
+        assertSame(xs, buffer.getXs());
+        assertEquals(3, buffer.getX(0), 0);
+    }
+
+    @Test
+    public void arraysAreNotCopied() {
+        double[] xs = {1, 2, 3}, ys = {4, 5, 6};
+        PointBuffer buffer = new PointBuffer(xs, ys, 2);
+        assertSame(xs, buffer.getXs());
+        assertSame(ys, buffer.getYs());
+        assertEquals(2, buffer.length());
+        assertEquals(3, new PointBuffer(xs, ys).length());
+    }
+
+    @Test
+    public void pointsRoundTrip() {
+        Point2D[] points = {new Point2D.Double(1, 2), new Point2D.Double(3, 4)};
+        PointBuffer buffer = PointBuffer.of(points);
+        assertArrayEquals(points, buffer.toPoints());
+        assertEquals(0, PointBuffer.of(new Point2D[0]).toPoints().length);
+    }
+
+    /*
+     * A plotter written before point buffers, which samples at the given
+     * number of evenly spaced points.
+     */
+    private static class ArrayPlotter implements Plotter {
+
+        final ArrayList<Point2D[]> paths = new ArrayList<>();
+        final int n;
+
+        ArrayPlotter(int n) {
+            this.n = n;
+        }
+
+        @Override
+        public double[] sample(double low, double hi) {
+            double[] xs = new double[n];
+            for (int i = 0; i < n; i++) {
+                xs[i] = low + i * (hi - low) / (n - 1);
+            }
+            return xs;
+        }
+
+        @Override
+        public void plot(Point2D[] points) {
+            paths.add(points);
+        }
+
+        @Override
+        public void clear() {
+            paths.clear();
+        }
+    }
+
+    @Test
+    public void defaultSampleCopiesRuns() {
+        ArrayPlotter plotter = new ArrayPlotter(5);
+        double[] xs = new double[3];
+        assertEquals(3, plotter.sample(0, 4, 0, xs));
+        assertArrayEquals(new double[]{0, 1, 2}, xs, 0);
+        assertEquals(2, plotter.sample(0, 4, 3, xs));
+        assertEquals(3, xs[0], 0);
+        assertEquals(4, xs[1], 0);
+        assertEquals(0, plotter.sample(0, 4, 7, xs));
+    }
+
+    @Test
+    public void plotterOfArraysIsGivenPoints() throws Exception {
+        ArrayPlotter plotter = new ArrayPlotter(9);
+        Evaluator interp = new Evaluator();
+        interp.setPlotter(plotter);
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(
+                "plot x * x for x in [0:2];")));
+        ((ArithProgram) parser.parse().value).visit(interp, interp.getGlobalEnv());
+        assertEquals(1, plotter.paths.size());
+        Point2D[] points = plotter.paths.get(0);
+        assertEquals(9, points.length);
+        for (Point2D p : points) {
+            assertEquals(p.getX() * p.getX(), p.getY(), 0);
+        }
+    }
+}
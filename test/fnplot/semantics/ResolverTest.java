@@ -0,0 +1,117 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtLet;
+import fnplot.values.FnPlotValue;
+import java.io.StringReader;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the lexical addresses given by the resolver, and that programs run on
+ * frames give the same results as when their variables are looked up by name.
+ */
+public class ResolverTest {
+
+    private static final String[] PROGRAMS = {
+        "let a = 1 in let b = 2.5 in a + b;",
+        "let a = 1 in let a = a + 1 in a * 10;",
+        "a = 5; let b = a in { a = 7; a + b; };",
+        "let a = 2 in ({ a = 0.5; a * 4; }) + a;",
+        "c = 10; f = fun(x) mapsto x + c; c = 20; f(1);",
+        "f = fun(x) mapsto { y = x * 2; y + 1; }; f(3) + f(4);",
+        "f = fun(x) mapsto let x = x + 1 in g(x); g = fun(y) mapsto y * y; f(2);",
+        "g = fun(c) mapsto { m = fun(x) mapsto c * x; m; }; h = g(3); c = 100; h(2);",
+        "f = fun(x) mapsto { y = x; { y = y + 1; }; y; }; f(1);",
+        "s = 0; for i in [1:10] { s = s + i; }; s;",
+        "s = 0; for i in [1:10:3] { q = i; s = s + q; }; s + q;",
+        "f = fun(n) mapsto { t = 0; for i in [1:n] { t = t + i * n; }; t; }; f(4);",
+        "let i = 100 in { for i in [1:3] { j = i; }; i + j; };",
+        "f = fun(a, b, c, d, e) mapsto a - b + c * d / e; f(1, 2, 3, 4, 5.0);",
+    };
+
+    private static ArithProgram parse(String source) throws Exception {
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(source)));
+        return (ArithProgram) parser.parse().value;
+    }
+
+    // the result of a program run without preparing it, after resolving it
+    // if asked to
+    private static String run(String source, boolean resolve) throws Exception {
+        ArithProgram p = parse(source);
+        if (resolve) {
+            new Resolver().resolve(p);
+        }
+        Evaluator interp = new Evaluator();
+        FnPlotValue<?> v = p.getSeq().visit(interp, interp.getGlobalEnv());
+        return v.getType() + ":" + v;
+    }
+
+    private static ArithProgram resolved(String source) throws Exception {
+        ArithProgram p = parse(source);
+        new Resolver().resolve(p);
+        return p;
+    }
+
+    @Test
+    public void resultsMatchLookupByName() throws Exception {
+        for (String p : PROGRAMS) {
+            assertEquals(p, run(p, false), run(p, true));
+        }
+    }
+
+    @Test
+    public void variablesAreAddressedByDepthAndSlot() throws Exception {
+        ArithProgram p = resolved("let a = 1 in let b = 2 in a + b;");
+        StmtLet outer = (StmtLet) p.getSeq().getSeq().get(0);
+        ExpAdd sum = (ExpAdd) ((StmtLet) outer.getBody()).getBody();
+        ExpVar a = (ExpVar) sum.getExpL();
+        ExpVar b = (ExpVar) sum.getExpR();
+        assertEquals(1, a.getDepth());
+        assertEquals(0, a.getSlot());
+        assertEquals(0, b.getDepth());
+        assertEquals(0, b.getSlot());
+    }
+
+    @Test
+    public void globalVariablesHaveNoSlot() throws Exception {
+        ArithProgram p = resolved("g = 1; let a = 2 in a + g;");
+        StmtLet let = (StmtLet) p.getSeq().getSeq().get(1);
+        ExpVar g = (ExpVar) ((ExpAdd) let.getBody()).getExpR();
+        assertEquals(1, g.getDepth());
+        assertEquals(-1, g.getSlot());
+    }
+
+    @Test
+    public void functionFrameHoldsParametersThenDefinitions() throws Exception {
+        ArithProgram p = resolved("f = fun(x, y) mapsto { z = x + y; z * 2; };");
+        ExpFunction f = (ExpFunction) ((StmtDefinition) p.getSeq().getSeq().get(0)).getExp();
+        assertArrayEquals(new String[]{"x", "y", "z"}, f.getFrameVars());
+    }
+
+    @Test
+    public void unassignedSlotSeesEnclosingBinding() throws Exception {
+        Environment<FnPlotValue<?>> global = new Environment<>();
+        global.put("a", FnPlotValue.make(1));
+        Frame frame = new Frame(new String[]{"x", "a"}, global);
+        assertEquals(1, frame.lookup(0, 1, "a").intValue());
+        frame.set(1, FnPlotValue.make(2));
+        assertEquals(2, frame.lookup(0, 1, "a").intValue());
+        assertEquals(2, frame.get("a").intValue());
+    }
+
+    @Test
+    public void nameNotLaidOutIsKeptByName() throws Exception {
+        Frame frame = new Frame(new String[]{"x"}, new Environment<FnPlotValue<?>>());
+        frame.put("y", FnPlotValue.make(3));
+        assertEquals(3, frame.get("y").intValue());
+    }
+}
@@ -0,0 +1,123 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import java.awt.geom.Point2D;
+import java.io.StringReader;
+import java.util.ArrayList;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that sample stores keep their points and give their buffers back
+ * when they are closed, and that an off-heap plot reaches the plotter whole.
+ */
+public class SampleStoreTest {
+
+    @Test
+    public void poolKeepsNoMoreThanItsLimit() {
+        // each 16MB, and twice as many in all as the pool keeps
+        int capacity = 1 << 20;
+        ArrayList<SampleStore> stores = new ArrayList<>();
+        for (long held = 0; held < 2 * SampleStore.POOL_LIMIT; held += capacity * 16L) {
+            stores.add(new SampleStore(capacity));
+        }
+        for (SampleStore store : stores) {
+            store.close();
+        }
+        assertTrue(SampleStore.getPooledBytes() <= SampleStore.POOL_LIMIT);
+    }
+
+    @Test
+    public void storeGrowsKeepingItsPoints() {
+        try (SampleStore store = new SampleStore(1)) {
+            double[] xs = new double[3 * SampleStore.MIN_CAPACITY];
+            double[] ys = new double[xs.length];
+            for (int i = 0; i < xs.length; i++) {
+                xs[i] = i;
+                ys[i] = -i;
+            }
+            store.append(xs, ys, 0, 10);
+            store.append(xs, ys, 10, xs.length);
+            assertEquals(xs.length, store.length());
+            double[] gotXs = new double[5];
+            double[] gotYs = new double[5];
+            store.get(2000, gotXs, gotYs, 0, 5);
+            for (int i = 0; i < 5; i++) {
+                assertEquals(2000 + i, gotXs[i], 0);
+                assertEquals(-2000 - i, gotYs[i], 0);
+            }
+            assertEquals(xs.length - 1, store.getX(xs.length - 1), 0);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void closedStoreCannotBeRead() {
+        SampleStore store = new SampleStore(16);
+        store.append(new double[]{1}, new double[]{2}, 0, 1);
+        store.close();
+        store.getX(0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void closedStoreCannotBeCopied() {
+        SampleStore store = new SampleStore(16);
+        store.append(new double[]{1}, new double[]{2}, 0, 1);
+        store.close();
+        store.get(0, new double[1], new double[1], 0, 1);
+    }
+
+    @Test
+    public void offHeapPlotStatementDrawsJoinedPieces() throws Exception {
+        final ArrayList<PointBuffer> paths = new ArrayList<>();
+        Evaluator interp = new Evaluator();
+        interp.setPlotter(new Plotter() {
+            @Override
+            public double[] sample(double low, double hi) {
+                double[] xs = new double[3001];
+                for (int i = 0; i < xs.length; i++) {
+                    xs[i] = low + i * (hi - low) / (xs.length - 1);
+                }
+                return xs;
+            }
+
+            @Override
+            public void plot(Point2D[] points) {
+                paths.add(PointBuffer.of(points));
+            }
+
+            @Override
+            public void plot(PointBuffer points) {
+                paths.add(new PointBuffer(points.getXs().clone(), points.getYs().clone(),
+                        points.length()));
+            }
+
+            @Override
+            public void clear() {
+                paths.clear();
+            }
+        });
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(
+                new StringReader("plot 3 * x for x in [0:3] offheap;")));
+        ((ArithProgram) parser.parse().value).visit(interp, interp.getGlobalEnv());
+
+        // pieces of at most MIN_CAPACITY new points, each joined to the last
+        assertEquals(3, paths.size());
+        int points = 0;
+        for (int i = 0; i < paths.size(); i++) {
+            PointBuffer path = paths.get(i);
+            points += path.length() - (i == 0 ? 0 : 1);
+            if (i > 0) {
+                PointBuffer before = paths.get(i - 1);
+                assertEquals(before.getX(before.length() - 1), path.getX(0), 0);
+            }
+            for (int j = 0; j < path.length(); j++) {
+                assertEquals(3 * path.getX(j), path.getY(j), 1e-12);
+            }
+        }
+        assertEquals(3001, points);
+    }
+}
@@ -0,0 +1,89 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import fnplot.values.FnPlotValue;
+import java.io.StringReader;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that programs run on an explicit stack give the same results as the
+ * tree walk, whether or not they are deep enough to be run as parsed.
+ */
+public class StacklessEvaluatorTest {
+
+    private static final String[] PROGRAMS = {
+        "1 - 0.5;",
+        "7 / 2;",
+        "7 % 3 + 2 ^ 3;",
+        "let a = 1 in a - 0.25;",
+        "k = 3; r = 0.5; k * r + k;",
+        "f = fun(x) mapsto (x * x + 1) * (x * x + 1) - x * x / 2.0; f(3);",
+        "let a = 2 in ({ a = 0.5; a * 4; }) + a;",
+        "g = fun(x, y) mapsto x * y; z = g(2, 3.5); z;",
+        "h = fun(x) mapsto x + 1; h(h(1)) * 2;",
+        "c = 10; f = fun(x) mapsto x + c; c = 20; f(1);",
+        "f = fun(x) mapsto { y = x * 2; y + 1; }; f(3);",
+        "f = fun(x) mapsto let x = x + 1 in g(x); g = fun(y) mapsto y * y; f(2);",
+        "s = 0; for i in [1:10] { s = s + i * 0.5; }; s;",
+        "s = 0; for i in [1:10:3] { q = i; s = s + q; }; s + q;",
+        "z0 = fun() mapsto 42; z0() + 1;",
+    };
+
+    private static ArithProgram parse(String source) throws Exception {
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(source)));
+        return (ArithProgram) parser.parse().value;
+    }
+
+    private static String run(String source, boolean stackless, boolean incremental)
+            throws Exception {
+        Evaluator interp = new Evaluator();
+        interp.setStackless(stackless);
+        interp.setIncremental(incremental);
+        FnPlotValue<?> v = parse(source).visit(interp, interp.getGlobalEnv());
+        return v.getType() + ":" + v;
+    }
+
+    @Test
+    public void resultsMatchTreeWalk() throws Exception {
+        for (String p : PROGRAMS) {
+            assertEquals(p, run(p, false, false), run(p, true, false));
+        }
+    }
+
+    @Test
+    public void incrementalResultsMatchTreeWalk() throws Exception {
+        for (String p : PROGRAMS) {
+            assertEquals(p, run(p, false, false), run(p, true, true));
+        }
+    }
+
+    @Test
+    public void programTooDeepToPrepareIsRunAsParsed() throws Exception {
+        StringBuilder source = new StringBuilder("a = 2; y = a");
+        int terms = 20 * Evaluator.PREPARE_DEPTH;
+        for (int i = 0; i < terms; i++) {
+            source.append(" + a");
+        }
+        source.append("; y;");
+        assertEquals("INTEGER:" + 2 * (terms + 1), run(source.toString(), true, false));
+        assertEquals("INTEGER:" + 2 * (terms + 1), run(source.toString(), true, true));
+    }
+
+    @Test
+    public void treeTooDeepForJavaStackIsEvaluated() throws Exception {
+        Exp e = new ExpLit(FnPlotValue.make(0));
+        for (int i = 0; i < 1000000; i++) {
+            e = new ExpAdd(e, new ExpLit(FnPlotValue.make(1)));
+        }
+        Evaluator interp = new Evaluator();
+        assertEquals(1000000, new StacklessEvaluator().eval(e, interp.getGlobalEnv())
+                .doubleValue(), 0);
+    }
+}
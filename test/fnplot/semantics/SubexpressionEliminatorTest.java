@@ -0,0 +1,96 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtLet;
+import fnplot.values.FnPlotValue;
+import java.io.StringReader;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that eliminating common subexpressions from function bodies does not
+ * change what programs compute, and which expressions are eliminated.
+ */
+public class SubexpressionEliminatorTest {
+
+    private static final String[] PROGRAMS = {
+        "f = fun(x) mapsto (x * x + 1) * (x * x + 1) - x * x; f(3) + f(0.5);",
+        "a = 2; f = fun(x) mapsto (x + a) / (x + a + 1); a = 3; f(1.5);",
+        "f = fun(x) mapsto { y = x * 2; y = y + x * 2; y + x * 2; }; f(3);",
+        "f = fun(x) mapsto let y = x + 1 in (y + 1) * (y + 1); f(2);",
+        "f = fun(x) mapsto { s = 0; for i in [1:3] { s = s + x * i + x * i; }; s; }; f(2);",
+        "f = fun(x) mapsto { s = 1; for i in [1:0] { s = x / 0 + x / 0; }; s; }; f(3);",
+        "f = fun(x) mapsto x % 3 * 2 + (x % 3) * 2; f(7) + f(7.5);",
+        "g = fun(x) mapsto { h = fun(y) mapsto (x + y) * (x + y); h(x + 1) + (x + 1); }; g(2);",
+    };
+
+    private static ArithProgram parse(String source) throws Exception {
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(source)));
+        return (ArithProgram) parser.parse().value;
+    }
+
+    private static String run(String source, boolean eliminate) throws Exception {
+        ArithProgram p = parse(source);
+        if (eliminate) {
+            new SubexpressionEliminator().eliminate(p);
+        }
+        Evaluator interp = new Evaluator();
+        FnPlotValue<?> v = p.getSeq().visit(interp, interp.getGlobalEnv());
+        return v.getType() + ":" + v;
+    }
+
+    // the body of the function defined first, after elimination
+    private static Exp body(String source) throws Exception {
+        ArithProgram p = parse(source);
+        new SubexpressionEliminator().eliminate(p);
+        StmtDefinition sd = (StmtDefinition) p.getSeq().getSeq().get(0);
+        return ((ExpFunction) sd.getExp()).getBody();
+    }
+
+    @Test
+    public void resultsMatchProgramAsParsed() throws Exception {
+        for (String p : PROGRAMS) {
+            assertEquals(p, run(p, false), run(p, true));
+        }
+    }
+
+    @Test
+    public void largestRepeatedExpressionIsComputedOnce() throws Exception {
+        Exp body = body("f = fun(x) mapsto (x * x + 1) * (x * x + 1);");
+        assertTrue(body instanceof StmtLet);
+        StmtLet let = (StmtLet) body;
+        assertEquals(1, let.getBindings().size());
+        ExpMul product = (ExpMul) let.getBody();
+        String temp = let.getBindings().get(0).getVar();
+        assertEquals(temp, ((ExpVar) product.getExpL()).getVar());
+        assertEquals(temp, ((ExpVar) product.getExpR()).getVar());
+    }
+
+    @Test
+    public void expressionOfVariableBoundInBodyIsKept() throws Exception {
+        assertFalse(body("f = fun(x) mapsto { y = x; (y + 1) * (y + 1); };")
+                instanceof StmtLet);
+    }
+
+    @Test
+    public void expressionOnlyWithinLoopIsKept() throws Exception {
+        assertFalse(body("f = fun(x) mapsto { s = 0; for i in [1:3] { s = x / 2 + x / 2; }; s; };")
+                instanceof StmtLet);
+    }
+
+    @Test
+    public void expressionIsNotMovedOutOfNestedFunction() throws Exception {
+        assertFalse(body("f = fun(x) mapsto { g = fun(y) mapsto x * x; x * x; };")
+                instanceof StmtLet);
+    }
+}
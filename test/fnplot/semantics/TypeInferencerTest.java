@@ -0,0 +1,103 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpPromote;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtLet;
+import fnplot.values.FnPlotType;
+import fnplot.values.FnPlotValue;
+import java.io.StringReader;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the static types recorded by the type inferencer, the promotions it
+ * inserts, and that they do not change what programs compute.
+ */
+public class TypeInferencerTest {
+
+    private static final String[] PROGRAMS = {
+        "1 + 2.5;",
+        "7 / 2 * 0.5;",
+        "2.5 - 7 % 3;",
+        "2 ^ 0.5 + 2 ^ 3;",
+        "let a = 1 in a * 0.5 + a;",
+        "let a = 1 in { a = 2.5; a + 1; };",
+        "let a = 1, b = 0.5 in let a = b in a + 1;",
+        "f = fun(x) mapsto x + 1; f(2) + f(2.5);",
+        "f = fun(x) mapsto let k = 3 in k / 2 + x; f(1) * f(0.5);",
+        "s = 0; for i in [1:4:0.5] { s = s + i; }; s;",
+        "s = 0; for i in [1:4] { i = i * 1.5; s = s + i; }; s;",
+    };
+
+    private static ArithProgram parse(String source) throws Exception {
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(source)));
+        return (ArithProgram) parser.parse().value;
+    }
+
+    private static String run(String source, boolean typed) throws Exception {
+        ArithProgram p = parse(source);
+        if (typed) {
+            new TypeInferencer().infer(p);
+        }
+        Evaluator interp = new Evaluator();
+        FnPlotValue<?> v = p.getSeq().visit(interp, interp.getGlobalEnv());
+        return v.getType() + ":" + v;
+    }
+
+    // the expression of the only definition in an annotated program
+    private static Exp typed(String source) throws Exception {
+        ArithProgram p = parse(source);
+        new TypeInferencer().infer(p);
+        return ((StmtDefinition) p.getSeq().getSeq().get(0)).getExp();
+    }
+
+    @Test
+    public void resultsMatchUntypedProgram() throws Exception {
+        for (String p : PROGRAMS) {
+            assertEquals(p, run(p, false), run(p, true));
+        }
+    }
+
+    @Test
+    public void integerOperandOfRealOperationIsPromoted() throws Exception {
+        ExpAdd sum = (ExpAdd) typed("y = 1 + 2.5;");
+        assertSame(FnPlotType.REAL, sum.getStaticType());
+        assertTrue(sum.getExpL() instanceof ExpPromote);
+        assertEquals(FnPlotType.REAL, sum.getExpR().getStaticType());
+    }
+
+    @Test
+    public void integerOperationIsNotPromoted() throws Exception {
+        ExpAdd sum = (ExpAdd) typed("y = 1 + 2;");
+        assertSame(FnPlotType.INTEGER, sum.getStaticType());
+        assertEquals(FnPlotType.INTEGER, sum.getExpL().getStaticType());
+    }
+
+    @Test
+    public void parametersAreNotKnown() throws Exception {
+        ExpFunction f = (ExpFunction) typed("f = fun(x) mapsto x + 1;");
+        assertSame(FnPlotType.FUNCTION, f.getStaticType());
+        ExpAdd body = (ExpAdd) f.getBody();
+        assertNull(body.getStaticType());
+        assertFalse(body.getExpR() instanceof ExpPromote);
+    }
+
+    @Test
+    public void letVariableRedefinedInBodyIsNotKnown() throws Exception {
+        StmtLet let = (StmtLet) typed("y = let a = 1 in { a = 2.5; a + 1; };");
+        assertNull(let.getStaticType());
+        let = (StmtLet) typed("y = let a = 1 in a + 1;");
+        assertSame(FnPlotType.INTEGER, let.getStaticType());
+    }
+}
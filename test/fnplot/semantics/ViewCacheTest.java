@@ -0,0 +1,127 @@
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import java.awt.geom.Point2D;
+import java.io.StringReader;
+import java.util.ArrayList;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the curves of plot statements are sampled over the view, and
+ * that panning or zooming it reuses the values kept in the view cache.
+ */
+public class ViewCacheTest {
+
+    // the plotter's sample of a view of width 4 is then 1/25 apart, so the
+    // cache samples it on the grid of spacing 1/32
+    private static final int POINTS = 101;
+
+    private Evaluator interp;
+    private final ArrayList<PointBuffer> paths = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        interp = new Evaluator();
+        interp.setIncremental(true);
+        interp.setPlotter(new Plotter() {
+            @Override
+            public double[] sample(double low, double hi) {
+                double[] xs = new double[POINTS];
+                for (int i = 0; i < xs.length; i++) {
+                    xs[i] = low + i * (hi - low) / (xs.length - 1);
+                }
+                return xs;
+            }
+
+            @Override
+            public void plot(Point2D[] points) {
+                paths.add(PointBuffer.of(points));
+            }
+
+            @Override
+            public void plot(PointBuffer points) {
+                paths.add(new PointBuffer(points.getXs().clone(), points.getYs().clone(),
+                        points.length()));
+            }
+
+            @Override
+            public void clear() {
+                paths.clear();
+            }
+        });
+    }
+
+    private void run(String source) throws Exception {
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(source)));
+        ArithProgram program = (ArithProgram) parser.parse().value;
+        program.visit(interp, interp.getGlobalEnv());
+    }
+
+    private void assertSquares(PointBuffer path, double low, double hi) {
+        assertEquals(low, path.getX(0), 0);
+        assertEquals(hi, path.getX(path.length() - 1), 0);
+        for (int i = 0; i < path.length(); i++) {
+            assertEquals(path.getX(i) * path.getX(i), path.getY(i), 1e-12);
+        }
+    }
+
+    @Test
+    public void panReusesCachedValues() throws Exception {
+        run("plot x * x for x in [-10:10];");
+        SampleCache cache = interp.getViewCache();
+        assertEquals(0, cache.getHits());
+        assertEquals(0, cache.getMisses());
+
+        interp.setView(0, 4);
+        assertEquals(0, cache.getHits());
+        assertEquals(4 * 32 + 1, cache.getMisses());
+        assertEquals(1, paths.size());
+        assertSquares(paths.get(0), 0, 4);
+
+        // [1:4] is still in view; only (4:5] is new
+        interp.setView(1, 5);
+        assertEquals(3 * 32 + 1, cache.getHits());
+        assertEquals(4 * 32 + 1 + 32, cache.getMisses());
+        assertEquals(1, paths.size());
+        assertSquares(paths.get(0), 1, 5);
+    }
+
+    @Test
+    public void zoomOutServesCoarserLevel() throws Exception {
+        run("plot x * x for x in [-10:10];");
+        SampleCache cache = interp.getViewCache();
+        interp.setView(0, 4);
+        assertEquals(0, cache.getHits());
+        assertEquals(4 * 32 + 1, cache.getMisses());
+
+        // twice as wide, so sampled on the grid of spacing 1/16, whose points
+        // in [0:4] are every other one of those computed on the finer grid
+        interp.setView(0, 8);
+        assertEquals(4 * 16 + 1, cache.getHits());
+        assertEquals(4 * 32 + 1 + 4 * 16, cache.getMisses());
+        assertEquals(1, paths.size());
+        assertEquals(8 * 16 + 1, paths.get(0).length());
+        assertSquares(paths.get(0), 0, 8);
+
+        // and again, on the grid of spacing 1/8, up to the end of the curve
+        interp.setView(0, 16);
+        assertEquals(4 * 16 + 1 + 8 * 8 + 1, cache.getHits());
+        assertEquals(4 * 32 + 1 + 4 * 16 + 2 * 8, cache.getMisses());
+        assertSquares(paths.get(0), 0, 10);
+    }
+
+    @Test
+    public void plotAfterViewIsSetIsSampledOverIt() throws Exception {
+        interp.setView(0, 4);
+        run("plot x * x for x in [-10:2];");
+        assertEquals(1, paths.size());
+        assertSquares(paths.get(0), 0, 2);
+        assertTrue(interp.getViewCache().getMisses() > 0);
+    }
+}
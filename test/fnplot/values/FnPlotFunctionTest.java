@@ -0,0 +1,143 @@
+package fnplot.values;
+
+import fnplot.semantics.Environment;
+import fnplot.semantics.Evaluator;
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests the memo table of a function: which results it keeps, which it
+ * evicts, and when it forgets them.
+ */
+public class FnPlotFunctionTest {
+
+    private Environment<FnPlotValue<?>> env;
+    private FnPlotFunction f;
+
+    @Before
+    public void setUp() {
+        env = new Environment<>();
+        f = new FnPlotFunction(new ExpFunction(new ArrayList<>(Collections.singletonList("x")),
+                new ExpVar("x")), env);
+    }
+
+    private static FnPlotValue<?>[] args(double x) {
+        return new FnPlotValue<?>[]{FnPlotValue.make(x)};
+    }
+
+    @Test
+    public void leastRecentlyUsedResultIsEvicted() throws Exception {
+        f.setMemoCapacity(2);
+        FnPlotValue<?> one = FnPlotValue.make(10.0), two = FnPlotValue.make(20.0);
+        f.remember(args(1), one);
+        f.remember(args(2), two);
+        assertSame(one, f.recall(args(1)));
+        f.remember(args(3), FnPlotValue.make(30.0));
+        assertNull(f.recall(args(2)));
+        assertSame(one, f.recall(args(1)));
+        assertEquals(30, f.recall(args(3)).doubleValue(), 0);
+    }
+
+    @Test
+    public void capacityOfOneKeepsLastResult() throws Exception {
+        f.setMemoCapacity(1);
+        f.remember(args(1), FnPlotValue.make(10.0));
+        f.remember(args(2), FnPlotValue.make(20.0));
+        assertNull(f.recall(args(1)));
+        assertEquals(20, f.recall(args(2)).doubleValue(), 0);
+    }
+
+    @Test
+    public void capacityOfZeroStopsMemoizing() throws Exception {
+        f.setMemoCapacity(2);
+        f.remember(args(1), FnPlotValue.make(10.0));
+        f.setMemoCapacity(0);
+        assertFalse(f.isMemoized());
+        assertEquals(0, f.getMemoCapacity());
+        f.remember(args(1), FnPlotValue.make(10.0));
+        assertNull(f.recall(args(1)));
+    }
+
+    @Test
+    public void changeOfClosingEnvironmentForgetsResults() throws Exception {
+        f.setMemoCapacity(4);
+        f.remember(args(1), FnPlotValue.make(10.0));
+        env.put("c", FnPlotValue.make(1));
+        assertNull(f.recall(args(1)));
+        f.remember(args(1), FnPlotValue.make(11.0));
+        assertEquals(11, f.recall(args(1)).doubleValue(), 0);
+    }
+
+    @Test
+    public void integerAndRealArgumentsAreDistinct() throws Exception {
+        f.setMemoCapacity(4);
+        f.remember(new FnPlotValue<?>[]{FnPlotValue.make(1)}, FnPlotValue.make(1));
+        assertNull(f.recall(args(1)));
+    }
+
+    @Test
+    public void argumentsAreCopied() throws Exception {
+        f.setMemoCapacity(4);
+        FnPlotValue<?>[] a = args(1);
+        f.remember(a, FnPlotValue.make(10.0));
+        a[0] = FnPlotValue.make(2.0);
+        assertNull(f.recall(args(2)));
+        assertEquals(10, f.recall(args(1)).doubleValue(), 0);
+    }
+
+    @Test
+    public void nonNumericArgumentsAreNotMemoized() throws Exception {
+        f.setMemoCapacity(4);
+        FnPlotValue<?>[] a = new FnPlotValue<?>[]{f};
+        f.remember(a, FnPlotValue.make(1));
+        assertNull(f.recall(a));
+        assertEquals(0, f.getMemoMisses());
+    }
+
+    @Test
+    public void hitsAndMissesAreCounted() throws Exception {
+        f.setMemoCapacity(4);
+        f.recall(args(1));
+        f.remember(args(1), FnPlotValue.make(10.0));
+        f.recall(args(1));
+        f.recall(args(1));
+        assertEquals(2, f.getMemoHits());
+        assertEquals(1, f.getMemoMisses());
+    }
+
+    private static String run(String source, int capacity) throws Exception {
+        Evaluator interp = new Evaluator();
+        interp.setMemoCapacity(capacity);
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(source)));
+        FnPlotValue<?> v = ((ArithProgram) parser.parse().value)
+                .visit(interp, interp.getGlobalEnv());
+        return v.getType() + ":" + v;
+    }
+
+    @Test
+    public void memoizedProgramsMatchUnmemoized() throws Exception {
+        String[] programs = {
+            "f = fun(x) mapsto x * 2; a = f(1); b = f(1.0); b;",
+            "f = fun(x) mapsto x * 2; a = f(1.0); b = f(1); b;",
+            "c = 1; f = fun(x) mapsto x + c; a = f(1); c = 2; f(1);",
+            "f = fun(x) mapsto x * x; s = 0; for i in [1:20] { s = s + f(i % 3); }; s;",
+        };
+        for (String p : programs) {
+            assertEquals(p, run(p, 0), run(p, 1));
+            assertEquals(p, run(p, 0), run(p, 2));
+        }
+    }
+}
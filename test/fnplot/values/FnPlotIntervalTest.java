@@ -0,0 +1,108 @@
+package fnplot.values;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that operations on intervals enclose the results of the same
+ * operations on the reals within them, including at the edge cases.
+ */
+public class FnPlotIntervalTest {
+
+    private static FnPlotInterval interval(double lo, double hi) {
+        return new FnPlotInterval(lo, hi);
+    }
+
+    // the reals at the ends and at 20 points between them
+    private static double[] points(FnPlotInterval a) {
+        double[] xs = new double[21];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = a.getLo() + i * (a.getHi() - a.getLo()) / (xs.length - 1);
+        }
+        xs[xs.length - 1] = a.getHi();
+        return xs;
+    }
+
+    private static void assertEncloses(FnPlotInterval r, double v) {
+        if (!Double.isNaN(v)) {
+            assertTrue(v + " not in " + r, r.contains(v));
+        }
+    }
+
+    @Test
+    public void arithmeticEnclosesPointwiseResults() throws Exception {
+        FnPlotInterval a = interval(-2, 3), b = interval(0.5, 4);
+        for (double x : points(a)) {
+            for (double y : points(b)) {
+                assertEncloses(a.add(b), x + y);
+                assertEncloses(a.sub(b), x - y);
+                assertEncloses(a.mul(b), x * y);
+                assertEncloses(a.div(b), x / y);
+                assertEncloses(a.mod(b), x % y);
+                assertEncloses(a.expo(b), Math.pow(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void divisionByIntervalContainingZeroIsEntire() throws Exception {
+        FnPlotInterval r = interval(1, 2).div(interval(-1, 1));
+        assertEquals(Double.NEGATIVE_INFINITY, r.getLo(), 0);
+        assertEquals(Double.POSITIVE_INFINITY, r.getHi(), 0);
+    }
+
+    @Test
+    public void zeroTimesInfinityIsZero() throws Exception {
+        FnPlotInterval r = interval(0, 0).mul(FnPlotInterval.ENTIRE);
+        assertTrue(r.contains(0));
+        assertTrue(r.width() < 1e-300);
+    }
+
+    @Test
+    public void emptyOperandGivesEmpty() throws Exception {
+        assertTrue(FnPlotInterval.EMPTY.add(interval(1, 2)).isEmpty());
+        assertTrue(interval(1, 2).mul(FnPlotInterval.EMPTY).isEmpty());
+    }
+
+    @Test
+    public void evenPowerOfIntervalAroundZeroStartsAtZero() throws Exception {
+        FnPlotInterval r = interval(-3, 2).expo(FnPlotValue.make(2));
+        assertEquals(0, r.getLo(), 0);
+        assertTrue(r.contains(9));
+        assertFalse(r.contains(-1e-9));
+    }
+
+    @Test
+    public void negativeBaseKeepsIntegerPowersOfExponentInterval() throws Exception {
+        FnPlotInterval r = interval(-2, -1).expo(interval(2, 3));
+        for (double x : points(interval(-2, -1))) {
+            assertEncloses(r, x * x);
+            assertEncloses(r, x * x * x);
+        }
+        r = interval(-2, 3).expo(interval(1.5, 3));
+        assertEncloses(r, -8);
+        assertEncloses(r, 27);
+    }
+
+    @Test
+    public void negativeBaseToFractionalPowersIsEmpty() throws Exception {
+        assertTrue(interval(-2, -1).expo(interval(0.25, 0.75)).isEmpty());
+    }
+
+    @Test
+    public void negativeBaseToManyIntegerPowersIsEntire() throws Exception {
+        FnPlotInterval r = interval(-2, -1).expo(interval(0, 100));
+        assertEquals(Double.NEGATIVE_INFINITY, r.getLo(), 0);
+        assertEquals(Double.POSITIVE_INFINITY, r.getHi(), 0);
+    }
+
+    @Test
+    public void modByPointIsTightWithinOnePeriod() throws Exception {
+        FnPlotInterval r = interval(5.5, 6.5).mod(FnPlotValue.make(4));
+        assertTrue(r.contains(1.5) && r.contains(2.5));
+        assertTrue(r.getLo() > 1.4 && r.getHi() < 2.6);
+    }
+}
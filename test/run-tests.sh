@@ -0,0 +1,17 @@
+#!/bin/sh
+# Compile FnPlot and its tests, and run the tests with JUnit.  The classes
+# are built in a temporary directory, which is removed afterwards.
+root=$(cd "$(dirname "$0")/.." && pwd)
+out=$(mktemp -d)
+trap 'rm -rf "$out"' EXIT
+libs="$root/fnplot/syntax/java-cup-11b-runtime.jar:$root/fnplot/gui/cs34q-utils.jar"
+junit="$root/test/junit-4.13.2.jar:$root/test/hamcrest-core-1.3.jar"
+
+find "$root/fnplot" -name '*.java' -not -path '*/bin/*' > "$out/main.txt"
+javac -nowarn -d "$out/main" -cp "$libs" @"$out/main.txt" || exit 1
+find "$root/test" -name '*.java' > "$out/test.txt"
+javac -nowarn -d "$out/test" -cp "$out/main:$libs:$junit" @"$out/test.txt" || exit 1
+
+tests=$(cd "$root/test" && find . -name '*Test.java' | sed 's|^\./||; s|\.java$||; s|/|.|g')
+java -Djava.awt.headless=true -cp "$out/main:$out/test:$libs:$junit" \
+    org.junit.runner.JUnitCore $tests